@@ -0,0 +1,94 @@
+package de.mdstv.bukkit.ecoinomy.benchmarks;
+
+import de.mdstv.bukkit.ecoinomy.account.Account;
+import de.mdstv.bukkit.ecoinomy.account.AccountBalance;
+import de.mdstv.bukkit.ecoinomy.account.CoinRegistry;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Reads and writes of a single balance shared by all threads. The groups
+ * run readers and writers at the same time, the plain benchmarks run all
+ * threads on the same operation.
+ * @author Morph <admin@mds-tv.de>
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BalanceBenchmark {
+    private AccountBalance balance;
+    private AccountBalance target;
+    private int            goldId;
+    private int            copperId;
+
+    @Setup
+    public void setup() throws IOException {
+        BenchmarkFixtures.loadDefaults();
+
+        this.balance  = new Account("shared").getBalance();
+        this.target   = new Account("target").getBalance();
+        this.goldId   = CoinRegistry.getInstance().getId("gold");
+        this.copperId = CoinRegistry.getInstance().getId("copper");
+
+        // Enough for every withdrawal of a run
+        this.balance.deposit(this.goldId, Long.MAX_VALUE / 100000);
+    }
+
+    @Benchmark
+    @Group("readHeavy")
+    @GroupThreads(3)
+    public long readHeavyRead() {
+        return this.balance.getAmount(this.copperId);
+    }
+
+    @Benchmark
+    @Group("readHeavy")
+    @GroupThreads(1)
+    public boolean readHeavyWrite() {
+        this.balance.deposit(this.copperId, 1);
+        return this.balance.withdraw(this.copperId, 1);
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(2)
+    public String mixedRead() {
+        return this.balance.getBalanceString();
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(2)
+    public boolean mixedTransfer() {
+        this.balance.transferTo(this.target, this.copperId, 1);
+        return this.target.transferTo(this.balance, this.copperId, 1);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public long contendedDeposit() {
+        return this.balance.deposit(this.copperId, 1);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public boolean contendedWithdraw() {
+        return this.balance.withdraw(this.copperId, 1);
+    }
+}
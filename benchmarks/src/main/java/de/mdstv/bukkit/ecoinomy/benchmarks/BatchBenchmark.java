@@ -0,0 +1,79 @@
+package de.mdstv.bukkit.ecoinomy.benchmarks;
+
+import de.mdstv.bukkit.ecoinomy.account.Account;
+import de.mdstv.bukkit.ecoinomy.account.BalanceBatch;
+import de.mdstv.bukkit.ecoinomy.storage.AccountRegistry;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * One account paying many accounts, as one BalanceBatch and as single
+ * transfers. The accounts are registered, so every change is reported to
+ * the registry.
+ * @author Morph <admin@mds-tv.de>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BatchBenchmark {
+    @Param({ "100", "10000" })
+    public int legs;
+
+    private Account   payer;
+    private Account[] receivers;
+
+    @Setup
+    public void setup() throws IOException {
+        BenchmarkFixtures.loadDefaults();
+
+        AccountRegistry accounts = BenchmarkFixtures.createAccounts(this.legs + 1);
+        this.payer     = accounts.get("account0");
+        this.receivers = new Account[this.legs];
+        for (int i = 0; i < this.legs; i++) {
+            this.receivers[i] = accounts.get("account" + (i + 1));
+        }
+
+        // Enough for every payment of a run
+        this.payer.getBalance().deposit("gold", Long.MAX_VALUE / 100000);
+    }
+
+    /**
+     * Builds and applies a batch with one transfer per receiver.
+     */
+    @Benchmark
+    public Account batch() {
+        BalanceBatch batch = new BalanceBatch();
+        for (Account receiver : this.receivers) {
+            batch.transfer(this.payer, receiver, "copper", 1);
+        }
+
+        return batch.apply();
+    }
+
+    /**
+     * Pays every receiver with a transfer of its own.
+     */
+    @Benchmark
+    public boolean singleTransfers() {
+        boolean paid = true;
+        for (Account receiver : this.receivers) {
+            paid &= this.payer.getBalance().transferTo(receiver.getBalance(), "copper", 1);
+        }
+
+        return paid;
+    }
+}
@@ -0,0 +1,172 @@
+package de.mdstv.bukkit.ecoinomy.benchmarks;
+
+import de.mdstv.bukkit.ecoinomy.Ecoinomy;
+import de.mdstv.bukkit.ecoinomy.account.Account;
+import de.mdstv.bukkit.ecoinomy.account.AccountMember;
+import de.mdstv.bukkit.ecoinomy.account.CoinRegistry;
+import de.mdstv.bukkit.ecoinomy.commands.MessageCatalog;
+import de.mdstv.bukkit.ecoinomy.commands.Messages;
+import de.mdstv.bukkit.ecoinomy.storage.AccountRegistry;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import org.bukkit.Server;
+import org.bukkit.command.CommandSender;
+import org.bukkit.configuration.file.YamlConfiguration;
+
+/**
+ * Headless setup of the plugin for the benchmarks.
+ *
+ * There is no server, so the plugin object is allocated without calling
+ * the JavaPlugin constructor and gets its accounts by reflection. Senders
+ * and the server are proxies which swallow every message and allow
+ * everything.
+ * @author Morph <admin@mds-tv.de>
+ */
+public final class BenchmarkFixtures {
+    /**
+     * Name of the benchmark sender, owns every 1000th generated account.
+     */
+    public static final String SENDER_NAME = "player0";
+
+    /**
+     * Answers every call of a Bukkit interface with a neutral value.
+     */
+    private static final InvocationHandler STUB = new InvocationHandler() {
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) {
+            switch (method.getName()) {
+                case "getName": {
+                    return SENDER_NAME;
+                }
+                case "getServer": {
+                    return SERVER;
+                }
+                case "hasPermission":
+                case "isOp": {
+                    return true;
+                }
+                case "hashCode": {
+                    return System.identityHashCode(proxy);
+                }
+                case "equals": {
+                    return proxy == args[0];
+                }
+                case "toString": {
+                    return "BenchmarkStub";
+                }
+                default: {
+                    return defaultValue(method.getReturnType());
+                }
+            }
+        }
+    };
+
+    /**
+     * Server without players.
+     */
+    private static final Server SERVER = (Server) Proxy.newProxyInstance(
+            Server.class.getClassLoader(), new Class<?>[] { Server.class }, STUB);
+
+    /**
+     * Sender of all benchmark commands.
+     */
+    public static final CommandSender SENDER = (CommandSender) Proxy.newProxyInstance(
+            CommandSender.class.getClassLoader(), new Class<?>[] { CommandSender.class }, STUB);
+
+    private BenchmarkFixtures() {
+    }
+
+    /**
+     * Loads the coins of the default config and the messages. Call this
+     * before any account is created.
+     * @throws IOException If config.yml or messages.yml is missing
+     */
+    public static void loadDefaults() throws IOException {
+        CoinRegistry.setInstance(CoinRegistry.load(
+                loadResource("config.yml").getConfigurationSection("eCoinomy.coins")));
+        Messages.setCatalog(MessageCatalog.load(MessageCatalog.DEFAULT_LOCALE,
+                loadResource("messages.yml")));
+    }
+
+    /**
+     * Creates accounts named "account0" to "account{count - 1}". Account i
+     * is owned by "player{i % 1000}" and has some gold and silver.
+     * @param count Number of accounts
+     * @return The accounts
+     */
+    public static AccountRegistry createAccounts(int count) {
+        AccountRegistry accounts = new AccountRegistry(0);
+        for (int i = 0; i < count; i++) {
+            Account account = new Account("account" + i, new AccountMember(getOwner(i)));
+            account.getBalance().deposit("gold", i % 1000);
+            account.getBalance().deposit("silver", i % 100);
+            accounts.put(account.getName(), account);
+        }
+
+        return accounts;
+    }
+
+    /**
+     * Gets the owner of a generated account.
+     * @param index Number of the account
+     * @return The player name of the owner
+     */
+    public static String getOwner(int index) {
+        return "player" + (index % 1000);
+    }
+
+    /**
+     * Installs a plugin object holding the accounts as Ecoinomy.plugin. The
+     * plugin has no store, changes are not persisted.
+     * @param accounts The accounts
+     * @throws ReflectiveOperationException If the plugin cannot be created
+     */
+    public static void installPlugin(AccountRegistry accounts) throws ReflectiveOperationException {
+        Field unsafeField = Class.forName("sun.misc.Unsafe").getDeclaredField("theUnsafe");
+        unsafeField.setAccessible(true);
+        Object unsafe = unsafeField.get(null);
+
+        Ecoinomy plugin = (Ecoinomy) unsafe.getClass()
+                .getMethod("allocateInstance", Class.class).invoke(unsafe, Ecoinomy.class);
+        setField(plugin, "accounts", accounts);
+        setField(plugin, "dataLock", new Object());
+
+        Ecoinomy.plugin = plugin;
+    }
+
+    /**
+     * Loads a YAML file of the plugin from the classpath.
+     */
+    private static YamlConfiguration loadResource(String name) throws IOException {
+        try (InputStream in = BenchmarkFixtures.class.getResourceAsStream("/" + name)) {
+            if (in == null) {
+                throw new IOException("Missing resource " + name);
+            }
+
+            return YamlConfiguration.loadConfiguration(in);
+        }
+    }
+
+    private static void setField(Object target, String name, Object value)
+            throws ReflectiveOperationException {
+        Field field = target.getClass().getDeclaredField(name);
+        field.setAccessible(true);
+        field.set(target, value);
+    }
+
+    /**
+     * Gets the value of an uninitialized field of a type.
+     */
+    private static Object defaultValue(Class<?> type) {
+        if (!type.isPrimitive() || type == void.class) {
+            return null;
+        }
+
+        return Array.get(Array.newInstance(type, 1), 0);
+    }
+}
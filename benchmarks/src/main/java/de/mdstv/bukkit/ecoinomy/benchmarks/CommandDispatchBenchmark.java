@@ -0,0 +1,97 @@
+package de.mdstv.bukkit.ecoinomy.benchmarks;
+
+import de.mdstv.bukkit.ecoinomy.commands.CommandNode;
+import de.mdstv.bukkit.ecoinomy.commands.account.AccountCommands;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Full dispatch of /ec account commands: tree walk, argument parsing,
+ * handler and message rendering. Async commands run on the calling
+ * thread, messages go to a sender which drops them.
+ * @author Morph <admin@mds-tv.de>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CommandDispatchBenchmark {
+    @Param({ "1000", "100000" })
+    public int accountCount;
+
+    private CommandNode root;
+    private String[]    help;
+    private String[]    list;
+    private String[]    mine;
+    private String[]    memberList;
+    private String[]    permSet;
+    private String[]    create;
+    private String[]    remove;
+
+    @Setup
+    public void setup() throws Exception {
+        BenchmarkFixtures.loadDefaults();
+        BenchmarkFixtures.installPlugin(BenchmarkFixtures.createAccounts(this.accountCount));
+
+        this.root = new CommandNode("ec");
+        AccountCommands.register(this.root);
+
+        int    index    = this.accountCount / 2 + 1;
+        String account  = "account" + index;
+        this.help       = new String[] { "account", "help" };
+        this.list       = new String[] { "account", "list", "3", "balance" };
+        this.mine       = new String[] { "account", "mine" };
+        this.memberList = new String[] { "account", "member", "list", account };
+        this.permSet    = new String[] { "account", "perm", "set", account,
+                BenchmarkFixtures.getOwner(index), "account.withdraw", "true" };
+        this.create     = new String[] { "account", "create", "benchnew", BenchmarkFixtures.SENDER_NAME };
+        this.remove     = new String[] { "account", "remove", "benchnew" };
+    }
+
+    @Benchmark
+    public void help() {
+        this.dispatch(this.help);
+    }
+
+    @Benchmark
+    public void list() {
+        this.dispatch(this.list);
+    }
+
+    @Benchmark
+    public void mine() {
+        this.dispatch(this.mine);
+    }
+
+    @Benchmark
+    public void memberList() {
+        this.dispatch(this.memberList);
+    }
+
+    @Benchmark
+    public void permSet() {
+        this.dispatch(this.permSet);
+    }
+
+    @Benchmark
+    public void createAndRemove() {
+        this.dispatch(this.create);
+        this.dispatch(this.remove);
+    }
+
+    private void dispatch(String[] args) {
+        this.root.dispatch(BenchmarkFixtures.SENDER, "ec", args, 0, null);
+    }
+}
@@ -0,0 +1,73 @@
+package de.mdstv.bukkit.ecoinomy.benchmarks;
+
+import de.mdstv.bukkit.ecoinomy.account.Account;
+import de.mdstv.bukkit.ecoinomy.account.AccountMember;
+import de.mdstv.bukkit.ecoinomy.account.PermissionTree;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Member and permission lookups of a single account with a growing number
+ * of members.
+ * @author Morph <admin@mds-tv.de>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MemberLookupBenchmark {
+    @Param({ "1", "10", "100", "1000" })
+    public int memberCount;
+
+    private Account account;
+    private String  lastMember;
+    private int     withdrawId;
+
+    @Setup
+    public void setup() throws IOException {
+        BenchmarkFixtures.loadDefaults();
+
+        this.account = new Account("lookup", new AccountMember(BenchmarkFixtures.SENDER_NAME));
+        for (int i = 1; i < this.memberCount; i++) {
+            this.account.addMember(new AccountMember("Member" + i));
+            this.account.getOrCreateMemberPerms("Member" + i).setPermission("account.withdraw", true);
+        }
+
+        this.lastMember = this.memberCount > 1
+                ? "member" + (this.memberCount - 1) : BenchmarkFixtures.SENDER_NAME;
+        this.withdrawId = PermissionTree.getId("account.withdraw");
+    }
+
+    @Benchmark
+    public AccountMember memberHit() {
+        return this.account.getMemberByName(this.lastMember);
+    }
+
+    @Benchmark
+    public AccountMember memberMiss() {
+        return this.account.getMemberByName("Nobody");
+    }
+
+    @Benchmark
+    public boolean isOwner() {
+        return this.account.isOwner(this.lastMember);
+    }
+
+    @Benchmark
+    public boolean hasPermission() {
+        return this.account.hasPermission(this.lastMember, this.withdrawId);
+    }
+}
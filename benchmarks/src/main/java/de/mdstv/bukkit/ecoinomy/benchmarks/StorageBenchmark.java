@@ -0,0 +1,84 @@
+package de.mdstv.bukkit.ecoinomy.benchmarks;
+
+import de.mdstv.bukkit.ecoinomy.storage.AccountCodec;
+import de.mdstv.bukkit.ecoinomy.storage.AccountRegistry;
+import de.mdstv.bukkit.ecoinomy.storage.MappedAccountFile;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Saving and loading the account database. Covers the full format, with
+ * and without compression, and the indexed format, of which loading only
+ * reads the index.
+ * @author Morph <admin@mds-tv.de>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class StorageBenchmark {
+    @Param({ "1000", "100000", "1000000" })
+    public int accountCount;
+
+    @Param({ "false", "true" })
+    public boolean compress;
+
+    private AccountRegistry accounts;
+    private byte[]          encoded;
+    private File            indexedFile;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        BenchmarkFixtures.loadDefaults();
+        this.accounts = BenchmarkFixtures.createAccounts(this.accountCount);
+        this.encoded  = AccountCodec.encode(this.accounts, 0, this.compress);
+
+        this.indexedFile = File.createTempFile("ecoinomy-bench", ".dat");
+        try (FileOutputStream out = new FileOutputStream(this.indexedFile)) {
+            out.write(this.accounts.encodeIndexed(0));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        this.indexedFile.delete();
+    }
+
+    @Benchmark
+    public byte[] save() throws IOException {
+        return AccountCodec.encode(this.accounts, 0, this.compress);
+    }
+
+    @Benchmark
+    public AccountCodec.Snapshot load() throws IOException {
+        return AccountCodec.decode(new ByteArrayInputStream(this.encoded));
+    }
+
+    @Benchmark
+    public byte[] saveIndexed() throws IOException {
+        return this.accounts.encodeIndexed(0);
+    }
+
+    @Benchmark
+    public AccountRegistry loadIndexed() throws IOException {
+        return new AccountRegistry(MappedAccountFile.open(this.indexedFile), 0);
+    }
+}
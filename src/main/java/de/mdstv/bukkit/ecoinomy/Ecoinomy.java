@@ -1,18 +1,43 @@
 package de.mdstv.bukkit.ecoinomy;
 
 import de.mdstv.bukkit.ecoinomy.account.Account;
-import de.mdstv.bukkit.ecoinomy.commands.AccountingCommand;
+import de.mdstv.bukkit.ecoinomy.account.AccountChange;
+import de.mdstv.bukkit.ecoinomy.account.CoinRegistry;
+import de.mdstv.bukkit.ecoinomy.account.LedgerGate;
+import de.mdstv.bukkit.ecoinomy.api.AccountEconomyService;
+import de.mdstv.bukkit.ecoinomy.api.EconomyService;
 import de.mdstv.bukkit.ecoinomy.commands.EcoinomyCommand;
+import de.mdstv.bukkit.ecoinomy.commands.MessageCatalog;
+import de.mdstv.bukkit.ecoinomy.commands.Messages;
+import de.mdstv.bukkit.ecoinomy.commands.ReloadHandler;
+import de.mdstv.bukkit.ecoinomy.commands.StatsHandler;
+import de.mdstv.bukkit.ecoinomy.commands.account.AccountCommands;
+import de.mdstv.bukkit.ecoinomy.commands.bulk.BulkCommands;
+import de.mdstv.bukkit.ecoinomy.commands.jobs.JobCommands;
+import de.mdstv.bukkit.ecoinomy.interest.InterestEngine;
+import de.mdstv.bukkit.ecoinomy.interest.InterestRules;
+import de.mdstv.bukkit.ecoinomy.scheduler.JobScheduler;
+import de.mdstv.bukkit.ecoinomy.stats.EcoinomyStats;
+import de.mdstv.bukkit.ecoinomy.stats.Histogram;
+import de.mdstv.bukkit.ecoinomy.stats.Metrics;
+import de.mdstv.bukkit.ecoinomy.stats.TickSampler;
+import de.mdstv.bukkit.ecoinomy.storage.AccountStore;
+import de.mdstv.bukkit.ecoinomy.storage.FileAccountStore;
+import de.mdstv.bukkit.ecoinomy.storage.AccountRegistry;
+import de.mdstv.bukkit.ecoinomy.storage.SqlAccountStore;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
 import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
+import org.bukkit.Server;
+import org.bukkit.configuration.ConfigurationSection;
 import org.bukkit.configuration.file.FileConfiguration;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.bukkit.plugin.PluginDescriptionFile;
+import org.bukkit.plugin.ServicePriority;
 import org.bukkit.plugin.java.JavaPlugin;
 
 /**
@@ -27,14 +52,21 @@ public class Ecoinomy extends JavaPlugin {
     public static Ecoinomy plugin;
     
     /**
-     * This file contains the accounts data.
+     * Registry of all accounts. Accounts are decoded on first access, if lazy
+     * loading is enabled.
      */
-    private File accountsDatabase;
+    private volatile AccountRegistry accounts = new AccountRegistry(0);
     
     /**
-     * List of all accounts.
+     * Lock guarding the accounts. Every modification of the accounts has to
+     * hold this lock, so the store gets a consistent snapshot.
      */
-    public HashMap<String, Account> accounts = new HashMap<>();
+    private final Object dataLock = new Object();
+    
+    /**
+     * Persistence backend of the accounts.
+     */
+    private AccountStore accountStore;
     
     /**
      * Plugin configuration.
@@ -45,6 +77,48 @@ public class Ecoinomy extends JavaPlugin {
      * The base eCoinomy command object
      */
     private EcoinomyCommand baseEcoinomyCommand = new EcoinomyCommand();
+    
+    /**
+     * Economy API for other plugins, null while disabled.
+     */
+    private AccountEconomyService economyService;
+    
+    /**
+     * Runs background jobs over all accounts, null while disabled.
+     */
+    private JobScheduler jobScheduler;
+    
+    /**
+     * Durations of loading the accounts.
+     */
+    private final Histogram loadLatency = Metrics.histogram("store.load", Histogram.NANOS);
+
+    /**
+     * Creates the plugin, called by Bukkit.
+     */
+    public Ecoinomy() {
+    }
+
+    /**
+     * Creates a plugin outside of a server, for unit tests. It is never
+     * enabled and has no store, changes are not persisted.
+     */
+    @SuppressWarnings("deprecation")
+    private Ecoinomy(Server server, AccountRegistry accounts) {
+        super(null, server, new PluginDescriptionFile("eCoinomy", "test",
+                Ecoinomy.class.getName()), null, null);
+        this.accounts = accounts;
+    }
+
+    /**
+     * Sets the public accessor to a plugin holding given accounts, for unit
+     * tests.
+     * @param server Server which provides the parent logger
+     * @param accounts The accounts
+     */
+    static void installForTests(Server server, AccountRegistry accounts) {
+        plugin = new Ecoinomy(server, accounts);
+    }
 
     /**
      * Fired on Plugin startup.
@@ -58,29 +132,235 @@ public class Ecoinomy extends JavaPlugin {
         }
         
         // Load config
+        this.saveDefaultConfig();
         this.config = this.getConfig();
         
-        // Get account database file name
-        String fileName =
-                this.config.getString("eCoinomy.saveFile", "accounts.dat");
+        // Set public accessor
+        plugin = this;
         
-        // Set accountsDatabase file
-        this.accountsDatabase = new File(getDataFolder(), fileName);
+        // Load messages, before any command is registered
+        this.loadMessages();
         
-        // Load accounts database, if file is existing.
+        // Load coin types, before any balance is created
+        CoinRegistry.setInstance(CoinRegistry.load(
+                this.config.getConfigurationSection("eCoinomy.coins")));
+        
+        // Load accounts database, if existing.
         // Otherwise we'll have a blank database.
+        this.accountStore = this.createAccountStore();
+        boolean loaded = false;
         try {
-            this.loadAccountData();
-        } catch (FileNotFoundException ex) {
-            getLogger().log(Level.WARNING, "Could not find {0}",
-                    accountsDatabase.getName());
+            this.loadAccounts();
+            loaded = true;
+        } catch (IOException ex) {
+            getLogger().log(Level.SEVERE, "Could not load accounts from "
+                    + this.accountStore.getName() + " store", ex);
+            
+            // The file store needs no driver
+            if (!(this.accountStore instanceof FileAccountStore)) {
+                getLogger().log(Level.WARNING, "Falling back to file store");
+                this.accountStore = this.createFileStore();
+                loaded = this.loadFallback();
+            }
         }
         
-        // Set public accessor
-        plugin = this;
+        // Never write over accounts which could not be read
+        if (!loaded) {
+            getLogger().log(Level.SEVERE, "No accounts loaded, disabling eCoinomy");
+            this.accountStore = null;
+            this.getServer().getPluginManager().disablePlugin(this);
+            return;
+        }
+        
+        // Write changes in the background
+        this.accounts.setChangeListener(this.accountStore);
+        this.accountStore.start();
+        
+        // Background jobs, served every tick
+        this.jobScheduler = this.createJobScheduler();
+        this.getServer().getScheduler().runTaskTimer(this, this.jobScheduler, 1, 1);
+        if (this.config.getBoolean("eCoinomy.interest.enabled", false)) {
+            this.startInterest();
+        }
         
         // Register commands
         this.setupCommands();
+        
+        // Offer the economy to other plugins
+        this.economyService = new AccountEconomyService(
+                this.config.getInt("eCoinomy.api.threads", 2),
+                this.config.getInt("eCoinomy.api.queueSize", 1024));
+        this.getServer().getServicesManager().register(EconomyService.class,
+                this.economyService, this, ServicePriority.Normal);
+        
+        // Statistics, the sampler is cancelled with all tasks of the plugin
+        this.getServer().getScheduler().runTaskTimer(this, new TickSampler(), 1, 1);
+        if (this.config.getBoolean("eCoinomy.stats.jmx", true)) {
+            Metrics.registerMBeans(ManagementFactory.getPlatformMBeanServer(),
+                    new EcoinomyStats(), getLogger());
+        }
+    }
+    
+    /**
+     * Creates the AccountStore selected by eCoinomy.storage.
+     * @return The AccountStore
+     */
+    private AccountStore createAccountStore() {
+        String type = this.config.getString("eCoinomy.storage", "file");
+        
+        switch (type.toLowerCase()) {
+            case "file": {
+                return this.createFileStore();
+            }
+            case "sqlite": {
+                String dbName = this.config.getString("eCoinomy.sqlite.file", "accounts.db");
+                return new SqlAccountStore(this, new File(getDataFolder(), dbName),
+                        this.getAccountsDatabase(), this.getSaveInterval());
+            }
+            default: {
+                getLogger().log(Level.WARNING, "Unknown storage ''{0}'', using file",
+                        type);
+                return this.createFileStore();
+            }
+        }
+    }
+    
+    /**
+     * Creates the JobScheduler configured by eCoinomy.scheduler.
+     * @return The JobScheduler
+     */
+    private JobScheduler createJobScheduler() {
+        HashMap<String, Long> budgets = new HashMap<>();
+        ConfigurationSection section = this.config.getConfigurationSection(
+                "eCoinomy.scheduler.budgets");
+        if (section != null) {
+            for (String job : section.getKeys(false)) {
+                budgets.put(job, toNanos(section.getDouble(job, 0)));
+            }
+        }
+        
+        return new JobScheduler(
+                toNanos(this.config.getDouble("eCoinomy.scheduler.tickBudget", 5)), budgets,
+                this.config.getInt("eCoinomy.scheduler.threads", 2),
+                this.config.getInt("eCoinomy.scheduler.chunkSize", 1000), getLogger());
+    }
+    
+    /**
+     * Starts the InterestEngine configured by eCoinomy.interest, checked
+     * every minute. Errors of the config are logged, no interest is
+     * charged then.
+     */
+    private void startInterest() {
+        ConfigurationSection section = this.config.getConfigurationSection("eCoinomy.interest");
+        InterestEngine       engine;
+        try {
+            engine = new InterestEngine(this.jobScheduler, InterestRules.load(section),
+                    TimeUnit.MINUTES.toMillis(section.getLong("period", 1440)),
+                    new File(getDataFolder(), "interest.properties"), getLogger());
+        } catch (IllegalArgumentException | IOException ex) {
+            getLogger().log(Level.SEVERE, "Interest disabled: {0}", ex.getMessage());
+            return;
+        }
+        
+        this.getServer().getScheduler().runTaskTimer(this, engine, 20, 1200);
+    }
+    
+    /**
+     * Converts milliseconds of the config to nanoseconds.
+     */
+    private static long toNanos(double millis) {
+        return Math.round(millis * TimeUnit.MILLISECONDS.toNanos(1));
+    }
+    
+    /**
+     * Creates the file based AccountStore.
+     * @return The FileAccountStore
+     */
+    private FileAccountStore createFileStore() {
+        boolean lazyLoad = this.config.getBoolean("eCoinomy.lazyLoad", false);
+        
+        return new FileAccountStore(this, this.getAccountsDatabase(),
+                this.getSaveInterval(),
+                this.config.getLong("eCoinomy.journal.compactThreshold", 1048576),
+                this.config.getBoolean("eCoinomy.compress", true), lazyLoad,
+                this.config.getInt("eCoinomy.maxLoadedAccounts", 10000));
+    }
+    
+    /**
+     * Loads the accounts from the store.
+     * @throws IOException If the accounts could not be loaded
+     */
+    private void loadAccounts() throws IOException {
+        long start = System.nanoTime();
+        this.accounts = this.accountStore.load();
+        this.loadLatency.recordSince(start);
+    }
+    
+    /**
+     * Loads the accounts from the fallback file store.
+     * @return true, if the accounts were loaded
+     */
+    private boolean loadFallback() {
+        try {
+            this.loadAccounts();
+            return true;
+        } catch (IOException ex) {
+            getLogger().log(Level.SEVERE, "Could not load accounts from "
+                    + this.accountStore.getName() + " store", ex);
+            return false;
+        }
+    }
+    
+    /**
+     * Gets the accounts database file of the file store.
+     * @return The database file
+     */
+    private File getAccountsDatabase() {
+        return new File(getDataFolder(),
+                this.config.getString("eCoinomy.saveFile", "accounts.dat"));
+    }
+    
+    /**
+     * Gets the minimum time between two writes in milliseconds.
+     * @return The save interval
+     */
+    private long getSaveInterval() {
+        return this.config.getLong("eCoinomy.saveInterval", 5) * 1000;
+    }
+    
+    /**
+     * Loads the messages of the configured locale. Messages of the
+     * messages.yml in the plugin folder override the built-in ones.
+     */
+    private void loadMessages() {
+        File file = new File(getDataFolder(), "messages.yml");
+        if (!file.exists()) {
+            this.saveResource("messages.yml", false);
+        }
+        
+        YamlConfiguration defaults = null;
+        try (InputStream in = this.getResource("messages.yml")) {
+            if (in != null) {
+                defaults = YamlConfiguration.loadConfiguration(in);
+            }
+        } catch (IOException ex) {
+            getLogger().log(Level.WARNING, "Could not read built-in messages", ex);
+        }
+        
+        // Compile the new catalog completely before it is published
+        Messages.setCatalog(MessageCatalog.load(
+                this.config.getString("eCoinomy.locale", MessageCatalog.DEFAULT_LOCALE),
+                defaults, YamlConfiguration.loadConfiguration(file)));
+    }
+    
+    /**
+     * Reloads the locale from the config and the messages. Commands see
+     * either the old or the new messages, never a mix of both.
+     */
+    public void reloadMessages() {
+        this.reloadConfig();
+        this.config = this.getConfig();
+        this.loadMessages();
     }
     
     /**
@@ -89,9 +369,19 @@ public class Ecoinomy extends JavaPlugin {
     private void setupCommands() {
         // Register base command
         this.getCommand("ec").setExecutor(this.baseEcoinomyCommand);
+        this.getCommand("ec").setTabCompleter(this.baseEcoinomyCommand);
+        this.baseEcoinomyCommand.startWorkers(
+                this.config.getInt("eCoinomy.commands.threads", 2),
+                this.config.getInt("eCoinomy.commands.queueSize", 16));
         
         // Register subcommands
-        this.baseEcoinomyCommand.registerCommand(new AccountingCommand());
+        this.baseEcoinomyCommand.getRoot().child("reload").setPermission("ecoinomy.reload")
+                .setHandler(new ReloadHandler());
+        this.baseEcoinomyCommand.getRoot().child("stats").setPermission("ecoinomy.stats")
+                .setAsync().setHandler(new StatsHandler());
+        AccountCommands.register(this.baseEcoinomyCommand.getRoot());
+        BulkCommands.register(this.baseEcoinomyCommand.getRoot());
+        JobCommands.register(this.baseEcoinomyCommand.getRoot());
     }
 
     /**
@@ -99,110 +389,163 @@ public class Ecoinomy extends JavaPlugin {
      */
     @Override
     public void onDisable() {
-        this.saveAccountData();
+        // Let running commands and async writes finish their changes
+        this.baseEcoinomyCommand.stopWorkers();
+        Metrics.unregisterMBeans();
+        if (this.jobScheduler != null) {
+            this.jobScheduler.shutdown();
+            this.jobScheduler = null;
+        }
+        if (this.economyService != null) {
+            this.getServer().getServicesManager().unregister(this.economyService);
+            this.economyService.shutdown();
+            this.economyService = null;
+        }
+        
+        // Write all pending changes before the server goes down
+        if (this.accountStore != null) {
+            this.accountStore.shutdown();
+            this.accountStore = null;
+        }
+    }
+    
+    /**
+     * Gets the registry of all accounts. Reads are thread-safe and
+     * lock-free, modifications have to hold the accounts lock.
+     * @return The accounts
+     */
+    public AccountRegistry getAccounts() {
+        return this.accounts;
     }
     
     /**
-     * Registers a new Account.
+     * Registers a new Account, if its name is not in use yet.
      * @param account eCoinomy Account to register.
+     * @return false, if an account with the same name is already existing.
      * @throws NullPointerException If account is null
      */
-    public void registerAccount(Account account) {
+    public boolean registerAccount(Account account) {
         // Check null
         if (account == null) {
             throw new NullPointerException("Account cannot be null");
         }
         
         // Put to list
-        this.accounts.put(account.getName(), account);
+        synchronized (this.dataLock) {
+            if (this.accounts.containsKey(account.getName())) {
+                return false;
+            }
+            
+            // Journal the account before other threads can change its balance
+            this.fireChange(AccountChange.created(account));
+            this.accounts.putIfAbsent(account.getName(), account);
+            return true;
+        }
     }
     
     /**
-     * Saves the cached account data to default file location at
-     * eCoinomy/accounts.dat.
+     * Removes an Account.
+     * @param accountName Name of the account to remove.
+     * @return The removed account or null, if the account was not existing.
      */
-    public void saveAccountData() {
-        this.saveAccountData(this.accountsDatabase);
+    public Account removeAccount(String accountName) {
+        synchronized (this.dataLock) {
+            Account account = this.accounts.remove(accountName);
+            
+            if (account != null) {
+                this.fireChange(AccountChange.removed(account.getName()));
+            }
+            
+            return account;
+        }
     }
     
     /**
-     * Saves the cached account data to given file location.
-     * @param dest The destination for the accounts database.
+     * Renames an Account.
+     * @param curName The current name of the account.
+     * @param newName The new name for the account.
+     * @return false, if the account was not existing or the new name is
+     * already in use.
+     * @throws NullPointerException If newName is null
      */
-    public void saveAccountData(File dest) {
-        // Check destination file
-        if (!dest.isFile()) {
-            // Try to create destination file
+    public boolean renameAccount(String curName, String newName) {
+        synchronized (this.dataLock) {
+            Account account = this.accounts.get(curName);
+            if (account == null) {
+                return false;
+            }
+            
+            // Journal the stored spelling of the old name. Balance changes
+            // are journaled with the name, so none may run meanwhile.
+            String oldName = account.getName();
+            LedgerGate.close();
             try {
-                dest.createNewFile();
-            } catch (IOException ex) {
-                getLogger().log(Level.SEVERE, "Could not create database file", ex);
+                if (!this.accounts.rename(curName, newName)) {
+                    return false;
+                }
+                
+                this.fireChange(AccountChange.renamed(oldName, newName));
+                return true;
+            } finally {
+                LedgerGate.open();
             }
         }
-        
-        // Try to save data
-        try {
-            // Init stream
-            final FileOutputStream   fos = new FileOutputStream(dest);
-            final ObjectOutputStream oos = new ObjectOutputStream(fos);
-
-            // Write data to file
-            oos.writeObject(this.accounts);
-            oos.flush();
-            oos.close();
-        } catch (FileNotFoundException ex) {
-            getLogger().log(Level.SEVERE, "Could not find account database at '"
-                    + dest.getAbsolutePath() + "'", ex);
-        } catch (IOException ex) {
-            getLogger().log(Level.SEVERE, "Could not save data to '"
-                    + dest.getAbsolutePath() + "'", ex);
+    }
+    
+    /**
+     * Reports a change of the accounts list to the store.
+     * @param change The change
+     */
+    private void fireChange(AccountChange change) {
+        if (this.accountStore != null) {
+            this.accountStore.accountChanged(change);
         }
     }
     
     /**
-     * Loads the account database from default file location at
-     * eCoinomy/accounts.dat.
-     * @throws FileNotFoundException If the database file could not be found.
+     * Gets the lock guarding the accounts. Hold this lock while modifying
+     * accounts or the accounts list.
+     * @return The accounts lock
+     */
+    public Object getDataLock() {
+        return this.dataLock;
+    }
+    
+    /**
+     * Gets the scheduler of background jobs.
+     * @return The JobScheduler or null, if the plugin is disabled
      */
-    public void loadAccountData() throws FileNotFoundException {
-        this.loadAccountData(this.accountsDatabase);
+    public JobScheduler getJobScheduler() {
+        return this.jobScheduler;
     }
     
     /**
-     * Loads the account database from given file location.
-     * @param src Source file to read from.
-     * @throws FileNotFoundException If the database file could not be found.
+     * Gets the persistence backend of the accounts.
+     * @return The AccountStore or null, if the plugin is disabled
      */
-    public void loadAccountData(File src) throws FileNotFoundException {
-        // Check source file
-        if (!src.isFile()) {
-            throw new FileNotFoundException("Could not find database at '"
-                    + src.getAbsolutePath() + "'");
+    public AccountStore getAccountStore() {
+        return this.accountStore;
+    }
+    
+    /**
+     * Marks the account data as modified. Use this after changes which are
+     * not reported as AccountChange. All accounts are written asynchronously
+     * by the store, so multiple calls in a short time only cost a single
+     * write.
+     */
+    public void markAccountDataDirty() {
+        if (this.accountStore != null) {
+            this.accountStore.requestFullSave();
         }
-        
-        try {
-            // Init stream
-            final FileInputStream   fis = new FileInputStream(src);
-            final ObjectInputStream ois = new ObjectInputStream(fis);
-
-            // Read accounts database from stream
-            HashMap<String, Account> loadedAccounts =
-                    (HashMap<String, Account>) ois.readObject();
-
-            // Move accounts to global list
-            this.accounts = loadedAccounts;
-
-            // Close stream
-            ois.close();
-        } catch (FileNotFoundException ex) {
-            getLogger().log(Level.SEVERE, "Could not find database at ''{0}''",
-                    src.getAbsolutePath());
-        } catch (ClassNotFoundException ex) {
-            getLogger().log(Level.SEVERE, "Could not read database. It seems,"
-                    + " that the file is corrupted or empty.");
-        } catch (IOException ex) {
-            getLogger().log(Level.SEVERE, "Could not read database at ''{0}''",
-                    src.getAbsolutePath());
+    }
+    
+    /**
+     * Writes all pending changes. This call blocks until the data is
+     * stored, use markAccountDataDirty() for regular changes.
+     */
+    public void saveAccountData() {
+        if (this.accountStore != null) {
+            this.accountStore.flush();
         }
     }
 }
@@ -1,36 +1,82 @@
 package de.mdstv.bukkit.ecoinomy.account;
 
-import java.io.Serializable;
 import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * A bank account
+ *
+ * All getters can be called from any thread. Members and permission sets
+ * are concurrent maps, the role maps are changed while holding the lock of
+ * this account and read as snapshots, which are built again after a
+ * change.
  * @author Morph <admin@mds-tv.de>
  * @since 1.0.0
  */
-public final class Account implements Serializable {
+public final class Account {
     /**
-     * Members recognized to this Account.
+     * Members recognized to this Account, keyed by the normalized player
+     * name.
      */
-    private final HashMap<String, AccountMember> members = new HashMap<>();
+    private final ConcurrentHashMap<String, AccountMember> members =
+            new ConcurrentHashMap<>();
     
     /**
-     * Account member permissions.
+     * Account member permissions, keyed by the normalized player name.
      */
-    private final HashMap<String, AccountPermissionSet> memberPerms =
-            new HashMap<>();
+    private final ConcurrentHashMap<String, AccountPermissionSet> memberPerms =
+            new ConcurrentHashMap<>();
+    
+    /**
+     * Members with owner role, kept up to date when roles change. Guarded
+     * by this account.
+     */
+    private final LinkedHashMap<String, AccountMember> owners =
+            new LinkedHashMap<>();
+    
+    /**
+     * Members without owner role, kept up to date when roles change.
+     * Guarded by this account.
+     */
+    private final LinkedHashMap<String, AccountMember> regularMembers =
+            new LinkedHashMap<>();
+    
+    /**
+     * Snapshot of the role maps, null after a change.
+     */
+    private volatile Roles roles;
+    
+    /**
+     * Read-only copies of the role maps.
+     */
+    private static final class Roles {
+        final Collection<AccountMember> owners;
+        final Collection<AccountMember> regularMembers;
+        
+        Roles(Collection<AccountMember> owners, Collection<AccountMember> regularMembers) {
+            this.owners         = Collections.unmodifiableList(new ArrayList<>(owners));
+            this.regularMembers = Collections.unmodifiableList(new ArrayList<>(regularMembers));
+        }
+    }
     
     /**
      * Name of this account.
      */
-    private String name = "<Unnamed>";
+    private volatile String name = "<Unnamed>";
     
     /**
      * Contains the balance for this account.
      */
     private AccountBalance balance = new AccountBalance();
+    
+    /**
+     * Gets notified about all changes of this account.
+     */
+    private volatile AccountChangeListener listener;
 
     /**
      * Creates a new Account with given Name
@@ -38,6 +84,7 @@ public final class Account implements Serializable {
      */
     public Account(String accountName) {
         this.name = accountName;
+        this.balance.bind(this);
     }
 
     /**
@@ -50,7 +97,7 @@ public final class Account implements Serializable {
         
         // Add first member and set owner
         this.addMember(owner);
-        this.getMemberPerms(owner.getName()).setOwner(true);
+        this.getOrCreateMemberPerms(owner.getName()).setOwner(true);
     }
     
     /**
@@ -64,25 +111,93 @@ public final class Account implements Serializable {
             throw new NullPointerException("Member cannot be null");
         }
         
-        // Add the member to list
-        this.members.put(member.getPlayer().getName(), member);
+        // Add the member to list, known members are not added twice
+        synchronized (this) {
+            if (this.members.putIfAbsent(member.getKey(), member) != null) {
+                return;
+            }
+            
+            this.classify(member);
+        }
+        
+        this.fireChange(new AccountChange(AccountChange.Type.MEMBER_ADD,
+                this.name, member.getName(), null, null));
+    }
+    
+    /**
+     * Adds a member without notifying the listener. Used to restore stored
+     * accounts.
+     * @param member The member.
+     * @throws NullPointerException If member is null.
+     */
+    public void restoreMember(AccountMember member) {
+        // Check for null
+        if (member == null) {
+            throw new NullPointerException("Member cannot be null");
+        }
+        
+        synchronized (this) {
+            this.members.put(member.getKey(), member);
+            this.classify(member);
+        }
+    }
+    
+    /**
+     * Puts a member into the map of its role. The caller has to hold the
+     * lock of this account.
+     */
+    private void classify(AccountMember member) {
+        AccountPermissionSet perms = this.memberPerms.get(member.getKey());
+        
+        if (perms != null && perms.isOwner()) {
+            this.regularMembers.remove(member.getKey());
+            this.owners.put(member.getKey(), member);
+        } else {
+            this.owners.remove(member.getKey());
+            this.regularMembers.put(member.getKey(), member);
+        }
+        
+        this.roles = null;
+    }
+    
+    /**
+     * Moves a member to the map of its new role. Called by the permission
+     * set of the member.
+     * @param memberKey The normalized name of the member
+     */
+    synchronized void roleChanged(String memberKey) {
+        AccountMember member = this.members.get(memberKey);
+        if (member != null) {
+            this.classify(member);
+        }
+    }
+    
+    /**
+     * Returns all AccountMembers of this account, including the owners.
+     * @return Unmodifiable view of all members
+     */
+    public Collection<AccountMember> getAllMembers() {
+        return Collections.unmodifiableCollection(this.members.values());
+    }
+    
+    /**
+     * Returns the permission sets of all members, keyed by the normalized
+     * member name.
+     * @return Unmodifiable view of all permission sets
+     */
+    public Map<String, AccountPermissionSet> getAllMemberPerms() {
+        return Collections.unmodifiableMap(this.memberPerms);
     }
     
     /**
      * Gets an AccountMember from this Account by its name. <code>null
      * </code> will returned, if the member is not associated with this account.
-     * @param memberName The name of the member
+     * @param memberName The name of the member, case-insensitive
      * @return The AccountMember object
+     * @throws NullPointerException If memberName is null.
      */
     public AccountMember getMemberByName(String memberName) {
-        for (AccountMember member : this.members.values()) {
-            if (member.getPlayer().getName().equalsIgnoreCase(memberName)) {
-                return member;
-            }
-        }
-        
-        // Member not found
-        return null;
+        return this.members.get(AccountMember.key(memberName));
     }
     
     /**
@@ -91,12 +206,14 @@ public final class Account implements Serializable {
      * @throws NullPointerException If member is null.
      */
     public void removeMember(AccountMember member) {
-        this.removeMember(member.getPlayer().getName());
+        this.removeMember(member.getName());
     }
     
     /**
-     * Removes a AccountMember from this Account.
-     * @param memberName The Bukkit Player name of the AccountMember.
+     * Removes a AccountMember from this Account, together with its
+     * permissions.
+     * @param memberName The Bukkit Player name of the AccountMember,
+     * case-insensitive.
      * @throws NullPointerException If memberName is null.
      * @throws IllegalArgumentException If memberName is empty.
      */
@@ -112,8 +229,21 @@ public final class Account implements Serializable {
         }
         
         // Remove (if existing, nothing will happen)
-        this.members.remove(memberName);
-    
+        AccountMember removed;
+        synchronized (this) {
+            removed = this.members.remove(AccountMember.key(memberName));
+            if (removed != null) {
+                this.owners.remove(removed.getKey());
+                this.regularMembers.remove(removed.getKey());
+                this.memberPerms.remove(removed.getKey());
+                this.roles = null;
+            }
+        }
+        
+        if (removed != null) {
+            this.fireChange(new AccountChange(AccountChange.Type.MEMBER_REMOVE,
+                    this.name, removed.getName(), null, null));
+        }
     }
     
     /**
@@ -138,21 +268,83 @@ public final class Account implements Serializable {
     }
     
     /**
-     * Gets the AccountPermissionSet for given member.
-     * @param memberName Name of the member
-     * @return AccountPermissionSet for this member
+     * Gets the AccountPermissionSet for given member. This is a pure read,
+     * no set is created.
+     * @param memberName Name of the member, case-insensitive
+     * @return AccountPermissionSet for this member or null, if the member
+     * has no permissions
+     * @throws NullPointerException If memberName is null.
      */
     public AccountPermissionSet getMemberPerms(String memberName) {
+        return this.memberPerms.get(AccountMember.key(memberName));
+    }
+    
+    /**
+     * Checks if a member has the owner role.
+     * @param memberName Name of the member, case-insensitive
+     * @return true, if the member is owner of this account
+     * @throws NullPointerException If memberName is null.
+     */
+    public boolean isOwner(String memberName) {
+        String               key   = AccountMember.key(memberName);
+        AccountPermissionSet perms = this.memberPerms.get(key);
+        return perms != null && perms.isOwner() && this.members.containsKey(key);
+    }
+    
+    /**
+     * Checks if a member has a permission for this account. Owners have all
+     * permissions.
+     * @param memberName Name of the member, case-insensitive
+     * @param node The permission node
+     * @return true, if the permission is granted
+     * @throws NullPointerException If memberName or node is null.
+     * @throws IllegalArgumentException If node is invalid.
+     */
+    public boolean hasPermission(String memberName, String node) {
+        int nodeId = PermissionTree.find(node);
+        if (nodeId < 0) {
+            // No member has a value for the node
+            return this.isOwner(memberName);
+        }
+        
+        return this.hasPermission(memberName, nodeId);
+    }
+    
+    /**
+     * Checks if a member has a permission for this account.
+     * @param memberName Name of the member, case-insensitive
+     * @param nodeId The id of the permission node
+     * @return true, if the permission is granted
+     * @throws NullPointerException If memberName is null.
+     * @see #hasPermission(String, String)
+     */
+    public boolean hasPermission(String memberName, int nodeId) {
+        String               key   = AccountMember.key(memberName);
+        AccountPermissionSet perms = this.memberPerms.get(key);
+        return perms != null && this.members.containsKey(key)
+                && (perms.isOwner() || perms.hasPermission(nodeId));
+    }
+    
+    /**
+     * Gets the AccountPermissionSet for given member. An empty set is
+     * created, if the member has no permissions yet.
+     * @param memberName Name of the member, case-insensitive
+     * @return AccountPermissionSet for this member
+     * @throws NullPointerException If memberName is null.
+     */
+    public AccountPermissionSet getOrCreateMemberPerms(String memberName) {
         // Get user perms
-        AccountPermissionSet perms = this.memberPerms.get(memberName);
+        String               key   = AccountMember.key(memberName);
+        AccountPermissionSet perms = this.memberPerms.get(key);
         
         // If the given user has no perms, create empty set
         if (perms == null) {
             AccountPermissionSet newPerms = new AccountPermissionSet();
-            this.memberPerms.put(memberName, newPerms);
+            newPerms.bind(this, key);
+            perms = this.memberPerms.putIfAbsent(key, newPerms);
             
             // Return newly created permission set
-            return this.memberPerms.get(memberName);
+            return perms != null ? perms : newPerms;
         }
         
         // The given member name has permissions, so return it
@@ -162,41 +354,62 @@ public final class Account implements Serializable {
     }
     
     /**
-     * Returns a List of all AccountMembers which has no owner role.
-     * @return All non-owner members for this account
+     * Returns all AccountMembers which has no owner role.
+     * @return Unmodifiable snapshot of all non-owner members for this account
      */
-    public List<AccountMember> getMembers() {
-        ArrayList<AccountMember> membersNoOwners = new ArrayList<>();
-        
-        // Filter all members and add all non-owner members to previously defined
-        // ArrayList
-        for (AccountMember member : this.members.values()) {
-            if (!this.getMemberPerms(member.getName()).isOwner()) {
-                membersNoOwners.add(member);
+    public Collection<AccountMember> getMembers() {
+        return this.getRoles().regularMembers;
+    }
+    
+    /**
+     * Returns all AccountMembers with owner role for this account.
+     * @return Unmodifiable snapshot of all AccountMembers with owner role
+     */
+    public Collection<AccountMember> getOwners() {
+        return this.getRoles().owners;
+    }
+    
+    /**
+     * Gets the snapshot of the role maps, builds it after a change.
+     */
+    private Roles getRoles() {
+        Roles current = this.roles;
+        if (current == null) {
+            synchronized (this) {
+                current = this.roles;
+                if (current == null) {
+                    current    = new Roles(this.owners.values(), this.regularMembers.values());
+                    this.roles = current;
+                }
             }
         }
         
-        // Return the non-owner members
-        return membersNoOwners;
+        return current;
     }
     
     /**
-     * Returns a List of all AccountMembers with owner role for this
-     * account.
-     * @return List of all AccountMembers with owner role
+     * Sets the listener which gets notified about all changes of this
+     * account. Only one listener is supported.
+     * @param listener The listener or null to remove the current one
      */
-    public List<AccountMember> getOwners() {
-        ArrayList<AccountMember> owners = new ArrayList<>();
+    public void setChangeListener(AccountChangeListener listener) {
+        this.listener = listener;
+        this.balance.bind(this);
         
-        // Filter all members and add all owners to previously defined ArrayList
-        for (AccountMember member : this.members.values()) {
-            if (this.getMemberPerms(member.getName()).isOwner()) {
-                owners.add(member);
-            }
+        // Permission sets restored by the codec are not bound yet
+        for (Map.Entry<String, AccountPermissionSet> e : this.memberPerms.entrySet()) {
+            e.getValue().bind(this, e.getKey());
+        }
+    }
+    
+    /**
+     * Notifies the listener about a change of this account.
+     * @param change The change
+     */
+    void fireChange(AccountChange change) {
+        if (this.listener != null) {
+            this.listener.accountChanged(change);
         }
-        
-        // Return the owners
-        return owners;
     }
     
     /**
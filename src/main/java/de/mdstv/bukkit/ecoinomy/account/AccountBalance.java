@@ -1,82 +1,787 @@
 package de.mdstv.bukkit.ecoinomy.account;
 
-import java.io.Serializable;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLongArray;
 
 /**
  * Describes the balance of an eCoinomy Account.
+ *
+ * Every currency slot of the CoinRegistry is stored as a single amount of
+ * base units in a primitive array. Adding, subtracting and comparing works
+ * on that value, so there is no carry between coins on transactions. The
+ * denomination breakdown is only computed when amounts are read or shown.
+ * Values are updated with compare-and-set, so balances can be read and
+ * modified from any thread without locking. Values are never negative.
+ *
+ * Every change increments a version counter. The balance string is only
+ * rendered again if the version changed since it was rendered last.
  * @author Morph <admin@mds-tv.de>
  */
-public class AccountBalance implements Serializable {
-    public class Coin {
-        /**
-         * Name of the Coin in singular.
-         */
-        public String nameSingular;
-        
-        /**
-         * Name of the Coin in plural.
-         */
-        public String namePlural;
-        
-        /**
-         * Weight of this Coin.
-         * 
-         * For Example:
-         * - Gold has a weight of 1
-         * - Silver has a weight of 2
-         * - Copper has a weight of 3
-         * 
-         * So you need x coins of copper to get one coin of silver.
-         * Also you need x coins of silver to get one coin of gold.
-         * 
-         * What 'x' means you can see in the jDoc of maxStack.
-         */
-        public int weight;
-        
-        /**
-         * The maxStack describes the maximum amount of Coins you can hold
-         * before you get a 'next level' Coin.
-         * 
-         * For Example:
-         * If were maxStack is 10, so you need 10 of this Coin type to get the
-         * next lower weighted Coin. If the weight is already 1, you can hold
-         * "unlimited" Coins of this type.
-         */
-        public int maxStack;
-    }
-    
-    /**
-     * Contains the amount of coins.
-     */
-    private HashMap<Coin, Integer> coins = new HashMap<>();
-    
-    /**
-     * Gets the balance for given Coin name.
+public class AccountBalance {
+    /**
+     * Marks a value which was moved into a larger array.
+     */
+    private static final long MOVED = Long.MIN_VALUE;
+
+    /**
+     * Contains the value of every slot in base units, indexed by slot.
+     */
+    private volatile AtomicLongArray units =
+            new AtomicLongArray(Math.max(1, CoinRegistry.getInstance().getSlotCount()));
+
+    /**
+     * The account of this balance, used to report changes.
+     */
+    private Account account;
+
+    /**
+     * Increments the version.
+     */
+    private static final AtomicIntegerFieldUpdater<AccountBalance> VERSION =
+            AtomicIntegerFieldUpdater.newUpdater(AccountBalance.class, "version");
+
+    /**
+     * Number of changes of this balance.
+     */
+    private volatile int version;
+
+    /**
+     * The last rendered balance string.
+     */
+    private volatile Rendered rendered;
+
+    /**
+     * A balance string and the version it was rendered for.
+     */
+    private static final class Rendered {
+        private final int    version;
+        private final String text;
+
+        Rendered(int version, String text) {
+            this.version = version;
+            this.text    = text;
+        }
+    }
+
+    /**
+     * Gets a coin and registers unknown coins.
+     */
+    private static Coin registerCoin(String coinName) {
+        return CoinRegistry.register(coinName);
+    }
+
+    /**
+     * Gets a known coin.
+     * @throws IllegalArgumentException If the coin is unknown.
+     */
+    static Coin requireCoin(String coinName) {
+        Coin coin = CoinRegistry.getInstance().getCoin(coinName);
+
+        // If the given Coin name is unknown, throw this exception
+        if (coin == null) {
+            throw new IllegalArgumentException("Unknown Coin name given: '"
+                    + coinName + "'");
+        }
+
+        return coin;
+    }
+
+    /**
+     * Gets a known coin by id.
+     */
+    private static Coin requireCoin(int coinId) {
+        return CoinRegistry.getInstance().getCoin(coinId);
+    }
+
+    /**
+     * Binds this balance to its account.
+     * @param account The account
+     */
+    void bind(Account account) {
+        this.account = account;
+    }
+
+    /**
+     * Gets the number of coins of given Coin name in the denomination
+     * breakdown of this balance.
      * @param coinName The Coin name in singular.
+     * @return The amount
+     * @throws IllegalArgumentException If the coin is unknown.
+     */
+    public long getBalance(String coinName) {
+        Coin coin = requireCoin(coinName);
+        return coin.countIn(this.getUnits(coin.getSlot()));
+    }
+
+    /**
+     * Gets the number of coins of a coin in the denomination breakdown of
+     * this balance.
+     * @param coinId The coin id.
+     * @return The amount
+     */
+    public long getAmount(int coinId) {
+        Coin coin = requireCoin(coinId);
+        return coin.countIn(this.getUnits(coin.getSlot()));
+    }
+
+    /**
+     * Gets the value of a currency slot in base units.
+     * @param slot The slot.
+     * @return The value
      */
-    public int getBalance(String coinName) {
-        // Search for given coin name and return the amount, if found.
-        for (Coin c : this.coins.keySet()) {
-            if (c.nameSingular.equalsIgnoreCase(coinName)) {
-                return this.coins.get(c);
+    public long getUnits(int slot) {
+        while (true) {
+            AtomicLongArray current = this.units;
+            if (slot >= current.length()) {
+                return 0;
             }
+
+            long value = current.get(slot);
+            if (value != MOVED) {
+                return value;
+            }
+
+            // The array is growing right now
+            Thread.yield();
+        }
+    }
+
+    /**
+     * Checks if this balance is worth at least given amount of a coin.
+     * Smaller and larger coins of the same slot are counted as well.
+     * @param coinName The Coin name in singular.
+     * @param amount The amount.
+     * @return true, if the balance is large enough
+     * @throws IllegalArgumentException If the coin is unknown.
+     */
+    public boolean has(String coinName, long amount) {
+        return this.has(requireCoin(coinName), amount);
+    }
+
+    /**
+     * Checks if this balance is worth at least given amount of a coin.
+     * @param coinId The coin id.
+     * @param amount The amount.
+     * @return true, if the balance is large enough
+     * @see #has(String, long)
+     */
+    public boolean has(int coinId, long amount) {
+        return this.has(requireCoin(coinId), amount);
+    }
+
+    private boolean has(Coin coin, long amount) {
+        if (amount <= 0) {
+            return true;
+        }
+
+        // Larger than any possible value
+        if (amount > Long.MAX_VALUE / coin.getFactor()) {
+            return false;
+        }
+
+        return this.getUnits(coin.getSlot()) >= coin.toUnits(amount);
+    }
+
+    /**
+     * Returns the denomination breakdown of this balance, keyed by the
+     * singular coin name. Coins without amount are left out.
+     * @return Copy of all amounts
+     */
+    public Map<String, Long> getAmounts() {
+        HashMap<String, Long> result   = new HashMap<>();
+        CoinRegistry          registry = CoinRegistry.getInstance();
+
+        int count = Math.min(this.units.length(), registry.getSlotCount());
+        for (int slot = 0; slot < count; slot++) {
+            long value = this.getUnits(slot);
+            if (value == 0) {
+                continue;
+            }
+
+            for (Coin coin : registry.getDenominations(slot)) {
+                long amount = coin.countIn(value);
+                if (amount != 0) {
+                    result.put(coin.getNameSingular(), amount);
+                }
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Replaces this balance with stored amounts. The amounts of coins of
+     * the same slot are added up, a single amount may be negative, a
+     * negative sum is cut off at 0. Unknown coins will be added, so stored
+     * amounts of coins missing in the config are kept. Used to restore
+     * stored accounts which are not visible to other threads yet, no change
+     * is reported.
+     * @param amounts The amounts, keyed by Coin name.
+     * @throws NullPointerException If amounts or a coin name is null.
+     * @throws ArithmeticException If a value would overflow.
+     */
+    public void restore(Map<String, Long> amounts) {
+        // Check null
+        if (amounts == null) {
+            throw new NullPointerException("Amounts cannot be null");
+        }
+
+        long[] values = new long[0];
+        for (Map.Entry<String, Long> entry : amounts.entrySet()) {
+            Coin coin = registerCoin(entry.getKey());
+            if (coin.getSlot() >= values.length) {
+                values = Arrays.copyOf(values, coin.getSlot() + 1);
+            }
+
+            long value = coin.toUnits(entry.getValue());
+            long sum   = values[coin.getSlot()];
+            if (value > 0 ? sum > Long.MAX_VALUE - value : sum < Long.MIN_VALUE - value) {
+                throw new ArithmeticException("Amount overflow");
+            }
+
+            values[coin.getSlot()] = sum + value;
+        }
+
+        // Not visible to other threads yet, so neither the LedgerGate nor
+        // the listener is involved
+        this.fill(values);
+    }
+
+    /**
+     * Adds coins to this balance.
+     * @param coinName The Coin name in singular.
+     * @param amount The amount to add.
+     * @return The new value of the slot in base units
+     * @throws IllegalArgumentException If the coin is unknown or amount is
+     * negative.
+     * @throws ArithmeticException If the value would overflow.
+     */
+    public long deposit(String coinName, long amount) {
+        return this.deposit(requireCoin(coinName), amount);
+    }
+
+    /**
+     * Adds coins to this balance.
+     * @param coinId The coin id.
+     * @param amount The amount to add.
+     * @return The new value of the slot in base units
+     * @throws IllegalArgumentException If amount is negative.
+     * @throws ArithmeticException If the value would overflow.
+     */
+    public long deposit(int coinId, long amount) {
+        return this.deposit(requireCoin(coinId), amount);
+    }
+
+    private long deposit(Coin coin, long amount) {
+        checkAmount(amount);
+
+        long value = coin.toUnits(amount);
+
+        LedgerGate.enter();
+        try {
+            long result = this.add(coin.getSlot(), value);
+            this.fireChange(coin.getSlot(), value);
+            return result;
+        } finally {
+            LedgerGate.exit();
+        }
+    }
+
+    /**
+     * Removes coins from this balance, if it is worth enough. Larger coins
+     * are broken up as needed.
+     * @param coinName The Coin name in singular.
+     * @param amount The amount to remove.
+     * @return false, if the balance is too low
+     * @throws IllegalArgumentException If the coin is unknown or amount is
+     * negative.
+     */
+    public boolean withdraw(String coinName, long amount) {
+        return this.withdraw(requireCoin(coinName), amount);
+    }
+
+    /**
+     * Removes coins from this balance, if it is worth enough.
+     * @param coinId The coin id.
+     * @param amount The amount to remove.
+     * @return false, if the balance is too low
+     * @throws IllegalArgumentException If amount is negative.
+     */
+    public boolean withdraw(int coinId, long amount) {
+        return this.withdraw(requireCoin(coinId), amount);
+    }
+
+    private boolean withdraw(Coin coin, long amount) {
+        checkAmount(amount);
+
+        if (!this.has(coin, amount)) {
+            return false;
+        }
+
+        long value = coin.toUnits(amount);
+
+        LedgerGate.enter();
+        try {
+            if (!this.subtract(coin.getSlot(), value)) {
+                return false;
+            }
+
+            this.fireChange(coin.getSlot(), -value);
+            return true;
+        } finally {
+            LedgerGate.exit();
+        }
+    }
+
+    /**
+     * Sets the amount of a coin in the denomination breakdown, if the
+     * current amount is the expected one. Other coins are not changed, so
+     * the new amount must be below the maxStack of the coin, unless it is
+     * the most valuable coin of its currency.
+     * @param coinName The Coin name in singular.
+     * @param expect The expected amount.
+     * @param update The new amount.
+     * @return false, if the current amount was not the expected one
+     * @throws IllegalArgumentException If the coin is unknown, update is
+     * negative or would make up a more valuable coin.
+     * @throws ArithmeticException If the value would overflow.
+     */
+    public boolean compareAndSet(String coinName, long expect, long update) {
+        return this.compareAndSet(requireCoin(coinName), expect, update);
+    }
+
+    /**
+     * Sets the amount of a coin in the denomination breakdown, if the
+     * current amount is the expected one.
+     * @param coinId The coin id.
+     * @param expect The expected amount.
+     * @param update The new amount.
+     * @return false, if the current amount was not the expected one
+     * @throws IllegalArgumentException If update is negative or would make
+     * up a more valuable coin.
+     * @throws ArithmeticException If the value would overflow.
+     * @see #compareAndSet(String, long, long)
+     */
+    public boolean compareAndSet(int coinId, long expect, long update) {
+        return this.compareAndSet(requireCoin(coinId), expect, update);
+    }
+
+    private boolean compareAndSet(Coin coin, long expect, long update) {
+        checkAmount(update);
+
+        if (update > coin.getMaxCount()) {
+            throw new IllegalArgumentException("Amount must be below " + (coin.getMaxCount() + 1)
+                    + " " + coin.getNamePlural());
+        }
+
+        if (expect < 0) {
+            return false;
+        }
+
+        long delta = coin.toUnits(update - expect);
+
+        LedgerGate.enter();
+        try {
+            while (true) {
+                long current = this.getUnits(coin.getSlot());
+                if (coin.countIn(current) != expect) {
+                    return false;
+                }
+
+                if (delta > 0 && current > Long.MAX_VALUE - delta) {
+                    throw new ArithmeticException("Amount overflow");
+                }
+
+                // Coins of other denominations may have changed, retry
+                if (this.update(coin.getSlot(), current, current + delta)) {
+                    this.fireChange(coin.getSlot(), delta);
+                    return true;
+                }
+            }
+        } finally {
+            LedgerGate.exit();
+        }
+    }
+
+    /**
+     * Moves coins from this balance to another one. The coins are withdrawn
+     * first, so the transfer fails without any change if this balance is
+     * too low. No locks are taken, concurrent readers may see the coins on
+     * neither balance for a moment, snapshots never do.
+     * @param target The receiving balance.
+     * @param coinName The Coin name in singular.
+     * @param amount The amount to move.
+     * @return false, if this balance is too low
+     * @throws NullPointerException If target is null.
+     * @throws IllegalArgumentException If the coin is unknown or amount is
+     * negative.
+     * @throws ArithmeticException If the target value would overflow.
+     */
+    public boolean transferTo(AccountBalance target, String coinName, long amount) {
+        return this.transferTo(target, requireCoin(coinName), amount);
+    }
+
+    /**
+     * Moves coins from this balance to another one.
+     * @param target The receiving balance.
+     * @param coinId The coin id.
+     * @param amount The amount to move.
+     * @return false, if this balance is too low
+     * @throws NullPointerException If target is null.
+     * @throws IllegalArgumentException If amount is negative.
+     * @throws ArithmeticException If the target value would overflow.
+     * @see #transferTo(AccountBalance, String, long)
+     */
+    public boolean transferTo(AccountBalance target, int coinId, long amount) {
+        return this.transferTo(target, requireCoin(coinId), amount);
+    }
+
+    private boolean transferTo(AccountBalance target, Coin coin, long amount) {
+        // Check null
+        if (target == null) {
+            throw new NullPointerException("Target cannot be null");
+        }
+
+        checkAmount(amount);
+
+        if (!this.has(coin, amount)) {
+            return false;
+        }
+
+        int  slot  = coin.getSlot();
+        long value = coin.toUnits(amount);
+
+        LedgerGate.enter();
+        try {
+            if (!this.subtract(slot, value)) {
+                return false;
+            }
+
+            try {
+                target.add(slot, value);
+            } catch (ArithmeticException ex) {
+                // Give the coins back, this cannot overflow
+                this.add(slot, value);
+                throw ex;
+            }
+
+            this.fireChange(slot, -value);
+            target.fireChange(slot, value);
+            return true;
+        } finally {
+            LedgerGate.exit();
+        }
+    }
+
+    /**
+     * Applies a journaled change of a value. A negative result is cut off
+     * at 0. Unknown coins will be added.
+     * @param coinName The Coin name in singular.
+     * @param delta The change as amount of the coin.
+     * @throws NullPointerException If coinName is null.
+     * @throws ArithmeticException If the change would overflow.
+     */
+    public void applyDelta(String coinName, long delta) {
+        Coin coin  = registerCoin(coinName);
+        long value = coin.toUnits(delta);
+
+        LedgerGate.enter();
+        try {
+            while (true) {
+                long current = this.getUnits(coin.getSlot());
+                long update  = value > 0 && current > Long.MAX_VALUE - value
+                        ? Long.MAX_VALUE : Math.max(0, current + value);
+
+                if (this.update(coin.getSlot(), current, update)) {
+                    this.fireChange(coin.getSlot(), update - current);
+                    return;
+                }
+            }
+        } finally {
+            LedgerGate.exit();
         }
-        
-        // If the given Coin name is unknown, throw this exception
-        throw new IllegalArgumentException("Unknown Coin name given: '"
-                + coinName + "'");
     }
-    
+
     /**
-     * Gets a String with all coins and amounts
+     * Changes many values at once, used by BalanceBatch. All values are
+     * checked first. Then the LedgerGate is entered once, the values are
+     * lowered first and raised after that. If a value became too low or
+     * would overflow in the meantime, the changed values are changed back.
+     * Changes are only reported when all values were changed, so snapshots
+     * see all changes or none.
+     * @param balances The balances, may repeat
+     * @param slots The slot of every change
+     * @param deltas The changes in base units, all negative ones first
+     * @return -1 if all values were changed, otherwise the index of a
+     * value which was too low
+     * @throws ArithmeticException If a value would overflow, nothing was
+     * changed
+     * @throws IllegalStateException If a value could not be changed back,
+     * see {@link #undoAll(AccountBalance[], int[], long[], int)}
+     */
+    static int applyAll(AccountBalance[] balances, int[] slots, long[] deltas) {
+        // Check first, so a failing batch usually changes nothing
+        for (int i = 0; i < balances.length; i++) {
+            long current = balances[i].getUnits(slots[i]);
+            if (deltas[i] < 0 && current < -deltas[i]) {
+                return i;
+            }
+
+            if (deltas[i] > 0 && current > Long.MAX_VALUE - deltas[i]) {
+                throw new ArithmeticException("Amount overflow");
+            }
+        }
+
+        LedgerGate.enter();
+        try {
+            int applied = 0;
+            try {
+                while (applied < balances.length) {
+                    long delta = deltas[applied];
+                    if (delta < 0) {
+                        if (!balances[applied].subtract(slots[applied], -delta)) {
+                            break;
+                        }
+                    } else {
+                        balances[applied].add(slots[applied], delta);
+                    }
+
+                    applied++;
+                }
+            } catch (ArithmeticException ex) {
+                undoAll(balances, slots, deltas, applied);
+                throw ex;
+            }
+
+            if (applied < balances.length) {
+                undoAll(balances, slots, deltas, applied);
+                return applied;
+            }
+
+            for (int i = 0; i < balances.length; i++) {
+                balances[i].fireChange(slots[i], deltas[i]);
+            }
+
+            return -1;
+        } finally {
+            LedgerGate.exit();
+        }
+    }
+
+    /**
+     * Changes the first values of applyAll() back, in reverse order. Raised
+     * values are only changed back on overflow. Other threads may have
+     * spent a raised value or raised a lowered one up to the limit in the
+     * meantime. Such changes cannot be taken back, they stay applied and
+     * are reported.
+     * @throws IllegalStateException If a change stayed applied
+     */
+    private static void undoAll(AccountBalance[] balances, int[] slots, long[] deltas,
+            int count) {
+        int kept = 0;
+        for (int i = count - 1; i >= 0; i--) {
+            boolean undone;
+            if (deltas[i] < 0) {
+                try {
+                    balances[i].add(slots[i], -deltas[i]);
+                    undone = true;
+                } catch (ArithmeticException ex) {
+                    undone = false;
+                }
+            } else {
+                undone = balances[i].subtract(slots[i], deltas[i]);
+            }
+
+            if (!undone) {
+                balances[i].fireChange(slots[i], deltas[i]);
+                kept++;
+            }
+        }
+
+        if (kept > 0) {
+            throw new IllegalStateException(kept + " of " + count
+                    + " applied changes could not be taken back");
+        }
+    }
+
+    /**
+     * Adds to a value.
+     */
+    private long add(int slot, long value) {
+        while (true) {
+            long current = this.getUnits(slot);
+            if (current > Long.MAX_VALUE - value) {
+                throw new ArithmeticException("Amount overflow");
+            }
+
+            if (this.update(slot, current, current + value)) {
+                return current + value;
+            }
+        }
+    }
+
+    /**
+     * Subtracts from a value, if it is large enough.
+     */
+    private boolean subtract(int slot, long value) {
+        while (true) {
+            long current = this.getUnits(slot);
+            if (current < value) {
+                return false;
+            }
+
+            if (this.update(slot, current, current - value)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Atomically replaces a value.
+     */
+    private boolean update(int slot, long expect, long update) {
+        while (true) {
+            AtomicLongArray current = this.units;
+            if (slot >= current.length()) {
+                this.grow(slot + 1);
+                continue;
+            }
+
+            if (current.compareAndSet(slot, expect, update)) {
+                if (expect != update) {
+                    VERSION.incrementAndGet(this);
+                }
+
+                return true;
+            }
+
+            // Retry only if the array was moved
+            if (current.get(slot) != MOVED) {
+                return false;
+            }
+
+            Thread.yield();
+        }
+    }
+
+    /**
+     * Replaces the values array with a larger one. Every moved value is
+     * replaced with MOVED, so concurrent updates of the old array fail and
+     * retry on the new one.
+     */
+    private synchronized void grow(int length) {
+        AtomicLongArray current = this.units;
+        if (current.length() >= length) {
+            return;
+        }
+
+        AtomicLongArray grown = new AtomicLongArray(
+                Math.max(length, CoinRegistry.getInstance().getSlotCount()));
+        for (int slot = 0; slot < current.length(); slot++) {
+            grown.set(slot, current.getAndSet(slot, MOVED));
+        }
+
+        this.units = grown;
+    }
+
+    /**
+     * Replaces all values without reporting changes.
+     */
+    private void fill(long[] values) {
+        AtomicLongArray filled = new AtomicLongArray(Math.max(1, Math.max(
+                values.length, CoinRegistry.getInstance().getSlotCount())));
+        for (int slot = 0; slot < values.length; slot++) {
+            filled.set(slot, Math.max(0, values[slot]));
+        }
+
+        this.units = filled;
+        VERSION.incrementAndGet(this);
+    }
+
+    /**
+     * Checks an amount argument.
+     */
+    private static void checkAmount(long amount) {
+        if (amount < 0) {
+            throw new IllegalArgumentException("Amount cannot be negative");
+        }
+    }
+
+    /**
+     * Reports a change of a value to the account. The change is reported
+     * in base units, as amount of the base coin of the slot.
+     */
+    private void fireChange(int slot, long delta) {
+        if (this.account != null && delta != 0) {
+            this.account.fireChange(new AccountChange(
+                    AccountChange.Type.BALANCE, this.account.getName(), null,
+                    CoinRegistry.getInstance().getBaseCoin(slot).getNameSingular(),
+                    delta));
+        }
+    }
+
+    /**
+     * Gets the version of this balance, it changes with every change of an
+     * amount.
+     * @return The version
+     */
+    public int getVersion() {
+        return this.version;
+    }
+
+    /**
+     * Gets a String with all coins and amounts, most valuable coins first.
+     * The String is cached until the balance changes.
      * @return Total amount of coins
      */
     public String getBalanceString() {
+        // Read the version first, a change while rendering renders again
+        // on the next call
+        int      current  = this.version;
+        Rendered rendered = this.rendered;
+
+        if (rendered == null || rendered.version != current) {
+            rendered      = new Rendered(current, this.render());
+            this.rendered = rendered;
+        }
+
+        return rendered.text;
+    }
+
+    /**
+     * Renders the denomination breakdown.
+     */
+    private String render() {
         StringBuilder coinsString = new StringBuilder();
-        
-        // TODO Coins weight comparator
-        return null;
+        CoinRegistry  registry    = CoinRegistry.getInstance();
+
+        int count = Math.min(this.units.length(), registry.getSlotCount());
+        for (int slot = 0; slot < count; slot++) {
+            long value = this.getUnits(slot);
+
+            for (Coin coin : registry.getDenominations(slot)) {
+                long amount = coin.countIn(value);
+                if (amount == 0) {
+                    continue;
+                }
+
+                if (coinsString.length() > 0) {
+                    coinsString.append(", ");
+                }
+
+                coinsString.append(amount).append(' ').append(amount == 1
+                        ? coin.getNameSingular() : coin.getNamePlural());
+            }
+        }
+
+        if (coinsString.length() == 0 && registry.getSlotCount() > 0) {
+            coinsString.append("0 ").append(registry.getBaseCoin(0).getNamePlural());
+        }
+
+        return coinsString.toString();
     }
 
     @Override
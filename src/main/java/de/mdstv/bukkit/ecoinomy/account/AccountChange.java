@@ -0,0 +1,185 @@
+package de.mdstv.bukkit.ecoinomy.account;
+
+/**
+ * Describes a single modification of an Account or of the accounts list.
+ * Changes are small and self-contained, so they can be written to the
+ * transaction journal and replayed later.
+ * @author Morph <admin@mds-tv.de>
+ */
+public final class AccountChange {
+    /**
+     * The kind of a change.
+     */
+    public enum Type {
+        /**
+         * A new account was registered. The value is the Account.
+         */
+        CREATE,
+
+        /**
+         * An account was removed.
+         */
+        REMOVE,
+
+        /**
+         * An account was renamed. The value is the new name.
+         */
+        RENAME,
+
+        /**
+         * A member was added to an account.
+         */
+        MEMBER_ADD,
+
+        /**
+         * A member was removed from an account.
+         */
+        MEMBER_REMOVE,
+
+        /**
+         * The owner flag of a member was changed. The value is a Boolean.
+         */
+        OWNER_SET,
+
+        /**
+         * A permission node of a member was set.
+         */
+        PERMISSION_SET,
+
+        /**
+         * A permission node of a member was removed.
+         */
+        PERMISSION_REMOVE,
+
+        /**
+         * The amount of a coin was changed. The node is the coin name, the
+         * value is the difference as Long.
+         */
+        BALANCE
+    }
+
+    /**
+     * Kind of this change.
+     */
+    private final Type type;
+
+    /**
+     * Name of the affected account.
+     */
+    private final String accountName;
+
+    /**
+     * Name of the affected member, if any.
+     */
+    private final String memberName;
+
+    /**
+     * Affected permission node, if any.
+     */
+    private final String node;
+
+    /**
+     * Type specific value.
+     */
+    private final Object value;
+
+    /**
+     * Creates a new AccountChange.
+     * @param type Kind of this change
+     * @param accountName Name of the affected account
+     * @param memberName Name of the affected member or null
+     * @param node Affected permission node or null
+     * @param value Type specific value or null
+     * @throws NullPointerException If type or accountName is null
+     */
+    public AccountChange(Type type, String accountName, String memberName,
+            String node, Object value) {
+        // Check null
+        if (type == null) {
+            throw new NullPointerException("Type cannot be null");
+        }
+
+        if (accountName == null) {
+            throw new NullPointerException("Account name cannot be null");
+        }
+
+        this.type        = type;
+        this.accountName = accountName;
+        this.memberName  = memberName;
+        this.node        = node;
+        this.value       = value;
+    }
+
+    /**
+     * Creates a change for a newly registered account.
+     * @param account The new account
+     * @return The change
+     */
+    public static AccountChange created(Account account) {
+        return new AccountChange(Type.CREATE, account.getName(), null, null, account);
+    }
+
+    /**
+     * Creates a change for a removed account.
+     * @param accountName Name of the removed account
+     * @return The change
+     */
+    public static AccountChange removed(String accountName) {
+        return new AccountChange(Type.REMOVE, accountName, null, null, null);
+    }
+
+    /**
+     * Creates a change for a renamed account.
+     * @param curName The old name of the account
+     * @param newName The new name of the account
+     * @return The change
+     */
+    public static AccountChange renamed(String curName, String newName) {
+        return new AccountChange(Type.RENAME, curName, null, null, newName);
+    }
+
+    /**
+     * Gets the kind of this change.
+     * @return Kind of this change
+     */
+    public Type getType() {
+        return this.type;
+    }
+
+    /**
+     * Gets the name of the affected account.
+     * @return Name of the account
+     */
+    public String getAccountName() {
+        return this.accountName;
+    }
+
+    /**
+     * Gets the name of the affected member.
+     * @return Name of the member or null
+     */
+    public String getMemberName() {
+        return this.memberName;
+    }
+
+    /**
+     * Gets the affected permission node.
+     * @return The permission node or null
+     */
+    public String getNode() {
+        return this.node;
+    }
+
+    /**
+     * Gets the type specific value of this change.
+     * @return The value or null
+     */
+    public Object getValue() {
+        return this.value;
+    }
+
+    @Override
+    public String toString() {
+        return this.type + "[" + this.accountName + "]";
+    }
+}
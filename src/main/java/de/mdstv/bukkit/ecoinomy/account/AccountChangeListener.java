@@ -0,0 +1,13 @@
+package de.mdstv.bukkit.ecoinomy.account;
+
+/**
+ * Gets notified about every modification of an Account.
+ * @author Morph <admin@mds-tv.de>
+ */
+public interface AccountChangeListener {
+    /**
+     * Called after an Account was modified.
+     * @param change Description of the modification
+     */
+    public void accountChanged(AccountChange change);
+}
@@ -1,7 +1,7 @@
 package de.mdstv.bukkit.ecoinomy.account;
 
 import de.mdstv.bukkit.ecoinomy.Ecoinomy;
-import java.io.Serializable;
+import java.util.Locale;
 import org.bukkit.OfflinePlayer;
 
 /**
@@ -9,12 +9,17 @@ import org.bukkit.OfflinePlayer;
  * Every AccountMember can be added to multiple accounts.
  * @author Morph <admin@mds-tv.de>
  */
-public class AccountMember implements Serializable {
+public class AccountMember {
     /**
      * Corresponding Player.
      */
     private String playerName;
 
+    /**
+     * Normalized player name, computed on first use.
+     */
+    private String key;
+
     /**
      * Creates a new AccountMember from Bukkit Player.
      * @param playerName  The name of the Bukkit Player.
@@ -32,6 +37,29 @@ public class AccountMember implements Serializable {
         return Ecoinomy.plugin.getServer().getOfflinePlayer(this.playerName);
     }
 
+    /**
+     * Normalizes a player name, so members can be found ignoring the case.
+     * @param playerName The name of the Bukkit Player.
+     * @return The key of the member
+     * @throws NullPointerException If playerName is null.
+     */
+    public static String key(String playerName) {
+        return playerName.toLowerCase(Locale.ENGLISH);
+    }
+
+    /**
+     * Gets the normalized name of this AccountMember, used as key by the
+     * accounts. Never looks up the Bukkit Player.
+     * @return The key of this member
+     */
+    public String getKey() {
+        if (this.key == null) {
+            this.key = key(this.playerName);
+        }
+
+        return this.key;
+    }
+
     /**
      * Gets the in-game name for this AccountMember
      * @return The in-game name
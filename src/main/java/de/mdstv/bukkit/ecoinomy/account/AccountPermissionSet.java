@@ -1,25 +1,109 @@
 package de.mdstv.bukkit.ecoinomy.account;
 
-import java.io.Serializable;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
 
 /**
- * Holds the perms for an AccountMember. This class is reusable for
- * multiple accounts.
+ * Holds the perms of one member of one account. The account binds the
+ * set to the member and gets every change reported, so a set cannot be
+ * shared by several accounts or members.
+ *
+ * A node is granted if it has a value other than false. Nodes without a
+ * value are decided by the most specific wildcard of the PermissionTree.
+ * For checks the nodes are compiled into bitsets over the node ids, every
+ * result is memoized until the next change of this set.
  * @author Morph <admin@mds-tv.de>
  */
-public class AccountPermissionSet implements Serializable {
+public class AccountPermissionSet {
     /**
      * The owner flag. If a user has the owner role, he can do anything with
      * the account in which he is member too.
      */
-    private boolean isOwner = false;
+    private volatile boolean isOwner = false;
     
     /**
-     * The permission nodes. Every node can get a custom value.
+     * The permission nodes. Every node can get a custom value. Guarded by
+     * this set.
      */
     private HashMap<String, Object> perms = new HashMap<>();
     
+    /**
+     * The Account this set belongs to.
+     */
+    private Account account;
+    
+    /**
+     * Name of the member this set belongs to.
+     */
+    private String memberName;
+    
+    /**
+     * The compiled nodes, null if they have to be compiled again.
+     */
+    private volatile Compiled compiled;
+    
+    /**
+     * Nodes of a permission set as bitsets over the node ids.
+     */
+    private static final class Compiled {
+        /**
+         * Nodes with a value.
+         */
+        final long[] present;
+        
+        /**
+         * Nodes with a value other than false.
+         */
+        final long[] granted;
+        
+        /**
+         * Memoized results, two bits per node: known and allowed.
+         */
+        final AtomicLongArray results;
+        
+        Compiled(int size) {
+            int words = (size + 63) >>> 6;
+            this.present = new long[words];
+            this.granted = new long[words];
+            this.results = new AtomicLongArray((size * 2 + 63) >>> 6);
+        }
+        
+        static boolean test(long[] bits, int id) {
+            int word = id >>> 6;
+            return word < bits.length && (bits[word] & (1L << id)) != 0;
+        }
+        
+        static void set(long[] bits, int id) {
+            bits[id >>> 6] |= 1L << id;
+        }
+    }
+    
+    /**
+     * Binds this set to an account member, so changes are reported to the
+     * account.
+     * @param account The account
+     * @param memberName Name of the member
+     */
+    void bind(Account account, String memberName) {
+        this.account    = account;
+        this.memberName = memberName;
+    }
+    
+    /**
+     * Reports a change to the bound account.
+     * @param type Kind of the change
+     * @param node Affected node or null
+     * @param value The new value or null
+     */
+    private void fireChange(AccountChange.Type type, String node, Object value) {
+        if (this.account != null) {
+            this.account.fireChange(new AccountChange(type,
+                    this.account.getName(), this.memberName, node, value));
+        }
+    }
+    
     /**
      * Sets a permission for this account.
      * @param node eCoinomy permission node.
@@ -39,8 +123,20 @@ public class AccountPermissionSet implements Serializable {
                     + " node");
         }
         
+        // Nodes with a value are known to the tree
+        try {
+            PermissionTree.getId(node);
+        } catch (IllegalArgumentException ex) {
+            // Free-form value without a valid node name, never checked
+        }
+        
         // Add or override permission node with new values
-        this.perms.put(node, value);
+        synchronized (this) {
+            this.perms.put(node, value);
+            this.compiled = null;
+        }
+        
+        this.fireChange(AccountChange.Type.PERMISSION_SET, node, value);
     }
     
     /**
@@ -63,10 +159,8 @@ public class AccountPermissionSet implements Serializable {
         }
         
         // Return node value, if existing
-        if (this.perms.containsKey(node)) {
+        synchronized (this) {
             return this.perms.get(node);
-        } else {
-            return null;
         }
     }
     
@@ -74,8 +168,114 @@ public class AccountPermissionSet implements Serializable {
      * Returns an String Array of all perms for this AccountMember.
      * @return String Array of Permission nodes.
      */
-    public String[] getPermissions() {
-        return (String[]) this.perms.values().toArray();
+    public synchronized String[] getPermissions() {
+        return this.perms.keySet().toArray(new String[this.perms.size()]);
+    }
+    
+    /**
+     * Checks if a permission node is granted, directly or by a wildcard.
+     * @param node The permission node to check.
+     * @return true, if the node is granted
+     * @throws NullPointerException If node is null.
+     * @throws IllegalArgumentException If node is invalid.
+     */
+    public boolean hasPermission(String node) {
+        // Unknown nodes have no value, they are not added to the tree
+        int nodeId = PermissionTree.find(node);
+        return nodeId >= 0 && this.hasPermission(nodeId);
+    }
+    
+    /**
+     * Checks if a permission node is granted. Use this on hot paths with an
+     * id from PermissionTree, a memoized result is a bit test.
+     * @param nodeId The id of the permission node.
+     * @return true, if the node is granted
+     * @throws IndexOutOfBoundsException If the id is unknown.
+     */
+    public boolean hasPermission(int nodeId) {
+        Compiled current = this.compiled;
+        if (current == null) {
+            current = this.compile();
+        }
+        
+        // Memoized result
+        int  bit     = nodeId * 2;
+        int  word    = bit >>> 6;
+        long mask    = 1L << bit;
+        if (word < current.results.length()) {
+            long results = current.results.get(word);
+            if ((results & mask) != 0) {
+                return (results & (mask << 1)) != 0;
+            }
+        }
+        
+        // The most specific node with a value decides
+        boolean allowed = false;
+        for (int id : PermissionTree.getChain(nodeId)) {
+            if (Compiled.test(current.present, id)) {
+                allowed = Compiled.test(current.granted, id);
+                break;
+            }
+        }
+        
+        // Nodes added to the tree after compiling are not memoized
+        if (word < current.results.length()) {
+            long add = allowed ? mask | (mask << 1) : mask;
+            while (true) {
+                long results = current.results.get(word);
+                if (current.results.compareAndSet(word, results, results | add)) {
+                    break;
+                }
+            }
+        }
+        
+        return allowed;
+    }
+    
+    /**
+     * Compiles the nodes into bitsets.
+     */
+    private synchronized Compiled compile() {
+        if (this.compiled != null) {
+            return this.compiled;
+        }
+        
+        // Intern first, so the bitsets are large enough
+        int[] ids = new int[this.perms.size()];
+        int   i   = 0;
+        for (String node : this.perms.keySet()) {
+            try {
+                ids[i++] = PermissionTree.getId(node);
+            } catch (IllegalArgumentException ex) {
+                // Free-form value without a valid node name, never checked
+                ids[i - 1] = -1;
+            }
+        }
+        
+        Compiled result = new Compiled(PermissionTree.size());
+        i = 0;
+        for (Object value : this.perms.values()) {
+            int id = ids[i++];
+            if (id < 0) {
+                continue;
+            }
+            
+            Compiled.set(result.present, id);
+            if (value != null && !Boolean.FALSE.equals(value)) {
+                Compiled.set(result.granted, id);
+            }
+        }
+        
+        this.compiled = result;
+        return result;
+    }
+    
+    /**
+     * Returns all permission nodes with their values.
+     * @return Unmodifiable copy of all nodes
+     */
+    public synchronized Map<String, Object> getPermissionValues() {
+        return Collections.unmodifiableMap(new HashMap<>(this.perms));
     }
     
     /**
@@ -97,7 +297,18 @@ public class AccountPermissionSet implements Serializable {
         }
         
         // Remove permission node
-        this.perms.remove(node);
+        boolean removed;
+        synchronized (this) {
+            removed = this.perms.containsKey(node);
+            if (removed) {
+                this.perms.remove(node);
+                this.compiled = null;
+            }
+        }
+        
+        if (removed) {
+            this.fireChange(AccountChange.Type.PERMISSION_REMOVE, node, null);
+        }
     }
     
     /**
@@ -114,5 +325,11 @@ public class AccountPermissionSet implements Serializable {
      */
     public void setOwner(boolean isOwner) {
         this.isOwner = isOwner;
+        
+        if (this.account != null) {
+            this.account.roleChanged(this.memberName);
+        }
+        
+        this.fireChange(AccountChange.Type.OWNER_SET, null, isOwner);
     }
 }
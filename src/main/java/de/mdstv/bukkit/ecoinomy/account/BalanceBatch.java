@@ -0,0 +1,180 @@
+package de.mdstv.bukkit.ecoinomy.account;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Many balance changes which are applied as one unit.
+ *
+ * Legs are collected first and summed up per account and currency slot,
+ * so paying 200 members from one account lowers that account once. When
+ * the batch is applied, all sums are checked, then changed while the
+ * LedgerGate is entered once, and one change per account and slot is
+ * reported to the journal. Either all legs are applied or none.
+ * Not thread-safe.
+ * @author Morph <admin@mds-tv.de>
+ */
+public final class BalanceBatch {
+    /**
+     * Summed changes in base units per account, indexed by slot.
+     */
+    private final LinkedHashMap<Account, long[]> deltas = new LinkedHashMap<>();
+
+    /**
+     * Number of legs added.
+     */
+    private int legs = 0;
+
+    /**
+     * Adds coins to an account.
+     * @param account The account
+     * @param coinName The Coin name in singular
+     * @param amount The amount to add
+     * @return This batch
+     * @throws NullPointerException If account is null
+     * @throws IllegalArgumentException If the coin is unknown or amount is
+     * negative
+     * @throws ArithmeticException If the sum of the changes would overflow
+     */
+    public BalanceBatch deposit(Account account, String coinName, long amount) {
+        Coin coin = requireLeg(account, coinName, amount);
+        this.add(account, coin.getSlot(), coin.toUnits(amount));
+        this.legs++;
+        return this;
+    }
+
+    /**
+     * Removes coins from an account.
+     * @param account The account
+     * @param coinName The Coin name in singular
+     * @param amount The amount to remove
+     * @return This batch
+     * @throws NullPointerException If account is null
+     * @throws IllegalArgumentException If the coin is unknown or amount is
+     * negative
+     * @throws ArithmeticException If the sum of the changes would overflow
+     */
+    public BalanceBatch withdraw(Account account, String coinName, long amount) {
+        Coin coin = requireLeg(account, coinName, amount);
+        this.add(account, coin.getSlot(), -coin.toUnits(amount));
+        this.legs++;
+        return this;
+    }
+
+    /**
+     * Moves coins from one account to another.
+     * @param from The paying account
+     * @param to The receiving account
+     * @param coinName The Coin name in singular
+     * @param amount The amount to move
+     * @return This batch
+     * @throws NullPointerException If an account is null
+     * @throws IllegalArgumentException If the coin is unknown or amount is
+     * negative
+     * @throws ArithmeticException If the sum of the changes would overflow
+     */
+    public BalanceBatch transfer(Account from, Account to, String coinName, long amount) {
+        // Check null
+        if (to == null) {
+            throw new NullPointerException("Account cannot be null");
+        }
+
+        Coin coin  = requireLeg(from, coinName, amount);
+        long value = coin.toUnits(amount);
+        this.add(from, coin.getSlot(), -value);
+        this.add(to, coin.getSlot(), value);
+        this.legs++;
+        return this;
+    }
+
+    /**
+     * Gets the number of legs of this batch.
+     * @return Number of legs
+     */
+    public int size() {
+        return this.legs;
+    }
+
+    /**
+     * Applies all legs. Applying a batch again applies all legs again.
+     * @return null if all legs were applied, otherwise an account whose
+     * balance is too low. Nothing was changed then.
+     * @throws ArithmeticException If a balance would overflow, nothing was
+     * changed
+     * @throws IllegalStateException If a balance would overflow and a leg
+     * could not be taken back, because another thread spent the coins in
+     * the meantime. That leg stays applied and is reported.
+     */
+    public Account apply() {
+        int count = 0;
+        for (long[] sums : this.deltas.values()) {
+            for (long sum : sums) {
+                if (sum != 0) {
+                    count++;
+                }
+            }
+        }
+
+        Account[]        accounts = new Account[count];
+        AccountBalance[] balances = new AccountBalance[count];
+        int[]            slots    = new int[count];
+        long[]           values   = new long[count];
+
+        // Lowered values first, raised ones after them
+        int index = 0;
+        for (int pass = 0; pass < 2; pass++) {
+            for (Map.Entry<Account, long[]> entry : this.deltas.entrySet()) {
+                long[] sums = entry.getValue();
+                for (int slot = 0; slot < sums.length; slot++) {
+                    if (pass == 0 ? sums[slot] < 0 : sums[slot] > 0) {
+                        accounts[index] = entry.getKey();
+                        balances[index] = entry.getKey().getBalance();
+                        slots[index]    = slot;
+                        values[index]   = sums[slot];
+                        index++;
+                    }
+                }
+            }
+        }
+
+        int failed = AccountBalance.applyAll(balances, slots, values);
+        return failed >= 0 ? accounts[failed] : null;
+    }
+
+    /**
+     * Checks the arguments of a leg.
+     */
+    private static Coin requireLeg(Account account, String coinName, long amount) {
+        // Check null
+        if (account == null) {
+            throw new NullPointerException("Account cannot be null");
+        }
+
+        if (amount < 0) {
+            throw new IllegalArgumentException("Amount cannot be negative");
+        }
+
+        return AccountBalance.requireCoin(coinName);
+    }
+
+    /**
+     * Adds a change to the sum of an account and slot.
+     */
+    private void add(Account account, int slot, long value) {
+        long[] sums = this.deltas.get(account);
+        if (sums == null || slot >= sums.length) {
+            sums = sums == null
+                    ? new long[Math.max(slot + 1, CoinRegistry.getInstance().getSlotCount())]
+                    : Arrays.copyOf(sums, slot + 1);
+            this.deltas.put(account, sums);
+        }
+
+        long sum = sums[slot];
+        if (value > 0 ? sum > Long.MAX_VALUE - value : sum < -Long.MAX_VALUE - value) {
+            throw new ArithmeticException("Amount overflow");
+        }
+
+        sums[slot] = sum + value;
+    }
+}
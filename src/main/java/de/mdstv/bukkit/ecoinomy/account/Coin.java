@@ -0,0 +1,182 @@
+package de.mdstv.bukkit.ecoinomy.account;
+
+/**
+ * A coin type. Coins are defined in the config and interned by the
+ * CoinRegistry, so there is exactly one instance per coin type and they
+ * can be compared by identity.
+ *
+ * Coins with a weight form a denomination chain which shares one currency
+ * slot. Balances store a single amount of base units per slot, the value
+ * of a coin in base units is precomputed from the maxStacks of the chain.
+ * @author Morph <admin@mds-tv.de>
+ */
+public final class Coin {
+    /**
+     * Dense id of this Coin, index into every balance.
+     */
+    private final int id;
+
+    /**
+     * Name of the Coin in singular.
+     */
+    private final String nameSingular;
+
+    /**
+     * Name of the Coin in plural.
+     */
+    private final String namePlural;
+
+    /**
+     * Weight of this Coin.
+     *
+     * For Example:
+     * - Gold has a weight of 1
+     * - Silver has a weight of 2
+     * - Copper has a weight of 3
+     *
+     * So you need x coins of copper to get one coin of silver.
+     * Also you need x coins of silver to get one coin of gold.
+     *
+     * What 'x' means you can see in the jDoc of maxStack.
+     */
+    private final int weight;
+
+    /**
+     * The maxStack describes the maximum amount of Coins you can hold
+     * before you get a 'next level' Coin.
+     *
+     * For Example:
+     * If were maxStack is 10, so you need 10 of this Coin type to get the
+     * next lower weighted Coin. If the weight is already 1, you can hold
+     * "unlimited" Coins of this type.
+     */
+    private final int maxStack;
+
+    /**
+     * Currency slot of this Coin.
+     */
+    private final int slot;
+
+    /**
+     * Value of one Coin in base units.
+     */
+    private final long factor;
+
+    /**
+     * Value of the next more valuable Coin in base units, 0 if there is
+     * none.
+     */
+    private final long modulus;
+
+    /**
+     * Creates a new Coin. Only used by the CoinRegistry.
+     */
+    Coin(int id, String nameSingular, String namePlural, int weight, int maxStack,
+            int slot, long factor, long modulus) {
+        this.id           = id;
+        this.nameSingular = nameSingular;
+        this.namePlural   = namePlural;
+        this.weight       = weight;
+        this.maxStack     = maxStack;
+        this.slot         = slot;
+        this.factor       = factor;
+        this.modulus      = modulus;
+    }
+
+    /**
+     * Gets the id of this Coin.
+     * @return Dense coin id
+     */
+    public int getId() {
+        return this.id;
+    }
+
+    /**
+     * Gets the name of this Coin in singular.
+     * @return Singular name
+     */
+    public String getNameSingular() {
+        return this.nameSingular;
+    }
+
+    /**
+     * Gets the name of this Coin in plural.
+     * @return Plural name
+     */
+    public String getNamePlural() {
+        return this.namePlural;
+    }
+
+    /**
+     * Gets the weight of this Coin, 1 is the most valuable coin.
+     * @return The weight
+     */
+    public int getWeight() {
+        return this.weight;
+    }
+
+    /**
+     * Gets the number of coins which make up one coin of the next lower
+     * weight.
+     * @return The maxStack
+     */
+    public int getMaxStack() {
+        return this.maxStack;
+    }
+
+    /**
+     * Gets the currency slot of this Coin. Coins of the same slot can be
+     * converted into each other.
+     * @return The slot
+     */
+    public int getSlot() {
+        return this.slot;
+    }
+
+    /**
+     * Gets the value of one Coin in base units of its slot.
+     * @return The value, at least 1
+     */
+    public long getFactor() {
+        return this.factor;
+    }
+
+    /**
+     * Converts an amount of this Coin into base units.
+     * @param amount The amount of coins
+     * @return The value in base units
+     * @throws ArithmeticException If the value would overflow
+     */
+    public long toUnits(long amount) {
+        if (amount > Long.MAX_VALUE / this.factor
+                || amount < Long.MIN_VALUE / this.factor) {
+            throw new ArithmeticException("Amount overflow");
+        }
+
+        return amount * this.factor;
+    }
+
+    /**
+     * Gets the number of coins of this type in the denomination breakdown
+     * of a value. More valuable coins are taken first.
+     * @param units The value in base units
+     * @return The number of coins of this type
+     */
+    public long countIn(long units) {
+        return (this.modulus == 0 ? units : units % this.modulus) / this.factor;
+    }
+
+    /**
+     * Gets the highest number of coins of this type in the denomination
+     * breakdown of a value. More coins make up a more valuable coin.
+     * @return The number, Long.MAX_VALUE for the most valuable coin
+     */
+    long getMaxCount() {
+        return this.modulus == 0 ? Long.MAX_VALUE : this.modulus / this.factor - 1;
+    }
+
+    @Override
+    public String toString() {
+        return this.nameSingular;
+    }
+}
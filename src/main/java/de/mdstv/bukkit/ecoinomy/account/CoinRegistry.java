@@ -0,0 +1,339 @@
+package de.mdstv.bukkit.ecoinomy.account;
+
+import de.mdstv.bukkit.ecoinomy.Ecoinomy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.logging.Level;
+import org.bukkit.configuration.ConfigurationSection;
+
+/**
+ * Immutable registry of all coin types.
+ *
+ * Every coin gets a dense id in config order. Coins are found by their
+ * singular name, plural name or config key, ignoring the case, with a
+ * single hash lookup. Coins found in stored data but missing in the config
+ * are appended to a new registry, which replaces the current one. Ids
+ * never change while the plugin is running.
+ *
+ * Coins with a weight of 1 or more form the denomination chain of slot 0,
+ * every other coin is a currency of its own slot. The value of every coin
+ * in base units of its slot is computed once when the registry is loaded.
+ * @author Morph <admin@mds-tv.de>
+ */
+public final class CoinRegistry {
+    /**
+     * The registry in use.
+     */
+    private static volatile CoinRegistry instance = new CoinRegistry(
+            Collections.<Coin>emptyList(), new HashMap<String, Coin>());
+
+    /**
+     * Sorts coins by value, most valuable first.
+     */
+    private static final Comparator<Coin> BY_VALUE = new Comparator<Coin>() {
+        @Override
+        public int compare(Coin c1, Coin c2) {
+            return Long.compare(c2.getFactor(), c1.getFactor());
+        }
+    };
+
+    /**
+     * All coins, indexed by id.
+     */
+    private final Coin[] coins;
+
+    /**
+     * All coins by lower case name.
+     */
+    private final HashMap<String, Coin> names;
+
+    /**
+     * Coins of every slot, most valuable first.
+     */
+    private final Coin[][] slots;
+
+    private CoinRegistry(List<Coin> coins, HashMap<String, Coin> names) {
+        this.coins = coins.toArray(new Coin[coins.size()]);
+        this.names = names;
+
+        int slotCount = 0;
+        for (Coin coin : this.coins) {
+            slotCount = Math.max(slotCount, coin.getSlot() + 1);
+        }
+
+        ArrayList<List<Coin>> slotCoins = new ArrayList<>(slotCount);
+        for (int slot = 0; slot < slotCount; slot++) {
+            slotCoins.add(new ArrayList<Coin>());
+        }
+
+        for (Coin coin : this.coins) {
+            slotCoins.get(coin.getSlot()).add(coin);
+        }
+
+        this.slots = new Coin[slotCount][];
+        for (int slot = 0; slot < slotCount; slot++) {
+            List<Coin> slotList = slotCoins.get(slot);
+            Collections.sort(slotList, BY_VALUE);
+            this.slots[slot] = slotList.toArray(new Coin[slotList.size()]);
+        }
+    }
+
+    /**
+     * Gets the registry in use.
+     * @return The CoinRegistry
+     */
+    public static CoinRegistry getInstance() {
+        return instance;
+    }
+
+    /**
+     * Replaces the registry in use. Only call this before any account is
+     * loaded, balances keep the ids of the old registry.
+     * @param registry The new registry
+     * @throws NullPointerException If registry is null
+     */
+    public static void setInstance(CoinRegistry registry) {
+        // Check null
+        if (registry == null) {
+            throw new NullPointerException("Registry cannot be null");
+        }
+
+        instance = registry;
+    }
+
+    /**
+     * Creates a registry from the coins section of the config.
+     *
+     * Every key of the section defines a coin with the values singular,
+     * plural, weight and maxStack. The singular name defaults to the key,
+     * the plural name to the singular name.
+     * @param section The coins section, may be null
+     * @return The new registry
+     * @throws IllegalArgumentException If two coins use the same name or
+     * weight, a maxStack is missing or the chain is too valuable.
+     */
+    public static CoinRegistry load(ConfigurationSection section) {
+        ArrayList<String>  keys    = new ArrayList<>();
+        ArrayList<Integer> weights = new ArrayList<>();
+
+        if (section != null) {
+            for (String key : section.getKeys(false)) {
+                keys.add(key);
+                weights.add(section.getInt(key + ".weight", 1));
+            }
+        }
+
+        // Denomination chain, most valuable first
+        ArrayList<Integer> chain = new ArrayList<>();
+        for (int i = 0; i < keys.size(); i++) {
+            if (weights.get(i) > 0) {
+                chain.add(i);
+            }
+        }
+
+        final List<Integer> chainWeights = weights;
+        Collections.sort(chain, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer i1, Integer i2) {
+                return Integer.compare(chainWeights.get(i1), chainWeights.get(i2));
+            }
+        });
+
+        long[] factors  = new long[keys.size()];
+        long[] moduli   = new long[keys.size()];
+        int[]  slots    = new int[keys.size()];
+        int    slotNext = chain.isEmpty() ? 0 : 1;
+
+        for (int i = chain.size() - 1; i >= 0; i--) {
+            int key = chain.get(i);
+
+            if (i == chain.size() - 1) {
+                factors[key] = 1;
+                continue;
+            }
+
+            int lower = chain.get(i + 1);
+            if (weights.get(key).equals(weights.get(lower))) {
+                throw new IllegalArgumentException("Coins '" + keys.get(key)
+                        + "' and '" + keys.get(lower) + "' have the same weight");
+            }
+
+            int maxStack = section.getInt(keys.get(lower) + ".maxStack", 0);
+            if (maxStack < 1) {
+                throw new IllegalArgumentException("Coin '" + keys.get(lower)
+                        + "' needs a maxStack");
+            }
+
+            if (factors[lower] > Long.MAX_VALUE / maxStack) {
+                throw new IllegalArgumentException("Coin '" + keys.get(key)
+                        + "' is too valuable");
+            }
+
+            factors[key] = factors[lower] * maxStack;
+            moduli[lower] = factors[key];
+        }
+
+        for (int i = 0; i < keys.size(); i++) {
+            if (weights.get(i) <= 0) {
+                factors[i] = 1;
+                slots[i]   = slotNext++;
+            }
+        }
+
+        ArrayList<Coin>       coins = new ArrayList<>();
+        HashMap<String, Coin> names = new HashMap<>();
+
+        for (int i = 0; i < keys.size(); i++) {
+            String key      = keys.get(i);
+            String singular = section.getString(key + ".singular", key);
+            String plural   = section.getString(key + ".plural", singular);
+
+            Coin coin = new Coin(coins.size(), singular, plural, weights.get(i),
+                    section.getInt(key + ".maxStack", 0),
+                    slots[i], factors[i], moduli[i]);
+            coins.add(coin);
+
+            index(names, coin, key);
+            index(names, coin, singular);
+            index(names, coin, plural);
+        }
+
+        return new CoinRegistry(coins, names);
+    }
+
+    /**
+     * Adds a name to the index.
+     */
+    private static void index(HashMap<String, Coin> names, Coin coin, String name) {
+        Coin existing = names.put(name.toLowerCase(Locale.ENGLISH), coin);
+
+        if (existing != null && existing != coin) {
+            throw new IllegalArgumentException("Coin name '" + name
+                    + "' is used by '" + existing + "' and '" + coin + "'");
+        }
+    }
+
+    /**
+     * Gets a coin and registers unknown coins. Unknown coins get a slot of
+     * their own, they are kept so stored amounts are not lost.
+     * @param name The coin name, case-insensitive
+     * @return The coin
+     * @throws NullPointerException If name is null
+     */
+    static Coin register(String name) {
+        // Check null
+        if (name == null) {
+            throw new NullPointerException("Coin name cannot be null");
+        }
+
+        Coin coin = instance.getCoin(name);
+        if (coin != null) {
+            return coin;
+        }
+
+        synchronized (CoinRegistry.class) {
+            CoinRegistry current = instance;
+            coin = current.getCoin(name);
+            if (coin != null) {
+                return coin;
+            }
+
+            ArrayList<Coin> coins = new ArrayList<>(current.coins.length + 1);
+            Collections.addAll(coins, current.coins);
+            coin = new Coin(coins.size(), name, name, 0, 0,
+                    current.slots.length, 1, 0);
+            coins.add(coin);
+
+            HashMap<String, Coin> names = new HashMap<>(current.names);
+            index(names, coin, name);
+
+            instance = new CoinRegistry(coins, names);
+        }
+
+        if (Ecoinomy.plugin != null) {
+            Ecoinomy.plugin.getLogger().log(Level.WARNING, "Unknown coin ''{0}''"
+                    + " found, please add it to the config", name);
+        }
+
+        return coin;
+    }
+
+    /**
+     * Gets a coin by its id.
+     * @param id The coin id
+     * @return The coin
+     * @throws IndexOutOfBoundsException If the id is unknown
+     */
+    public Coin getCoin(int id) {
+        return this.coins[id];
+    }
+
+    /**
+     * Gets a coin by its singular name, plural name or config key.
+     * @param name The coin name, case-insensitive
+     * @return The coin or null, if the coin is unknown
+     */
+    public Coin getCoin(String name) {
+        return this.names.get(name.toLowerCase(Locale.ENGLISH));
+    }
+
+    /**
+     * Gets the id of a coin.
+     * @param name The coin name, case-insensitive
+     * @return The coin id or -1, if the coin is unknown
+     */
+    public int getId(String name) {
+        Coin coin = this.getCoin(name);
+        return coin != null ? coin.getId() : -1;
+    }
+
+    /**
+     * Gets the number of coins.
+     * @return Number of coins
+     */
+    public int size() {
+        return this.coins.length;
+    }
+
+    /**
+     * Gets the number of currency slots.
+     * @return Number of slots
+     */
+    public int getSlotCount() {
+        return this.slots.length;
+    }
+
+    /**
+     * Gets the coins of a slot, most valuable first.
+     * @param slot The slot
+     * @return Unmodifiable list of the coins
+     * @throws IndexOutOfBoundsException If the slot is unknown
+     */
+    public List<Coin> getDenominations(int slot) {
+        return Collections.unmodifiableList(Arrays.asList(this.slots[slot]));
+    }
+
+    /**
+     * Gets the least valuable coin of a slot, its value is one base unit.
+     * @param slot The slot
+     * @return The base coin
+     * @throws IndexOutOfBoundsException If the slot is unknown
+     */
+    public Coin getBaseCoin(int slot) {
+        Coin[] denominations = this.slots[slot];
+        return denominations[denominations.length - 1];
+    }
+
+    /**
+     * Gets all coins in id order.
+     * @return Unmodifiable list of all coins
+     */
+    public List<Coin> getCoins() {
+        return Collections.unmodifiableList(Arrays.asList(this.coins));
+    }
+}
@@ -0,0 +1,132 @@
+package de.mdstv.bukkit.ecoinomy.account;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Lets snapshots wait for running balance updates.
+ *
+ * Balance updates do not lock, they only increment a counter of their own
+ * stripe while running. A snapshot closes the gate, waits until all running
+ * updates are done and opens the gate again when it has read all balances.
+ * So a balance change and its journal record are either both part of a
+ * snapshot or both not.
+ *
+ * Lock order: accounts lock, then the gate, then the AccountRegistry.
+ * Nothing holding the AccountRegistry may enter the gate, so decoding an
+ * account restores its balance without it.
+ * @author Morph <admin@mds-tv.de>
+ */
+public final class LedgerGate {
+    /**
+     * Number of stripes, a power of 2.
+     */
+    private static final int STRIPES = 32;
+
+    /**
+     * Distance between two used counters, keeps them on separate cache
+     * lines.
+     */
+    private static final int PADDING = 16;
+
+    /**
+     * Running updates per stripe.
+     */
+    private static final AtomicIntegerArray running =
+            new AtomicIntegerArray(STRIPES * PADDING);
+
+    /**
+     * true while a snapshot is taken.
+     */
+    private static volatile boolean closed = false;
+
+    /**
+     * Monitor for waiting updates, also serializes snapshots.
+     */
+    private static final Object monitor = new Object();
+
+    /**
+     * Thread which closed the gate.
+     */
+    private static Thread owner;
+
+    private LedgerGate() {
+    }
+
+    /**
+     * Gets the counter index of the current thread.
+     */
+    private static int stripe() {
+        return (int) (Thread.currentThread().getId() & (STRIPES - 1)) * PADDING;
+    }
+
+    /**
+     * Enters the gate before a balance update. Blocks while a snapshot is
+     * taken. Every call has to be followed by exit().
+     */
+    public static void enter() {
+        int stripe = stripe();
+
+        while (true) {
+            running.incrementAndGet(stripe);
+            if (!closed || owner == Thread.currentThread()) {
+                return;
+            }
+
+            // A snapshot is taken, wait until it is done
+            running.decrementAndGet(stripe);
+            synchronized (monitor) {
+                while (closed) {
+                    try {
+                        monitor.wait();
+                    } catch (InterruptedException ex) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Leaves the gate after a balance update.
+     */
+    public static void exit() {
+        running.decrementAndGet(stripe());
+    }
+
+    /**
+     * Closes the gate and waits until all running updates are done. Every
+     * call has to be followed by open().
+     */
+    public static void close() {
+        synchronized (monitor) {
+            while (closed) {
+                try {
+                    monitor.wait();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+
+            closed = true;
+            owner  = Thread.currentThread();
+        }
+
+        // Updates are short, spin until they are done
+        for (int i = 0; i < STRIPES * PADDING; i += PADDING) {
+            while (running.get(i) != 0) {
+                Thread.yield();
+            }
+        }
+    }
+
+    /**
+     * Opens the gate again.
+     */
+    public static void open() {
+        synchronized (monitor) {
+            owner  = null;
+            closed = false;
+            monitor.notifyAll();
+        }
+    }
+}
@@ -0,0 +1,241 @@
+package de.mdstv.bukkit.ecoinomy.account;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * Global table of all permission nodes.
+ *
+ * Dotted nodes like "account.withdraw.gold" are parsed into a trie, every
+ * node of the trie gets a dense id. A node ending with "*" is a wildcard
+ * and covers all nodes below its parent. For every id the ids which can
+ * decide about it are computed once: the node itself, then the wildcards
+ * of its ancestors, most specific first.
+ *
+ * Ids never change while the plugin is running, so hot paths can look up
+ * the id of a node once and keep it.
+ * @author Morph <admin@mds-tv.de>
+ */
+public final class PermissionTree {
+    /**
+     * Name of the wildcard segment.
+     */
+    public static final String WILDCARD = "*";
+
+    /**
+     * A node of the trie.
+     */
+    private static final class Node {
+        final Node                  parent;
+        final int                   id;
+        final HashMap<String, Node> children = new HashMap<>();
+
+        Node(Node parent, int id) {
+            this.parent = parent;
+            this.id     = id;
+        }
+    }
+
+    /**
+     * Ids of all known nodes, fast path of getId() and find().
+     */
+    private static final ConcurrentHashMap<String, Integer> ids =
+            new ConcurrentHashMap<>();
+
+    /**
+     * All known nodes, sorted. Prefix index of the tab completion.
+     */
+    private static final ConcurrentSkipListSet<String> nodes =
+            new ConcurrentSkipListSet<>();
+
+    /**
+     * Root of the trie, the empty node. Guarded by PermissionTree.class.
+     */
+    private static final Node root = new Node(null, -1);
+
+    /**
+     * Next free id. Guarded by PermissionTree.class.
+     */
+    private static int nextId = 0;
+
+    /**
+     * Deciding ids of every node, indexed by id.
+     */
+    private static volatile int[][] chains = new int[0][];
+
+    private PermissionTree() {
+    }
+
+    /**
+     * Gets the id of a permission node. Unknown nodes are added, so only
+     * nodes which get a value are passed here. Checks use find().
+     * @param node The dotted permission node
+     * @return The node id
+     * @throws NullPointerException If node is null
+     * @throws IllegalArgumentException If node or one of its segments is
+     * empty
+     */
+    public static int getId(String node) {
+        // Check null
+        if (node == null) {
+            throw new NullPointerException("Permission cannot be null");
+        }
+
+        Integer id = ids.get(node);
+        if (id != null) {
+            return id;
+        }
+
+        synchronized (PermissionTree.class) {
+            return insert(node).id;
+        }
+    }
+
+    /**
+     * Gets the id which decides about a permission node, without adding
+     * the node. For an unknown node this is the most specific known
+     * wildcard of its ancestors, as only known nodes can have a value.
+     * @param node The dotted permission node
+     * @return The id or -1, if no node can decide about it
+     * @throws NullPointerException If node is null
+     * @throws IllegalArgumentException If node or one of its segments is
+     * empty
+     */
+    public static int find(String node) {
+        // Check null
+        if (node == null) {
+            throw new NullPointerException("Permission cannot be null");
+        }
+
+        Integer id = ids.get(node);
+        if (id != null) {
+            return id;
+        }
+
+        String[] segments = node.split("\\.", -1);
+        for (String segment : segments) {
+            if (segment.isEmpty()) {
+                throw new IllegalArgumentException("Invalid permission node '"
+                        + node + "'");
+            }
+        }
+
+        synchronized (PermissionTree.class) {
+            int  found   = -1;
+            Node current = root;
+            for (String segment : segments) {
+                Node wildcard = current.children.get(WILDCARD);
+                if (wildcard != null) {
+                    found = wildcard.id;
+                }
+
+                current = current.children.get(segment);
+                if (current == null) {
+                    return found;
+                }
+            }
+
+            return current.id;
+        }
+    }
+
+    /**
+     * Gets the ids which decide about a node, most specific first. The
+     * first id a permission set has a value for decides.
+     * @param id The node id
+     * @return The deciding ids, do not modify
+     * @throws IndexOutOfBoundsException If the id is unknown
+     */
+    static int[] getChain(int id) {
+        return chains[id];
+    }
+
+    /**
+     * Gets the number of known nodes.
+     * @return Number of nodes
+     */
+    public static int size() {
+        return chains.length;
+    }
+
+    /**
+     * Gets the known nodes starting with a prefix, in alphabetical order.
+     * @param prefix The prefix
+     * @param limit Maximum number of nodes
+     * @return The nodes
+     * @throws NullPointerException If prefix is null
+     */
+    public static List<String> getNodesStartingWith(String prefix, int limit) {
+        List<String> result = new ArrayList<>(Math.min(Math.max(0, limit), 16));
+
+        for (String node : nodes.tailSet(prefix)) {
+            if (result.size() >= limit || !node.startsWith(prefix)) {
+                break;
+            }
+
+            result.add(node);
+        }
+
+        return result;
+    }
+
+    /**
+     * Adds a node and its wildcards to the trie.
+     */
+    private static Node insert(String node) {
+        String[] segments = node.split("\\.", -1);
+
+        Node current = root;
+        for (String segment : segments) {
+            if (segment.isEmpty()) {
+                throw new IllegalArgumentException("Invalid permission node '"
+                        + node + "'");
+            }
+
+            current = child(current, segment);
+        }
+
+        ids.put(node, current.id);
+        nodes.add(node);
+        return current;
+    }
+
+    /**
+     * Gets or creates a child node.
+     */
+    private static Node child(Node parent, String segment) {
+        Node child = parent.children.get(segment);
+        if (child != null) {
+            return child;
+        }
+
+        child = new Node(parent, nextId++);
+        parent.children.put(segment, child);
+
+        // The node decides first, then the wildcards of its ancestors
+        ArrayList<Integer> chain = new ArrayList<>();
+        chain.add(child.id);
+        for (Node ancestor = parent; ancestor != null; ancestor = ancestor.parent) {
+            Node wildcard = WILDCARD.equals(segment) && ancestor == parent
+                    ? child : child(ancestor, WILDCARD);
+            if (wildcard != child) {
+                chain.add(wildcard.id);
+            }
+        }
+
+        int[] compiled = new int[chain.size()];
+        for (int i = 0; i < compiled.length; i++) {
+            compiled[i] = chain.get(i);
+        }
+
+        int[][] grown = Arrays.copyOf(chains, Math.max(chains.length, child.id + 1));
+        grown[child.id] = compiled;
+        chains = grown;
+
+        return child;
+    }
+}
@@ -0,0 +1,190 @@
+package de.mdstv.bukkit.ecoinomy.api;
+
+import de.mdstv.bukkit.ecoinomy.Ecoinomy;
+import de.mdstv.bukkit.ecoinomy.account.Account;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * EconomyService backed by the accounts of the plugin.
+ *
+ * Balances are changed with the lock-free operations of AccountBalance,
+ * the journal saves the changes. Async writes run on a small pool with a
+ * bounded queue. If the queue is full, the write is rejected with a failed
+ * Future. It never runs on the calling thread, which may be the server
+ * thread.
+ * @author Morph <admin@mds-tv.de>
+ */
+public final class AccountEconomyService implements EconomyService {
+    /**
+     * Executes async writes.
+     */
+    private final ThreadPoolExecutor workers;
+
+    /**
+     * Creates the service.
+     * @param threads Number of worker threads for async writes
+     * @param queueSize Maximum number of waiting async writes
+     */
+    public AccountEconomyService(int threads, int queueSize) {
+        final AtomicInteger count = new AtomicInteger();
+        ThreadFactory factory = new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable task) {
+                Thread thread = new Thread(task, "eCoinomy-Economy-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
+
+        this.workers = new ThreadPoolExecutor(Math.max(1, threads), Math.max(1, threads),
+                0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<Runnable>(Math.max(1, queueSize)),
+                factory);
+    }
+
+    /**
+     * Finishes all waiting async writes and stops the worker threads.
+     */
+    public void shutdown() {
+        this.workers.shutdown();
+        try {
+            this.workers.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Runs a write on a worker thread.
+     * @return The result, failed if the queue is full or the service was
+     * shut down
+     */
+    private Future<TransactionResult> submit(Callable<TransactionResult> task) {
+        try {
+            return this.workers.submit(task);
+        } catch (final RejectedExecutionException ex) {
+            FutureTask<TransactionResult> failed = new FutureTask<>(
+                    new Callable<TransactionResult>() {
+                        @Override
+                        public TransactionResult call() {
+                            throw ex;
+                        }
+                    });
+            failed.run();
+            return failed;
+        }
+    }
+
+    /**
+     * Gets an account.
+     */
+    private static Account find(String account) {
+        return account != null ? Ecoinomy.plugin.getAccounts().get(account) : null;
+    }
+
+    @Override
+    public boolean hasAccount(String account) {
+        return find(account) != null;
+    }
+
+    @Override
+    public Set<String> getAccountsOf(String playerName) {
+        return playerName != null
+                ? Ecoinomy.plugin.getAccounts().getAccountsOf(playerName)
+                : Collections.<String>emptySet();
+    }
+
+    @Override
+    public long getAmount(String account, String coinName) {
+        Account acc = find(account);
+        return acc != null ? acc.getBalance().getBalance(coinName) : 0;
+    }
+
+    @Override
+    public String getBalanceString(String account) {
+        Account acc = find(account);
+        return acc != null ? acc.getBalance().getBalanceString() : null;
+    }
+
+    @Override
+    public boolean has(String account, String coinName, long amount) {
+        Account acc = find(account);
+        return acc != null && acc.getBalance().has(coinName, amount);
+    }
+
+    @Override
+    public TransactionResult deposit(String account, String coinName, long amount) {
+        Account acc = find(account);
+        if (acc == null) {
+            return TransactionResult.UNKNOWN_ACCOUNT;
+        }
+
+        acc.getBalance().deposit(coinName, amount);
+        return TransactionResult.SUCCESS;
+    }
+
+    @Override
+    public TransactionResult withdraw(String account, String coinName, long amount) {
+        Account acc = find(account);
+        if (acc == null) {
+            return TransactionResult.UNKNOWN_ACCOUNT;
+        }
+
+        return acc.getBalance().withdraw(coinName, amount)
+                ? TransactionResult.SUCCESS : TransactionResult.INSUFFICIENT_FUNDS;
+    }
+
+    @Override
+    public TransactionResult transfer(String from, String to, String coinName, long amount) {
+        Account source = find(from);
+        Account target = find(to);
+        if (source == null || target == null) {
+            return TransactionResult.UNKNOWN_ACCOUNT;
+        }
+
+        return source.getBalance().transferTo(target.getBalance(), coinName, amount)
+                ? TransactionResult.SUCCESS : TransactionResult.INSUFFICIENT_FUNDS;
+    }
+
+    @Override
+    public Future<TransactionResult> depositAsync(final String account, final String coinName,
+            final long amount) {
+        return this.submit(new Callable<TransactionResult>() {
+            @Override
+            public TransactionResult call() {
+                return deposit(account, coinName, amount);
+            }
+        });
+    }
+
+    @Override
+    public Future<TransactionResult> withdrawAsync(final String account, final String coinName,
+            final long amount) {
+        return this.submit(new Callable<TransactionResult>() {
+            @Override
+            public TransactionResult call() {
+                return withdraw(account, coinName, amount);
+            }
+        });
+    }
+
+    @Override
+    public Future<TransactionResult> transferAsync(final String from, final String to,
+            final String coinName, final long amount) {
+        return this.submit(new Callable<TransactionResult>() {
+            @Override
+            public TransactionResult call() {
+                return transfer(from, to, coinName, amount);
+            }
+        });
+    }
+}
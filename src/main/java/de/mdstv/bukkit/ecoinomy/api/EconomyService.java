@@ -0,0 +1,139 @@
+package de.mdstv.bukkit.ecoinomy.api;
+
+import java.util.Set;
+import java.util.concurrent.Future;
+
+/**
+ * Public economy API of eCoinomy, registered with the Bukkit
+ * ServicesManager:
+ * <pre>
+ * EconomyService economy = getServer().getServicesManager()
+ *         .load(EconomyService.class);
+ * </pre>
+ *
+ * All methods can be called from any thread. Reads and synchronous writes
+ * do not lock if the account is in memory. With lazy loading enabled, the
+ * first access of an account decodes it from the database file, which
+ * locks the accounts briefly. The async variants run writes on a worker
+ * thread of eCoinomy and never on the calling thread. All changes are
+ * saved in the background.
+ *
+ * Coins are given by their singular name, plural name or config key.
+ * @author Morph <admin@mds-tv.de>
+ */
+public interface EconomyService {
+    /**
+     * Checks if an account is existing.
+     * @param account The account name, case-insensitive
+     * @return true, if the account is existing
+     */
+    public boolean hasAccount(String account);
+
+    /**
+     * Gets the names of all accounts a player is member of.
+     * @param playerName The name of the player, case-insensitive
+     * @return Unmodifiable set of account names
+     */
+    public Set<String> getAccountsOf(String playerName);
+
+    /**
+     * Gets the number of coins of a type in the denomination breakdown of
+     * a balance.
+     * @param account The account name
+     * @param coinName The coin name
+     * @return The amount, 0 if the account is not existing
+     * @throws IllegalArgumentException If the coin is unknown
+     */
+    public long getAmount(String account, String coinName);
+
+    /**
+     * Gets the balance as text, like "1 Gold, 23 Silver".
+     * @param account The account name
+     * @return The balance, null if the account is not existing
+     */
+    public String getBalanceString(String account);
+
+    /**
+     * Checks if a balance is worth at least an amount of coins.
+     * @param account The account name
+     * @param coinName The coin name
+     * @param amount The amount
+     * @return false, if the balance is too low or the account is not
+     * existing
+     * @throws IllegalArgumentException If the coin is unknown or amount is
+     * negative
+     */
+    public boolean has(String account, String coinName, long amount);
+
+    /**
+     * Adds coins to a balance.
+     * @param account The account name
+     * @param coinName The coin name
+     * @param amount The amount to add
+     * @return The result
+     * @throws IllegalArgumentException If the coin is unknown or amount is
+     * negative
+     * @throws ArithmeticException If the balance would overflow
+     */
+    public TransactionResult deposit(String account, String coinName, long amount);
+
+    /**
+     * Removes coins from a balance, if it is worth enough.
+     * @param account The account name
+     * @param coinName The coin name
+     * @param amount The amount to remove
+     * @return The result
+     * @throws IllegalArgumentException If the coin is unknown or amount is
+     * negative
+     */
+    public TransactionResult withdraw(String account, String coinName, long amount);
+
+    /**
+     * Moves coins from one balance to another, if the first one is worth
+     * enough.
+     * @param from The paying account
+     * @param to The receiving account
+     * @param coinName The coin name
+     * @param amount The amount to move
+     * @return The result
+     * @throws IllegalArgumentException If the coin is unknown or amount is
+     * negative
+     * @throws ArithmeticException If the receiving balance would overflow
+     */
+    public TransactionResult transfer(String from, String to, String coinName, long amount);
+
+    /**
+     * Adds coins to a balance on a worker thread.
+     * @param account The account name
+     * @param coinName The coin name
+     * @param amount The amount to add
+     * @return The result, failing with the exceptions of deposit() or with
+     * a RejectedExecutionException if too many writes are waiting
+     * @see #deposit(String, String, long)
+     */
+    public Future<TransactionResult> depositAsync(String account, String coinName, long amount);
+
+    /**
+     * Removes coins from a balance on a worker thread.
+     * @param account The account name
+     * @param coinName The coin name
+     * @param amount The amount to remove
+     * @return The result, failing with the exceptions of withdraw() or with
+     * a RejectedExecutionException if too many writes are waiting
+     * @see #withdraw(String, String, long)
+     */
+    public Future<TransactionResult> withdrawAsync(String account, String coinName, long amount);
+
+    /**
+     * Moves coins from one balance to another on a worker thread.
+     * @param from The paying account
+     * @param to The receiving account
+     * @param coinName The coin name
+     * @param amount The amount to move
+     * @return The result, failing with the exceptions of transfer() or with
+     * a RejectedExecutionException if too many writes are waiting
+     * @see #transfer(String, String, String, long)
+     */
+    public Future<TransactionResult> transferAsync(String from, String to, String coinName,
+            long amount);
+}
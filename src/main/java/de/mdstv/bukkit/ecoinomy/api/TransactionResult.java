@@ -0,0 +1,22 @@
+package de.mdstv.bukkit.ecoinomy.api;
+
+/**
+ * Outcome of a balance change through the EconomyService.
+ * @author Morph <admin@mds-tv.de>
+ */
+public enum TransactionResult {
+    /**
+     * The balance was changed.
+     */
+    SUCCESS,
+
+    /**
+     * An account is not existing, nothing was changed.
+     */
+    UNKNOWN_ACCOUNT,
+
+    /**
+     * The balance is too low, nothing was changed.
+     */
+    INSUFFICIENT_FUNDS
+}
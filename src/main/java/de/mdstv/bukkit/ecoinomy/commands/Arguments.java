@@ -0,0 +1,356 @@
+package de.mdstv.bukkit.ecoinomy.commands;
+
+import de.mdstv.bukkit.ecoinomy.Ecoinomy;
+import de.mdstv.bukkit.ecoinomy.account.Account;
+import de.mdstv.bukkit.ecoinomy.account.AccountMember;
+import de.mdstv.bukkit.ecoinomy.account.Coin;
+import de.mdstv.bukkit.ecoinomy.account.CoinRegistry;
+import de.mdstv.bukkit.ecoinomy.account.PermissionTree;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * Parsers for the typed arguments of commands.
+ * @author Morph <admin@mds-tv.de>
+ */
+public final class Arguments {
+    /**
+     * Valid Minecraft player names.
+     */
+    private static final Pattern PLAYER_NAME = Pattern.compile("[A-Za-z0-9_]{1,16}");
+
+    private Arguments() {
+    }
+
+    /**
+     * Base class of the parsers.
+     */
+    private abstract static class Base<T> implements CommandArgument<T> {
+        private final String name;
+
+        Base(String name) {
+            // Check null
+            if (name == null) {
+                throw new NullPointerException("Name cannot be null");
+            }
+
+            this.name = name;
+        }
+
+        @Override
+        public String getName() {
+            return this.name;
+        }
+
+        @Override
+        public boolean isOptional() {
+            return false;
+        }
+
+        @Override
+        public T getDefault() {
+            return null;
+        }
+
+        @Override
+        public List<String> complete(Object[] previous, String prefix, int limit) {
+            return Collections.emptyList();
+        }
+    }
+
+    /**
+     * Adds the words starting with a prefix, ignoring the case.
+     */
+    private static void addMatching(String word, String prefix, int limit, List<String> result) {
+        if (result.size() < limit && word.regionMatches(true, 0, prefix, 0, prefix.length())) {
+            result.add(word);
+        }
+    }
+
+    /**
+     * A single word, used as is.
+     * @param name Name of the argument
+     * @return The parser
+     */
+    public static CommandArgument<String> word(String name) {
+        return new Base<String>(name) {
+            @Override
+            public String parse(String input) {
+                return input;
+            }
+        };
+    }
+
+    /**
+     * A player name. The player is not looked up, so offline and unknown
+     * players are allowed.
+     * @param name Name of the argument
+     * @return The parser
+     */
+    public static CommandArgument<String> player(String name) {
+        return new Base<String>(name) {
+            @Override
+            public String parse(String input) throws CommandException {
+                if (!PLAYER_NAME.matcher(input).matches()) {
+                    throw new CommandException("argument.player", input);
+                }
+
+                return input;
+            }
+
+            @Override
+            public List<String> complete(Object[] previous, String prefix, int limit) {
+                return null;
+            }
+        };
+    }
+
+    /**
+     * A member of an account. Like player(), but completes the members of
+     * the account given by a preceding argument.
+     * @param name Name of the argument
+     * @param accountArgument Position of the account argument
+     * @return The parser
+     */
+    public static CommandArgument<String> member(String name, final int accountArgument) {
+        final CommandArgument<String> player = player(name);
+        return new Base<String>(name) {
+            @Override
+            public String parse(String input) throws CommandException {
+                return player.parse(input);
+            }
+
+            @Override
+            public List<String> complete(Object[] previous, String prefix, int limit) {
+                Object account = previous[accountArgument];
+                if (!(account instanceof Account)) {
+                    return Collections.emptyList();
+                }
+
+                List<String> result = new ArrayList<>();
+                synchronized (Ecoinomy.plugin.getDataLock()) {
+                    for (AccountMember member : ((Account) account).getAllMembers()) {
+                        addMatching(member.getName(), prefix, limit, result);
+                    }
+                }
+
+                return result;
+            }
+        };
+    }
+
+    /**
+     * A permission node, completes the nodes known to the PermissionTree.
+     * @param name Name of the argument
+     * @return The parser
+     */
+    public static CommandArgument<String> permission(String name) {
+        return new Base<String>(name) {
+            @Override
+            public String parse(String input) throws CommandException {
+                try {
+                    PermissionTree.find(input);
+                } catch (IllegalArgumentException ex) {
+                    throw new CommandException("argument.permission", input);
+                }
+
+                return input;
+            }
+
+            @Override
+            public List<String> complete(Object[] previous, String prefix, int limit) {
+                return PermissionTree.getNodesStartingWith(prefix, limit);
+            }
+        };
+    }
+
+    /**
+     * An existing account.
+     * @param name Name of the argument
+     * @return The parser
+     */
+    public static CommandArgument<Account> account(String name) {
+        return new Base<Account>(name) {
+            @Override
+            public Account parse(String input) throws CommandException {
+                Account account = Ecoinomy.plugin.getAccounts().get(input);
+                if (account == null) {
+                    throw new CommandException("argument.account", input);
+                }
+
+                return account;
+            }
+
+            @Override
+            public List<String> complete(Object[] previous, String prefix, int limit) {
+                return Ecoinomy.plugin.getAccounts().getNamesStartingWith(prefix, limit);
+            }
+        };
+    }
+
+    /**
+     * An amount of coins, not negative.
+     * @param name Name of the argument
+     * @return The parser
+     */
+    public static CommandArgument<Long> amount(String name) {
+        return new Base<Long>(name) {
+            @Override
+            public Long parse(String input) throws CommandException {
+                try {
+                    long amount = Long.parseLong(input);
+                    if (amount >= 0) {
+                        return amount;
+                    }
+                } catch (NumberFormatException ex) {
+                    // Reported below
+                }
+
+                throw new CommandException("argument.amount", input);
+            }
+        };
+    }
+
+    /**
+     * A coin type by its singular name, plural name or config key.
+     * @param name Name of the argument
+     * @return The parser
+     */
+    public static CommandArgument<Coin> coin(String name) {
+        return new Base<Coin>(name) {
+            @Override
+            public Coin parse(String input) throws CommandException {
+                Coin coin = CoinRegistry.getInstance().getCoin(input);
+                if (coin == null) {
+                    throw new CommandException("argument.coin", input);
+                }
+
+                return coin;
+            }
+
+            @Override
+            public List<String> complete(Object[] previous, String prefix, int limit) {
+                List<String> result = new ArrayList<>();
+                for (Coin coin : CoinRegistry.getInstance().getCoins()) {
+                    addMatching(coin.getNameSingular(), prefix, limit, result);
+                }
+
+                return result;
+            }
+        };
+    }
+
+    /**
+     * A whole number.
+     * @param name Name of the argument
+     * @return The parser
+     */
+    public static CommandArgument<Integer> integer(String name) {
+        return new Base<Integer>(name) {
+            @Override
+            public Integer parse(String input) throws CommandException {
+                try {
+                    return Integer.parseInt(input);
+                } catch (NumberFormatException ex) {
+                    throw new CommandException("argument.invalid", this.getName(), input);
+                }
+            }
+        };
+    }
+
+    /**
+     * A constant of an enum, ignoring the case.
+     * @param <E> Type of the enum
+     * @param name Name of the argument
+     * @param type Class of the enum
+     * @return The parser
+     */
+    public static <E extends Enum<E>> CommandArgument<E> choice(String name, final Class<E> type) {
+        return new Base<E>(name) {
+            @Override
+            public E parse(String input) throws CommandException {
+                try {
+                    return Enum.valueOf(type, input.toUpperCase(Locale.ENGLISH));
+                } catch (IllegalArgumentException ex) {
+                    throw new CommandException("argument.invalid", this.getName(), input);
+                }
+            }
+
+            @Override
+            public List<String> complete(Object[] previous, String prefix, int limit) {
+                List<String> result = new ArrayList<>();
+                for (E constant : type.getEnumConstants()) {
+                    addMatching(constant.name().toLowerCase(Locale.ENGLISH), prefix, limit, result);
+                }
+
+                return result;
+            }
+        };
+    }
+
+    /**
+     * A permission value: true, false, a number or any other word.
+     * @param name Name of the argument
+     * @return The parser
+     */
+    public static CommandArgument<Object> value(String name) {
+        return new Base<Object>(name) {
+            @Override
+            public Object parse(String input) {
+                if (input.equalsIgnoreCase("true") || input.equalsIgnoreCase("false")) {
+                    return Boolean.valueOf(input);
+                }
+
+                try {
+                    return Long.parseLong(input);
+                } catch (NumberFormatException ex) {
+                    return input;
+                }
+            }
+
+            @Override
+            public List<String> complete(Object[] previous, String prefix, int limit) {
+                List<String> result = new ArrayList<>(2);
+                addMatching("true", prefix, limit, result);
+                addMatching("false", prefix, limit, result);
+                return result;
+            }
+        };
+    }
+
+    /**
+     * Makes an argument optional. Only the last arguments of a command may
+     * be optional.
+     * @param <T> Type of the value
+     * @param argument The argument
+     * @param defaultValue Value if the argument is left out
+     * @return The parser
+     */
+    public static <T> CommandArgument<T> optional(final CommandArgument<T> argument,
+            final T defaultValue) {
+        return new Base<T>(argument.getName()) {
+            @Override
+            public boolean isOptional() {
+                return true;
+            }
+
+            @Override
+            public T getDefault() {
+                return defaultValue;
+            }
+
+            @Override
+            public T parse(String input) throws CommandException {
+                return argument.parse(input);
+            }
+
+            @Override
+            public List<String> complete(Object[] previous, String prefix, int limit) {
+                return argument.complete(previous, prefix, limit);
+            }
+        };
+    }
+}
@@ -0,0 +1,47 @@
+package de.mdstv.bukkit.ecoinomy.commands;
+
+import java.util.List;
+
+/**
+ * Parses a single argument of a command. Parsers are chosen when the
+ * command is registered, see Arguments.
+ * @author Morph <admin@mds-tv.de>
+ * @param <T> Type of the parsed value
+ */
+public interface CommandArgument<T> {
+    /**
+     * Gets the name of the argument, shown in the help.
+     * @return The name
+     */
+    public String getName();
+
+    /**
+     * Checks if the argument may be left out.
+     * @return true, if the argument is optional
+     */
+    public boolean isOptional();
+
+    /**
+     * Gets the value of a left out optional argument.
+     * @return The default value
+     */
+    public T getDefault();
+
+    /**
+     * Parses the argument.
+     * @param input The argument as typed by the sender
+     * @return The value
+     * @throws CommandException If the argument is invalid
+     */
+    public T parse(String input) throws CommandException;
+
+    /**
+     * Gets the completions of a partly typed argument.
+     * @param previous Values of the preceding arguments of the command,
+     * null where a value is invalid
+     * @param prefix The typed part of the argument
+     * @param limit Maximum number of completions
+     * @return The completions, null to complete the names of online players
+     */
+    public List<String> complete(Object[] previous, String prefix, int limit);
+}
@@ -0,0 +1,126 @@
+package de.mdstv.bukkit.ecoinomy.commands;
+
+import de.mdstv.bukkit.ecoinomy.Ecoinomy;
+import de.mdstv.bukkit.ecoinomy.stats.Metrics;
+import java.util.ArrayList;
+import java.util.Collections;
+import org.bukkit.command.CommandSender;
+
+/**
+ * Parsed arguments and the output of a command.
+ *
+ * Commands send their output through the context. Output of commands
+ * executed by a worker thread is collected and delivered to the sender by
+ * the server thread when the command is finished.
+ * @author Morph <admin@mds-tv.de>
+ */
+public final class CommandContext {
+    /**
+     * The command sender.
+     */
+    private final CommandSender sender;
+
+    /**
+     * The label the command was called with.
+     */
+    private final String label;
+
+    /**
+     * The parsed values, in order of the arguments.
+     */
+    private final Object[] values;
+
+    /**
+     * Messages of the command, taken once so all output uses the same
+     * catalog.
+     */
+    private final MessageCatalog catalog = Messages.getCatalog();
+
+    /**
+     * Collected output of a deferred command, null if output is sent
+     * immediately.
+     */
+    private ArrayList<String> output;
+
+    CommandContext(CommandSender sender, String label, Object[] values, boolean deferred) {
+        this.sender = sender;
+        this.label  = label;
+        this.values = values;
+        this.output = deferred ? new ArrayList<String>() : null;
+    }
+
+    /**
+     * Gets the label the base command was called with.
+     * @return The label
+     */
+    public String getLabel() {
+        return this.label;
+    }
+
+    /**
+     * Gets a parsed argument.
+     * @param <T> Type of the value, as returned by the parser
+     * @param index Position of the argument
+     * @return The value
+     * @throws IndexOutOfBoundsException If there is no such argument
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T get(int index) {
+        return (T) this.values[index];
+    }
+
+    /**
+     * Gets the messages of this command.
+     * @return The catalog
+     */
+    public MessageCatalog getCatalog() {
+        return this.catalog;
+    }
+
+    /**
+     * Sends a message to the command sender.
+     * @param key The key of the message
+     * @param values The values of the placeholders
+     */
+    public void send(String key, Object... values) {
+        this.sendLines(this.catalog.format(key, values));
+    }
+
+    /**
+     * Sends lines to the command sender.
+     * @param lines The lines
+     */
+    public void sendLines(String... lines) {
+        if (this.output != null) {
+            Collections.addAll(this.output, lines);
+        } else {
+            this.sender.sendMessage(lines);
+        }
+    }
+
+    /**
+     * Delivers the collected output on the server thread.
+     */
+    void flush() {
+        if (this.output == null || this.output.isEmpty()) {
+            return;
+        }
+
+        final String[] lines = this.output.toArray(new String[this.output.size()]);
+        this.output.clear();
+
+        // Nothing can be delivered after the plugin was disabled
+        if (!Ecoinomy.plugin.isEnabled()) {
+            return;
+        }
+
+        Ecoinomy.plugin.getServer().getScheduler().runTask(Ecoinomy.plugin, new Runnable() {
+            @Override
+            public void run() {
+                long start = System.nanoTime();
+                CommandContext.this.sender.sendMessage(lines);
+                Metrics.addMainThreadTime(start);
+            }
+        });
+    }
+}
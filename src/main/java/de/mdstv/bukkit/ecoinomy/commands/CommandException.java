@@ -0,0 +1,19 @@
+package de.mdstv.bukkit.ecoinomy.commands;
+
+/**
+ * Thrown if a command cannot be executed. The message is sent to the
+ * command sender.
+ * @author Morph <admin@mds-tv.de>
+ */
+public class CommandException extends Exception {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Creates a new CommandException.
+     * @param key Key of the message for the command sender
+     * @param values Values of the placeholders of the message
+     */
+    public CommandException(String key, Object... values) {
+        super(Messages.format(key, values));
+    }
+}
@@ -0,0 +1,19 @@
+package de.mdstv.bukkit.ecoinomy.commands;
+
+import org.bukkit.command.CommandSender;
+
+/**
+ * Executes a node of the command tree. The arguments are already parsed
+ * when the handler is called.
+ * @author Morph <admin@mds-tv.de>
+ */
+public interface CommandHandler {
+    /**
+     * Executes the command.
+     * @param sender The command sender
+     * @param context The parsed arguments
+     * @throws CommandException If the command failed, the message is sent
+     * to the sender
+     */
+    public void execute(CommandSender sender, CommandContext context) throws CommandException;
+}
@@ -0,0 +1,466 @@
+package de.mdstv.bukkit.ecoinomy.commands;
+
+import de.mdstv.bukkit.ecoinomy.Ecoinomy;
+import de.mdstv.bukkit.ecoinomy.stats.Histogram;
+import de.mdstv.bukkit.ecoinomy.stats.Metrics;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.logging.Level;
+import org.bukkit.command.CommandSender;
+
+/**
+ * A node of the command tree.
+ *
+ * Every node is either a group of sub-nodes or a command with a handler
+ * and typed arguments. The tree is built once when the plugin is enabled.
+ * The description of a node is the message "help.&lt;path&gt;", with the
+ * names below the root joined by '_'.
+ * Dispatching walks the tree with one hash lookup per level and parses the
+ * arguments in place, the argument array is never copied.
+ * @author Morph <admin@mds-tv.de>
+ */
+public final class CommandNode {
+    /**
+     * Name of the node, the literal typed by the sender.
+     */
+    private final String name;
+
+    /**
+     * Message key of the description, shown in the help.
+     */
+    private final String descriptionKey;
+
+    /**
+     * The parent node, null for the root.
+     */
+    private final CommandNode parent;
+
+    /**
+     * Sub-nodes by lower case name, in registration order.
+     */
+    private final LinkedHashMap<String, CommandNode> children = new LinkedHashMap<>();
+
+    /**
+     * Bukkit permission required for this node and all nodes below it,
+     * null if none.
+     */
+    private String permission;
+
+    /**
+     * Executes this node, null for groups.
+     */
+    private CommandHandler handler;
+
+    /**
+     * Executes the handler on a worker thread.
+     */
+    private boolean async;
+
+    /**
+     * Arguments of the handler.
+     */
+    private CommandArgument<?>[] arguments = new CommandArgument<?>[0];
+
+    /**
+     * Execution times of the handler, "command.&lt;path&gt;" with the
+     * names joined by '.'. Null for groups.
+     */
+    private Histogram latency;
+
+    /**
+     * Help message and the catalog it was rendered from, built on first
+     * use.
+     */
+    private volatile Help help;
+
+    /**
+     * A rendered help message.
+     */
+    private static final class Help {
+        final MessageCatalog catalog;
+        final String[]       lines;
+
+        Help(MessageCatalog catalog, String[] lines) {
+            this.catalog = catalog;
+            this.lines   = lines;
+        }
+    }
+
+    /**
+     * Creates a root node.
+     * @param name Name of the base command
+     */
+    public CommandNode(String name) {
+        this(null, name);
+    }
+
+    private CommandNode(CommandNode parent, String name) {
+        // Check null
+        if (name == null) {
+            throw new NullPointerException("Name cannot be null");
+        }
+
+        this.parent         = parent;
+        this.name           = name;
+        this.descriptionKey = parent == null ? "help.base"
+                : parent.parent == null ? "help." + name
+                : parent.descriptionKey + "_" + name;
+    }
+
+    /**
+     * Gets a sub-node, creates it if necessary.
+     * @param name Name of the sub-node
+     * @return The sub-node
+     * @throws NullPointerException If name is null
+     */
+    public CommandNode child(String name) {
+        String      key   = name.toLowerCase(Locale.ENGLISH);
+        CommandNode child = this.children.get(key);
+
+        if (child == null) {
+            child = new CommandNode(this, name);
+            this.children.put(key, child);
+            this.invalidateHelp();
+        }
+
+        return child;
+    }
+
+    /**
+     * Makes this node a command.
+     * @param handler Executes the command
+     * @param arguments Parsers of the arguments, optional ones last
+     * @return This node
+     * @throws NullPointerException If handler is null
+     * @throws IllegalArgumentException If a required argument follows an
+     * optional one
+     */
+    public CommandNode setHandler(CommandHandler handler, CommandArgument<?>... arguments) {
+        // Check null
+        if (handler == null) {
+            throw new NullPointerException("Handler cannot be null");
+        }
+
+        boolean optional = false;
+        for (CommandArgument<?> argument : arguments) {
+            if (optional && !argument.isOptional()) {
+                throw new IllegalArgumentException("Required argument '"
+                        + argument.getName() + "' after an optional one");
+            }
+
+            optional = argument.isOptional();
+        }
+
+        this.handler   = handler;
+        this.arguments = arguments.clone();
+        this.latency   = Metrics.histogram("command." + this.getPath().replace(' ', '.'),
+                Histogram.NANOS);
+        this.invalidateHelp();
+        return this;
+    }
+
+    /**
+     * Requires a Bukkit permission for this node and all nodes below it.
+     * Senders without it can neither execute nor complete them.
+     * @param permission The permission node
+     * @return This node
+     * @throws NullPointerException If permission is null
+     */
+    public CommandNode setPermission(String permission) {
+        // Check null
+        if (permission == null) {
+            throw new NullPointerException("Permission cannot be null");
+        }
+
+        this.permission = permission;
+        return this;
+    }
+
+    /**
+     * Checks if a sender has the permissions of this node and its parents.
+     * @param sender The command sender
+     * @return true, if the sender may use this node
+     */
+    public boolean isPermitted(CommandSender sender) {
+        for (CommandNode node = this; node != null; node = node.parent) {
+            if (node.permission != null && !sender.hasPermission(node.permission)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Lets the handler run on a worker thread, for commands which read a
+     * lot of data. The handler must send all output with its context and
+     * must not use the Bukkit API. Modifications still have to hold the
+     * data lock.
+     * @return This node
+     */
+    public CommandNode setAsync() {
+        this.async = true;
+        return this;
+    }
+
+    /**
+     * Gets the full command of this node, without slash.
+     * @return The command path
+     */
+    public String getPath() {
+        return this.parent == null ? this.name : this.parent.getPath() + " " + this.name;
+    }
+
+    /**
+     * Executes the command selected by the arguments. Arguments are parsed
+     * by the calling thread.
+     * @param sender The command sender
+     * @param label The label the base command was called with
+     * @param args All arguments of the base command
+     * @param pos Position of the first argument for this node
+     * @param workers Executes async commands, null to execute them
+     * directly
+     */
+    public void dispatch(final CommandSender sender, String label, String[] args, int pos,
+            Executor workers) {
+        // Walk down the tree
+        CommandNode node = this;
+        while (pos < args.length) {
+            CommandNode child = node.children.get(args[pos].toLowerCase(Locale.ENGLISH));
+            if (child == null) {
+                break;
+            }
+
+            node = child;
+            pos++;
+        }
+
+        boolean help = pos < args.length && args[pos].equalsIgnoreCase("help");
+
+        // Groups only show their help
+        if (node.handler == null || help) {
+            if (pos < args.length && !help) {
+                Messages.send(sender, "error", Messages.format("command.unknown"));
+            } else {
+                sender.sendMessage(node.getHelp().clone());
+            }
+            return;
+        }
+
+        if (!node.isPermitted(sender)) {
+            Messages.send(sender, "error", Messages.format("command.denied"));
+            return;
+        }
+
+        // Parse the arguments in place
+        CommandArgument<?>[] arguments = node.arguments;
+        Object[]             values    = new Object[arguments.length];
+        try {
+            for (int i = 0; i < arguments.length; i++) {
+                if (pos + i < args.length) {
+                    values[i] = arguments[i].parse(args[pos + i]);
+                } else if (arguments[i].isOptional()) {
+                    values[i] = arguments[i].getDefault();
+                } else {
+                    throw new CommandException("command.usage", node.getUsage());
+                }
+            }
+        } catch (CommandException ex) {
+            Messages.send(sender, "error", ex.getMessage());
+            return;
+        }
+
+        boolean deferred = node.async && workers != null;
+
+        final CommandNode    command = node;
+        final CommandContext context = new CommandContext(sender, label, values, deferred);
+        if (!deferred) {
+            command.execute(sender, context);
+            return;
+        }
+
+        // The output is delivered by the server thread
+        try {
+            workers.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        command.execute(sender, context);
+                    } catch (RuntimeException ex) {
+                        Ecoinomy.plugin.getLogger().log(Level.SEVERE,
+                                "Could not execute /" + command.getPath(), ex);
+                        context.send("error", context.getCatalog().format("command.failed"));
+                    }
+
+                    context.flush();
+                }
+            });
+        } catch (RejectedExecutionException ex) {
+            Messages.send(sender, "error", Messages.format("command.busy"));
+        }
+    }
+
+    /**
+     * Executes the handler of this node.
+     */
+    private void execute(CommandSender sender, CommandContext context) {
+        long start = System.nanoTime();
+        try {
+            this.handler.execute(sender, context);
+        } catch (CommandException ex) {
+            context.send("error", ex.getMessage());
+        } finally {
+            this.latency.recordSince(start);
+        }
+    }
+
+    /**
+     * Gets the completions of the last argument. Nodes the sender may not
+     * use are not completed.
+     * @param sender The command sender
+     * @param args All arguments of the base command, the last one is
+     * partly typed
+     * @param pos Position of the first argument for this node
+     * @param limit Maximum number of completions
+     * @return The completions, null to complete the names of online players
+     */
+    public List<String> complete(CommandSender sender, String[] args, int pos, int limit) {
+        int last = args.length - 1;
+
+        // Walk down the tree, the typed part never selects a node
+        CommandNode node = this;
+        while (pos < last) {
+            CommandNode child = node.children.get(args[pos].toLowerCase(Locale.ENGLISH));
+            if (child == null) {
+                break;
+            }
+
+            node = child;
+            pos++;
+        }
+
+        String prefix = last >= 0 ? args[last] : "";
+
+        // Complete the names of sub-nodes
+        if (pos == last && !node.children.isEmpty()) {
+            ArrayList<String> result = new ArrayList<>();
+            for (CommandNode child : node.children.values()) {
+                if (result.size() < limit && child.name.regionMatches(true, 0, prefix, 0,
+                        prefix.length()) && child.isPermitted(sender)) {
+                    result.add(child.name);
+                }
+            }
+
+            return result;
+        }
+
+        int index = last - pos;
+        if (node.handler == null || index < 0 || index >= node.arguments.length
+                || !node.isPermitted(sender)) {
+            return Collections.emptyList();
+        }
+
+        // The preceding arguments may decide about the completions
+        Object[] previous = new Object[index];
+        for (int i = 0; i < index; i++) {
+            try {
+                previous[i] = node.arguments[i].parse(args[pos + i]);
+            } catch (CommandException ex) {
+                previous[i] = null;
+            }
+        }
+
+        return node.arguments[index].complete(previous, prefix, limit);
+    }
+
+    /**
+     * Gets the usage of this command, without colors.
+     * @return The usage
+     */
+    public String getUsage() {
+        StringBuilder usage = new StringBuilder("/").append(this.getPath());
+        for (CommandArgument<?> argument : this.arguments) {
+            usage.append(argument.isOptional() ? " [" : " <")
+                    .append(argument.getName())
+                    .append(argument.isOptional() ? "]" : ">");
+        }
+
+        return usage.toString();
+    }
+
+    /**
+     * Gets the colored help of this node. The root lists its sub-nodes,
+     * every other group lists all commands below it. The help is rendered
+     * again after the catalog was replaced.
+     * @return The help lines, do not modify
+     */
+    public String[] getHelp() {
+        MessageCatalog catalog = Messages.getCatalog();
+        Help           help    = this.help;
+        if (help != null && help.catalog == catalog) {
+            return help.lines;
+        }
+
+        ArrayList<String> lines = new ArrayList<>();
+        if (this.parent == null) {
+            lines.add(catalog.format("help.title"));
+            lines.add(this.getHelpLine(catalog));
+            for (CommandNode child : this.children.values()) {
+                lines.add(child.getHelpLine(catalog));
+            }
+        } else {
+            lines.add(catalog.format("help.group", catalog.format(this.descriptionKey)));
+
+            ArrayList<CommandNode> commands = new ArrayList<>();
+            this.collectCommands(commands);
+            for (CommandNode command : commands) {
+                lines.add(command.getHelpLine(catalog));
+            }
+        }
+
+        help      = new Help(catalog, lines.toArray(new String[lines.size()]));
+        this.help = help;
+        return help.lines;
+    }
+
+    /**
+     * Gets the help line of this node.
+     */
+    private String getHelpLine(MessageCatalog catalog) {
+        StringBuilder arguments = new StringBuilder();
+        for (CommandArgument<?> argument : this.arguments) {
+            catalog.get(argument.isOptional() ? "help.optional" : "help.required")
+                    .appendTo(arguments, argument.getName());
+        }
+
+        return catalog.format("help.line", this.getPath(), arguments,
+                catalog.format(this.descriptionKey));
+    }
+
+    /**
+     * Adds all commands below this node.
+     */
+    private void collectCommands(List<CommandNode> commands) {
+        for (CommandNode child : this.children.values()) {
+            if (child.handler != null) {
+                commands.add(child);
+            }
+
+            child.collectCommands(commands);
+        }
+    }
+
+    /**
+     * Drops the cached help of this node and its parents.
+     */
+    private void invalidateHelp() {
+        for (CommandNode node = this; node != null; node = node.parent) {
+            node.help = null;
+        }
+    }
+}
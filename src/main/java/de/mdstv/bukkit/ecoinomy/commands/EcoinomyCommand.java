@@ -1,104 +1,115 @@
 package de.mdstv.bukkit.ecoinomy.commands;
 
-import java.util.ArrayList;
-import java.util.Arrays;
-import org.bukkit.ChatColor;
+import de.mdstv.bukkit.ecoinomy.stats.Metrics;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.bukkit.command.Command;
 import org.bukkit.command.CommandExecutor;
 import org.bukkit.command.CommandSender;
+import org.bukkit.command.TabCompleter;
 
 /**
  * eCoinomy base command
  * @author Morph <admin@mds-tv.de>
  * @since 1.0.0
  */
-public class EcoinomyCommand implements CommandExecutor {
-    private ArrayList<EcoinomyCommandBase> subCommands = new ArrayList<>();
+public class EcoinomyCommand implements CommandExecutor, TabCompleter {
+    /**
+     * Maximum number of tab completions.
+     */
+    private static final int COMPLETION_LIMIT = 50;
+
+    /**
+     * Root of the command tree.
+     */
+    private final CommandNode root = new CommandNode("ec");
+
+    /**
+     * Executes async commands, null if they run on the server thread.
+     */
+    private volatile ThreadPoolExecutor workers;
 
     @Override
     public boolean onCommand(CommandSender sender, Command cmd, String label, String[] args) {
-        // If there are no args, or first argument is 'help', print help message
-        if (args.length == 0 || args[0].equalsIgnoreCase("help")) {
-            ArrayList<String> helpMessage = new ArrayList<>();
-            
-            // Build message
-            // TODO Outsource help messages
-            helpMessage.add("== eCoinomy Help ==");
-            helpMessage.add("&9/ec&7 - shows this help screen");
-            helpMessage.add("&9/ec account&7 - Account management");
-            
-            // Replace color codes
-            for (int i = 0; i < helpMessage.size(); i++) {
-                String raw        = helpMessage.get(i);
-                String translated = ChatColor.translateAlternateColorCodes('&', raw);
-                helpMessage.set(i, translated);
-            }
-            
-            // Convert to simple array
-            String[] msgArray = new String[helpMessage.size()];
-            helpMessage.toArray(msgArray);
-            
-            // Send to CommandSender
-            sender.sendMessage(msgArray);
-            
-            // Command was successfull
-            return true;
-        }
-        
-        // There are one or more arguments and the first argument was not 'help'
-        // Store the first sub-command
-        String subCommandName = args[0];
-        
-        // Check if subCommand is registered
-        EcoinomyCommandBase subCommand = this.getSubcommandByName(subCommandName);
-        if (subCommand != null) {
-            // Execute the subcommand
-            // First command argument is removed because due to is the name of
-            // the subCommand.
-            String[] subArgs = Arrays.copyOfRange(args, 1, args.length);
-            return subCommand.onCommand(sender, cmd, label, subArgs);
+        long start = System.nanoTime();
+        try {
+            this.root.dispatch(sender, label, args, 0, this.workers);
+        } finally {
+            Metrics.addMainThreadTime(start);
         }
         
-        // Unknown sub-command
-        else {
-            sender.sendMessage(ChatColor.RED + "[eCoinomy] Unknown subcommand");
-            return true;
+        // Errors are reported by the tree
+        return true;
+    }
+
+    @Override
+    public List<String> onTabComplete(CommandSender sender, Command cmd, String alias,
+            String[] args) {
+        long start = System.nanoTime();
+        try {
+            return this.root.complete(sender, args, 0, COMPLETION_LIMIT);
+        } finally {
+            Metrics.addMainThreadTime(start);
         }
     }
     
     /**
-     * Registers a subcommand to the eCoinomy base command
-     * @param cmd Command to register
+     * Gets the root of the command tree, subcommands are registered below
+     * it.
+     * @return The root node
      */
-    public void registerCommand(EcoinomyCommandBase cmd) {
-        // Check null
-        if (cmd == null) {
-            throw new NullPointerException("Command could not be null");
-        }
-        
-        // Register command
-        this.subCommands.add(cmd);
+    public CommandNode getRoot() {
+        return this.root;
     }
-    
+
     /**
-     * Gets an eCoinomy subcommand by its name or null, if the
-     * subcommand is not existing
-     * @param cmdName Name of the subcommand
-     * @return The subcommand
+     * Starts the worker threads of async commands. Commands submitted while
+     * the queue is full are rejected.
+     * @param threads Number of worker threads, 0 to run async commands on
+     * the server thread
+     * @param queueSize Maximum number of waiting commands
      */
-    public EcoinomyCommandBase getSubcommandByName(String cmdName) {
-        // Check null
-        if (cmdName == null) {
-            throw new NullPointerException("Command Name could not be null");
+    public synchronized void startWorkers(int threads, int queueSize) {
+        this.stopWorkers();
+        if (threads <= 0) {
+            return;
         }
-        
-        // Iterate subcommands array to search for given command name
-        for (EcoinomyCommandBase cmd : this.subCommands) {
-            if (cmd.getName().equalsIgnoreCase(cmdName)) {
-                return cmd;
+
+        final AtomicInteger count = new AtomicInteger();
+        ThreadFactory factory = new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable task) {
+                Thread thread = new Thread(task, "eCoinomy-Command-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
             }
+        };
+
+        this.workers = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<Runnable>(Math.max(1, queueSize)), factory);
+    }
+
+    /**
+     * Stops the worker threads. Running commands are finished, waiting
+     * ones are dropped.
+     */
+    public synchronized void stopWorkers() {
+        ThreadPoolExecutor current = this.workers;
+        if (current == null) {
+            return;
+        }
+
+        this.workers = null;
+        current.shutdown();
+        current.getQueue().clear();
+        try {
+            current.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
         }
-        
-        return null;
     }
 }
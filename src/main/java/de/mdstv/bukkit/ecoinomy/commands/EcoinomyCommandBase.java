@@ -1,15 +0,0 @@
-package de.mdstv.bukkit.ecoinomy.commands;
-
-import org.bukkit.command.CommandExecutor;
-
-/**
- * Extended CommandExecutor for eCoinomy subcommands
- * @author Morph <admin@mds-tv.de>
- */
-public interface EcoinomyCommandBase extends CommandExecutor {
-    /**
-     * Gets the name of the subcommand
-     * @return Subcommand name
-     */
-    public String getName();
-}
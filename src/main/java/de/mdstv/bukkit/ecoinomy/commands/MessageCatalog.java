@@ -0,0 +1,113 @@
+package de.mdstv.bukkit.ecoinomy.commands;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import org.bukkit.configuration.ConfigurationSection;
+
+/**
+ * All messages of one locale, compiled. A catalog never changes, reloading
+ * creates a new one.
+ * @author Morph <admin@mds-tv.de>
+ */
+public final class MessageCatalog {
+    /**
+     * Locale every other locale falls back to.
+     */
+    public static final String DEFAULT_LOCALE = "en";
+
+    /**
+     * Catalog without any message, messages are shown by their key.
+     */
+    public static final MessageCatalog EMPTY =
+            new MessageCatalog(DEFAULT_LOCALE, Collections.<String, MessageTemplate>emptyMap());
+
+    /**
+     * The selected locale.
+     */
+    private final String locale;
+
+    /**
+     * Messages by key.
+     */
+    private final Map<String, MessageTemplate> templates;
+
+    private MessageCatalog(String locale, Map<String, MessageTemplate> templates) {
+        this.locale    = locale;
+        this.templates = templates;
+    }
+
+    /**
+     * Compiles the messages of a locale.
+     *
+     * Every source is the content of a messages.yml with a section per
+     * locale. The default locale of all sources is read first, then the
+     * selected one. Later messages override earlier ones.
+     * @param locale The selected locale
+     * @param sources The messages, null entries are skipped
+     * @return The catalog
+     * @throws NullPointerException If locale is null
+     */
+    public static MessageCatalog load(String locale, ConfigurationSection... sources) {
+        // Check null
+        if (locale == null) {
+            throw new NullPointerException("Locale cannot be null");
+        }
+
+        HashMap<String, MessageTemplate> templates = new HashMap<>();
+        compile(DEFAULT_LOCALE, sources, templates);
+        if (!locale.equals(DEFAULT_LOCALE)) {
+            compile(locale, sources, templates);
+        }
+
+        return new MessageCatalog(locale, templates);
+    }
+
+    /**
+     * Compiles all messages of a locale.
+     */
+    private static void compile(String locale, ConfigurationSection[] sources,
+            Map<String, MessageTemplate> templates) {
+        for (ConfigurationSection source : sources) {
+            ConfigurationSection section = source != null
+                    ? source.getConfigurationSection(locale) : null;
+            if (section == null) {
+                continue;
+            }
+
+            for (String key : section.getKeys(true)) {
+                if (section.isString(key)) {
+                    templates.put(key, MessageTemplate.compile(section.getString(key)));
+                }
+            }
+        }
+    }
+
+    /**
+     * Gets the selected locale.
+     * @return The locale
+     */
+    public String getLocale() {
+        return this.locale;
+    }
+
+    /**
+     * Gets a message.
+     * @param key The key of the message
+     * @return The message, the key itself if it is unknown
+     */
+    public MessageTemplate get(String key) {
+        MessageTemplate template = this.templates.get(key);
+        return template != null ? template : MessageTemplate.compile(key);
+    }
+
+    /**
+     * Renders a message.
+     * @param key The key of the message
+     * @param values The values of the placeholders
+     * @return The rendered message
+     */
+    public String format(String key, Object... values) {
+        return this.get(key).render(values);
+    }
+}
@@ -0,0 +1,161 @@
+package de.mdstv.bukkit.ecoinomy.commands;
+
+import java.util.ArrayList;
+
+/**
+ * A compiled message.
+ *
+ * The color codes of the message are translated once, then the message is
+ * split into literal segments and placeholders {0}, {1}, ... Rendering
+ * appends the segments and the values in a single pass into a builder
+ * which is reused by the thread.
+ * @author Morph <admin@mds-tv.de>
+ */
+public final class MessageTemplate {
+    /**
+     * Builder reused by every rendering of the thread.
+     */
+    private static final ThreadLocal<Buffer> buffer = new ThreadLocal<Buffer>() {
+        @Override
+        protected Buffer initialValue() {
+            return new Buffer();
+        }
+    };
+
+    /**
+     * A reused builder. Busy while a message is rendered into it, a value
+     * rendering another message then gets its own builder.
+     */
+    private static final class Buffer {
+        final StringBuilder text = new StringBuilder(128);
+        boolean             busy;
+    }
+
+    /**
+     * The literal segments, one more than there are placeholders.
+     */
+    private final String[] literals;
+
+    /**
+     * Index of the value of every placeholder.
+     */
+    private final int[] slots;
+
+    private MessageTemplate(String[] literals, int[] slots) {
+        this.literals = literals;
+        this.slots    = slots;
+    }
+
+    /**
+     * Compiles a message.
+     * @param message The message with '&' color codes and placeholders
+     * @return The compiled message
+     * @throws NullPointerException If message is null
+     */
+    public static MessageTemplate compile(String message) {
+        // Check null
+        if (message == null) {
+            throw new NullPointerException("Message cannot be null");
+        }
+
+        String             colored  = Messages.colorize(message);
+        ArrayList<String>  literals = new ArrayList<>();
+        ArrayList<Integer> slots    = new ArrayList<>();
+
+        int start = 0;
+        int open  = colored.indexOf('{');
+        while (open >= 0) {
+            int close = colored.indexOf('}', open);
+            if (close < 0) {
+                break;
+            }
+
+            // Anything but a number stays part of the literal
+            int index = parseIndex(colored, open + 1, close);
+            if (index >= 0) {
+                literals.add(colored.substring(start, open));
+                slots.add(index);
+                start = close + 1;
+            }
+
+            open = colored.indexOf('{', open + 1);
+        }
+        literals.add(colored.substring(start));
+
+        int[] compiled = new int[slots.size()];
+        for (int i = 0; i < compiled.length; i++) {
+            compiled[i] = slots.get(i);
+        }
+
+        return new MessageTemplate(literals.toArray(new String[literals.size()]), compiled);
+    }
+
+    /**
+     * Parses the index of a placeholder.
+     * @return The index, -1 if it is no number
+     */
+    private static int parseIndex(String message, int from, int to) {
+        if (from == to || to - from > 3) {
+            return -1;
+        }
+
+        int index = 0;
+        for (int i = from; i < to; i++) {
+            char c = message.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+
+            index = index * 10 + (c - '0');
+        }
+
+        return index;
+    }
+
+    /**
+     * Renders the message.
+     * @param values The values of the placeholders. Missing values leave
+     * their placeholder visible.
+     * @return The rendered message
+     */
+    public String render(Object... values) {
+        if (this.slots.length == 0) {
+            return this.literals[0];
+        }
+
+        Buffer reused = buffer.get();
+        if (reused.busy) {
+            return this.appendTo(new StringBuilder(), values).toString();
+        }
+
+        reused.busy = true;
+        try {
+            reused.text.setLength(0);
+            return this.appendTo(reused.text, values).toString();
+        } finally {
+            reused.busy = false;
+        }
+    }
+
+    /**
+     * Appends the rendered message to a builder.
+     * @param text The builder
+     * @param values The values of the placeholders
+     * @return The builder
+     */
+    public StringBuilder appendTo(StringBuilder text, Object... values) {
+        text.append(this.literals[0]);
+        for (int i = 0; i < this.slots.length; i++) {
+            int slot = this.slots[i];
+            if (slot < values.length) {
+                text.append(values[slot]);
+            } else {
+                text.append('{').append(slot).append('}');
+            }
+
+            text.append(this.literals[i + 1]);
+        }
+
+        return text;
+    }
+}
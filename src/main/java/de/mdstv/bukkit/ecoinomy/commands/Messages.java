@@ -0,0 +1,84 @@
+package de.mdstv.bukkit.ecoinomy.commands;
+
+import org.bukkit.ChatColor;
+import org.bukkit.command.CommandSender;
+
+/**
+ * Helpers for chat messages. Holds the current MessageCatalog, which is
+ * replaced as a whole on reload.
+ * @author Morph <admin@mds-tv.de>
+ */
+public final class Messages {
+    /**
+     * The current catalog.
+     */
+    private static volatile MessageCatalog catalog = MessageCatalog.EMPTY;
+
+    private Messages() {
+    }
+
+    /**
+     * Gets the current catalog. Keep it for all messages of one command,
+     * so they are taken from the same catalog.
+     * @return The catalog
+     */
+    public static MessageCatalog getCatalog() {
+        return catalog;
+    }
+
+    /**
+     * Replaces the current catalog.
+     * @param newCatalog The new catalog
+     * @throws NullPointerException If newCatalog is null
+     */
+    public static void setCatalog(MessageCatalog newCatalog) {
+        // Check null
+        if (newCatalog == null) {
+            throw new NullPointerException("Catalog cannot be null");
+        }
+
+        catalog = newCatalog;
+    }
+
+    /**
+     * Renders a message of the current catalog.
+     * @param key The key of the message
+     * @param values The values of the placeholders
+     * @return The rendered message
+     */
+    public static String format(String key, Object... values) {
+        return catalog.format(key, values);
+    }
+
+    /**
+     * Sends a message of the current catalog.
+     * @param sender The receiver
+     * @param key The key of the message
+     * @param values The values of the placeholders
+     */
+    public static void send(CommandSender sender, String key, Object... values) {
+        sender.sendMessage(catalog.format(key, values));
+    }
+
+    /**
+     * Replaces the '&' color codes of a message.
+     * @param msg The message
+     * @return The colored message
+     */
+    public static String colorize(String msg) {
+        return ChatColor.translateAlternateColorCodes('&', msg);
+    }
+
+    /**
+     * Replaces the '&' color codes of all lines of a message.
+     * @param lines The lines of the message, replaced in place
+     * @return The colored lines
+     */
+    public static String[] colorize(String... lines) {
+        for (int i = 0; i < lines.length; i++) {
+            lines[i] = colorize(lines[i]);
+        }
+
+        return lines;
+    }
+}
@@ -0,0 +1,16 @@
+package de.mdstv.bukkit.ecoinomy.commands;
+
+import de.mdstv.bukkit.ecoinomy.Ecoinomy;
+import org.bukkit.command.CommandSender;
+
+/**
+ * Reloads the messages: /ec reload
+ * @author Morph <admin@mds-tv.de>
+ */
+public class ReloadHandler implements CommandHandler {
+    @Override
+    public void execute(CommandSender sender, CommandContext context) throws CommandException {
+        Ecoinomy.plugin.reloadMessages();
+        Messages.send(sender, "reload.done", Messages.getCatalog().getLocale());
+    }
+}
@@ -0,0 +1,54 @@
+package de.mdstv.bukkit.ecoinomy.commands;
+
+import de.mdstv.bukkit.ecoinomy.stats.EcoinomyStats;
+import de.mdstv.bukkit.ecoinomy.stats.Histogram;
+import de.mdstv.bukkit.ecoinomy.stats.Metrics;
+import de.mdstv.bukkit.ecoinomy.stats.TickSampler;
+import java.util.Locale;
+import java.util.Map;
+import org.bukkit.command.CommandSender;
+
+/**
+ * Shows the runtime statistics: /ec stats
+ * @author Morph <admin@mds-tv.de>
+ */
+public class StatsHandler implements CommandHandler {
+    /**
+     * Source of the plugin statistics.
+     */
+    private final EcoinomyStats stats = new EcoinomyStats();
+
+    @Override
+    public void execute(CommandSender sender, CommandContext context) throws CommandException {
+        context.send("stats.title");
+        context.send("stats.accounts", this.stats.getAccountCount(),
+                this.stats.getLoadedAccountCount(), this.stats.getMemberCount());
+        context.send("stats.cache", this.stats.getCacheHits(), this.stats.getCacheMisses(),
+                String.format(Locale.ENGLISH, "%.1f%%", this.stats.getCacheHitRate() * 100));
+        context.send("stats.store", this.stats.getFlushCount(),
+                Histogram.format(this.stats.getBytesWritten(), Histogram.BYTES),
+                Histogram.format(Math.round(this.stats.getLastFlushMillis() * 1000000),
+                        Histogram.NANOS));
+
+        Histogram.Snapshot tick = TickSampler.MAIN_THREAD.snapshot();
+        context.send("stats.tick", Histogram.format(Math.round(tick.getMean()), Histogram.NANOS),
+                Histogram.format(tick.getPercentile(99), Histogram.NANOS),
+                Histogram.format(tick.getMax(), Histogram.NANOS));
+
+        // Only histograms with values
+        for (Map.Entry<String, Histogram> entry : Metrics.getHistograms().entrySet()) {
+            Histogram.Snapshot snapshot = entry.getValue().snapshot();
+            if (snapshot.getCount() == 0 || entry.getValue() == TickSampler.MAIN_THREAD) {
+                continue;
+            }
+
+            String unit = entry.getValue().getUnit();
+            context.send("stats.entry", entry.getKey(), snapshot.getCount(),
+                    Histogram.format(Math.round(snapshot.getMean()), unit),
+                    Histogram.format(snapshot.getPercentile(50), unit),
+                    Histogram.format(snapshot.getPercentile(95), unit),
+                    Histogram.format(snapshot.getPercentile(99), unit),
+                    Histogram.format(snapshot.getMax(), unit));
+        }
+    }
+}
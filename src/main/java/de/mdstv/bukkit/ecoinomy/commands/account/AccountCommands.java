@@ -0,0 +1,51 @@
+package de.mdstv.bukkit.ecoinomy.commands.account;
+
+import de.mdstv.bukkit.ecoinomy.commands.Arguments;
+import de.mdstv.bukkit.ecoinomy.commands.CommandNode;
+import de.mdstv.bukkit.ecoinomy.storage.AccountRegistry;
+
+/**
+ * Registers the accounting subcommands.
+ * @author Morph <admin@mds-tv.de>
+ */
+public final class AccountCommands {
+    private AccountCommands() {
+    }
+
+    /**
+     * Registers all accounting subcommands below the base command.
+     * @param root The base command
+     */
+    public static void register(CommandNode root) {
+        CommandNode account = root.child("account");
+
+        account.child("create").setHandler(new CreateAccountHandler(),
+                Arguments.word("new_name"), Arguments.player("new_owner"));
+        account.child("remove").setHandler(new RemoveAccountHandler(),
+                Arguments.account("account"));
+        account.child("list").setAsync().setHandler(new ListAccountsHandler(),
+                Arguments.optional(Arguments.integer("page"), 1),
+                Arguments.optional(Arguments.choice("name|balance", AccountRegistry.Order.class),
+                        AccountRegistry.Order.NAME));
+        account.child("mine").setAsync().setHandler(new MyAccountsHandler());
+        account.child("rename").setHandler(new RenameAccountHandler(),
+                Arguments.account("account"), Arguments.word("new_name"));
+
+        CommandNode member = account.child("member");
+        member.child("add").setHandler(new MemberAddHandler(),
+                Arguments.account("account"), Arguments.player("player"));
+        member.child("del").setHandler(new MemberRemoveHandler(),
+                Arguments.account("account"), Arguments.member("player", 0));
+        member.child("list").setAsync().setHandler(new MemberListHandler(),
+                Arguments.account("account"));
+
+        CommandNode perm = account.child("perm");
+        perm.child("set").setHandler(new PermissionSetHandler(),
+                Arguments.account("account"), Arguments.member("member", 0),
+                Arguments.permission("node"),
+                Arguments.optional(Arguments.value("value"), (Object) Boolean.TRUE));
+        perm.child("del").setHandler(new PermissionRemoveHandler(),
+                Arguments.account("account"), Arguments.member("member", 0),
+                Arguments.permission("node"));
+    }
+}
@@ -0,0 +1,49 @@
+package de.mdstv.bukkit.ecoinomy.commands.account;
+
+import de.mdstv.bukkit.ecoinomy.Ecoinomy;
+import de.mdstv.bukkit.ecoinomy.account.Account;
+import de.mdstv.bukkit.ecoinomy.account.AccountMember;
+import de.mdstv.bukkit.ecoinomy.commands.CommandContext;
+import de.mdstv.bukkit.ecoinomy.commands.CommandException;
+import de.mdstv.bukkit.ecoinomy.commands.CommandHandler;
+import de.mdstv.bukkit.ecoinomy.commands.Messages;
+import org.bukkit.command.CommandSender;
+import org.bukkit.entity.Player;
+
+/**
+ * Creates a new eCoinomy account with owner:
+ * /ec account create &lt;new_name&gt; &lt;new_owner&gt;
+ * @author Morph <admin@mds-tv.de>
+ */
+public class CreateAccountHandler implements CommandHandler {
+    @Override
+    public void execute(CommandSender sender, CommandContext context) throws CommandException {
+        String accountName = context.get(0);
+        String owner       = context.get(1);
+
+        // Create owner member and account
+        final AccountMember ownerMember = new AccountMember(owner);
+        final Account       account     = new Account(accountName, ownerMember);
+
+        // Store account, fails if the account is already existing
+        if (!Ecoinomy.plugin.registerAccount(account)) {
+            throw new CommandException("account.exists");
+        }
+
+        // Send success message to sender
+        context.send("account.created");
+
+        // If the creator is not the owner, send info message to new owner
+        if (!sender.getName().equalsIgnoreCase(owner)) {
+            // Get the Player object for owner and send message
+            Player newOwner = sender.getServer().getPlayer(owner);
+            if (newOwner != null) {
+                Messages.send(newOwner, "account.owner", accountName);
+            }
+            // Player not found, send warning to creator
+            else {
+                context.send("account.unknownOwner", owner);
+            }
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package de.mdstv.bukkit.ecoinomy.commands.account;
+
+import de.mdstv.bukkit.ecoinomy.Ecoinomy;
+import de.mdstv.bukkit.ecoinomy.account.Account;
+import de.mdstv.bukkit.ecoinomy.commands.CommandContext;
+import de.mdstv.bukkit.ecoinomy.commands.CommandHandler;
+import de.mdstv.bukkit.ecoinomy.commands.MessageCatalog;
+import de.mdstv.bukkit.ecoinomy.commands.MessageTemplate;
+import de.mdstv.bukkit.ecoinomy.storage.AccountRegistry;
+import java.util.ArrayList;
+import java.util.List;
+import org.bukkit.command.CommandSender;
+
+/**
+ * Sends a page of the accounts list:
+ * /ec account list [page] [name|balance]
+ *
+ * Runs on a worker thread. The sorted index is built or refreshed first,
+ * then the page is read while holding the data lock, so it shows the
+ * accounts of a single point in time.
+ * @author Morph <admin@mds-tv.de>
+ */
+public class ListAccountsHandler implements CommandHandler {
+    /**
+     * Number of accounts on a page of the accounts list.
+     */
+    private static final int PAGE_SIZE = 10;
+
+    @Override
+    public void execute(CommandSender sender, CommandContext context) {
+        int                   page     = context.<Integer>get(0);
+        AccountRegistry.Order order    = context.get(1);
+        AccountRegistry       accounts = Ecoinomy.plugin.getAccounts();
+        MessageCatalog        catalog  = context.getCatalog();
+
+        if (accounts.isEmpty()) {
+            context.sendLines(new String[] {
+                catalog.format("account.list.title"),
+                catalog.format("account.list.empty")
+            });
+            return;
+        }
+
+        // Building the index decodes every account, keep it out of the
+        // data lock
+        accounts.refreshIndex(order);
+
+        ArrayList<String> lines = new ArrayList<>(PAGE_SIZE + 1);
+        MessageTemplate   entry = catalog.get("account.list.entry");
+
+        // Only the accounts of this page are read, the balance strings are
+        // cached
+        synchronized (Ecoinomy.plugin.getDataLock()) {
+            int pages = Math.max(1, (accounts.size() + PAGE_SIZE - 1) / PAGE_SIZE);
+            page = Math.max(1, Math.min(page, pages));
+
+            int          from  = (page - 1) * PAGE_SIZE;
+            List<String> names = accounts.getNames(order, from, PAGE_SIZE);
+
+            lines.add(catalog.format("account.list.page", page, pages));
+            for (String accName : names) {
+                Account acc = accounts.get(accName);
+                lines.add(entry.render(++from, acc.getName(),
+                        acc.getBalance().getBalanceString(), acc.getOwners()));
+            }
+        }
+
+        // Send all lines at once
+        context.sendLines(lines.toArray(new String[lines.size()]));
+    }
+}
@@ -0,0 +1,33 @@
+package de.mdstv.bukkit.ecoinomy.commands.account;
+
+import de.mdstv.bukkit.ecoinomy.Ecoinomy;
+import de.mdstv.bukkit.ecoinomy.account.Account;
+import de.mdstv.bukkit.ecoinomy.account.AccountMember;
+import de.mdstv.bukkit.ecoinomy.commands.CommandContext;
+import de.mdstv.bukkit.ecoinomy.commands.CommandException;
+import de.mdstv.bukkit.ecoinomy.commands.CommandHandler;
+import org.bukkit.command.CommandSender;
+
+/**
+ * Adds a player as new member to an account:
+ * /ec account member add &lt;account&gt; &lt;player&gt;
+ * @author Morph <admin@mds-tv.de>
+ */
+public class MemberAddHandler implements CommandHandler {
+    @Override
+    public void execute(CommandSender sender, CommandContext context) throws CommandException {
+        Account account    = context.get(0);
+        String  playerName = context.get(1);
+
+        // Add the new member, the change is saved by the journal
+        synchronized (Ecoinomy.plugin.getDataLock()) {
+            if (account.getMemberByName(playerName) != null) {
+                throw new CommandException("member.exists", playerName, account.getName());
+            }
+
+            account.addMember(new AccountMember(playerName));
+        }
+
+        context.send("member.added");
+    }
+}
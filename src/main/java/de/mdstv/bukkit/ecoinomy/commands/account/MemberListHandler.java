@@ -0,0 +1,34 @@
+package de.mdstv.bukkit.ecoinomy.commands.account;
+
+import de.mdstv.bukkit.ecoinomy.Ecoinomy;
+import de.mdstv.bukkit.ecoinomy.account.Account;
+import de.mdstv.bukkit.ecoinomy.commands.CommandContext;
+import de.mdstv.bukkit.ecoinomy.commands.CommandHandler;
+import de.mdstv.bukkit.ecoinomy.commands.MessageCatalog;
+import org.bukkit.command.CommandSender;
+
+/**
+ * Shows the owners and members of an account:
+ * /ec account member list &lt;account&gt;
+ * @author Morph <admin@mds-tv.de>
+ */
+public class MemberListHandler implements CommandHandler {
+    @Override
+    public void execute(CommandSender sender, CommandContext context) {
+        Account account = context.get(0);
+
+        String owners;
+        String members;
+        synchronized (Ecoinomy.plugin.getDataLock()) {
+            owners  = account.getOwners().toString();
+            members = account.getMembers().toString();
+        }
+
+        MessageCatalog catalog = context.getCatalog();
+        context.sendLines(new String[] {
+            catalog.format("member.title", account.getName()),
+            catalog.format("member.owners", owners),
+            catalog.format("member.members", members)
+        });
+    }
+}
@@ -0,0 +1,32 @@
+package de.mdstv.bukkit.ecoinomy.commands.account;
+
+import de.mdstv.bukkit.ecoinomy.Ecoinomy;
+import de.mdstv.bukkit.ecoinomy.account.Account;
+import de.mdstv.bukkit.ecoinomy.commands.CommandContext;
+import de.mdstv.bukkit.ecoinomy.commands.CommandException;
+import de.mdstv.bukkit.ecoinomy.commands.CommandHandler;
+import org.bukkit.command.CommandSender;
+
+/**
+ * Removes a member from an account:
+ * /ec account member del &lt;account&gt; &lt;player&gt;
+ * @author Morph <admin@mds-tv.de>
+ */
+public class MemberRemoveHandler implements CommandHandler {
+    @Override
+    public void execute(CommandSender sender, CommandContext context) throws CommandException {
+        Account account    = context.get(0);
+        String  playerName = context.get(1);
+
+        // The change is saved by the journal
+        synchronized (Ecoinomy.plugin.getDataLock()) {
+            if (account.getMemberByName(playerName) == null) {
+                throw new CommandException("member.unknown", playerName, account.getName());
+            }
+
+            account.removeMember(playerName);
+        }
+
+        context.send("member.removed");
+    }
+}
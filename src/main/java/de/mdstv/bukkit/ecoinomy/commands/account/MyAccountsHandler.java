@@ -0,0 +1,46 @@
+package de.mdstv.bukkit.ecoinomy.commands.account;
+
+import de.mdstv.bukkit.ecoinomy.Ecoinomy;
+import de.mdstv.bukkit.ecoinomy.account.Account;
+import de.mdstv.bukkit.ecoinomy.commands.CommandContext;
+import de.mdstv.bukkit.ecoinomy.commands.CommandHandler;
+import de.mdstv.bukkit.ecoinomy.commands.MessageCatalog;
+import de.mdstv.bukkit.ecoinomy.commands.MessageTemplate;
+import java.util.ArrayList;
+import java.util.Set;
+import org.bukkit.command.CommandSender;
+
+/**
+ * Sends the accounts the sender is member of: /ec account mine
+ *
+ * Runs on a worker thread.
+ * @author Morph <admin@mds-tv.de>
+ */
+public class MyAccountsHandler implements CommandHandler {
+    @Override
+    public void execute(CommandSender sender, CommandContext context) {
+        MessageCatalog catalog      = context.getCatalog();
+        Set<String>    accountNames = Ecoinomy.plugin.getAccounts().getAccountsOf(sender.getName());
+
+        ArrayList<String> lines = new ArrayList<>(accountNames.size() + 1);
+        MessageTemplate   entry = catalog.get("account.mine.entry");
+
+        lines.add(catalog.format("account.mine.title"));
+        for (String accName : accountNames) {
+            Account acc = Ecoinomy.plugin.getAccounts().get(accName);
+
+            // Removed in the meantime
+            if (acc == null) {
+                continue;
+            }
+
+            lines.add(entry.render(acc.getName(), acc.getBalance().getBalanceString()));
+        }
+
+        if (lines.size() == 1) {
+            lines.add(catalog.format("account.mine.empty"));
+        }
+
+        context.sendLines(lines.toArray(new String[lines.size()]));
+    }
+}
@@ -0,0 +1,35 @@
+package de.mdstv.bukkit.ecoinomy.commands.account;
+
+import de.mdstv.bukkit.ecoinomy.Ecoinomy;
+import de.mdstv.bukkit.ecoinomy.account.Account;
+import de.mdstv.bukkit.ecoinomy.account.AccountPermissionSet;
+import de.mdstv.bukkit.ecoinomy.commands.CommandContext;
+import de.mdstv.bukkit.ecoinomy.commands.CommandException;
+import de.mdstv.bukkit.ecoinomy.commands.CommandHandler;
+import org.bukkit.command.CommandSender;
+
+/**
+ * Removes a permission of an account member:
+ * /ec account perm del &lt;account&gt; &lt;member&gt; &lt;node&gt;
+ * @author Morph <admin@mds-tv.de>
+ */
+public class PermissionRemoveHandler implements CommandHandler {
+    @Override
+    public void execute(CommandSender sender, CommandContext context) throws CommandException {
+        Account account = context.get(0);
+        String  member  = context.get(1);
+        String  node    = context.get(2);
+
+        // The change is saved by the journal
+        synchronized (Ecoinomy.plugin.getDataLock()) {
+            AccountPermissionSet perms = account.getMemberPerms(member);
+            if (perms == null || perms.getPermission(node) == null) {
+                throw new CommandException("permission.unknown", member, node);
+            }
+
+            perms.removePermission(node);
+        }
+
+        context.send("permission.removed");
+    }
+}
@@ -0,0 +1,34 @@
+package de.mdstv.bukkit.ecoinomy.commands.account;
+
+import de.mdstv.bukkit.ecoinomy.Ecoinomy;
+import de.mdstv.bukkit.ecoinomy.account.Account;
+import de.mdstv.bukkit.ecoinomy.commands.CommandContext;
+import de.mdstv.bukkit.ecoinomy.commands.CommandException;
+import de.mdstv.bukkit.ecoinomy.commands.CommandHandler;
+import org.bukkit.command.CommandSender;
+
+/**
+ * Sets a permission of an account member:
+ * /ec account perm set &lt;account&gt; &lt;member&gt; &lt;node&gt; [value]
+ * @author Morph <admin@mds-tv.de>
+ */
+public class PermissionSetHandler implements CommandHandler {
+    @Override
+    public void execute(CommandSender sender, CommandContext context) throws CommandException {
+        Account account = context.get(0);
+        String  member  = context.get(1);
+        String  node    = context.get(2);
+        Object  value   = context.get(3);
+
+        // The change is saved by the journal
+        synchronized (Ecoinomy.plugin.getDataLock()) {
+            if (account.getMemberByName(member) == null) {
+                throw new CommandException("member.unknown", member, account.getName());
+            }
+
+            account.getOrCreateMemberPerms(member).setPermission(node, value);
+        }
+
+        context.send("permission.set");
+    }
+}
@@ -0,0 +1,25 @@
+package de.mdstv.bukkit.ecoinomy.commands.account;
+
+import de.mdstv.bukkit.ecoinomy.Ecoinomy;
+import de.mdstv.bukkit.ecoinomy.account.Account;
+import de.mdstv.bukkit.ecoinomy.commands.CommandContext;
+import de.mdstv.bukkit.ecoinomy.commands.CommandHandler;
+import org.bukkit.command.CommandSender;
+
+/**
+ * Removes an account: /ec account remove &lt;account&gt;
+ * @author Morph <admin@mds-tv.de>
+ */
+public class RemoveAccountHandler implements CommandHandler {
+    @Override
+    public void execute(CommandSender sender, CommandContext context) {
+        Account account = context.get(0);
+
+        // If the result is null, the account was removed in the meantime
+        if (Ecoinomy.plugin.removeAccount(account.getName()) == null) {
+            context.send("account.unknown");
+        } else {
+            context.send("account.removed");
+        }
+    }
+}
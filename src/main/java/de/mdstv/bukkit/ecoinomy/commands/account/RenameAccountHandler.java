@@ -0,0 +1,28 @@
+package de.mdstv.bukkit.ecoinomy.commands.account;
+
+import de.mdstv.bukkit.ecoinomy.Ecoinomy;
+import de.mdstv.bukkit.ecoinomy.account.Account;
+import de.mdstv.bukkit.ecoinomy.commands.CommandContext;
+import de.mdstv.bukkit.ecoinomy.commands.CommandException;
+import de.mdstv.bukkit.ecoinomy.commands.CommandHandler;
+import org.bukkit.command.CommandSender;
+
+/**
+ * Changes the name of an existing account:
+ * /ec account rename &lt;account&gt; &lt;new_name&gt;
+ * @author Morph <admin@mds-tv.de>
+ */
+public class RenameAccountHandler implements CommandHandler {
+    @Override
+    public void execute(CommandSender sender, CommandContext context) throws CommandException {
+        Account account = context.get(0);
+        String  newName = context.get(1);
+
+        // Move the account to its new name
+        if (!Ecoinomy.plugin.renameAccount(account.getName(), newName)) {
+            throw new CommandException("account.nameUsed", newName);
+        }
+
+        context.send("account.renamed");
+    }
+}
@@ -0,0 +1,26 @@
+package de.mdstv.bukkit.ecoinomy.commands.bulk;
+
+import de.mdstv.bukkit.ecoinomy.commands.Arguments;
+import de.mdstv.bukkit.ecoinomy.commands.CommandNode;
+
+/**
+ * Registers the bulk transaction subcommands.
+ * @author Morph <admin@mds-tv.de>
+ */
+public final class BulkCommands {
+    private BulkCommands() {
+    }
+
+    /**
+     * Registers all bulk transaction subcommands below the base command.
+     * @param root The base command
+     */
+    public static void register(CommandNode root) {
+        CommandNode bulk = root.child("bulk").setPermission("ecoinomy.bulk");
+
+        bulk.child("deposit").setAsync().setHandler(new BulkDepositHandler(),
+                Arguments.word("prefix|*"), Arguments.amount("amount"), Arguments.coin("coin"));
+        bulk.child("pay").setAsync().setHandler(new BulkPayHandler(),
+                Arguments.account("account"), Arguments.amount("amount"), Arguments.coin("coin"));
+    }
+}
@@ -0,0 +1,48 @@
+package de.mdstv.bukkit.ecoinomy.commands.bulk;
+
+import de.mdstv.bukkit.ecoinomy.Ecoinomy;
+import de.mdstv.bukkit.ecoinomy.account.BalanceBatch;
+import de.mdstv.bukkit.ecoinomy.account.Coin;
+import de.mdstv.bukkit.ecoinomy.commands.CommandContext;
+import de.mdstv.bukkit.ecoinomy.commands.CommandException;
+import de.mdstv.bukkit.ecoinomy.commands.CommandHandler;
+import de.mdstv.bukkit.ecoinomy.storage.AccountRegistry;
+import java.util.List;
+import org.bukkit.command.CommandSender;
+
+/**
+ * Deposits coins to every account whose name starts with a prefix, as one
+ * batch: /ec bulk deposit &lt;prefix|*&gt; &lt;amount&gt; &lt;coin&gt;
+ * @author Morph <admin@mds-tv.de>
+ */
+public class BulkDepositHandler implements CommandHandler {
+    @Override
+    public void execute(CommandSender sender, CommandContext context) throws CommandException {
+        String filter = context.get(0);
+        Long   amount = context.get(1);
+        Coin   coin   = context.get(2);
+
+        // The accounts cannot change while the batch is built and applied
+        BalanceBatch batch = new BalanceBatch();
+        synchronized (Ecoinomy.plugin.getDataLock()) {
+            AccountRegistry accounts = Ecoinomy.plugin.getAccounts();
+            List<String>    names    = accounts.getNamesStartingWith(
+                    filter.equals("*") ? "" : filter, Integer.MAX_VALUE);
+            if (names.isEmpty()) {
+                throw new CommandException("bulk.none");
+            }
+
+            try {
+                for (String name : names) {
+                    batch.deposit(accounts.get(name), coin.getNameSingular(), amount);
+                }
+
+                batch.apply();
+            } catch (ArithmeticException ex) {
+                throw new CommandException("bulk.overflow");
+            }
+        }
+
+        context.send("bulk.deposited", batch.size(), amount, coin.getNamePlural());
+    }
+}
@@ -0,0 +1,56 @@
+package de.mdstv.bukkit.ecoinomy.commands.bulk;
+
+import de.mdstv.bukkit.ecoinomy.Ecoinomy;
+import de.mdstv.bukkit.ecoinomy.account.Account;
+import de.mdstv.bukkit.ecoinomy.account.AccountMember;
+import de.mdstv.bukkit.ecoinomy.account.BalanceBatch;
+import de.mdstv.bukkit.ecoinomy.account.Coin;
+import de.mdstv.bukkit.ecoinomy.commands.CommandContext;
+import de.mdstv.bukkit.ecoinomy.commands.CommandException;
+import de.mdstv.bukkit.ecoinomy.commands.CommandHandler;
+import org.bukkit.command.CommandSender;
+
+/**
+ * Pays every member of an account from that account, as one batch. Each
+ * member is paid into the account with the name of the member, members
+ * without such an account are skipped:
+ * /ec bulk pay &lt;account&gt; &lt;amount&gt; &lt;coin&gt;
+ * @author Morph <admin@mds-tv.de>
+ */
+public class BulkPayHandler implements CommandHandler {
+    @Override
+    public void execute(CommandSender sender, CommandContext context) throws CommandException {
+        Account account = context.get(0);
+        Long    amount  = context.get(1);
+        Coin    coin    = context.get(2);
+
+        // The members cannot change while the batch is built and applied
+        BalanceBatch batch   = new BalanceBatch();
+        int          skipped = 0;
+        synchronized (Ecoinomy.plugin.getDataLock()) {
+            try {
+                for (AccountMember member : account.getAllMembers()) {
+                    Account target = Ecoinomy.plugin.getAccounts().get(member.getName());
+                    if (target == null || target == account) {
+                        skipped++;
+                        continue;
+                    }
+
+                    batch.transfer(account, target, coin.getNameSingular(), amount);
+                }
+
+                if (batch.size() == 0) {
+                    throw new CommandException("bulk.none");
+                }
+
+                if (batch.apply() != null) {
+                    throw new CommandException("bulk.low", account.getName());
+                }
+            } catch (ArithmeticException ex) {
+                throw new CommandException("bulk.overflow");
+            }
+        }
+
+        context.send("bulk.paid", batch.size(), amount, coin.getNamePlural(), skipped);
+    }
+}
@@ -0,0 +1,26 @@
+package de.mdstv.bukkit.ecoinomy.commands.jobs;
+
+import de.mdstv.bukkit.ecoinomy.Ecoinomy;
+import de.mdstv.bukkit.ecoinomy.commands.CommandContext;
+import de.mdstv.bukkit.ecoinomy.commands.CommandException;
+import de.mdstv.bukkit.ecoinomy.commands.CommandHandler;
+import de.mdstv.bukkit.ecoinomy.scheduler.JobScheduler;
+import org.bukkit.command.CommandSender;
+
+/**
+ * Cancels a background job: /ec jobs cancel &lt;job&gt;
+ * @author Morph <admin@mds-tv.de>
+ */
+public class JobCancelHandler implements CommandHandler {
+    @Override
+    public void execute(CommandSender sender, CommandContext context) throws CommandException {
+        String name = context.get(0);
+        JobScheduler scheduler = Ecoinomy.plugin.getJobScheduler();
+        if (!scheduler.cancel(name)) {
+            throw new CommandException(scheduler.isRunning(name)
+                    ? "jobs.finishing" : "jobs.unknown", name);
+        }
+
+        context.send("jobs.cancelled");
+    }
+}
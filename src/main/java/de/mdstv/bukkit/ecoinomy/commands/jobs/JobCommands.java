@@ -0,0 +1,24 @@
+package de.mdstv.bukkit.ecoinomy.commands.jobs;
+
+import de.mdstv.bukkit.ecoinomy.commands.Arguments;
+import de.mdstv.bukkit.ecoinomy.commands.CommandNode;
+
+/**
+ * Registers the background job subcommands.
+ * @author Morph <admin@mds-tv.de>
+ */
+public final class JobCommands {
+    private JobCommands() {
+    }
+
+    /**
+     * Registers all background job subcommands below the base command.
+     * @param root The base command
+     */
+    public static void register(CommandNode root) {
+        CommandNode jobs = root.child("jobs").setPermission("ecoinomy.jobs");
+
+        jobs.setHandler(new JobListHandler());
+        jobs.child("cancel").setHandler(new JobCancelHandler(), Arguments.word("job"));
+    }
+}
@@ -0,0 +1,40 @@
+package de.mdstv.bukkit.ecoinomy.commands.jobs;
+
+import de.mdstv.bukkit.ecoinomy.Ecoinomy;
+import de.mdstv.bukkit.ecoinomy.commands.CommandContext;
+import de.mdstv.bukkit.ecoinomy.commands.CommandException;
+import de.mdstv.bukkit.ecoinomy.commands.CommandHandler;
+import de.mdstv.bukkit.ecoinomy.scheduler.JobProgress;
+import de.mdstv.bukkit.ecoinomy.stats.Histogram;
+import java.util.List;
+import java.util.Locale;
+import org.bukkit.command.CommandSender;
+
+/**
+ * Shows the progress of the background jobs: /ec jobs
+ * @author Morph <admin@mds-tv.de>
+ */
+public class JobListHandler implements CommandHandler {
+    @Override
+    public void execute(CommandSender sender, CommandContext context) throws CommandException {
+        List<JobProgress> jobs = Ecoinomy.plugin.getJobScheduler().getProgress();
+
+        context.send("jobs.title");
+        if (jobs.isEmpty()) {
+            context.send("jobs.empty");
+            return;
+        }
+
+        for (JobProgress job : jobs) {
+            context.send("jobs.entry", job.getName(), job.getState(), job.getDone(),
+                    job.getTotal(),
+                    String.format(Locale.ENGLISH, "%.1f%%", job.getFraction() * 100),
+                    Histogram.format(job.getElapsedNanos(), Histogram.NANOS),
+                    Histogram.format(job.getServerThreadNanos(), Histogram.NANOS));
+
+            if (job.getError() != null) {
+                context.send("jobs.error", job.getError());
+            }
+        }
+    }
+}
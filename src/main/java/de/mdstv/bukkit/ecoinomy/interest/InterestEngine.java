@@ -0,0 +1,203 @@
+package de.mdstv.bukkit.ecoinomy.interest;
+
+import de.mdstv.bukkit.ecoinomy.scheduler.JobScheduler;
+import de.mdstv.bukkit.ecoinomy.storage.FileAccountStore;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Properties;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Starts an InterestJob once per period.
+ *
+ * Periods are numbered by the wall clock: period n starts at n times the
+ * period length since 1970-01-01 UTC, so every server computes the same
+ * periods. The last charged period is kept in a state file. It is marked
+ * before the balances are changed and completed after they are saved, so
+ * a period is never charged twice, even if the server stops while a
+ * period is applied. Periods in which the server was offline are skipped.
+ * Run the engine regularly on the server thread.
+ * @author Morph <admin@mds-tv.de>
+ */
+public class InterestEngine implements Runnable {
+    /**
+     * Name of the job in the JobScheduler.
+     */
+    public static final String JOB_NAME = "interest";
+
+    /**
+     * Runs the jobs.
+     */
+    private final JobScheduler scheduler;
+
+    /**
+     * Rules of every period.
+     */
+    private final InterestRules rules;
+
+    /**
+     * Length of a period in milliseconds.
+     */
+    private final long periodMillis;
+
+    /**
+     * Keeps the last charged period.
+     */
+    private final File stateFile;
+
+    /**
+     * Reports charged periods.
+     */
+    private final Logger logger;
+
+    /**
+     * Last period which was charged or is being charged. Guarded by this.
+     */
+    private long lastPeriod;
+
+    /**
+     * Creates the engine and reads its state. On the first start the
+     * current period counts as charged.
+     * @param scheduler Runs the jobs
+     * @param rules Rules of every period
+     * @param periodMillis Length of a period in milliseconds
+     * @param stateFile Keeps the last charged period
+     * @param logger Reports charged periods
+     * @throws IllegalArgumentException If periodMillis is not positive
+     * @throws IOException If the state file cannot be read or written
+     */
+    public InterestEngine(JobScheduler scheduler, InterestRules rules, long periodMillis,
+            File stateFile, Logger logger) throws IOException {
+        if (periodMillis <= 0) {
+            throw new IllegalArgumentException("Period must be positive");
+        }
+
+        this.scheduler    = scheduler;
+        this.rules        = rules;
+        this.periodMillis = periodMillis;
+        this.stateFile    = stateFile;
+        this.logger       = logger;
+
+        if (!stateFile.exists()) {
+            this.lastPeriod = this.getCurrentPeriod();
+            this.writeState(this.lastPeriod, true);
+            return;
+        }
+
+        Properties state = new Properties();
+        try (InputStream in = new FileInputStream(stateFile)) {
+            state.load(in);
+        }
+
+        try {
+            this.lastPeriod = Long.parseLong(state.getProperty("period", "0"));
+        } catch (NumberFormatException ex) {
+            throw new IOException("Invalid period in " + stateFile.getName(), ex);
+        }
+
+        if (!Boolean.parseBoolean(state.getProperty("done", "true"))) {
+            this.logger.log(Level.WARNING, "Interest of period {0} was interrupted while"
+                    + " saving and may be incomplete, it is not charged again",
+                    Long.toString(this.lastPeriod));
+            this.writeState(this.lastPeriod, true);
+        }
+    }
+
+    /**
+     * Gets the number of the current period.
+     * @return The period
+     */
+    public long getCurrentPeriod() {
+        return System.currentTimeMillis() / this.periodMillis;
+    }
+
+    /**
+     * Starts the job of the current period, if it is not charged yet.
+     */
+    @Override
+    public void run() {
+        long period = this.getCurrentPeriod();
+
+        synchronized (this) {
+            if (period <= this.lastPeriod || this.scheduler.isRunning(JOB_NAME)) {
+                return;
+            }
+        }
+
+        this.scheduler.submit(new InterestJob(this, this.rules, period));
+    }
+
+    /**
+     * Marks a period as being charged. Called right before the balances
+     * are changed.
+     * @param period The period
+     * @return false, if the period was already charged
+     * @throws IOException If the state could not be written, the period
+     * must not be charged then
+     */
+    synchronized boolean beginPeriod(long period) throws IOException {
+        if (period <= this.lastPeriod) {
+            return false;
+        }
+
+        this.writeState(period, false);
+        this.lastPeriod = period;
+        return true;
+    }
+
+    /**
+     * Marks a period as charged. Called after the changed balances were
+     * saved.
+     * @param period The period
+     * @throws IOException If the state could not be written
+     */
+    synchronized void completePeriod(long period) throws IOException {
+        this.writeState(period, true);
+    }
+
+    /**
+     * Reverts beginPeriod(), if no balance was changed.
+     * @param period The period which was not charged
+     * @param previous The period charged before
+     * @throws IOException If the state could not be written
+     */
+    synchronized void cancelPeriod(long period, long previous) throws IOException {
+        if (this.lastPeriod == period) {
+            this.writeState(previous, true);
+            this.lastPeriod = previous;
+        }
+    }
+
+    /**
+     * Gets the last charged period.
+     * @return The period
+     */
+    synchronized long getLastPeriod() {
+        return this.lastPeriod;
+    }
+
+    /**
+     * Gets the logger of the engine.
+     * @return The logger
+     */
+    Logger getLogger() {
+        return this.logger;
+    }
+
+    /**
+     * Writes the state file atomically.
+     */
+    private void writeState(long period, boolean done) throws IOException {
+        Properties state = new Properties();
+        state.setProperty("period", Long.toString(period));
+        state.setProperty("done", Boolean.toString(done));
+
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        state.store(bos, "eCoinomy interest state, do not edit");
+        FileAccountStore.writeAtomically(this.stateFile, bos.toByteArray());
+    }
+}
@@ -0,0 +1,241 @@
+package de.mdstv.bukkit.ecoinomy.interest;
+
+import de.mdstv.bukkit.ecoinomy.Ecoinomy;
+import de.mdstv.bukkit.ecoinomy.account.Account;
+import de.mdstv.bukkit.ecoinomy.account.AccountBalance;
+import de.mdstv.bukkit.ecoinomy.account.BalanceBatch;
+import de.mdstv.bukkit.ecoinomy.account.CoinRegistry;
+import de.mdstv.bukkit.ecoinomy.account.LedgerGate;
+import de.mdstv.bukkit.ecoinomy.scheduler.AccountJob;
+import java.util.Arrays;
+import java.util.logging.Level;
+
+/**
+ * Charges the interest and upkeep of one period.
+ *
+ * The changes are computed by the workers, chunk by chunk, together with
+ * the version of every balance. The server thread is not used. When all
+ * chunks are done, the accounts lock is taken and the LedgerGate is
+ * closed, like for a snapshot. The changes of balances which changed in
+ * the meantime are computed again, then all changes are applied as one
+ * BalanceBatch and written with a single flush. So every account is
+ * charged from the same point in time.
+ * @author Morph <admin@mds-tv.de>
+ */
+final class InterestJob extends AccountJob {
+    /**
+     * Marks the period as charged.
+     */
+    private final InterestEngine engine;
+
+    /**
+     * Rules of the period.
+     */
+    private final InterestRules rules;
+
+    /**
+     * The charged period.
+     */
+    private final long period;
+
+    /**
+     * Number of currency slots.
+     */
+    private int slots;
+
+    /**
+     * Accounts by item, null if the account was removed.
+     */
+    private Account[] targets;
+
+    /**
+     * Version of every balance the changes were computed from.
+     */
+    private int[] versions;
+
+    /**
+     * Changes in base units, slots values per item.
+     */
+    private long[] deltas;
+
+    /**
+     * Creates the job of a period.
+     * @param engine Marks the period as charged
+     * @param rules Rules of the period
+     * @param period The period
+     */
+    InterestJob(InterestEngine engine, InterestRules rules, long period) {
+        super(InterestEngine.JOB_NAME);
+        this.engine = engine;
+        this.rules  = rules;
+        this.period = period;
+    }
+
+    @Override
+    protected int prepare() throws Exception {
+        int count = super.prepare();
+
+        this.slots    = CoinRegistry.getInstance().getSlotCount();
+        this.targets  = new Account[count];
+        this.versions = new int[count];
+        this.deltas   = new long[count * this.slots];
+        return count;
+    }
+
+    @Override
+    protected void processAsync(int from, int to) throws Exception {
+        for (int i = from; i < to; i++) {
+            Account account = Ecoinomy.plugin.getAccounts().get(this.getAccountName(i));
+            if (account != null) {
+                this.targets[i] = account;
+                this.computeDeltas(account, i);
+            }
+        }
+    }
+
+    @Override
+    protected void finish() throws Exception {
+        long previous = this.engine.getLastPeriod();
+        if (!this.engine.beginPeriod(this.period)) {
+            return;
+        }
+
+        int          charged;
+        Account      failed;
+        BalanceBatch batch = null;
+        try {
+            synchronized (Ecoinomy.plugin.getDataLock()) {
+                LedgerGate.close();
+                try {
+                    charged = this.update();
+                    batch   = this.createBatch();
+                    failed  = batch.apply();
+                } finally {
+                    LedgerGate.open();
+                }
+            }
+        } catch (RuntimeException ex) {
+            // Nothing was changed before the batch and on overflow. Other
+            // errors of the batch may come after changes, the period must
+            // not be charged again then.
+            if (batch == null || ex instanceof ArithmeticException) {
+                this.engine.cancelPeriod(this.period, previous);
+            }
+
+            throw ex;
+        }
+
+        // Upkeep never takes more than the balance and no balance can
+        // change while the gate is closed
+        if (failed != null) {
+            this.engine.cancelPeriod(this.period, previous);
+            throw new IllegalStateException("Balance of " + failed.getName()
+                    + " too low while charging period " + this.period
+                    + ", nothing was changed");
+        }
+
+        // One flush for the whole period
+        Ecoinomy.plugin.saveAccountData();
+        this.engine.completePeriod(this.period);
+
+        long interest = 0;
+        long upkeep   = 0;
+        for (long delta : this.deltas) {
+            if (delta > 0) {
+                interest += delta;
+            } else {
+                upkeep -= delta;
+            }
+        }
+
+        this.engine.getLogger().log(Level.INFO, "Charged period {0}: {1} accounts, {2}"
+                + " base units interest, {3} base units upkeep", new Object[] {
+                    Long.toString(this.period), charged, interest, upkeep
+                });
+    }
+
+    @Override
+    protected void abort(Throwable cause) {
+        this.targets  = null;
+        this.versions = null;
+        this.deltas   = null;
+    }
+
+    /**
+     * Computes the changes of an account from its current balance. The
+     * version is read first, so a concurrent change always shows up as a
+     * newer version.
+     */
+    private void computeDeltas(Account account, int index) {
+        AccountBalance balance = account.getBalance();
+        this.versions[index] = balance.getVersion();
+        for (int slot = 0; slot < this.slots; slot++) {
+            this.deltas[index * this.slots + slot] =
+                    this.rules.getDelta(slot, balance.getUnits(slot));
+        }
+    }
+
+    /**
+     * Computes the changes of all accounts again which were changed,
+     * removed or replaced since their chunk. The caller has to hold the
+     * accounts lock and the closed LedgerGate.
+     * @return Number of accounts with changes
+     */
+    private int update() {
+        int charged = 0;
+        for (int i = 0; i < this.targets.length; i++) {
+            Account account = this.targets[i];
+            if (account == null) {
+                continue;
+            }
+
+            Account current = Ecoinomy.plugin.getAccounts().get(account.getName());
+            if (current != account) {
+                this.targets[i] = current;
+                if (current == null) {
+                    Arrays.fill(this.deltas, i * this.slots, (i + 1) * this.slots, 0);
+                    continue;
+                }
+
+                this.computeDeltas(current, i);
+            } else if (account.getBalance().getVersion() != this.versions[i]) {
+                this.computeDeltas(account, i);
+            }
+
+            for (int slot = 0; slot < this.slots; slot++) {
+                if (this.deltas[i * this.slots + slot] != 0) {
+                    charged++;
+                    break;
+                }
+            }
+        }
+
+        return charged;
+    }
+
+    /**
+     * Creates the batch of all changes.
+     */
+    private BalanceBatch createBatch() {
+        CoinRegistry coins = CoinRegistry.getInstance();
+        BalanceBatch batch = new BalanceBatch();
+        for (int i = 0; i < this.targets.length; i++) {
+            if (this.targets[i] == null) {
+                continue;
+            }
+
+            int offset = i * this.slots;
+            for (int slot = 0; slot < this.slots; slot++) {
+                long   delta = this.deltas[offset + slot];
+                String coin  = coins.getBaseCoin(slot).getNameSingular();
+                if (delta > 0) {
+                    batch.deposit(this.targets[i], coin, delta);
+                } else if (delta < 0) {
+                    batch.withdraw(this.targets[i], coin, -delta);
+                }
+            }
+        }
+
+        return batch;
+    }
+}
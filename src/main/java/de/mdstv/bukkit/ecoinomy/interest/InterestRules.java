@@ -0,0 +1,112 @@
+package de.mdstv.bukkit.ecoinomy.interest;
+
+import de.mdstv.bukkit.ecoinomy.account.Coin;
+import de.mdstv.bukkit.ecoinomy.account.CoinRegistry;
+import org.bukkit.configuration.ConfigurationSection;
+
+/**
+ * Immutable interest and upkeep rules of a period.
+ *
+ * All values are integers in base units, so the result of a balance only
+ * depends on the balance. Interest is rounded down. The upkeep is charged
+ * after the interest was added and never takes more than the balance, so
+ * no balance gets negative.
+ * @author Morph <admin@mds-tv.de>
+ */
+public final class InterestRules {
+    /**
+     * One million, the scale of the rate.
+     */
+    private static final long PPM = 1000000;
+
+    /**
+     * Interest per period in parts per million of the balance.
+     */
+    private final long rate;
+
+    /**
+     * Slot of the upkeep, -1 if there is no upkeep.
+     */
+    private final int upkeepSlot;
+
+    /**
+     * Upkeep per account and period in base units.
+     */
+    private final long upkeepUnits;
+
+    /**
+     * Creates new rules.
+     * @param rate Interest per period in parts per million, between 0 and
+     * 1000000
+     * @param upkeepSlot Slot of the upkeep, -1 for no upkeep
+     * @param upkeepUnits Upkeep per account and period in base units
+     * @throws IllegalArgumentException If a value is out of range
+     */
+    public InterestRules(long rate, int upkeepSlot, long upkeepUnits) {
+        if (rate < 0 || rate > PPM) {
+            throw new IllegalArgumentException("Interest rate out of range: " + rate);
+        }
+
+        if (upkeepUnits < 0) {
+            throw new IllegalArgumentException("Upkeep cannot be negative");
+        }
+
+        this.rate        = rate;
+        this.upkeepSlot  = upkeepUnits > 0 ? upkeepSlot : -1;
+        this.upkeepUnits = upkeepUnits;
+    }
+
+    /**
+     * Creates the rules from the interest section of the config. The rate
+     * is given in percent, the upkeep as amount of a coin.
+     * @param section The interest section
+     * @return The rules
+     * @throws IllegalArgumentException If the rate is not between 0 and 100,
+     * the upkeep is negative or its coin is unknown
+     */
+    public static InterestRules load(ConfigurationSection section) {
+        long rate   = Math.round(section.getDouble("rate", 0) * (PPM / 100));
+        long amount = section.getLong("upkeep.amount", 0);
+        if (amount == 0) {
+            return new InterestRules(rate, -1, 0);
+        }
+
+        String coinName = section.getString("upkeep.coin", "");
+        Coin   coin     = CoinRegistry.getInstance().getCoin(coinName);
+        if (coin == null) {
+            throw new IllegalArgumentException("Unknown upkeep coin '" + coinName + "'");
+        }
+
+        return new InterestRules(rate, coin.getSlot(), coin.toUnits(amount));
+    }
+
+    /**
+     * Computes the change of a balance value for one period.
+     * @param slot Slot of the value
+     * @param units The value in base units
+     * @return The change in base units, the value plus the change is never
+     * negative and never overflows
+     */
+    public long getDelta(int slot, long units) {
+        long interest = 0;
+        if (units > 0 && this.rate > 0) {
+            // units * rate / PPM without overflow
+            interest = units / PPM * this.rate + units % PPM * this.rate / PPM;
+            interest = Math.min(interest, Long.MAX_VALUE - units);
+        }
+
+        if (slot != this.upkeepSlot) {
+            return interest;
+        }
+
+        return interest - Math.min(this.upkeepUnits, Math.max(0, units + interest));
+    }
+
+    /**
+     * Checks if the rules change any balance.
+     * @return false, if there is neither interest nor upkeep
+     */
+    public boolean isEffective() {
+        return this.rate > 0 || this.upkeepSlot >= 0;
+    }
+}
@@ -0,0 +1,44 @@
+package de.mdstv.bukkit.ecoinomy.scheduler;
+
+import de.mdstv.bukkit.ecoinomy.Ecoinomy;
+import de.mdstv.bukkit.ecoinomy.storage.AccountRegistry;
+import java.util.List;
+
+/**
+ * A ChunkedJob over all accounts. The items are the accounts existing when
+ * the job starts, sorted by name. Accounts created later are not covered,
+ * removed ones are looked up as null.
+ * @author Morph <admin@mds-tv.de>
+ */
+public abstract class AccountJob extends ChunkedJob {
+    /**
+     * Names of all accounts when the job was prepared.
+     */
+    private volatile List<String> names;
+
+    /**
+     * Creates a new AccountJob.
+     * @param name Unique name of the job
+     * @throws NullPointerException If name is null
+     */
+    protected AccountJob(String name) {
+        super(name);
+    }
+
+    @Override
+    protected int prepare() throws Exception {
+        this.names = Ecoinomy.plugin.getAccounts().getNames(AccountRegistry.Order.NAME, 0,
+                Integer.MAX_VALUE);
+        return this.names.size();
+    }
+
+    /**
+     * Gets the name of an account.
+     * @param index Number of the item
+     * @return The account name
+     * @throws IndexOutOfBoundsException If there is no such item
+     */
+    protected String getAccountName(int index) {
+        return this.names.get(index);
+    }
+}
@@ -0,0 +1,86 @@
+package de.mdstv.bukkit.ecoinomy.scheduler;
+
+/**
+ * A large job split into chunks, run by the JobScheduler.
+ *
+ * The job covers the items 0 to prepare() - 1. Every chunk of items is
+ * processed on a worker thread first, then on the server thread. The
+ * server thread part is resumable: it gets a deadline and returns how far
+ * it got, the rest is processed in the next tick. Chunks may be processed
+ * by several workers at the same time, the server thread parts run in
+ * chunk order.
+ * @author Morph <admin@mds-tv.de>
+ */
+public abstract class ChunkedJob {
+    /**
+     * Unique name of the job.
+     */
+    private final String name;
+
+    /**
+     * Creates a new ChunkedJob.
+     * @param name Unique name of the job, used for the progress report and
+     * the budget config
+     * @throws NullPointerException If name is null
+     */
+    protected ChunkedJob(String name) {
+        // Check null
+        if (name == null) {
+            throw new NullPointerException("Name cannot be null");
+        }
+
+        this.name = name;
+    }
+
+    /**
+     * Gets the unique name of the job.
+     * @return The name
+     */
+    public final String getName() {
+        return this.name;
+    }
+
+    /**
+     * Prepares the job. Called once on a worker thread.
+     * @return Number of items
+     * @throws Exception If the job cannot run, the job fails
+     */
+    protected abstract int prepare() throws Exception;
+
+    /**
+     * Processes a chunk on a worker thread.
+     * @param from First item of the chunk
+     * @param to End of the chunk, exclusive
+     * @throws Exception If the chunk failed, the job fails
+     */
+    protected abstract void processAsync(int from, int to) throws Exception;
+
+    /**
+     * Processes a chunk on the server thread, after processAsync() for the
+     * chunk has finished. Stop as soon as the deadline has passed.
+     * @param from First item which is not processed yet
+     * @param to End of the chunk, exclusive
+     * @param deadline Deadline in System.nanoTime() time
+     * @return First item which is not processed, to if the chunk is done
+     * @throws Exception If the chunk failed, the job fails
+     */
+    protected int processSync(int from, int to, long deadline) throws Exception {
+        return to;
+    }
+
+    /**
+     * Completes the job after all chunks are processed. Called once on a
+     * worker thread.
+     * @throws Exception If the job failed
+     */
+    protected void finish() throws Exception {
+    }
+
+    /**
+     * Releases the resources of a failed or cancelled job. Called once, on
+     * any thread.
+     * @param cause The error, null if the job was cancelled
+     */
+    protected void abort(Throwable cause) {
+    }
+}
@@ -0,0 +1,92 @@
+package de.mdstv.bukkit.ecoinomy.scheduler;
+
+/**
+ * Immutable progress report of a job.
+ * @author Morph <admin@mds-tv.de>
+ */
+public final class JobProgress {
+    private final String   name;
+    private final JobState state;
+    private final int      done;
+    private final int      total;
+    private final long     elapsedNanos;
+    private final long     serverThreadNanos;
+    private final String   error;
+
+    JobProgress(String name, JobState state, int done, int total, long elapsedNanos,
+            long serverThreadNanos, String error) {
+        this.name              = name;
+        this.state             = state;
+        this.done              = done;
+        this.total             = total;
+        this.elapsedNanos      = elapsedNanos;
+        this.serverThreadNanos = serverThreadNanos;
+        this.error             = error;
+    }
+
+    /**
+     * Gets the name of the job.
+     * @return The name
+     */
+    public String getName() {
+        return this.name;
+    }
+
+    /**
+     * Gets the state of the job.
+     * @return The state
+     */
+    public JobState getState() {
+        return this.state;
+    }
+
+    /**
+     * Gets the number of completely processed items.
+     * @return Number of items
+     */
+    public int getDone() {
+        return this.done;
+    }
+
+    /**
+     * Gets the number of items of the job.
+     * @return Number of items, 0 while preparing
+     */
+    public int getTotal() {
+        return this.total;
+    }
+
+    /**
+     * Gets the share of processed items.
+     * @return Progress between 0 and 1
+     */
+    public double getFraction() {
+        return this.total > 0 ? (double) this.done / this.total
+                : this.state == JobState.DONE ? 1 : 0;
+    }
+
+    /**
+     * Gets the time since the job was submitted, or its run time if it has
+     * ended.
+     * @return Time in nanoseconds
+     */
+    public long getElapsedNanos() {
+        return this.elapsedNanos;
+    }
+
+    /**
+     * Gets the time the job used on the server thread.
+     * @return Time in nanoseconds
+     */
+    public long getServerThreadNanos() {
+        return this.serverThreadNanos;
+    }
+
+    /**
+     * Gets the error of a failed job.
+     * @return The error message, null if the job did not fail
+     */
+    public String getError() {
+        return this.error;
+    }
+}
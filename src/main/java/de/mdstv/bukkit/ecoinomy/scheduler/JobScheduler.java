@@ -0,0 +1,416 @@
+package de.mdstv.bukkit.ecoinomy.scheduler;
+
+import de.mdstv.bukkit.ecoinomy.stats.Metrics;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Runs ChunkedJobs without blocking the server thread for long.
+ *
+ * The scheduler is run by a server task every tick. Each tick it hands the
+ * next chunks of every running job to the worker threads and runs the
+ * server thread parts of finished chunks, until the tick budget is used
+ * up. A job may be limited to a smaller budget of its own. Jobs which did
+ * not get any time in a tick are served first in the next one. Every job
+ * has at most a few chunks in flight, so workers never run far ahead of
+ * the server thread.
+ * @author Morph <admin@mds-tv.de>
+ */
+public class JobScheduler implements Runnable {
+    /**
+     * Server thread time of all jobs per tick in nanoseconds.
+     */
+    private final long tickBudget;
+
+    /**
+     * Smaller budgets of single jobs in nanoseconds, by job name.
+     */
+    private final Map<String, Long> jobBudgets;
+
+    /**
+     * Number of items per chunk.
+     */
+    private final int chunkSize;
+
+    /**
+     * Maximum number of chunks per job which are processed or waiting for
+     * the server thread.
+     */
+    private final int maxInFlight;
+
+    /**
+     * Runs prepare(), processAsync() and finish().
+     */
+    private final ThreadPoolExecutor workers;
+
+    /**
+     * Reports failed jobs.
+     */
+    private final Logger logger;
+
+    /**
+     * The last run of every job, by name.
+     */
+    private final ConcurrentHashMap<String, Run> runs = new ConcurrentHashMap<>();
+
+    /**
+     * Running jobs of the current tick. Server thread only.
+     */
+    private final ArrayList<Run> active = new ArrayList<>();
+
+    /**
+     * Job which is served first in the next tick. Server thread only.
+     */
+    private int nextRun = 0;
+
+    /**
+     * A single run of a job.
+     */
+    private final class Run {
+        final ChunkedJob                     job;
+        final long                           budget;
+        final long                           submitted = System.nanoTime();
+        final AtomicReference<JobState>      state     = new AtomicReference<>(JobState.PREPARING);
+        final AtomicInteger                  done      = new AtomicInteger();
+        final ConcurrentSkipListSet<Integer> ready     = new ConcurrentSkipListSet<>();
+        volatile int                         total;
+        volatile int                         chunks;
+        volatile long                        ended;
+        volatile long                        serverThreadNanos;
+        volatile String                      error;
+
+        // Server thread only
+        int nextChunk  = 0;
+        int syncChunk  = 0;
+        int syncCursor = 0;
+        int inFlight   = 0;
+
+        Run(ChunkedJob job, long budget) {
+            this.job    = job;
+            this.budget = budget;
+        }
+
+        /**
+         * Submits the next chunks and runs the server thread parts of
+         * finished chunks until the deadline.
+         */
+        void step(long deadline) {
+            try {
+                // Server thread parts, in chunk order
+                while (this.isRunning() && this.syncChunk < this.chunks
+                        && this.ready.contains(this.syncChunk)
+                        && System.nanoTime() < deadline) {
+                    int from = Math.max(this.syncCursor, this.syncChunk * JobScheduler.this.chunkSize);
+                    int to   = this.chunkEnd(this.syncChunk);
+                    int next = Math.max(from, Math.min(to, this.job.processSync(from, to, deadline)));
+                    this.done.addAndGet(next - from);
+                    this.syncCursor = next;
+                    if (next < to) {
+                        break;
+                    }
+
+                    this.ready.remove(this.syncChunk);
+                    this.syncChunk++;
+                    this.inFlight--;
+                }
+            } catch (Exception ex) {
+                this.end(JobState.FAILED, ex);
+                return;
+            }
+
+            // Keep the workers busy
+            while (this.isRunning() && this.inFlight < JobScheduler.this.maxInFlight
+                    && this.nextChunk < this.chunks) {
+                this.submitChunk(this.nextChunk++);
+                this.inFlight++;
+            }
+
+            if (this.syncChunk == this.chunks
+                    && this.state.compareAndSet(JobState.RUNNING, JobState.FINISHING)) {
+                this.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            Run.this.job.finish();
+                            Run.this.end(JobState.DONE, null);
+                        } catch (Exception ex) {
+                            Run.this.end(JobState.FAILED, ex);
+                        }
+                    }
+                });
+            }
+        }
+
+        /**
+         * Processes a chunk on a worker.
+         */
+        void submitChunk(final int chunk) {
+            this.execute(new Runnable() {
+                @Override
+                public void run() {
+                    if (!Run.this.isRunning()) {
+                        return;
+                    }
+
+                    try {
+                        Run.this.job.processAsync(chunk * JobScheduler.this.chunkSize,
+                                Run.this.chunkEnd(chunk));
+                        Run.this.ready.add(chunk);
+                    } catch (Exception ex) {
+                        Run.this.end(JobState.FAILED, ex);
+                    }
+                }
+            });
+        }
+
+        /**
+         * Runs a task on a worker, fails the job if the workers are shut
+         * down.
+         */
+        void execute(Runnable task) {
+            try {
+                JobScheduler.this.workers.execute(task);
+            } catch (RejectedExecutionException ex) {
+                this.end(JobState.FAILED, ex);
+            }
+        }
+
+        int chunkEnd(int chunk) {
+            return (int) Math.min(this.total, (long) (chunk + 1) * JobScheduler.this.chunkSize);
+        }
+
+        boolean isRunning() {
+            return this.state.get() == JobState.RUNNING;
+        }
+
+        /**
+         * Ends the run, if it has not ended yet. A run in finish() can only
+         * be ended by the worker running finish(), so abort() never runs
+         * at the same time.
+         * @return false, if the run had already ended or is finishing
+         */
+        boolean end(JobState target, Throwable cause) {
+            JobState current;
+            do {
+                current = this.state.get();
+                if (current.isFinal()
+                        || (current == JobState.FINISHING && target == JobState.CANCELLED)) {
+                    return false;
+                }
+            } while (!this.state.compareAndSet(current, target));
+
+            this.ended = System.nanoTime();
+            if (target == JobState.DONE) {
+                return true;
+            }
+
+            if (cause != null) {
+                this.error = String.valueOf(cause.getMessage());
+                JobScheduler.this.logger.log(Level.SEVERE, "Job '" + this.job.getName()
+                        + "' failed", cause);
+            }
+
+            try {
+                this.job.abort(cause);
+            } catch (RuntimeException ex) {
+                JobScheduler.this.logger.log(Level.WARNING, "Could not abort job '"
+                        + this.job.getName() + "'", ex);
+            }
+
+            return true;
+        }
+
+        JobProgress getProgress() {
+            long end = this.ended != 0 ? this.ended : System.nanoTime();
+            return new JobProgress(this.job.getName(), this.state.get(), this.done.get(),
+                    this.total, end - this.submitted, this.serverThreadNanos, this.error);
+        }
+    }
+
+    /**
+     * Creates a scheduler and starts its workers. Run it every tick.
+     * @param tickBudget Server thread time of all jobs per tick in
+     * nanoseconds
+     * @param jobBudgets Budgets of single jobs in nanoseconds, by job name.
+     * Budgets above the tick budget are cut.
+     * @param threads Number of worker threads
+     * @param chunkSize Number of items per chunk
+     * @param logger Reports failed jobs
+     */
+    public JobScheduler(long tickBudget, Map<String, Long> jobBudgets, int threads,
+            int chunkSize, Logger logger) {
+        this.tickBudget  = Math.max(0, tickBudget);
+        this.jobBudgets  = new ConcurrentHashMap<>(jobBudgets);
+        this.chunkSize   = Math.max(1, chunkSize);
+        this.logger      = logger;
+        threads          = Math.max(1, threads);
+        this.maxInFlight = threads * 2;
+
+        final AtomicInteger count = new AtomicInteger();
+        ThreadFactory factory = new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable task) {
+                Thread thread = new Thread(task, "eCoinomy-Job-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                thread.setPriority(Thread.NORM_PRIORITY - 1);
+                return thread;
+            }
+        };
+
+        this.workers = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<Runnable>(), factory);
+    }
+
+    /**
+     * Starts a job.
+     * @param job The job
+     * @return false, if a job with the same name is still running
+     * @throws NullPointerException If job is null
+     */
+    public synchronized boolean submit(ChunkedJob job) {
+        // Check null
+        if (job == null) {
+            throw new NullPointerException("Job cannot be null");
+        }
+
+        Run previous = this.runs.get(job.getName());
+        if (previous != null && !previous.state.get().isFinal()) {
+            return false;
+        }
+
+        Long budget = this.jobBudgets.get(job.getName());
+        final Run run = new Run(job, budget != null
+                ? Math.min(budget, this.tickBudget) : this.tickBudget);
+        this.runs.put(job.getName(), run);
+
+        run.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    int total = Math.max(0, run.job.prepare());
+                    run.total  = total;
+                    run.chunks = (int) ((total + (long) JobScheduler.this.chunkSize - 1)
+                            / JobScheduler.this.chunkSize);
+                    run.state.compareAndSet(JobState.PREPARING, JobState.RUNNING);
+                } catch (Exception ex) {
+                    run.end(JobState.FAILED, ex);
+                }
+            }
+        });
+
+        return true;
+    }
+
+    /**
+     * Cancels a running job. Chunks which are processed right now are
+     * finished, no further chunks are started. A job which is already in
+     * finish() cannot be cancelled.
+     * @param name Name of the job
+     * @return false, if the job is not running or already finishing
+     */
+    public boolean cancel(String name) {
+        Run run = this.runs.get(name);
+        return run != null && run.end(JobState.CANCELLED, null);
+    }
+
+    /**
+     * Checks if a job is running.
+     * @param name Name of the job
+     * @return true, if the job has not ended yet
+     */
+    public boolean isRunning(String name) {
+        Run run = this.runs.get(name);
+        return run != null && !run.state.get().isFinal();
+    }
+
+    /**
+     * Gets the progress of the last run of a job.
+     * @param name Name of the job
+     * @return The progress, null if the job never ran
+     */
+    public JobProgress getProgress(String name) {
+        Run run = this.runs.get(name);
+        return run != null ? run.getProgress() : null;
+    }
+
+    /**
+     * Gets the progress of the last run of every job, sorted by name.
+     * @return The progress reports
+     */
+    public List<JobProgress> getProgress() {
+        TreeMap<String, JobProgress> sorted = new TreeMap<>();
+        for (Run run : this.runs.values()) {
+            sorted.put(run.job.getName(), run.getProgress());
+        }
+
+        return Collections.unmodifiableList(new ArrayList<>(sorted.values()));
+    }
+
+    /**
+     * Serves the running jobs within the tick budget. Called by the server
+     * thread every tick.
+     */
+    @Override
+    public void run() {
+        long start    = System.nanoTime();
+        long deadline = start + this.tickBudget;
+
+        this.active.clear();
+        for (Run run : this.runs.values()) {
+            if (run.isRunning()) {
+                this.active.add(run);
+            }
+        }
+
+        int count  = this.active.size();
+        int served = count;
+        for (int i = 0; i < count; i++) {
+            long now = System.nanoTime();
+            if (now >= deadline) {
+                served = i;
+                break;
+            }
+
+            Run run = this.active.get((this.nextRun + i) % count);
+            run.step(Math.min(deadline, now + run.budget));
+            run.serverThreadNanos += System.nanoTime() - now;
+        }
+
+        if (count > 0) {
+            // Jobs without time this tick go first, otherwise rotate
+            this.nextRun = (this.nextRun + (served == count ? 1 : served)) % count;
+            Metrics.addMainThreadTime(start);
+        }
+    }
+
+    /**
+     * Cancels all jobs and stops the workers. Chunks and finish() calls
+     * which run right now are finished.
+     */
+    public void shutdown() {
+        for (Run run : this.runs.values()) {
+            run.end(JobState.CANCELLED, null);
+        }
+
+        this.workers.shutdown();
+        try {
+            this.workers.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
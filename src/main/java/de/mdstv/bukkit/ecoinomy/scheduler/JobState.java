@@ -0,0 +1,45 @@
+package de.mdstv.bukkit.ecoinomy.scheduler;
+
+/**
+ * State of a job in the JobScheduler.
+ * @author Morph <admin@mds-tv.de>
+ */
+public enum JobState {
+    /**
+     * prepare() is running.
+     */
+    PREPARING,
+
+    /**
+     * Chunks are processed.
+     */
+    RUNNING,
+
+    /**
+     * finish() is running, the job cannot be cancelled anymore.
+     */
+    FINISHING,
+
+    /**
+     * The job has completed.
+     */
+    DONE,
+
+    /**
+     * The job threw an exception.
+     */
+    FAILED,
+
+    /**
+     * The job was cancelled.
+     */
+    CANCELLED;
+
+    /**
+     * Checks if the job has ended.
+     * @return true for DONE, FAILED and CANCELLED
+     */
+    public boolean isFinal() {
+        return this == DONE || this == FAILED || this == CANCELLED;
+    }
+}
@@ -0,0 +1,68 @@
+package de.mdstv.bukkit.ecoinomy.stats;
+
+import de.mdstv.bukkit.ecoinomy.Ecoinomy;
+import de.mdstv.bukkit.ecoinomy.storage.AccountStore;
+
+/**
+ * Current statistics of the plugin. Every getter reads the live values.
+ * @author Morph <admin@mds-tv.de>
+ */
+public class EcoinomyStats implements EcoinomyStatsMXBean {
+    private final StripedCounter cacheHits    = Metrics.counter(Metrics.CACHE_HITS);
+    private final StripedCounter cacheMisses  = Metrics.counter(Metrics.CACHE_MISSES);
+    private final StripedCounter bytesWritten = Metrics.counter(Metrics.BYTES_WRITTEN);
+
+    @Override
+    public int getAccountCount() {
+        return Ecoinomy.plugin.getAccounts().size();
+    }
+
+    @Override
+    public int getLoadedAccountCount() {
+        return Ecoinomy.plugin.getAccounts().getLoadedCount();
+    }
+
+    @Override
+    public int getMemberCount() {
+        return Ecoinomy.plugin.getAccounts().getMemberCount();
+    }
+
+    @Override
+    public long getCacheHits() {
+        return this.cacheHits.sum();
+    }
+
+    @Override
+    public long getCacheMisses() {
+        return this.cacheMisses.sum();
+    }
+
+    @Override
+    public double getCacheHitRate() {
+        long hits  = this.cacheHits.sum();
+        long total  = hits + this.cacheMisses.sum();
+        return total > 0 ? (double) hits / total : 0;
+    }
+
+    @Override
+    public long getFlushCount() {
+        AccountStore store = Ecoinomy.plugin.getAccountStore();
+        return store != null ? store.getFlushCount() : 0;
+    }
+
+    @Override
+    public long getBytesWritten() {
+        return this.bytesWritten.sum();
+    }
+
+    @Override
+    public double getLastFlushMillis() {
+        AccountStore store = Ecoinomy.plugin.getAccountStore();
+        return store != null ? store.getLastFlushMillis() : 0;
+    }
+
+    @Override
+    public double getMainThreadMillisPerTick() {
+        return TickSampler.MAIN_THREAD.snapshot().getMean() / 1000000.0;
+    }
+}
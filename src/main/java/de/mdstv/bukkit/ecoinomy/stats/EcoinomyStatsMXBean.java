@@ -0,0 +1,68 @@
+package de.mdstv.bukkit.ecoinomy.stats;
+
+/**
+ * JMX view of the plugin statistics. Latencies are published as separate
+ * Histogram MBeans.
+ * @author Morph <admin@mds-tv.de>
+ */
+public interface EcoinomyStatsMXBean {
+    /**
+     * Gets the number of accounts.
+     * @return Number of accounts
+     */
+    public int getAccountCount();
+
+    /**
+     * Gets the number of decoded accounts.
+     * @return Number of accounts in memory
+     */
+    public int getLoadedAccountCount();
+
+    /**
+     * Gets the number of players which are member of any account.
+     * @return Number of players
+     */
+    public int getMemberCount();
+
+    /**
+     * Gets the number of account lookups served from memory.
+     * @return Number of hits
+     */
+    public long getCacheHits();
+
+    /**
+     * Gets the number of account lookups which decoded the account.
+     * @return Number of misses
+     */
+    public long getCacheMisses();
+
+    /**
+     * Gets the share of account lookups served from memory.
+     * @return Hit rate between 0 and 1, 0 if there was no lookup
+     */
+    public double getCacheHitRate();
+
+    /**
+     * Gets the number of completed flushes of the store.
+     * @return Number of flushes
+     */
+    public long getFlushCount();
+
+    /**
+     * Gets the amount of data written by all flushes.
+     * @return Written bytes
+     */
+    public long getBytesWritten();
+
+    /**
+     * Gets the duration of the last flush.
+     * @return Duration in milliseconds
+     */
+    public double getLastFlushMillis();
+
+    /**
+     * Gets the average time eCoinomy spends on the server thread per tick.
+     * @return Time in milliseconds
+     */
+    public double getMainThreadMillisPerTick();
+}
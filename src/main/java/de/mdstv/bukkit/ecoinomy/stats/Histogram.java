@@ -0,0 +1,264 @@
+package de.mdstv.bukkit.ecoinomy.stats;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Distribution of non-negative values, like latencies or sizes.
+ *
+ * Values are counted in logarithmic buckets, every power of two is split
+ * into four buckets, so percentiles are exact to 25%. Like the
+ * StripedCounter, every thread records into its own row of buckets.
+ * Recording takes two atomic adds without locking and without allocation.
+ * @author Morph <admin@mds-tv.de>
+ */
+public final class Histogram implements HistogramMXBean {
+    /**
+     * Unit of latencies.
+     */
+    public static final String NANOS = "ns";
+
+    /**
+     * Unit of sizes.
+     */
+    public static final String BYTES = "bytes";
+
+    /**
+     * Unit of database rows.
+     */
+    public static final String ROWS = "rows";
+
+    /**
+     * Number of buckets, enough for every positive long.
+     */
+    private static final int BUCKETS = 248;
+
+    /**
+     * Length of a row: the buckets, the sum and padding up to the next
+     * cache line.
+     */
+    private static final int STRIDE = BUCKETS + 8;
+
+    /**
+     * Immutable copy of a Histogram.
+     */
+    public static final class Snapshot {
+        private final long[] buckets;
+        private final long   count;
+        private final long   sum;
+        private final long   max;
+
+        Snapshot(long[] buckets, long count, long sum, long max) {
+            this.buckets = buckets;
+            this.count   = count;
+            this.sum     = sum;
+            this.max     = max;
+        }
+
+        /**
+         * Gets the number of recorded values.
+         * @return Number of values
+         */
+        public long getCount() {
+            return this.count;
+        }
+
+        /**
+         * Gets the mean of all values.
+         * @return The mean, 0 if nothing was recorded
+         */
+        public double getMean() {
+            return this.count > 0 ? (double) this.sum / this.count : 0;
+        }
+
+        /**
+         * Gets the largest value.
+         * @return The largest value, 0 if nothing was recorded
+         */
+        public long getMax() {
+            return this.max;
+        }
+
+        /**
+         * Gets a percentile.
+         * @param percentile The percentile, between 0 and 100
+         * @return Upper bound of the bucket holding the percentile, never
+         * more than the largest value
+         */
+        public long getPercentile(double percentile) {
+            long rank = (long) Math.ceil(this.count * Math.min(100, Math.max(0, percentile)) / 100);
+            long seen = 0;
+
+            for (int bucket = 0; bucket < BUCKETS; bucket++) {
+                seen += this.buckets[bucket];
+                if (seen >= rank && seen > 0) {
+                    return Math.min(this.max, upperBound(bucket));
+                }
+            }
+
+            return this.max;
+        }
+    }
+
+    /**
+     * Bucket counts and sums of all rows.
+     */
+    private final AtomicLongArray cells = new AtomicLongArray(StripedCounter.STRIPES * STRIDE);
+
+    /**
+     * Largest recorded value.
+     */
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Unit of the values.
+     */
+    private final String unit;
+
+    /**
+     * Creates an empty Histogram.
+     * @param unit Unit of the values
+     */
+    public Histogram(String unit) {
+        this.unit = unit;
+    }
+
+    /**
+     * Records a value. Negative values are recorded as 0.
+     * @param value The value
+     */
+    public void record(long value) {
+        value = Math.max(0, value);
+
+        int row = StripedCounter.stripe() * STRIDE;
+        this.cells.getAndIncrement(row + bucket(value));
+        this.cells.getAndAdd(row + BUCKETS, value);
+
+        // Only new maximums write
+        long current = this.max.get();
+        while (value > current && !this.max.compareAndSet(current, value)) {
+            current = this.max.get();
+        }
+    }
+
+    /**
+     * Records the time since a start time.
+     * @param startNanos Start time from System.nanoTime()
+     */
+    public void recordSince(long startNanos) {
+        this.record(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Copies the current distribution.
+     * @return The snapshot
+     */
+    public Snapshot snapshot() {
+        long[] buckets = new long[BUCKETS];
+        long   count   = 0;
+        long   sum     = 0;
+
+        for (int row = 0; row < StripedCounter.STRIPES * STRIDE; row += STRIDE) {
+            for (int bucket = 0; bucket < BUCKETS; bucket++) {
+                long n = this.cells.get(row + bucket);
+                buckets[bucket] += n;
+                count           += n;
+            }
+
+            sum += this.cells.get(row + BUCKETS);
+        }
+
+        return new Snapshot(buckets, count, sum, this.max.get());
+    }
+
+    @Override
+    public String getUnit() {
+        return this.unit;
+    }
+
+    @Override
+    public long getCount() {
+        return this.snapshot().getCount();
+    }
+
+    @Override
+    public double getMean() {
+        return this.snapshot().getMean();
+    }
+
+    @Override
+    public long getPercentile50() {
+        return this.snapshot().getPercentile(50);
+    }
+
+    @Override
+    public long getPercentile95() {
+        return this.snapshot().getPercentile(95);
+    }
+
+    @Override
+    public long getPercentile99() {
+        return this.snapshot().getPercentile(99);
+    }
+
+    @Override
+    public long getMax() {
+        return this.max.get();
+    }
+
+    /**
+     * Formats a value with a readable unit, like "1.25 ms" or "3.0 KiB".
+     * @param value The value
+     * @param unit Unit of the value
+     * @return The formatted value
+     */
+    public static String format(long value, String unit) {
+        switch (unit) {
+            case NANOS: {
+                return value < 1000000
+                        ? String.format(Locale.ENGLISH, "%.1f \u00b5s", value / 1000.0)
+                        : String.format(Locale.ENGLISH, "%.2f ms", value / 1000000.0);
+            }
+            case BYTES: {
+                return value < 1024 ? value + " B"
+                        : value < 1048576
+                        ? String.format(Locale.ENGLISH, "%.1f KiB", value / 1024.0)
+                        : String.format(Locale.ENGLISH, "%.1f MiB", value / 1048576.0);
+            }
+            default: {
+                return value + " " + unit;
+            }
+        }
+    }
+
+    /**
+     * Gets the bucket of a value. Values below 4 have a bucket of their
+     * own, larger ones share a bucket with the values having the same
+     * highest three bits.
+     */
+    static int bucket(long value) {
+        if (value < 4) {
+            return (int) value;
+        }
+
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        return 4 * (exponent - 1) + (int) ((value >>> (exponent - 2)) & 3);
+    }
+
+    /**
+     * Gets the largest value of a bucket.
+     */
+    static long upperBound(int bucket) {
+        if (bucket < 4) {
+            return bucket;
+        }
+
+        if (bucket == BUCKETS - 1) {
+            return Long.MAX_VALUE;
+        }
+
+        int exponent = bucket / 4 + 1;
+        return ((4L + bucket % 4 + 1) << (exponent - 2)) - 1;
+    }
+}
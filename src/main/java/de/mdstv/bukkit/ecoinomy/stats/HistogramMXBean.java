@@ -0,0 +1,49 @@
+package de.mdstv.bukkit.ecoinomy.stats;
+
+/**
+ * JMX view of a Histogram.
+ * @author Morph <admin@mds-tv.de>
+ */
+public interface HistogramMXBean {
+    /**
+     * Gets the unit of all values.
+     * @return "ns", "bytes" or "rows"
+     */
+    public String getUnit();
+
+    /**
+     * Gets the number of recorded values.
+     * @return Number of values
+     */
+    public long getCount();
+
+    /**
+     * Gets the mean of all values.
+     * @return The mean, 0 if nothing was recorded
+     */
+    public double getMean();
+
+    /**
+     * Gets the median.
+     * @return Upper bound of the median
+     */
+    public long getPercentile50();
+
+    /**
+     * Gets the 95th percentile.
+     * @return Upper bound of the percentile
+     */
+    public long getPercentile95();
+
+    /**
+     * Gets the 99th percentile.
+     * @return Upper bound of the percentile
+     */
+    public long getPercentile99();
+
+    /**
+     * Gets the largest value.
+     * @return The largest value
+     */
+    public long getMax();
+}
@@ -0,0 +1,196 @@
+package de.mdstv.bukkit.ecoinomy.stats;
+
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Global registry of all histograms and counters.
+ *
+ * Metrics are created once and kept in a static field by the code which
+ * records them, so recording never looks up a name. Once registerMBeans()
+ * was called, every histogram is also published as MBean
+ * "de.mdstv.ecoinomy:type=Histogram,name=...".
+ * @author Morph <admin@mds-tv.de>
+ */
+public final class Metrics {
+    /**
+     * JMX domain of all eCoinomy MBeans.
+     */
+    public static final String DOMAIN = "de.mdstv.ecoinomy";
+
+    /**
+     * Account lookups served from memory.
+     */
+    public static final String CACHE_HITS = "registry.hits";
+
+    /**
+     * Account lookups which decoded the account.
+     */
+    public static final String CACHE_MISSES = "registry.misses";
+
+    /**
+     * Bytes written by the store.
+     */
+    public static final String BYTES_WRITTEN = "store.bytesWritten";
+
+    /**
+     * Time spent on the server thread since the last tick in nanoseconds.
+     */
+    private static final StripedCounter mainThreadNanos = new StripedCounter();
+
+    /**
+     * All histograms by name.
+     */
+    private static final ConcurrentHashMap<String, Histogram> histograms =
+            new ConcurrentHashMap<>();
+
+    /**
+     * All counters by name.
+     */
+    private static final ConcurrentHashMap<String, StripedCounter> counters =
+            new ConcurrentHashMap<>();
+
+    /**
+     * Server the MBeans are registered with, null if JMX is off. Guarded by
+     * Metrics.class.
+     */
+    private static MBeanServer server;
+
+    /**
+     * Logs failed registrations. Guarded by Metrics.class.
+     */
+    private static Logger logger;
+
+    private Metrics() {
+    }
+
+    /**
+     * Gets a histogram, creates it if necessary.
+     * @param name Dotted name of the histogram
+     * @param unit Unit of the values, Histogram.NANOS or Histogram.BYTES
+     * @return The histogram
+     * @throws NullPointerException If name is null
+     */
+    public static Histogram histogram(String name, String unit) {
+        Histogram histogram = histograms.get(name);
+        if (histogram != null) {
+            return histogram;
+        }
+
+        Histogram created = new Histogram(unit);
+        histogram = histograms.putIfAbsent(name, created);
+        if (histogram != null) {
+            return histogram;
+        }
+
+        synchronized (Metrics.class) {
+            if (server != null) {
+                register(name, created);
+            }
+        }
+
+        return created;
+    }
+
+    /**
+     * Gets a counter, creates it if necessary.
+     * @param name Dotted name of the counter
+     * @return The counter
+     * @throws NullPointerException If name is null
+     */
+    public static StripedCounter counter(String name) {
+        StripedCounter counter = counters.get(name);
+        if (counter != null) {
+            return counter;
+        }
+
+        counter = counters.putIfAbsent(name, new StripedCounter());
+        return counter != null ? counter : counters.get(name);
+    }
+
+    /**
+     * Gets all histograms, sorted by name.
+     * @return Copy of the histograms
+     */
+    public static SortedMap<String, Histogram> getHistograms() {
+        return new TreeMap<>(histograms);
+    }
+
+    /**
+     * Adds time spent on the server thread. Call this on the server thread
+     * only.
+     * @param startNanos Start time of the work from System.nanoTime()
+     */
+    public static void addMainThreadTime(long startNanos) {
+        mainThreadNanos.add(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Gets the time spent on the server thread since the last call and
+     * resets it.
+     * @return Time in nanoseconds
+     */
+    static long takeMainThreadTime() {
+        return mainThreadNanos.sumThenReset();
+    }
+
+    /**
+     * Publishes the plugin statistics and all histograms, current and
+     * future ones, as MBeans.
+     * @param mbeanServer The MBean server
+     * @param stats The plugin statistics
+     * @param log Logs failed registrations
+     */
+    public static synchronized void registerMBeans(MBeanServer mbeanServer,
+            EcoinomyStatsMXBean stats, Logger log) {
+        unregisterMBeans();
+        server = mbeanServer;
+        logger = log;
+
+        register(null, stats);
+        for (Map.Entry<String, Histogram> entry : histograms.entrySet()) {
+            register(entry.getKey(), entry.getValue());
+        }
+    }
+
+    /**
+     * Removes all MBeans of eCoinomy.
+     */
+    public static synchronized void unregisterMBeans() {
+        if (server == null) {
+            return;
+        }
+
+        try {
+            for (ObjectName name : server.queryNames(new ObjectName(DOMAIN + ":*"), null)) {
+                server.unregisterMBean(name);
+            }
+        } catch (JMException ex) {
+            logger.log(Level.WARNING, "Could not unregister MBeans", ex);
+        }
+
+        server = null;
+        logger = null;
+    }
+
+    /**
+     * Registers a MBean. The caller has to hold the lock of this class.
+     * @param name Histogram name, null for the plugin statistics
+     */
+    private static void register(String name, Object bean) {
+        try {
+            server.registerMBean(bean, new ObjectName(name == null
+                    ? DOMAIN + ":type=Stats"
+                    : DOMAIN + ":type=Histogram,name=" + name));
+        } catch (JMException ex) {
+            logger.log(Level.WARNING, "Could not register MBean " + name, ex);
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package de.mdstv.bukkit.ecoinomy.stats;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counter which many threads can add to without contention.
+ *
+ * Every thread adds to one of several cells, chosen by its thread id. The
+ * cells are a cache line apart, so threads on different cells never share
+ * a line. Reading sums up all cells and is not atomic with respect to
+ * concurrent adds.
+ * @author Morph <admin@mds-tv.de>
+ */
+public final class StripedCounter {
+    /**
+     * Distance between two cells in longs, one cache line.
+     */
+    private static final int PADDING = 8;
+
+    /**
+     * Number of cells, a power of two.
+     */
+    static final int STRIPES = stripeCount();
+
+    /**
+     * The cells, every PADDING-th element is used.
+     */
+    private final AtomicLongArray cells = new AtomicLongArray(STRIPES * PADDING);
+
+    /**
+     * Adds a value.
+     * @param value The value to add
+     */
+    public void add(long value) {
+        this.cells.getAndAdd(stripe() * PADDING, value);
+    }
+
+    /**
+     * Adds one.
+     */
+    public void increment() {
+        this.add(1);
+    }
+
+    /**
+     * Gets the sum of all added values.
+     * @return The sum
+     */
+    public long sum() {
+        long sum = 0;
+        for (int i = 0; i < STRIPES; i++) {
+            sum += this.cells.get(i * PADDING);
+        }
+
+        return sum;
+    }
+
+    /**
+     * Gets the sum of all added values and resets the counter. Values added
+     * concurrently are either part of this sum or of the next one.
+     * @return The sum
+     */
+    public long sumThenReset() {
+        long sum = 0;
+        for (int i = 0; i < STRIPES; i++) {
+            sum += this.cells.getAndSet(i * PADDING, 0);
+        }
+
+        return sum;
+    }
+
+    /**
+     * Gets the cell of the current thread.
+     * @return The cell index, below STRIPES
+     */
+    static int stripe() {
+        long id = Thread.currentThread().getId();
+        return (int) ((id * 0x9E3779B97F4A7C15L) >>> 32) & (STRIPES - 1);
+    }
+
+    /**
+     * Gets the number of cells, the number of processors rounded up to a
+     * power of two, at most 64.
+     */
+    private static int stripeCount() {
+        int cpus = Math.min(64, Math.max(1, Runtime.getRuntime().availableProcessors()));
+        return cpus == 1 ? 1 : Integer.highestOneBit(cpus - 1) << 1;
+    }
+}
@@ -0,0 +1,18 @@
+package de.mdstv.bukkit.ecoinomy.stats;
+
+/**
+ * Records the time eCoinomy spent on the server thread during the last
+ * tick. Scheduled every tick.
+ * @author Morph <admin@mds-tv.de>
+ */
+public class TickSampler implements Runnable {
+    /**
+     * Server thread time per tick.
+     */
+    public static final Histogram MAIN_THREAD = Metrics.histogram("server.tick", Histogram.NANOS);
+
+    @Override
+    public void run() {
+        MAIN_THREAD.record(Metrics.takeMainThreadTime());
+    }
+}
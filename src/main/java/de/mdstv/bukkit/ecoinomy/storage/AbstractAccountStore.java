@@ -0,0 +1,323 @@
+package de.mdstv.bukkit.ecoinomy.storage;
+
+import de.mdstv.bukkit.ecoinomy.Ecoinomy;
+import de.mdstv.bukkit.ecoinomy.account.AccountChange;
+import de.mdstv.bukkit.ecoinomy.stats.Histogram;
+import de.mdstv.bukkit.ecoinomy.stats.Metrics;
+import de.mdstv.bukkit.ecoinomy.stats.StripedCounter;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+
+/**
+ * Base class for AccountStores which write in the background.
+ *
+ * Every account change is queued and marks the store as dirty. The writer
+ * thread wakes up at most once per flush interval and writes all queued
+ * changes at once, so a burst of commands costs a single write.
+ * @author Morph <admin@mds-tv.de>
+ */
+public abstract class AbstractAccountStore implements AccountStore, Runnable {
+    /**
+     * The owning plugin, used to access the accounts and for logging.
+     */
+    protected final Ecoinomy plugin;
+
+    /**
+     * Minimum time between two flushes in milliseconds.
+     */
+    private final long flushInterval;
+
+    /**
+     * Set to true to write all accounts with the next flush.
+     */
+    private volatile boolean fullSaveRequested = false;
+
+    /**
+     * Monitor used to wake up the writer thread.
+     */
+    private final Object monitor = new Object();
+
+    /**
+     * Number of changes which are not written yet.
+     */
+    private final AtomicLong pendingChanges = new AtomicLong();
+
+    /**
+     * Number of completed flushes.
+     */
+    private final AtomicLong flushCount = new AtomicLong();
+
+    /**
+     * Duration of the last flush in nanoseconds.
+     */
+    private volatile long lastFlushNanos = 0;
+
+    /**
+     * Amount of data written by the last flush.
+     */
+    private volatile long lastFlushSize = 0;
+
+    /**
+     * Durations of all flushes.
+     */
+    private final Histogram flushLatency;
+
+    /**
+     * Amounts of data written by all flushes.
+     */
+    private final Histogram flushSize;
+
+    /**
+     * Bytes written by all stores.
+     */
+    private final StripedCounter bytesWritten = Metrics.counter(Metrics.BYTES_WRITTEN);
+
+    /**
+     * Writer thread, null if not started.
+     */
+    private Thread thread;
+
+    /**
+     * Set to false to stop the writer thread.
+     */
+    private volatile boolean running = false;
+
+    /**
+     * Creates a new AbstractAccountStore.
+     * @param plugin The owning plugin.
+     * @param flushInterval Minimum time between two flushes in milliseconds.
+     */
+    protected AbstractAccountStore(Ecoinomy plugin, long flushInterval) {
+        this.plugin        = plugin;
+        this.flushInterval = Math.max(0, flushInterval);
+        this.flushLatency  = Metrics.histogram("store." + this.getName() + ".flush",
+                Histogram.NANOS);
+        this.flushSize     = Metrics.histogram("store." + this.getName() + ".flushSize",
+                this.getSizeUnit());
+    }
+
+    /**
+     * Queues a change for the next flush. Called while the accounts lock is
+     * held.
+     * @param change The change
+     * @throws IOException If the change could not be queued
+     */
+    protected abstract void enqueue(AccountChange change) throws IOException;
+
+    /**
+     * Writes all queued changes.
+     * @param fullSave true to write all accounts
+     * @return Amount of written data
+     * @throws IOException If the changes could not be written
+     */
+    protected abstract long write(boolean fullSave) throws IOException;
+
+    /**
+     * Gets the unit of the amounts returned by write(). Called by the
+     * constructor.
+     * @return Histogram.BYTES or Histogram.ROWS
+     */
+    protected String getSizeUnit() {
+        return Histogram.BYTES;
+    }
+
+    /**
+     * Checks if all accounts should be written on shutdown.
+     * @return true to write all accounts on shutdown
+     */
+    protected boolean isFullSaveOnShutdown() {
+        return false;
+    }
+
+    /**
+     * Releases all resources. Called after the final flush.
+     * @throws IOException If the resources could not be released
+     */
+    protected void close() throws IOException {
+    }
+
+    /**
+     * Starts the writer thread.
+     * @throws IllegalStateException If the writer is already running.
+     */
+    @Override
+    public synchronized void start() {
+        if (this.thread != null) {
+            throw new IllegalStateException("Writer is already running");
+        }
+
+        this.running = true;
+        this.thread  = new Thread(this, "eCoinomy-AccountStore");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * Stops the writer thread and writes all pending changes. This call
+     * blocks until the data is stored.
+     */
+    @Override
+    public synchronized void shutdown() {
+        this.running = false;
+
+        if (this.thread != null) {
+            synchronized (this.monitor) {
+                this.monitor.notifyAll();
+            }
+
+            try {
+                this.thread.join();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+
+            this.thread = null;
+        }
+
+        // Final blocking drain
+        if (this.isFullSaveOnShutdown()) {
+            this.fullSaveRequested = true;
+        }
+        this.flush();
+
+        try {
+            this.close();
+        } catch (IOException ex) {
+            this.plugin.getLogger().log(Level.WARNING, "Could not close "
+                    + this.getName() + " store", ex);
+        }
+    }
+
+    /**
+     * Queues the change and marks the store as dirty.
+     * @param change The change
+     */
+    @Override
+    public void accountChanged(AccountChange change) {
+        try {
+            this.enqueue(change);
+        } catch (IOException ex) {
+            // Fall back to a full save
+            this.plugin.getLogger().log(Level.SEVERE,
+                    "Could not queue change " + change, ex);
+            this.fullSaveRequested = true;
+        }
+
+        this.markDirty();
+    }
+
+    @Override
+    public void requestFullSave() {
+        this.fullSaveRequested = true;
+        this.markDirty();
+    }
+
+    /**
+     * Marks the store as modified. The changes will be written with the
+     * next flush.
+     */
+    protected void markDirty() {
+        if (this.pendingChanges.getAndIncrement() == 0) {
+            synchronized (this.monitor) {
+                this.monitor.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Writes all queued changes.
+     */
+    @Override
+    public synchronized void flush() {
+        // Reset the counter before writing, so changes made while writing are
+        // picked up by the next flush.
+        long pending = this.pendingChanges.getAndSet(0);
+        if (pending == 0 && !this.fullSaveRequested) {
+            return;
+        }
+
+        boolean fullSave = this.fullSaveRequested;
+        this.fullSaveRequested = false;
+
+        long start = System.nanoTime();
+        long written;
+
+        try {
+            written = this.write(fullSave);
+        } catch (IOException ex) {
+            // Keep the changes pending, so the next flush will retry. Changes
+            // lost by a failed write are covered by a full save.
+            this.pendingChanges.addAndGet(Math.max(1, pending));
+            this.fullSaveRequested = true;
+            this.plugin.getLogger().log(Level.SEVERE, "Could not save data to "
+                    + this.getName() + " store", ex);
+            return;
+        }
+
+        this.lastFlushNanos = System.nanoTime() - start;
+        this.lastFlushSize  = written;
+        this.flushCount.incrementAndGet();
+
+        this.flushLatency.record(this.lastFlushNanos);
+        this.flushSize.record(written);
+        if (Histogram.BYTES.equals(this.flushSize.getUnit())) {
+            this.bytesWritten.add(written);
+        }
+
+        this.plugin.getLogger().log(Level.FINE,
+                "Flushed {0} change(s) in {1} ms",
+                new Object[] { pending, this.getLastFlushMillis() });
+    }
+
+    @Override
+    public void run() {
+        long lastFlush = 0;
+
+        while (this.running) {
+            try {
+                synchronized (this.monitor) {
+                    // Wait for changes
+                    while (this.running && this.pendingChanges.get() == 0) {
+                        this.monitor.wait();
+                    }
+
+                    // Coalesce all changes until the interval has passed
+                    long wait = lastFlush + this.flushInterval
+                            - TimeUnit.NANOSECONDS.toMillis(System.nanoTime());
+                    while (this.running && wait > 0) {
+                        this.monitor.wait(wait);
+                        wait = lastFlush + this.flushInterval
+                                - TimeUnit.NANOSECONDS.toMillis(System.nanoTime());
+                    }
+                }
+            } catch (InterruptedException ex) {
+                break;
+            }
+
+            // The final flush is done by shutdown()
+            if (!this.running) {
+                break;
+            }
+
+            this.flush();
+            lastFlush = TimeUnit.NANOSECONDS.toMillis(System.nanoTime());
+        }
+    }
+
+    @Override
+    public long getFlushCount() {
+        return this.flushCount.get();
+    }
+
+    @Override
+    public double getLastFlushMillis() {
+        return this.lastFlushNanos / 1000000.0;
+    }
+
+    @Override
+    public long getLastFlushSize() {
+        return this.lastFlushSize;
+    }
+}
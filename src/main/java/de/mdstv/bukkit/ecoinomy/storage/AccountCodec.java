@@ -0,0 +1,609 @@
+package de.mdstv.bukkit.ecoinomy.storage;
+
+import de.mdstv.bukkit.ecoinomy.account.Account;
+import de.mdstv.bukkit.ecoinomy.account.AccountMember;
+import de.mdstv.bukkit.ecoinomy.account.AccountPermissionSet;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Binary format of the accounts database.
+ *
+ * Layout:
+ * <pre>
+ * header:  magic "ECDB" (int), version (byte), flags (byte), sequence (long)
+ * body:    string table, account count, accounts
+ * </pre>
+ * The body is deflated, if FLAG_DEFLATE is set. Member names, permission
+ * nodes and coin names are stored once in the string table and referenced
+ * by index. All counts, indices and amounts are varints.
+ *
+ * If FLAG_INDEXED is set, the body is never deflated and has this layout:
+ * <pre>
+ * body:    string table, index, records
+ * index:   account count, (name, record offset, record length) per account
+ * </pre>
+ * Record offsets are relative to the first record, so single accounts can
+ * be decoded straight from a memory-mapped file. See MappedAccountFile.
+ * @author Morph <admin@mds-tv.de>
+ */
+public final class AccountCodec {
+    /**
+     * Magic number of the database file ("ECDB").
+     */
+    public static final int MAGIC = 0x45434442;
+
+    /**
+     * Current format version.
+     */
+    public static final int VERSION = 2;
+
+    /**
+     * Flag for a deflated body.
+     */
+    public static final int FLAG_DEFLATE = 1;
+
+    /**
+     * Flag for an indexed body.
+     */
+    public static final int FLAG_INDEXED = 2;
+
+    /**
+     * Size of the header in bytes.
+     */
+    public static final int HEADER_SIZE = 14;
+
+    /**
+     * Value tags for permission values.
+     */
+    private static final byte VALUE_NULL    = 0;
+    private static final byte VALUE_BOOLEAN = 1;
+    private static final byte VALUE_LONG    = 2;
+    private static final byte VALUE_DOUBLE  = 3;
+    private static final byte VALUE_STRING  = 4;
+
+    /**
+     * Result of decoding a database.
+     */
+    public static final class Snapshot {
+        /**
+         * Sequence number of the last journaled change in this snapshot.
+         */
+        public final long sequence;
+
+        /**
+         * The decoded accounts.
+         */
+        public final HashMap<String, Account> accounts;
+
+        /**
+         * Creates a new Snapshot.
+         * @param sequence Sequence number of the last journaled change
+         * @param accounts The accounts
+         */
+        public Snapshot(long sequence, HashMap<String, Account> accounts) {
+            this.sequence = sequence;
+            this.accounts = accounts;
+        }
+    }
+
+    private AccountCodec() {
+    }
+
+    /**
+     * Checks if the data starts with the magic number of this format.
+     * @param head The first bytes of the data, at least 4
+     * @return true if the data is in this format
+     */
+    public static boolean isCodecFormat(byte[] head) {
+        return head.length >= 4 && ((head[0] & 0xFF) << 24
+                | (head[1] & 0xFF) << 16 | (head[2] & 0xFF) << 8
+                | (head[3] & 0xFF)) == MAGIC;
+    }
+
+    /**
+     * Checks if the data is an indexed database. The data must be in this
+     * format.
+     * @param head The first bytes of the data, at least 6
+     * @return true if the database has an index
+     */
+    public static boolean isIndexed(byte[] head) {
+        return head.length >= 6 && (head[5] & FLAG_INDEXED) != 0;
+    }
+
+    /**
+     * Writes the header.
+     * @param out The output
+     * @param flags The format flags
+     * @param sequence Sequence number of the last journaled change
+     * @throws IOException If the header could not be written
+     */
+    static void writeHeader(DataOutput out, int flags, long sequence)
+            throws IOException {
+        out.writeInt(MAGIC);
+        out.writeByte(VERSION);
+        out.writeByte(flags);
+        out.writeLong(sequence);
+    }
+
+    /**
+     * Encodes all accounts into a byte array.
+     * @param accounts The accounts
+     * @param sequence Sequence number of the last journaled change
+     * @param compress true to deflate the body
+     * @return The encoded database
+     * @throws IOException If the accounts could not be encoded
+     */
+    public static byte[] encode(Map<String, Account> accounts, long sequence,
+            boolean compress) throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream(4096);
+        encode(bos, accounts, sequence, compress);
+        return bos.toByteArray();
+    }
+
+    /**
+     * Encodes all accounts into a stream.
+     * @param os The target stream, will not be closed
+     * @param accounts The accounts
+     * @param sequence Sequence number of the last journaled change
+     * @param compress true to deflate the body
+     * @throws IOException If the accounts could not be encoded
+     */
+    public static void encode(OutputStream os, Map<String, Account> accounts,
+            long sequence, boolean compress) throws IOException {
+        // Header
+        DataOutputStream header = new DataOutputStream(os);
+        writeHeader(header, compress ? FLAG_DEFLATE : 0, sequence);
+        header.flush();
+
+        // Body
+        Deflater deflater = null;
+        OutputStream bodyStream = os;
+        if (compress) {
+            deflater   = new Deflater(Deflater.BEST_SPEED);
+            bodyStream = new DeflaterOutputStream(os, deflater, 8192);
+        }
+
+        try {
+            DataOutputStream body = new DataOutputStream(
+                    new BufferedOutputStream(bodyStream, 8192));
+            writeBody(body, accounts.values());
+            body.flush();
+
+            if (bodyStream instanceof DeflaterOutputStream) {
+                ((DeflaterOutputStream) bodyStream).finish();
+            }
+        } finally {
+            if (deflater != null) {
+                deflater.end();
+            }
+        }
+    }
+
+    /**
+     * Decodes a database from a stream.
+     * @param is The source stream, will not be closed
+     * @return The decoded snapshot
+     * @throws IOException If the data is invalid
+     */
+    public static Snapshot decode(InputStream is) throws IOException {
+        DataInputStream header = new DataInputStream(is);
+
+        // Header
+        if (header.readInt() != MAGIC) {
+            throw new IOException("Not an eCoinomy database");
+        }
+
+        int version = header.readUnsignedByte();
+        if (version > VERSION) {
+            throw new IOException("Unsupported database version " + version);
+        }
+
+        int  flags    = header.readUnsignedByte();
+        long sequence = header.readLong();
+
+        // Body
+        InputStream bodyStream = is;
+        if ((flags & FLAG_DEFLATE) != 0) {
+            bodyStream = new InflaterInputStream(is);
+        }
+
+        DataInputStream body = new DataInputStream(
+                new BufferedInputStream(bodyStream, 8192));
+        List<Account> accounts = (flags & FLAG_INDEXED) != 0
+                ? readIndexedBody(body) : readBody(body);
+
+        HashMap<String, Account> accountMap = new HashMap<>(
+                Math.max(16, accounts.size() * 4 / 3 + 1));
+        for (Account acc : accounts) {
+            accountMap.put(acc.getName(), acc);
+        }
+
+        return new Snapshot(sequence, accountMap);
+    }
+
+    /**
+     * Encodes a single account without header and compression. Used for
+     * journal records.
+     * @param account The account
+     * @return The encoded account
+     * @throws IOException If the account could not be encoded
+     */
+    public static byte[] encodeAccount(Account account) throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream(128);
+        DataOutputStream      out = new DataOutputStream(bos);
+        writeBody(out, Collections.singletonList(account));
+        out.flush();
+        return bos.toByteArray();
+    }
+
+    /**
+     * Decodes a single account written by encodeAccount.
+     * @param data The encoded account
+     * @return The account
+     * @throws IOException If the data is invalid
+     */
+    public static Account decodeAccount(byte[] data) throws IOException {
+        List<Account> accounts = readBody(new DataInputStream(
+                new ByteArrayInputStream(data)));
+
+        if (accounts.size() != 1) {
+            throw new IOException("Expected a single account");
+        }
+
+        return accounts.get(0);
+    }
+
+    /**
+     * Writes the string table and all accounts.
+     */
+    private static void writeBody(DataOutput out, Iterable<Account> accounts)
+            throws IOException {
+        // Collect all shared strings
+        LinkedHashMap<String, Integer> strings = new LinkedHashMap<>();
+        ArrayList<Map<String, Long>> balances = new ArrayList<>();
+        for (Account acc : accounts) {
+            Map<String, Long> amounts = acc.getBalance().getAmounts();
+            balances.add(amounts);
+            internStrings(strings, acc, amounts);
+        }
+
+        writeStringTable(out, strings);
+
+        // Accounts
+        writeVarLong(out, balances.size());
+        int index = 0;
+        for (Account acc : accounts) {
+            writeAccount(out, acc, balances.get(index++), strings);
+        }
+    }
+
+    /**
+     * Reads the string table and all accounts.
+     */
+    private static List<Account> readBody(DataInput in) throws IOException {
+        String[] strings = readStringTable(in);
+
+        // Accounts
+        int accountCount = readCount(in);
+        ArrayList<Account> accounts = new ArrayList<>(accountCount);
+        for (int i = 0; i < accountCount; i++) {
+            accounts.add(readAccount(in, strings));
+        }
+
+        return accounts;
+    }
+
+    /**
+     * Reads all accounts of an indexed body. The records follow the index in
+     * index order, so they are read sequentially.
+     */
+    private static List<Account> readIndexedBody(DataInput in) throws IOException {
+        String[] strings = readStringTable(in);
+
+        // Skip the index
+        int accountCount = readCount(in);
+        for (int i = 0; i < accountCount; i++) {
+            in.readUTF();
+            readVarLong(in);
+            readVarLong(in);
+        }
+
+        // Records
+        ArrayList<Account> accounts = new ArrayList<>(accountCount);
+        for (int i = 0; i < accountCount; i++) {
+            accounts.add(readAccount(in, strings));
+        }
+
+        return accounts;
+    }
+
+    /**
+     * Adds all strings of an account to the string table.
+     * @param strings The string table
+     * @param acc The account
+     * @param amounts The balance amounts of the account
+     */
+    static void internStrings(Map<String, Integer> strings, Account acc,
+            Map<String, Long> amounts) {
+        for (AccountMember member : acc.getAllMembers()) {
+            intern(strings, member.getName());
+        }
+
+        for (Map.Entry<String, AccountPermissionSet> e
+                : acc.getAllMemberPerms().entrySet()) {
+            intern(strings, e.getKey());
+
+            for (String node : e.getValue().getPermissionValues().keySet()) {
+                intern(strings, node);
+            }
+        }
+
+        for (String coin : amounts.keySet()) {
+            intern(strings, coin);
+        }
+    }
+
+    /**
+     * Writes the string table.
+     * @param out The output
+     * @param strings The string table, in index order
+     * @throws IOException If the table could not be written
+     */
+    static void writeStringTable(DataOutput out, Map<String, Integer> strings)
+            throws IOException {
+        writeVarLong(out, strings.size());
+        for (String str : strings.keySet()) {
+            out.writeUTF(str);
+        }
+    }
+
+    /**
+     * Reads the string table.
+     * @param in The input
+     * @return The strings in index order
+     * @throws IOException If the table is invalid
+     */
+    static String[] readStringTable(DataInput in) throws IOException {
+        String[] strings = new String[readCount(in)];
+        for (int i = 0; i < strings.length; i++) {
+            strings[i] = in.readUTF();
+        }
+
+        return strings;
+    }
+
+    /**
+     * Writes a single account. All strings must be in the string table.
+     * @param out The output
+     * @param acc The account
+     * @param amounts The balance amounts of the account
+     * @param strings The string table
+     * @throws IOException If the account could not be written
+     */
+    static void writeAccount(DataOutput out, Account acc,
+            Map<String, Long> amounts, Map<String, Integer> strings)
+            throws IOException {
+        out.writeUTF(acc.getName());
+
+        // Members
+        Collection<AccountMember> members = acc.getAllMembers();
+        writeVarLong(out, members.size());
+        for (AccountMember member : members) {
+            writeVarLong(out, strings.get(member.getName()));
+        }
+
+        // Permissions
+        Map<String, AccountPermissionSet> perms = acc.getAllMemberPerms();
+        writeVarLong(out, perms.size());
+        for (Map.Entry<String, AccountPermissionSet> e : perms.entrySet()) {
+            AccountPermissionSet set = e.getValue();
+            writeVarLong(out, strings.get(e.getKey()));
+            out.writeBoolean(set.isOwner());
+
+            Map<String, Object> nodes = set.getPermissionValues();
+            writeVarLong(out, nodes.size());
+            for (Map.Entry<String, Object> node : nodes.entrySet()) {
+                writeVarLong(out, strings.get(node.getKey()));
+                writeValue(out, node.getValue());
+            }
+        }
+
+        // Balance
+        writeVarLong(out, amounts.size());
+        for (Map.Entry<String, Long> e : amounts.entrySet()) {
+            writeVarLong(out, strings.get(e.getKey()));
+            writeVarLong(out, zigZag(e.getValue()));
+        }
+    }
+
+    /**
+     * Reads a single account.
+     * @param in The input
+     * @param strings The string table
+     * @return The account
+     * @throws IOException If the data is invalid
+     */
+    static Account readAccount(DataInput in, String[] strings) throws IOException {
+        Account acc = new Account(in.readUTF());
+
+        // Members
+        int memberCount = readCount(in);
+        for (int m = 0; m < memberCount; m++) {
+            acc.restoreMember(new AccountMember(readString(in, strings)));
+        }
+
+        // Permissions
+        int permCount = readCount(in);
+        for (int p = 0; p < permCount; p++) {
+            AccountPermissionSet set =
+                    acc.getOrCreateMemberPerms(readString(in, strings));
+            set.setOwner(in.readBoolean());
+
+            int nodeCount = readCount(in);
+            for (int n = 0; n < nodeCount; n++) {
+                String node = readString(in, strings);
+                set.setPermission(node, readValue(in));
+            }
+        }
+
+        // Balance
+        int coinCount = readCount(in);
+        HashMap<String, Long> amounts = new HashMap<>(coinCount * 2);
+        for (int c = 0; c < coinCount; c++) {
+            String coin = readString(in, strings);
+            amounts.put(coin, unZigZag(readVarLong(in)));
+        }
+
+        acc.getBalance().restore(amounts);
+
+        return acc;
+    }
+
+    /**
+     * Adds a string to the string table, if not present yet.
+     */
+    static void intern(Map<String, Integer> strings, String str) {
+        if (!strings.containsKey(str)) {
+            strings.put(str, strings.size());
+        }
+    }
+
+    /**
+     * Reads a string table reference.
+     */
+    private static String readString(DataInput in, String[] strings)
+            throws IOException {
+        long index = readVarLong(in);
+        if (index < 0 || index >= strings.length) {
+            throw new IOException("Invalid string reference " + index);
+        }
+
+        return strings[(int) index];
+    }
+
+    /**
+     * Reads a non-negative count.
+     */
+    static int readCount(DataInput in) throws IOException {
+        long count = readVarLong(in);
+        if (count < 0 || count > Integer.MAX_VALUE) {
+            throw new IOException("Invalid count " + count);
+        }
+
+        return (int) count;
+    }
+
+    /**
+     * Writes a permission value. Unknown value types are stored as String.
+     * @param out The output
+     * @param value The value
+     * @throws IOException If the value could not be written
+     */
+    public static void writeValue(DataOutput out, Object value) throws IOException {
+        if (value == null) {
+            out.writeByte(VALUE_NULL);
+        } else if (value instanceof Boolean) {
+            out.writeByte(VALUE_BOOLEAN);
+            out.writeBoolean((Boolean) value);
+        } else if (value instanceof Integer || value instanceof Long
+                || value instanceof Short || value instanceof Byte) {
+            out.writeByte(VALUE_LONG);
+            writeVarLong(out, zigZag(((Number) value).longValue()));
+        } else if (value instanceof Number) {
+            out.writeByte(VALUE_DOUBLE);
+            out.writeDouble(((Number) value).doubleValue());
+        } else {
+            out.writeByte(VALUE_STRING);
+            out.writeUTF(value.toString());
+        }
+    }
+
+    /**
+     * Reads a permission value written by writeValue.
+     * @param in The input
+     * @return The value
+     * @throws IOException If the value could not be read
+     */
+    public static Object readValue(DataInput in) throws IOException {
+        byte tag = in.readByte();
+        switch (tag) {
+            case VALUE_NULL:    return null;
+            case VALUE_BOOLEAN: return in.readBoolean();
+            case VALUE_LONG:    return unZigZag(readVarLong(in));
+            case VALUE_DOUBLE:  return in.readDouble();
+            case VALUE_STRING:  return in.readUTF();
+            default: {
+                throw new IOException("Unknown value tag " + tag);
+            }
+        }
+    }
+
+    /**
+     * Writes an unsigned varint, 7 bits per byte.
+     * @param out The output
+     * @param value The value, treated as unsigned
+     * @throws IOException If the value could not be written
+     */
+    public static void writeVarLong(DataOutput out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    /**
+     * Reads an unsigned varint.
+     * @param in The input
+     * @return The value
+     * @throws IOException If the varint is too long
+     */
+    public static long readVarLong(DataInput in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+
+        throw new IOException("Malformed varint");
+    }
+
+    /**
+     * Maps signed values to unsigned ones, so small negative values stay
+     * small.
+     */
+    public static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    /**
+     * Reverses zigZag.
+     */
+    public static long unZigZag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
@@ -0,0 +1,499 @@
+package de.mdstv.bukkit.ecoinomy.storage;
+
+import de.mdstv.bukkit.ecoinomy.account.Account;
+import de.mdstv.bukkit.ecoinomy.account.AccountChange;
+import de.mdstv.bukkit.ecoinomy.account.AccountMember;
+import de.mdstv.bukkit.ecoinomy.account.AccountPermissionSet;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only journal of account changes.
+ *
+ * Every change is encoded into a small record with an increasing sequence
+ * number. Records are queued in memory and appended to the journal file by
+ * the FileAccountStore. A snapshot stores the sequence number of the last
+ * change it contains, so replaying the journal on top of a snapshot skips
+ * all records which are already part of it.
+ *
+ * Balance changes of different threads may be journaled in another order
+ * than they were applied. Replay adds up all balance changes of an account
+ * and applies the sums at the end, so their order does not matter.
+ *
+ * Record layout: payload length (int), CRC32 of the payload (int), payload.
+ * A torn record at the end of the file is detected by its checksum and cut
+ * off on replay.
+ * @author Morph <admin@mds-tv.de>
+ */
+public class AccountJournal {
+    /**
+     * Upper bound for a single record. Larger lengths mean a corrupted file.
+     */
+    private static final int MAX_RECORD_SIZE = 16 * 1024 * 1024;
+
+    /**
+     * The journal file.
+     */
+    private final File file;
+
+    /**
+     * Sequence number of the last appended change.
+     */
+    private final AtomicLong sequence = new AtomicLong();
+
+    /**
+     * Encoded records which are not written to the file yet.
+     */
+    private final ConcurrentLinkedQueue<byte[]> queue = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Open stream to the journal file, null if closed.
+     */
+    private FileOutputStream out;
+
+    /**
+     * Creates a new AccountJournal.
+     * @param file The journal file
+     */
+    public AccountJournal(File file) {
+        this.file = file;
+    }
+
+    /**
+     * Gets the journal file.
+     * @return The journal file
+     */
+    public File getFile() {
+        return this.file;
+    }
+
+    /**
+     * Gets the sequence number of the last appended change.
+     * @return Sequence number
+     */
+    public long getSequence() {
+        return this.sequence.get();
+    }
+
+    /**
+     * Gets the current size of the journal file.
+     * @return Size in bytes
+     */
+    public long size() {
+        return this.file.length();
+    }
+
+    /**
+     * Gets the number of records which are not written to the file yet.
+     * @return Number of queued records
+     */
+    public int getQueuedRecords() {
+        return this.queue.size();
+    }
+
+    /**
+     * Encodes a change and queues it for the next drain. Thread-safe,
+     * records are queued in the order of their sequence numbers.
+     * @param change The change to append
+     * @return The sequence number of the change
+     * @throws IOException If the change could not be encoded
+     */
+    public long append(AccountChange change) throws IOException {
+        byte[] record = encode(change);
+
+        // Number and queue in one step, so the file is in sequence order
+        synchronized (this.queue) {
+            long seq = this.sequence.incrementAndGet();
+            seal(record, seq);
+            this.queue.add(record);
+            return seq;
+        }
+    }
+
+    /**
+     * Writes all queued records to the journal file.
+     * @return Number of written bytes
+     * @throws IOException If the records could not be written
+     */
+    public synchronized long drain() throws IOException {
+        if (this.queue.isEmpty()) {
+            return 0;
+        }
+
+        if (this.out == null) {
+            this.out = new FileOutputStream(this.file, true);
+        }
+
+        // Collect all records into one buffer to write them at once
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        byte[] record;
+        while ((record = this.queue.poll()) != null) {
+            bos.write(record);
+        }
+
+        bos.writeTo(this.out);
+        this.out.flush();
+        this.out.getFD().sync();
+
+        return bos.size();
+    }
+
+    /**
+     * Truncates the journal file. Call this only after a snapshot containing
+     * all written records was stored.
+     * @throws IOException If the file could not be truncated
+     */
+    public synchronized void reset() throws IOException {
+        this.close();
+        this.out = new FileOutputStream(this.file, false);
+    }
+
+    /**
+     * Closes the journal file. Queued records are not written.
+     * @throws IOException If the file could not be closed
+     */
+    public synchronized void close() throws IOException {
+        if (this.out != null) {
+            this.out.close();
+            this.out = null;
+        }
+    }
+
+    /**
+     * Replays all records newer than the given sequence number onto the
+     * accounts. A torn record at the end of the journal is cut off.
+     * @param accounts The accounts to apply the changes to
+     * @param afterSeq Sequence number of the last change in the snapshot
+     * @return Number of applied changes
+     * @throws IOException If the journal could not be read
+     */
+    public synchronized long replay(Map<String, Account> accounts, long afterSeq)
+            throws IOException {
+        this.sequence.set(afterSeq);
+
+        if (!this.file.isFile()) {
+            return 0;
+        }
+
+        long applied    = 0;
+        long validBytes = 0;
+
+        // Summed balance changes in base units by account and coin
+        LinkedHashMap<Account, Map<String, Long>> balances = new LinkedHashMap<>();
+
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(this.file)))) {
+            CRC32 crc = new CRC32();
+
+            while (true) {
+                int length;
+                int checksum;
+                byte[] payload;
+
+                try {
+                    length   = in.readInt();
+                    checksum = in.readInt();
+
+                    if (length <= 0 || length > MAX_RECORD_SIZE) {
+                        break;
+                    }
+
+                    payload = new byte[length];
+                    in.readFully(payload);
+                } catch (EOFException ex) {
+                    break;
+                }
+
+                // Verify record
+                crc.reset();
+                crc.update(payload, 0, payload.length);
+                if ((int) crc.getValue() != checksum) {
+                    break;
+                }
+
+                validBytes += 8 + length;
+
+                // Decode and apply
+                DataInputStream rec = new DataInputStream(
+                        new ByteArrayInputStream(payload));
+                long seq = rec.readLong();
+                if (seq > this.sequence.get()) {
+                    this.sequence.set(seq);
+                }
+
+                if (seq > afterSeq) {
+                    apply(accounts, decode(rec), balances);
+                    applied++;
+                }
+            }
+        }
+
+        // A value is only cut off at 0 after all of its changes
+        for (Map.Entry<Account, Map<String, Long>> entry : balances.entrySet()) {
+            for (Map.Entry<String, Long> sum : entry.getValue().entrySet()) {
+                entry.getKey().getBalance().applyDelta(sum.getKey(), sum.getValue());
+            }
+        }
+
+        // Cut off a torn tail, so new records are appended to valid data
+        if (validBytes < this.file.length()) {
+            try (RandomAccessFile raf = new RandomAccessFile(this.file, "rw")) {
+                raf.setLength(validBytes);
+            }
+        }
+
+        return applied;
+    }
+
+    /**
+     * Applies a change to the accounts. Balance changes are only added to
+     * the sums of their account.
+     * @param accounts The accounts
+     * @param change The change to apply
+     * @param balances Summed balance changes by account and coin
+     */
+    private static void apply(Map<String, Account> accounts, AccountChange change,
+            Map<Account, Map<String, Long>> balances) {
+        // Structural changes
+        switch (change.getType()) {
+            case CREATE: {
+                accounts.put(change.getAccountName(), (Account) change.getValue());
+                return;
+            }
+            case REMOVE: {
+                accounts.remove(change.getAccountName());
+                return;
+            }
+            case RENAME: {
+                Account acc = accounts.remove(change.getAccountName());
+                if (acc != null) {
+                    String newName = (String) change.getValue();
+                    acc.setName(newName);
+                    accounts.put(newName, acc);
+                }
+                return;
+            }
+        }
+
+        // Account changes
+        Account acc = accounts.get(change.getAccountName());
+        if (acc == null) {
+            return;
+        }
+
+        switch (change.getType()) {
+            case MEMBER_ADD: {
+                acc.addMember(new AccountMember(change.getMemberName()));
+                break;
+            }
+            case MEMBER_REMOVE: {
+                acc.removeMember(change.getMemberName());
+                break;
+            }
+            case OWNER_SET: {
+                acc.getOrCreateMemberPerms(change.getMemberName())
+                        .setOwner((Boolean) change.getValue());
+                break;
+            }
+            case PERMISSION_SET: {
+                acc.getOrCreateMemberPerms(change.getMemberName())
+                        .setPermission(change.getNode(), change.getValue());
+                break;
+            }
+            case PERMISSION_REMOVE: {
+                AccountPermissionSet perms = acc.getMemberPerms(change.getMemberName());
+                if (perms != null) {
+                    perms.removePermission(change.getNode());
+                }
+                break;
+            }
+            case BALANCE: {
+                Map<String, Long> sums = balances.get(acc);
+                if (sums == null) {
+                    sums = new HashMap<>();
+                    balances.put(acc, sums);
+                }
+
+                Long sum   = sums.get(change.getNode());
+                long delta = (Long) change.getValue();
+                sums.put(change.getNode(), sum == null ? delta : saturatedAdd(sum, delta));
+                break;
+            }
+        }
+    }
+
+    /**
+     * Adds two values, cut off at the range of long.
+     */
+    private static long saturatedAdd(long a, long b) {
+        long sum = a + b;
+        if (((a ^ sum) & (b ^ sum)) < 0) {
+            return a < 0 ? Long.MIN_VALUE : Long.MAX_VALUE;
+        }
+
+        return sum;
+    }
+
+    /**
+     * Encodes a change into a journal record. Sequence number, length and
+     * checksum are filled in by seal().
+     * @param change The change
+     * @return The record
+     * @throws IOException If the change could not be encoded
+     */
+    private static byte[] encode(AccountChange change) throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream(64);
+        DataOutputStream      out = new DataOutputStream(bos);
+
+        // Reserve space for length, checksum and sequence number
+        out.writeLong(0);
+        out.writeLong(0);
+
+        // The ordinal is stored, so never reorder AccountChange.Type
+        out.writeByte(change.getType().ordinal());
+        out.writeUTF(change.getAccountName());
+
+        switch (change.getType()) {
+            case CREATE: {
+                byte[] accBytes = AccountCodec.encodeAccount((Account) change.getValue());
+                out.writeInt(accBytes.length);
+                out.write(accBytes);
+                break;
+            }
+            case RENAME: {
+                out.writeUTF((String) change.getValue());
+                break;
+            }
+            case MEMBER_ADD:
+            case MEMBER_REMOVE: {
+                out.writeUTF(change.getMemberName());
+                break;
+            }
+            case OWNER_SET: {
+                out.writeUTF(change.getMemberName());
+                out.writeBoolean((Boolean) change.getValue());
+                break;
+            }
+            case PERMISSION_SET: {
+                out.writeUTF(change.getMemberName());
+                out.writeUTF(change.getNode());
+                AccountCodec.writeValue(out, change.getValue());
+                break;
+            }
+            case PERMISSION_REMOVE: {
+                out.writeUTF(change.getMemberName());
+                out.writeUTF(change.getNode());
+                break;
+            }
+            case BALANCE: {
+                out.writeUTF(change.getNode());
+                AccountCodec.writeVarLong(out, AccountCodec.zigZag((Long) change.getValue()));
+                break;
+            }
+        }
+
+        out.flush();
+        return bos.toByteArray();
+    }
+
+    /**
+     * Fills in sequence number, length and checksum of an encoded record.
+     * @param record The record
+     * @param seq Sequence number of the change
+     */
+    private static void seal(byte[] record, long seq) {
+        writeInt(record, 8, (int) (seq >>> 32));
+        writeInt(record, 12, (int) seq);
+
+        int length = record.length - 8;
+        CRC32 crc = new CRC32();
+        crc.update(record, 8, length);
+        writeInt(record, 0, length);
+        writeInt(record, 4, (int) crc.getValue());
+    }
+
+    /**
+     * Decodes a change from a record payload. The sequence number must
+     * already be consumed.
+     * @param in The payload
+     * @return The change
+     * @throws IOException If the payload is invalid
+     */
+    private static AccountChange decode(DataInputStream in) throws IOException {
+        int type = in.readUnsignedByte();
+        if (type >= AccountChange.Type.values().length) {
+            throw new IOException("Unknown journal record type " + type);
+        }
+
+        AccountChange.Type changeType  = AccountChange.Type.values()[type];
+        String             accountName = in.readUTF();
+
+        switch (changeType) {
+            case CREATE: {
+                byte[] accBytes = new byte[in.readInt()];
+                in.readFully(accBytes);
+
+                return new AccountChange(changeType, accountName, null, null,
+                        AccountCodec.decodeAccount(accBytes));
+            }
+            case REMOVE: {
+                return new AccountChange(changeType, accountName, null, null, null);
+            }
+            case RENAME: {
+                return new AccountChange(changeType, accountName, null, null,
+                        in.readUTF());
+            }
+            case MEMBER_ADD:
+            case MEMBER_REMOVE: {
+                return new AccountChange(changeType, accountName, in.readUTF(),
+                        null, null);
+            }
+            case OWNER_SET: {
+                String member = in.readUTF();
+                return new AccountChange(changeType, accountName, member, null,
+                        in.readBoolean());
+            }
+            case PERMISSION_SET: {
+                String member = in.readUTF();
+                String node   = in.readUTF();
+                return new AccountChange(changeType, accountName, member, node,
+                        AccountCodec.readValue(in));
+            }
+            case BALANCE: {
+                String coin = in.readUTF();
+                return new AccountChange(changeType, accountName, null, coin,
+                        AccountCodec.unZigZag(AccountCodec.readVarLong(in)));
+            }
+            default: {
+                String member = in.readUTF();
+                return new AccountChange(changeType, accountName, member,
+                        in.readUTF(), null);
+            }
+        }
+    }
+
+    /**
+     * Writes a big-endian int into a byte array.
+     */
+    private static void writeInt(byte[] buf, int off, int value) {
+        buf[off]     = (byte) (value >>> 24);
+        buf[off + 1] = (byte) (value >>> 16);
+        buf[off + 2] = (byte) (value >>> 8);
+        buf[off + 3] = (byte) value;
+    }
+}
@@ -0,0 +1,1099 @@
+package de.mdstv.bukkit.ecoinomy.storage;
+
+import de.mdstv.bukkit.ecoinomy.account.Account;
+import de.mdstv.bukkit.ecoinomy.account.AccountChange;
+import de.mdstv.bukkit.ecoinomy.account.AccountChangeListener;
+import de.mdstv.bukkit.ecoinomy.account.AccountMember;
+import de.mdstv.bukkit.ecoinomy.stats.Metrics;
+import de.mdstv.bukkit.ecoinomy.stats.StripedCounter;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+
+/**
+ * Thread-safe registry of all accounts.
+ *
+ * Account names are case-insensitive, the registry keeps the spelling the
+ * account was registered with. Reads are lock-free and may be done from any
+ * thread, modifications are serialized. Use putIfAbsent() and rename() to
+ * create and rename accounts atomically.
+ *
+ * When backed by a MappedAccountFile, only the index is held in memory.
+ * An account is decoded the first time get() asks for it. Decoded accounts
+ * which are unchanged since the last snapshot are evicted, if more than
+ * maxLoaded accounts are in memory. Recently read accounts get a second
+ * chance before they are evicted. Changed accounts stay in memory until
+ * they are part of a written snapshot.
+ *
+ * An evicted account is still reachable through a weak reference, so
+ * there is never more than one instance of an account. Iterating the
+ * entries decodes every account, use keySet() if only the names are needed.
+ *
+ * The registry also knows the accounts of every member and keeps the
+ * accounts sorted by name and by balance. These indexes are built on first
+ * use and kept up to date, so pages, top lists and ranks take O(log n).
+ * Balance changes do not lock, they only mark the account. Marked accounts
+ * are moved in the balance index the next time it is read.
+ * @author Morph <admin@mds-tv.de>
+ */
+public class AccountRegistry extends AbstractMap<String, Account> {
+    /**
+     * State of a single account.
+     */
+    private static final class Slot {
+        /**
+         * Name of the account.
+         */
+        final String name;
+
+        /**
+         * Lookup key of the name.
+         */
+        final String key;
+
+        /**
+         * Balance the slot is sorted by, only changed while the slot is not
+         * in the balance index.
+         */
+        long rankedUnits;
+
+        /**
+         * Record offset in the source file, -1 if there is no record.
+         */
+        int offset = -1;
+
+        /**
+         * Record length in the source file.
+         */
+        int length = 0;
+
+        /**
+         * Increments the version.
+         */
+        static final AtomicLongFieldUpdater<Slot> VERSION =
+                AtomicLongFieldUpdater.newUpdater(Slot.class, "version");
+
+        /**
+         * Marks a slot whose balance changed since it was ranked.
+         */
+        static final AtomicIntegerFieldUpdater<Slot> UNRANKED =
+                AtomicIntegerFieldUpdater.newUpdater(Slot.class, "unranked");
+
+        /**
+         * Incremented on every change of the account.
+         */
+        volatile long version = 0;
+
+        /**
+         * 1 if the slot is queued to be moved in the balance index.
+         */
+        volatile int unranked = 0;
+
+        /**
+         * Version stored in the source file, -1 if there is no record.
+         */
+        long cleanVersion = -1;
+
+        /**
+         * The decoded account, null if not loaded.
+         */
+        volatile Account account;
+
+        /**
+         * Set on every read, cleared by the eviction.
+         */
+        volatile boolean referenced;
+
+        /**
+         * The account after it was evicted or peeked.
+         */
+        WeakReference<Account> evicted;
+
+        Slot(String name) {
+            this.name = name;
+            this.key  = key(name);
+        }
+
+        boolean isClean() {
+            return this.offset >= 0 && this.version == this.cleanVersion;
+        }
+    }
+
+    /**
+     * Listener bound to a single account.
+     */
+    private final class SlotListener implements AccountChangeListener {
+        private final Slot    slot;
+        private final Account account;
+
+        SlotListener(Slot slot, Account account) {
+            this.slot    = slot;
+            this.account = account;
+        }
+
+        @Override
+        public void accountChanged(AccountChange change) {
+            // Makes the slot dirty before the eviction looks at it again
+            Slot.VERSION.incrementAndGet(this.slot);
+
+            switch (change.getType()) {
+                case MEMBER_ADD: {
+                    synchronized (AccountRegistry.this) {
+                        indexMember(change.getMemberName(), this.slot.name);
+                    }
+                    break;
+                }
+                case MEMBER_REMOVE: {
+                    synchronized (AccountRegistry.this) {
+                        unindexMember(change.getMemberName(), this.slot.name);
+                    }
+                    break;
+                }
+                case BALANCE: {
+                    markUnranked(this.slot);
+                    break;
+                }
+            }
+
+            // An evicted account which is still referenced was changed,
+            // pin it in memory again
+            if (this.slot.account == null) {
+                synchronized (AccountRegistry.this) {
+                    if (this.slot.account == null
+                            && slots.get(this.slot.key) == this.slot) {
+                        this.slot.account = this.account;
+                        this.slot.evicted = null;
+                        loaded.put(this.slot.name, this.slot);
+                    }
+                }
+            }
+
+            AccountChangeListener target = listener;
+            if (target != null) {
+                target.accountChanged(change);
+            }
+        }
+    }
+
+    /**
+     * Sort orders of the accounts.
+     */
+    public enum Order {
+        /**
+         * By name, ignoring the case.
+         */
+        NAME,
+
+        /**
+         * By value of the main currency, richest first.
+         */
+        BALANCE
+    }
+
+    /**
+     * Lookups of accounts in memory.
+     */
+    private static final StripedCounter CACHE_HITS = Metrics.counter(Metrics.CACHE_HITS);
+
+    /**
+     * Lookups which had to decode the account.
+     */
+    private static final StripedCounter CACHE_MISSES = Metrics.counter(Metrics.CACHE_MISSES);
+
+    /**
+     * Orders slots by name.
+     */
+    private static final Comparator<Slot> BY_NAME = new Comparator<Slot>() {
+        @Override
+        public int compare(Slot s1, Slot s2) {
+            return s1.key.compareTo(s2.key);
+        }
+    };
+
+    /**
+     * Orders slots by balance, richest first, then by name.
+     */
+    private static final Comparator<Slot> BY_BALANCE = new Comparator<Slot>() {
+        @Override
+        public int compare(Slot s1, Slot s2) {
+            int cmp = Long.compare(s2.rankedUnits, s1.rankedUnits);
+            return cmp != 0 ? cmp : s1.key.compareTo(s2.key);
+        }
+    };
+
+    /**
+     * Snapshot information needed to rebase the slots onto a new file.
+     */
+    private static final class PendingRebase {
+        final Slot[]   slots;
+        final long[]   versions;
+        final int[]    offsets;
+        final int[]    lengths;
+        final String[] strings;
+        final int      recordsBase;
+        final long     sequence;
+
+        PendingRebase(Slot[] slots, long[] versions, int[] offsets, int[] lengths,
+                String[] strings, int recordsBase, long sequence) {
+            this.slots       = slots;
+            this.versions    = versions;
+            this.offsets     = offsets;
+            this.lengths     = lengths;
+            this.strings     = strings;
+            this.recordsBase = recordsBase;
+            this.sequence    = sequence;
+        }
+    }
+
+    /**
+     * All accounts by lower case name.
+     */
+    private final ConcurrentHashMap<String, Slot> slots = new ConcurrentHashMap<>();
+
+    /**
+     * All account names by lower case name, sorted. Prefix index of the
+     * tab completion, written together with slots.
+     */
+    private final ConcurrentSkipListMap<String, String> names = new ConcurrentSkipListMap<>();
+
+    /**
+     * Decoded accounts in load order, eldest first. Guarded by this.
+     */
+    private final LinkedHashMap<String, Slot> loaded = new LinkedHashMap<>();
+
+    /**
+     * Account names by member key, null until first used. Guarded by this
+     * for writes.
+     */
+    private volatile ConcurrentHashMap<String, Set<String>> memberIndex;
+
+    /**
+     * Accounts sorted by name and by balance, null until first used.
+     * Guarded by this for writes.
+     */
+    private RankedSet<Slot> byName;
+    private volatile RankedSet<Slot> byBalance;
+
+    /**
+     * Slots whose balance changed since they were ranked.
+     */
+    private final ConcurrentLinkedQueue<Slot> unranked = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Maximum number of decoded accounts, 0 for no limit.
+     */
+    private final int maxLoaded;
+
+    /**
+     * The file undecoded accounts are read from, null if all accounts are
+     * in memory.
+     */
+    private MappedAccountFile source;
+
+    /**
+     * Gets notified about changes of all accounts.
+     */
+    private volatile AccountChangeListener listener;
+
+    /**
+     * Rebase information of the last encoded snapshot.
+     */
+    private PendingRebase pendingRebase;
+
+    /**
+     * Creates an empty registry.
+     * @param maxLoaded Maximum number of decoded accounts, 0 for no limit
+     */
+    public AccountRegistry(int maxLoaded) {
+        this.maxLoaded = Math.max(0, maxLoaded);
+    }
+
+    /**
+     * Creates a registry backed by an indexed database. Only the index is
+     * read.
+     * @param source The mapped database
+     * @param maxLoaded Maximum number of decoded accounts, 0 for no limit
+     */
+    public AccountRegistry(MappedAccountFile source, int maxLoaded) {
+        this(maxLoaded);
+        this.source = source;
+
+        String[] names   = source.getIndexNames();
+        int[]    offsets = source.getIndexOffsets();
+        int[]    lengths = source.getIndexLengths();
+        for (int i = 0; i < names.length; i++) {
+            Slot slot = new Slot(names[i]);
+            slot.offset       = offsets[i];
+            slot.length       = lengths[i];
+            slot.cleanVersion = 0;
+            this.slots.put(slot.key, slot);
+            this.names.put(slot.key, slot.name);
+        }
+
+        source.releaseIndex();
+    }
+
+    /**
+     * Gets the lookup key of an account name.
+     */
+    private static String key(Object name) {
+        return name instanceof String
+                ? ((String) name).toLowerCase(Locale.ENGLISH) : null;
+    }
+
+    /**
+     * Sets the listener which gets notified about changes of all accounts
+     * in this registry.
+     * @param listener The listener or null
+     */
+    public synchronized void setChangeListener(AccountChangeListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Gets the number of decoded accounts.
+     * @return Number of accounts in memory
+     */
+    public synchronized int getLoadedCount() {
+        return this.loaded.size();
+    }
+
+    /**
+     * Gets the names of all accounts a player is member of. Does not lock
+     * once the index is built.
+     * @param playerName The name of the player, case-insensitive
+     * @return Unmodifiable live view of the account names
+     * @throws NullPointerException If playerName is null
+     */
+    public Set<String> getAccountsOf(String playerName) {
+        ConcurrentHashMap<String, Set<String>> index = this.memberIndex;
+        if (index == null) {
+            index = this.buildMemberIndex();
+        }
+
+        Set<String> names = index.get(AccountMember.key(playerName));
+        return names != null
+                ? Collections.unmodifiableSet(names)
+                : Collections.<String>emptySet();
+    }
+
+    /**
+     * Gets the number of players which are member of any account. Builds
+     * the member index on first use.
+     * @return Number of players
+     */
+    public int getMemberCount() {
+        ConcurrentHashMap<String, Set<String>> index = this.memberIndex;
+        if (index == null) {
+            index = this.buildMemberIndex();
+        }
+
+        return index.size();
+    }
+
+    /**
+     * Gets the names of the accounts starting with a prefix, ignoring the
+     * case, in alphabetical order. Does not decode any account and does not
+     * lock.
+     * @param prefix The prefix
+     * @param limit Maximum number of names
+     * @return The account names
+     * @throws NullPointerException If prefix is null
+     */
+    public List<String> getNamesStartingWith(String prefix, int limit) {
+        String       from   = key(prefix);
+        List<String> result = new ArrayList<>(Math.min(Math.max(0, limit), 16));
+
+        for (Map.Entry<String, String> entry : this.names.tailMap(from).entrySet()) {
+            if (result.size() >= limit || !entry.getKey().startsWith(from)) {
+                break;
+            }
+
+            result.add(entry.getValue());
+        }
+
+        return result;
+    }
+
+    /**
+     * Builds a sorted index or moves the accounts changed since the last
+     * read. Lets callers do this before they take other locks, so the
+     * next getNames() or getRank() has little to do.
+     * @param order The sort order
+     * @throws NullPointerException If order is null
+     */
+    public synchronized void refreshIndex(Order order) {
+        this.getIndex(order);
+    }
+
+    /**
+     * Gets the names of a range of accounts in the given order.
+     * @param order The sort order
+     * @param from Position of the first account, starting with 0
+     * @param count Maximum number of accounts
+     * @return The account names
+     * @throws NullPointerException If order is null
+     */
+    public synchronized List<String> getNames(Order order, int from, int count) {
+        List<Slot>   range = this.getIndex(order).range(from, count);
+        List<String> names = new ArrayList<>(range.size());
+        for (Slot slot : range) {
+            names.add(slot.name);
+        }
+
+        return names;
+    }
+
+    /**
+     * Gets the position of an account in the given order.
+     * @param name The account name
+     * @param order The sort order
+     * @return The position, starting with 0, or -1 if there is no such
+     * account
+     * @throws NullPointerException If order is null
+     */
+    public synchronized int getRank(String name, Order order) {
+        RankedSet<Slot> index = this.getIndex(order);
+
+        String key  = key(name);
+        Slot   slot = key != null ? this.slots.get(key) : null;
+        return slot != null ? index.rank(slot) : -1;
+    }
+
+    /**
+     * Gets a sorted index, builds the indexes if necessary. The caller has
+     * to hold the lock of this registry.
+     */
+    private RankedSet<Slot> getIndex(Order order) {
+        if (this.byName == null) {
+            // Publish first, balance changes from now on mark their slot
+            this.byName    = new RankedSet<>(BY_NAME);
+            this.byBalance = new RankedSet<>(BY_BALANCE);
+            for (Slot slot : this.slots.values()) {
+                this.rank(slot, this.load(slot, false));
+            }
+        }
+
+        switch (order) {
+            case BALANCE: {
+                Slot slot;
+                while ((slot = this.unranked.poll()) != null) {
+                    // Clear first, a later change marks the slot again
+                    slot.unranked = 0;
+                    this.rerank(slot);
+                }
+
+                return this.byBalance;
+            }
+            default: {
+                return this.byName;
+            }
+        }
+    }
+
+    /**
+     * Adds a slot to the sorted indexes. The caller has to hold the lock
+     * of this registry.
+     */
+    private void rank(Slot slot, Account account) {
+        if (this.byName == null) {
+            return;
+        }
+
+        slot.rankedUnits = account.getBalance().getUnits(0);
+        this.byName.add(slot);
+        this.byBalance.add(slot);
+    }
+
+    /**
+     * Removes a slot from the sorted indexes. The caller has to hold the
+     * lock of this registry.
+     */
+    private void unrank(Slot slot) {
+        if (this.byName == null) {
+            return;
+        }
+
+        this.byName.remove(slot);
+        this.byBalance.remove(slot);
+    }
+
+    /**
+     * Queues a slot to be moved in the balance index. Does not lock.
+     */
+    private void markUnranked(Slot slot) {
+        if (this.byBalance != null && Slot.UNRANKED.compareAndSet(slot, 0, 1)) {
+            this.unranked.add(slot);
+        }
+    }
+
+    /**
+     * Moves a slot in the balance index after a balance change. The caller
+     * has to hold the lock of this registry.
+     */
+    private void rerank(Slot slot) {
+        Account account = slot.account;
+        if (account == null && slot.evicted != null) {
+            account = slot.evicted.get();
+        }
+
+        // Removed, replaced or unchanged since it was evicted
+        if (account == null || this.slots.get(slot.key) != slot) {
+            return;
+        }
+
+        long units = account.getBalance().getUnits(0);
+        if (units != slot.rankedUnits) {
+            this.byBalance.remove(slot);
+            slot.rankedUnits = units;
+            this.byBalance.add(slot);
+        }
+    }
+
+    /**
+     * Builds the member index from all accounts.
+     */
+    private synchronized ConcurrentHashMap<String, Set<String>> buildMemberIndex() {
+        if (this.memberIndex != null) {
+            return this.memberIndex;
+        }
+
+        this.memberIndex = new ConcurrentHashMap<>();
+        for (Slot slot : this.slots.values()) {
+            this.indexAccount(this.load(slot, false), slot.name);
+        }
+
+        return this.memberIndex;
+    }
+
+    /**
+     * Adds all members of an account to the member index. The caller has
+     * to hold the lock of this registry.
+     */
+    private void indexAccount(Account account, String name) {
+        if (this.memberIndex == null) {
+            return;
+        }
+
+        for (AccountMember member : account.getAllMembers()) {
+            this.indexMember(member.getName(), name);
+        }
+    }
+
+    /**
+     * Removes all members of an account from the member index. The caller
+     * has to hold the lock of this registry.
+     */
+    private void unindexAccount(Account account, String name) {
+        if (this.memberIndex == null) {
+            return;
+        }
+
+        for (AccountMember member : account.getAllMembers()) {
+            this.unindexMember(member.getName(), name);
+        }
+    }
+
+    /**
+     * Adds an account to the member index. The caller has to hold the lock
+     * of this registry.
+     */
+    private void indexMember(String memberName, String accountName) {
+        if (this.memberIndex == null) {
+            return;
+        }
+
+        String      key   = AccountMember.key(memberName);
+        Set<String> names = this.memberIndex.get(key);
+        if (names == null) {
+            names = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+            this.memberIndex.put(key, names);
+        }
+
+        names.add(accountName);
+    }
+
+    /**
+     * Removes an account from the member index. The caller has to hold the
+     * lock of this registry.
+     */
+    private void unindexMember(String memberName, String accountName) {
+        if (this.memberIndex == null) {
+            return;
+        }
+
+        String      key   = AccountMember.key(memberName);
+        Set<String> names = this.memberIndex.get(key);
+        if (names != null) {
+            names.remove(accountName);
+            if (names.isEmpty()) {
+                this.memberIndex.remove(key);
+            }
+        }
+    }
+
+    /**
+     * Gets an account by its case-insensitive name. Does not lock if the
+     * account is already decoded.
+     * @param name The account name
+     * @return The account or null, if there is no such account
+     */
+    @Override
+    public Account get(Object name) {
+        String key = key(name);
+        if (key == null) {
+            return null;
+        }
+
+        Slot slot = this.slots.get(key);
+        if (slot == null) {
+            return null;
+        }
+
+        // Fast path, the account is in memory
+        Account account = slot.account;
+        if (account != null) {
+            slot.referenced = true;
+            CACHE_HITS.increment();
+            return account;
+        }
+
+        CACHE_MISSES.increment();
+        synchronized (this) {
+            return this.load(slot, true);
+        }
+    }
+
+    @Override
+    public boolean containsKey(Object name) {
+        String key = key(name);
+        return key != null && this.slots.containsKey(key);
+    }
+
+    @Override
+    public int size() {
+        return this.slots.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return this.slots.isEmpty();
+    }
+
+    /**
+     * Registers an account. An existing account with the same name is
+     * replaced.
+     * @param name The account name
+     * @param account The account
+     * @return The replaced account or null
+     * @throws NullPointerException If name or account is null
+     */
+    @Override
+    public synchronized Account put(String name, Account account) {
+        Account previous = this.remove(name);
+        this.insert(name, account);
+        return previous;
+    }
+
+    /**
+     * Registers an account, if its name is not in use.
+     * @param name The account name
+     * @param account The account
+     * @return The existing account or null, if the account was registered
+     * @throws NullPointerException If name or account is null
+     */
+    public synchronized Account putIfAbsent(String name, Account account) {
+        Account existing = this.get(name);
+        if (existing == null) {
+            this.insert(name, account);
+        }
+
+        return existing;
+    }
+
+    /**
+     * Renames an account. The account is never missing for concurrent
+     * readers.
+     * @param curName The current name of the account
+     * @param newName The new name
+     * @return false, if the account was not existing or the new name is
+     * already used by another account
+     * @throws NullPointerException If newName is null
+     */
+    public synchronized boolean rename(String curName, String newName) {
+        // Check null
+        if (newName == null) {
+            throw new NullPointerException("Name cannot be null");
+        }
+
+        String curKey = key(curName);
+        String newKey = key(newName);
+
+        Slot slot = curKey != null ? this.slots.get(curKey) : null;
+        if (slot == null) {
+            return false;
+        }
+
+        // A change of the spelling keeps the key
+        Slot other = this.slots.get(newKey);
+        if (other != null && other != slot) {
+            return false;
+        }
+
+        Account account = this.load(slot, false);
+        account.setName(newName);
+
+        Slot moved = new Slot(newName);
+        moved.account = account;
+        account.setChangeListener(new SlotListener(moved, account));
+
+        // Publish the new name before the old one disappears
+        this.loaded.remove(slot.name);
+        this.unrank(slot);
+        this.slots.put(newKey, moved);
+        this.names.put(newKey, newName);
+        this.rank(moved, account);
+        this.indexAccount(account, newName);
+        if (!newKey.equals(curKey)) {
+            this.slots.remove(curKey);
+            this.names.remove(curKey);
+        }
+        if (!newName.equals(slot.name)) {
+            this.unindexAccount(account, slot.name);
+        }
+        this.loaded.put(newName, moved);
+        this.evict();
+
+        return true;
+    }
+
+    /**
+     * Adds a new slot for an account.
+     */
+    private void insert(String name, Account account) {
+        // Check null
+        if (name == null || account == null) {
+            throw new NullPointerException("Name and account cannot be null");
+        }
+
+        Slot slot = new Slot(name);
+        slot.account = account;
+        account.setChangeListener(new SlotListener(slot, account));
+
+        this.slots.put(slot.key, slot);
+        this.names.put(slot.key, name);
+        this.loaded.put(name, slot);
+        this.indexAccount(account, name);
+        this.rank(slot, account);
+        this.evict();
+    }
+
+    @Override
+    public synchronized Account remove(Object name) {
+        String key = key(name);
+        Slot slot = key != null ? this.slots.remove(key) : null;
+        if (slot == null) {
+            return null;
+        }
+
+        this.names.remove(key);
+        this.loaded.remove(slot.name);
+
+        Account account = this.load(slot, false);
+        account.setChangeListener(null);
+        this.unindexAccount(account, slot.name);
+        this.unrank(slot);
+        return account;
+    }
+
+    @Override
+    public synchronized void clear() {
+        for (Slot slot : new ArrayList<>(this.slots.values())) {
+            this.remove(slot.name);
+        }
+    }
+
+    /**
+     * Returns a copy of all account names. Does not decode any account and
+     * does not lock.
+     * @return Unmodifiable set of names
+     */
+    @Override
+    public Set<String> keySet() {
+        HashSet<String> names = new HashSet<>(this.slots.size() * 4 / 3 + 1);
+
+        for (Slot slot : this.slots.values()) {
+            names.add(slot.name);
+        }
+
+        return Collections.unmodifiableSet(names);
+    }
+
+    /**
+     * Returns a copy of all entries. This decodes every account, but does
+     * not count against the memory budget.
+     * @return Unmodifiable set of entries
+     */
+    @Override
+    public synchronized Set<Map.Entry<String, Account>> entrySet() {
+        LinkedHashSet<Map.Entry<String, Account>> entries =
+                new LinkedHashSet<>(this.slots.size() * 4 / 3 + 1);
+
+        for (Slot slot : this.slots.values()) {
+            entries.add(new AbstractMap.SimpleImmutableEntry<>(slot.name,
+                    this.load(slot, false)));
+        }
+
+        return Collections.unmodifiableSet(entries);
+    }
+
+    /**
+     * Returns the account of a slot, decoding it if necessary. The caller
+     * has to hold the lock of this registry.
+     * @param slot The slot
+     * @param touch true to keep the account in memory and count it against
+     * the memory budget
+     * @return The account
+     */
+    private Account load(Slot slot, boolean touch) {
+        Account account = slot.account;
+
+        // Already in memory
+        if (account != null) {
+            if (touch) {
+                slot.referenced = true;
+            }
+            return account;
+        }
+
+        // Evicted, but still referenced
+        if (slot.evicted != null) {
+            account = slot.evicted.get();
+        }
+
+        // Decode from the source file
+        if (account == null) {
+            try {
+                account = this.source.decode(slot.offset, slot.length);
+            } catch (IOException ex) {
+                throw new IllegalStateException("Could not decode account '"
+                        + slot.name + "'", ex);
+            }
+
+            account.setChangeListener(new SlotListener(slot, account));
+        }
+
+        if (touch) {
+            slot.account = account;
+            slot.evicted = null;
+            this.loaded.put(slot.name, slot);
+            this.evict();
+        } else {
+            slot.evicted = new WeakReference<>(account);
+        }
+
+        return account;
+    }
+
+    /**
+     * Evicts unchanged accounts until the memory budget is met. Accounts
+     * which were read since the last pass are moved to the end once.
+     */
+    private void evict() {
+        if (this.maxLoaded == 0 || this.source == null) {
+            return;
+        }
+
+        ArrayList<Slot> secondChance = new ArrayList<>();
+        Iterator<Slot> it = this.loaded.values().iterator();
+        while (this.loaded.size() + secondChance.size() > this.maxLoaded
+                && it.hasNext()) {
+            Slot slot = it.next();
+
+            if (!slot.isClean()) {
+                continue;
+            }
+
+            it.remove();
+            if (slot.referenced) {
+                slot.referenced = false;
+                secondChance.add(slot);
+            } else if (!this.drop(slot)) {
+                secondChance.add(slot);
+            }
+        }
+
+        for (Slot slot : secondChance) {
+            this.loaded.put(slot.name, slot);
+        }
+
+        // Only recently read accounts are left, evict the eldest
+        it = this.loaded.values().iterator();
+        while (this.loaded.size() > this.maxLoaded && it.hasNext()) {
+            Slot slot = it.next();
+
+            if (slot.isClean() && this.drop(slot)) {
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Drops the decoded account of a clean slot. Balance changes do not
+     * lock, if one made the slot dirty meanwhile the account is kept.
+     * @return true, if the account was dropped
+     */
+    private boolean drop(Slot slot) {
+        Account account = slot.account;
+        slot.evicted = new WeakReference<>(account);
+        slot.account = null;
+
+        // Changes increment the version before they check the account
+        if (!slot.isClean()) {
+            slot.account = account;
+            slot.evicted = null;
+            return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Encodes all accounts into an indexed database. Unchanged accounts
+     * which are not in memory are copied from the source file without
+     * decoding. The caller has to hold the accounts lock.
+     * @param sequence Sequence number of the last journaled change
+     * @return The encoded database
+     * @throws IOException If the accounts could not be encoded
+     */
+    public synchronized byte[] encodeIndexed(long sequence) throws IOException {
+        // Keep the existing string table, so copied records stay valid
+        LinkedHashMap<String, Integer> strings = new LinkedHashMap<>();
+        if (this.source != null) {
+            for (String str : this.source.getStrings()) {
+                AccountCodec.intern(strings, str);
+            }
+        }
+
+        Slot[] captured = this.slots.values().toArray(new Slot[this.slots.size()]);
+        long[] versions = new long[captured.length];
+        List<Map<String, Long>> balances = new ArrayList<>();
+
+        for (int i = 0; i < captured.length; i++) {
+            Slot slot = captured[i];
+            versions[i] = slot.version;
+
+            if (!slot.isClean()) {
+                Map<String, Long> amounts = slot.account.getBalance().getAmounts();
+                balances.add(amounts);
+                AccountCodec.internStrings(strings, slot.account, amounts);
+            }
+        }
+
+        // Records
+        ByteArrayOutputStream recordBytes = new ByteArrayOutputStream(
+                Math.max(4096, captured.length * 64));
+        DataOutputStream records = new DataOutputStream(recordBytes);
+        int[] offsets = new int[captured.length];
+        int[] lengths = new int[captured.length];
+        int   balance = 0;
+
+        for (int i = 0; i < captured.length; i++) {
+            Slot slot = captured[i];
+            offsets[i] = records.size();
+
+            if (slot.isClean()) {
+                this.source.copy(slot.offset, slot.length, records);
+            } else {
+                AccountCodec.writeAccount(records, slot.account,
+                        balances.get(balance++), strings);
+            }
+
+            lengths[i] = records.size() - offsets[i];
+        }
+        records.flush();
+
+        // Header, string table and index
+        ByteArrayOutputStream bos = new ByteArrayOutputStream(
+                recordBytes.size() + captured.length * 24 + 1024);
+        DataOutputStream out = new DataOutputStream(bos);
+        AccountCodec.writeHeader(out, AccountCodec.FLAG_INDEXED, sequence);
+        AccountCodec.writeStringTable(out, strings);
+
+        AccountCodec.writeVarLong(out, captured.length);
+        for (int i = 0; i < captured.length; i++) {
+            out.writeUTF(captured[i].name);
+            AccountCodec.writeVarLong(out, offsets[i]);
+            AccountCodec.writeVarLong(out, lengths[i]);
+        }
+        out.flush();
+
+        int recordsBase = bos.size();
+        recordBytes.writeTo(bos);
+
+        this.pendingRebase = new PendingRebase(captured, versions, offsets,
+                lengths, strings.keySet().toArray(new String[strings.size()]),
+                recordsBase, sequence);
+
+        return bos.toByteArray();
+    }
+
+    /**
+     * Switches to the database written from the last encodeIndexed() call.
+     * Accounts which were not changed since then become unchanged again and
+     * may be evicted.
+     * @param file The written database
+     * @throws IOException If the file could not be mapped
+     */
+    public void snapshotWritten(File file) throws IOException {
+        PendingRebase rebase;
+        synchronized (this) {
+            rebase = this.pendingRebase;
+            this.pendingRebase = null;
+        }
+
+        if (rebase == null) {
+            return;
+        }
+
+        MappedAccountFile mapped = MappedAccountFile.remap(file, rebase.strings,
+                rebase.recordsBase, rebase.sequence);
+
+        synchronized (this) {
+            for (int i = 0; i < rebase.slots.length; i++) {
+                Slot slot = rebase.slots[i];
+
+                // Removed or replaced since the snapshot
+                if (this.slots.get(key(slot.name)) != slot) {
+                    continue;
+                }
+
+                slot.offset       = rebase.offsets[i];
+                slot.length       = rebase.lengths[i];
+                slot.cleanVersion = rebase.versions[i];
+            }
+
+            this.source = mapped;
+            this.evict();
+        }
+    }
+}
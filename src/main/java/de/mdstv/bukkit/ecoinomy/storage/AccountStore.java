@@ -0,0 +1,74 @@
+package de.mdstv.bukkit.ecoinomy.storage;
+
+import de.mdstv.bukkit.ecoinomy.account.AccountChangeListener;
+import java.io.IOException;
+
+/**
+ * Persistence backend for the accounts.
+ *
+ * The store is registered as change listener of the accounts map and gets
+ * notified about every AccountChange. It is responsible for writing these
+ * changes in the background.
+ * @author Morph <admin@mds-tv.de>
+ */
+public interface AccountStore extends AccountChangeListener {
+    /**
+     * Gets the name of this backend, used for logging.
+     * @return Backend name
+     */
+    public String getName();
+
+    /**
+     * Loads all accounts. Called once before start().
+     * @return The loaded accounts
+     * @throws IOException If the accounts could not be loaded
+     */
+    public AccountRegistry load() throws IOException;
+
+    /**
+     * Starts writing changes in the background.
+     */
+    public void start();
+
+    /**
+     * Requests writing all accounts with the next flush. Use this after
+     * changes which were not reported as AccountChange.
+     */
+    public void requestFullSave();
+
+    /**
+     * Writes all pending changes. Blocks until the data is stored.
+     */
+    public void flush();
+
+    /**
+     * Writes all pending changes and releases all resources. Blocks until
+     * the data is stored.
+     */
+    public void shutdown();
+
+    /**
+     * Gets the number of changes which are waiting for the next flush.
+     * @return Number of pending changes
+     */
+    public long getQueueDepth();
+
+    /**
+     * Gets the number of completed flushes.
+     * @return Number of flushes
+     */
+    public long getFlushCount();
+
+    /**
+     * Gets the duration of the last flush in milliseconds.
+     * @return Flush latency in milliseconds
+     */
+    public double getLastFlushMillis();
+
+    /**
+     * Gets the amount of data written by the last flush. Bytes for file
+     * based stores, rows for SQL stores.
+     * @return Written bytes or rows
+     */
+    public long getLastFlushSize();
+}
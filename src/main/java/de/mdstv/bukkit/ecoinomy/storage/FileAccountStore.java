@@ -0,0 +1,341 @@
+package de.mdstv.bukkit.ecoinomy.storage;
+
+import de.mdstv.bukkit.ecoinomy.Ecoinomy;
+import de.mdstv.bukkit.ecoinomy.account.AccountChange;
+import de.mdstv.bukkit.ecoinomy.account.LedgerGate;
+import de.mdstv.bukkit.ecoinomy.storage.legacy.LegacyAccountReader;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.logging.Level;
+
+/**
+ * AccountStore writing all accounts into a single database file.
+ *
+ * Changes are appended to a journal. When the journal grows beyond the
+ * compaction threshold, a consistent snapshot of all accounts is written
+ * and the journal is truncated.
+ * @author Morph <admin@mds-tv.de>
+ */
+public class FileAccountStore extends AbstractAccountStore {
+    /**
+     * The accounts database.
+     */
+    private final File dest;
+
+    /**
+     * Journal of all account changes since the last snapshot.
+     */
+    private final AccountJournal journal;
+
+    /**
+     * Journal size in bytes which triggers a new snapshot.
+     */
+    private final long compactThreshold;
+
+    /**
+     * true to deflate snapshots.
+     */
+    private final boolean compress;
+
+    /**
+     * true to write indexed snapshots and decode accounts on demand.
+     */
+    private final boolean lazyLoad;
+
+    /**
+     * Maximum number of decoded accounts in lazy mode, 0 for no limit.
+     */
+    private final int maxLoadedAccounts;
+
+    /**
+     * true after the accounts were loaded. Nothing is written before, so a
+     * database which could not be read is never overwritten.
+     */
+    private volatile boolean loaded = false;
+
+    /**
+     * Creates a new FileAccountStore.
+     * @param plugin The owning plugin.
+     * @param dest The accounts database.
+     * @param flushInterval Minimum time between two flushes in milliseconds.
+     * @param compactThreshold Journal size in bytes which triggers a new
+     * snapshot.
+     * @param compress true to deflate snapshots.
+     * @param lazyLoad true to decode accounts on demand.
+     * @param maxLoadedAccounts Maximum number of decoded accounts in lazy
+     * mode, 0 for no limit.
+     */
+    public FileAccountStore(Ecoinomy plugin, File dest, long flushInterval,
+            long compactThreshold, boolean compress, boolean lazyLoad,
+            int maxLoadedAccounts) {
+        super(plugin, flushInterval);
+
+        this.dest              = dest;
+        this.journal           = new AccountJournal(
+                new File(dest.getParentFile(), dest.getName() + ".journal"));
+        this.compactThreshold  = Math.max(0, compactThreshold);
+        this.compress          = compress;
+        this.lazyLoad          = lazyLoad;
+        this.maxLoadedAccounts = maxLoadedAccounts;
+    }
+
+    @Override
+    public String getName() {
+        return "file";
+    }
+
+    /**
+     * Gets the accounts database.
+     * @return The database file
+     */
+    public File getFile() {
+        return this.dest;
+    }
+
+    /**
+     * Loads the accounts database and replays all journaled changes which
+     * are not part of it. Databases written by eCoinomy 1.0.0 are migrated,
+     * a backup of the old file is kept. A database in an unknown format is
+     * moved aside together with its journal, the store starts empty then.
+     * @return The loaded accounts
+     * @throws IOException If the database could not be read, the store
+     * does not write anything then
+     */
+    @Override
+    public AccountRegistry load() throws IOException {
+        AccountRegistry accounts = null;
+        long    sequence = 0;
+        boolean rewrite  = false;
+        boolean corrupt  = false;
+
+        if (this.dest.isFile()) {
+            try (BufferedInputStream bis = new BufferedInputStream(
+                    new FileInputStream(this.dest), 65536)) {
+                // Detect the format
+                byte[] head = new byte[6];
+                bis.mark(head.length);
+                int headLength = bis.read(head);
+                bis.reset();
+
+                AccountCodec.Snapshot snapshot = null;
+                if (headLength < head.length) {
+                    corrupt = true;
+                } else if (this.lazyLoad && AccountCodec.isCodecFormat(head)
+                        && AccountCodec.isIndexed(head)) {
+                    // Only read the index, accounts are decoded on demand
+                    MappedAccountFile mapped = MappedAccountFile.open(this.dest);
+                    accounts = new AccountRegistry(mapped, this.maxLoadedAccounts);
+                    sequence = mapped.getSequence();
+                } else if (LegacyAccountReader.isLegacyFormat(head)) {
+                    snapshot = LegacyAccountReader.read(bis);
+                    rewrite  = true;
+
+                    // Keep the old file, it will be overwritten by the next snapshot
+                    File backup = new File(this.dest.getParentFile(),
+                            this.dest.getName() + ".bak");
+                    Files.copy(this.dest.toPath(), backup.toPath(),
+                            StandardCopyOption.REPLACE_EXISTING);
+                    this.plugin.getLogger().log(Level.INFO, "Migrating legacy"
+                            + " database, backup saved to {0}", backup.getName());
+                } else if (AccountCodec.isCodecFormat(head)) {
+                    snapshot = AccountCodec.decode(bis);
+                } else {
+                    corrupt = true;
+                }
+
+                if (snapshot != null) {
+                    accounts = new AccountRegistry(
+                            this.lazyLoad ? this.maxLoadedAccounts : 0);
+                    accounts.putAll(snapshot.accounts);
+                    sequence = snapshot.sequence;
+
+                    // Write an indexed snapshot on the next flush
+                    rewrite |= this.lazyLoad;
+                }
+            }
+        } else {
+            this.plugin.getLogger().log(Level.WARNING, "Could not find {0}",
+                    this.dest.getName());
+        }
+
+        if (corrupt) {
+            this.plugin.getLogger().log(Level.SEVERE, "Could not read database. It"
+                    + " seems, that the file is corrupted or empty.");
+            this.moveAside(this.dest);
+            this.moveAside(this.journal.getFile());
+        }
+
+        if (accounts == null) {
+            accounts = new AccountRegistry(this.lazyLoad ? this.maxLoadedAccounts : 0);
+        }
+
+        // Replay all changes which are not part of the snapshot
+        try {
+            long replayed = this.journal.replay(accounts, sequence);
+
+            if (replayed > 0) {
+                this.plugin.getLogger().log(Level.INFO,
+                        "Recovered {0} change(s) from {1}",
+                        new Object[] { replayed, this.journal.getFile().getName() });
+            }
+        } catch (IOException ex) {
+            this.plugin.getLogger().log(Level.SEVERE, "Could not replay journal at '"
+                    + this.journal.getFile().getAbsolutePath() + "'", ex);
+
+            // Keep the changes which could not be replayed
+            this.journal.close();
+            this.moveAside(this.journal.getFile());
+        }
+
+        // Write loaded data in the current format
+        if (rewrite) {
+            this.requestFullSave();
+        }
+
+        this.loaded = true;
+        return accounts;
+    }
+
+    /**
+     * Renames an unreadable file to "&lt;name&gt;.corrupt-&lt;time&gt;", so
+     * it is not overwritten.
+     * @param file The file
+     * @throws IOException If the file could not be renamed
+     */
+    private void moveAside(File file) throws IOException {
+        if (!file.exists()) {
+            return;
+        }
+
+        File target = new File(file.getParentFile(),
+                file.getName() + ".corrupt-" + System.currentTimeMillis());
+        Files.move(file.toPath(), target.toPath());
+        this.plugin.getLogger().log(Level.SEVERE, "Moved {0} to {1}",
+                new Object[] { file.getName(), target.getName() });
+    }
+
+    @Override
+    protected void enqueue(AccountChange change) throws IOException {
+        this.journal.append(change);
+    }
+
+    /**
+     * Writes all queued journal records to disk and compacts the journal if
+     * requested or if it exceeds the compaction threshold.
+     */
+    @Override
+    protected long write(boolean fullSave) throws IOException {
+        if (!this.loaded) {
+            throw new IOException("Accounts were not loaded, not writing "
+                    + this.dest.getName());
+        }
+
+        long written = this.journal.drain();
+
+        // Compact the journal into a new snapshot
+        if (fullSave || this.journal.size() >= this.compactThreshold) {
+            written += this.compact();
+        }
+
+        return written;
+    }
+
+    /**
+     * Writes a snapshot of all accounts and truncates the journal. All
+     * journal records up to the snapshot are already drained, records queued
+     * after the snapshot will be written to the truncated journal.
+     * @return Size of the snapshot in bytes
+     * @throws IOException If the snapshot could not be written
+     */
+    private long compact() throws IOException {
+        byte[] snapshot = this.snapshot();
+        writeAtomically(this.dest, snapshot);
+        this.journal.reset();
+
+        // Unchanged accounts are decoded from the new file from now on
+        if (this.lazyLoad) {
+            this.plugin.getAccounts().snapshotWritten(this.dest);
+        }
+
+        return snapshot.length;
+    }
+
+    /**
+     * Encodes all accounts into a byte array. The accounts lock is held and
+     * the LedgerGate is closed while encoding, so the snapshot is
+     * consistent. The sequence number of the last journaled change is
+     * stored in the header.
+     * @return The encoded accounts
+     * @throws IOException If the accounts could not be encoded
+     */
+    private byte[] snapshot() throws IOException {
+        synchronized (this.plugin.getDataLock()) {
+            LedgerGate.close();
+            try {
+                long sequence = this.journal.getSequence();
+
+                if (this.lazyLoad) {
+                    return this.plugin.getAccounts().encodeIndexed(sequence);
+                }
+
+                ByteArrayOutputStream bos = new ByteArrayOutputStream();
+                AccountCodec.encode(bos, this.plugin.getAccounts(), sequence,
+                        this.compress);
+                return bos.toByteArray();
+            } finally {
+                LedgerGate.open();
+            }
+        }
+    }
+
+    /**
+     * Compacts the journal on shutdown, so the next start does not have to
+     * replay it.
+     */
+    @Override
+    protected boolean isFullSaveOnShutdown() {
+        return this.journal.size() > 0 || this.journal.getQueuedRecords() > 0;
+    }
+
+    @Override
+    protected void close() throws IOException {
+        this.journal.close();
+    }
+
+    @Override
+    public long getQueueDepth() {
+        return this.journal.getQueuedRecords();
+    }
+
+    /**
+     * Writes the data to a temporary file and moves it over the destination
+     * afterwards. A crash while writing never truncates the existing file.
+     * @param dest The destination file.
+     * @param data The data to write.
+     * @throws IOException If the data could not be written.
+     */
+    public static void writeAtomically(File dest, byte[] data) throws IOException {
+        File tmp = new File(dest.getParentFile(), dest.getName() + ".tmp");
+
+        try (FileOutputStream fos = new FileOutputStream(tmp)) {
+            fos.write(data);
+            fos.getFD().sync();
+        }
+
+        try {
+            Files.move(tmp.toPath(), dest.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException ex) {
+            // Some file systems do not support atomic moves
+            Files.move(tmp.toPath(), dest.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+}
@@ -0,0 +1,265 @@
+package de.mdstv.bukkit.ecoinomy.storage;
+
+import de.mdstv.bukkit.ecoinomy.account.Account;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A memory-mapped, indexed accounts database. Opening the file only reads
+ * the header, the string table and the index. Single accounts are decoded
+ * on demand from their record.
+ * @author Morph <admin@mds-tv.de>
+ */
+public final class MappedAccountFile {
+    /**
+     * The mapped file content.
+     */
+    private final ByteBuffer buffer;
+
+    /**
+     * The string table.
+     */
+    private final String[] strings;
+
+    /**
+     * Position of the first record.
+     */
+    private final int recordsBase;
+
+    /**
+     * Sequence number of the last journaled change in this file.
+     */
+    private final long sequence;
+
+    /**
+     * Account names of the index, released after the index was consumed.
+     */
+    private String[] names;
+
+    /**
+     * Record offsets of the index.
+     */
+    private int[] offsets;
+
+    /**
+     * Record lengths of the index.
+     */
+    private int[] lengths;
+
+    private MappedAccountFile(ByteBuffer buffer, String[] strings,
+            int recordsBase, long sequence) {
+        this.buffer      = buffer;
+        this.strings     = strings;
+        this.recordsBase = recordsBase;
+        this.sequence    = sequence;
+    }
+
+    /**
+     * Maps an indexed database and reads its index.
+     * @param file The database file
+     * @return The mapped file
+     * @throws IOException If the file is not an indexed database
+     */
+    public static MappedAccountFile open(File file) throws IOException {
+        ByteBuffer buffer = map(file);
+        DataInputStream in = new DataInputStream(new BufferInput(buffer.duplicate()));
+
+        // Header
+        if (in.readInt() != AccountCodec.MAGIC) {
+            throw new IOException("Not an eCoinomy database");
+        }
+
+        int version = in.readUnsignedByte();
+        if (version > AccountCodec.VERSION) {
+            throw new IOException("Unsupported database version " + version);
+        }
+
+        int flags = in.readUnsignedByte();
+        if ((flags & AccountCodec.FLAG_INDEXED) == 0) {
+            throw new IOException("Database has no index");
+        }
+
+        long sequence = in.readLong();
+
+        // String table
+        String[] strings = AccountCodec.readStringTable(in);
+
+        // Index
+        int count = AccountCodec.readCount(in);
+        String[] names   = new String[count];
+        int[]    offsets = new int[count];
+        int[]    lengths = new int[count];
+        for (int i = 0; i < count; i++) {
+            names[i]   = in.readUTF();
+            offsets[i] = (int) AccountCodec.readVarLong(in);
+            lengths[i] = (int) AccountCodec.readVarLong(in);
+        }
+
+        int recordsBase = buffer.capacity() - in.available();
+
+        MappedAccountFile mapped = new MappedAccountFile(buffer, strings,
+                recordsBase, sequence);
+        mapped.names   = names;
+        mapped.offsets = offsets;
+        mapped.lengths = lengths;
+
+        return mapped;
+    }
+
+    /**
+     * Maps a database which was just written by this process. The index is
+     * not read, the caller already knows it.
+     * @param file The database file
+     * @param strings The string table of the file
+     * @param recordsBase Position of the first record
+     * @param sequence Sequence number of the last journaled change
+     * @return The mapped file
+     * @throws IOException If the file could not be mapped
+     */
+    static MappedAccountFile remap(File file, String[] strings, int recordsBase,
+            long sequence) throws IOException {
+        return new MappedAccountFile(map(file), strings, recordsBase, sequence);
+    }
+
+    /**
+     * Maps a whole file read-only.
+     */
+    private static ByteBuffer map(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(),
+                StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Database is too large to be mapped");
+            }
+
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
+
+    /**
+     * Gets the sequence number of the last journaled change in this file.
+     * @return Sequence number
+     */
+    public long getSequence() {
+        return this.sequence;
+    }
+
+    /**
+     * Gets the string table.
+     * @return The strings in index order, do not modify
+     */
+    String[] getStrings() {
+        return this.strings;
+    }
+
+    /**
+     * Gets the account names of the index. Only available after open().
+     * @return The names
+     */
+    String[] getIndexNames() {
+        return this.names;
+    }
+
+    /**
+     * Gets the record offsets of the index. Only available after open().
+     * @return The offsets
+     */
+    int[] getIndexOffsets() {
+        return this.offsets;
+    }
+
+    /**
+     * Gets the record lengths of the index. Only available after open().
+     * @return The lengths
+     */
+    int[] getIndexLengths() {
+        return this.lengths;
+    }
+
+    /**
+     * Releases the index arrays after they were consumed.
+     */
+    void releaseIndex() {
+        this.names   = null;
+        this.offsets = null;
+        this.lengths = null;
+    }
+
+    /**
+     * Decodes a single account.
+     * @param offset Record offset
+     * @param length Record length
+     * @return The account
+     * @throws IOException If the record is invalid
+     */
+    Account decode(int offset, int length) throws IOException {
+        return AccountCodec.readAccount(
+                new DataInputStream(new BufferInput(this.record(offset, length))),
+                this.strings);
+    }
+
+    /**
+     * Copies a record without decoding it.
+     * @param offset Record offset
+     * @param length Record length
+     * @param out The target
+     * @throws IOException If the record could not be written
+     */
+    void copy(int offset, int length, OutputStream out) throws IOException {
+        byte[] data = new byte[length];
+        this.record(offset, length).get(data);
+        out.write(data);
+    }
+
+    /**
+     * Gets a view of a single record.
+     */
+    private ByteBuffer record(int offset, int length) throws IOException {
+        int start = this.recordsBase + offset;
+        if (offset < 0 || length < 0 || start + length > this.buffer.capacity()) {
+            throw new IOException("Invalid record at " + offset);
+        }
+
+        ByteBuffer record = this.buffer.duplicate();
+        record.limit(start + length);
+        record.position(start);
+        return record;
+    }
+
+    /**
+     * InputStream reading from a ByteBuffer.
+     */
+    private static final class BufferInput extends InputStream {
+        private final ByteBuffer buffer;
+
+        BufferInput(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return this.buffer.hasRemaining() ? this.buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (!this.buffer.hasRemaining()) {
+                return -1;
+            }
+
+            int n = Math.min(len, this.buffer.remaining());
+            this.buffer.get(b, off, n);
+            return n;
+        }
+
+        @Override
+        public int available() {
+            return this.buffer.remaining();
+        }
+    }
+}
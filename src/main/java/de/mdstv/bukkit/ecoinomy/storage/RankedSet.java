@@ -0,0 +1,237 @@
+package de.mdstv.bukkit.ecoinomy.storage;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Sorted set which knows the position of every element.
+ *
+ * The elements are kept in a treap, every node knows the size of its
+ * subtree. Adding, removing, finding the rank of an element and getting
+ * the element at a position take O(log n), a range of k elements takes
+ * O(log n + k). Not thread-safe.
+ * @author Morph <admin@mds-tv.de>
+ * @param <E> Type of the elements
+ */
+class RankedSet<E> {
+    /**
+     * A node of the treap.
+     */
+    private static final class Node<E> {
+        final E       element;
+        final int     priority;
+        Node<E>       left;
+        Node<E>       right;
+        int           size = 1;
+
+        Node(E element, int priority) {
+            this.element  = element;
+            this.priority = priority;
+        }
+    }
+
+    /**
+     * Orders the elements, two elements may only compare equal if they are
+     * the same.
+     */
+    private final Comparator<? super E> comparator;
+
+    /**
+     * Priorities of new nodes.
+     */
+    private final Random random = new Random();
+
+    /**
+     * Root of the treap.
+     */
+    private Node<E> root;
+
+    /**
+     * Creates an empty set.
+     * @param comparator Orders the elements
+     */
+    RankedSet(Comparator<? super E> comparator) {
+        this.comparator = comparator;
+    }
+
+    /**
+     * Gets the number of elements.
+     * @return Number of elements
+     */
+    int size() {
+        return size(this.root);
+    }
+
+    /**
+     * Adds an element.
+     * @param element The element
+     * @return false, if an equal element was already present
+     */
+    boolean add(E element) {
+        if (this.rank(element) >= 0) {
+            return false;
+        }
+
+        Node<E>[] parts = this.split(this.root, element);
+        this.root = merge(merge(parts[0], new Node<>(element, this.random.nextInt())),
+                parts[1]);
+        return true;
+    }
+
+    /**
+     * Removes an element.
+     * @param element The element
+     * @return false, if the element was not present
+     */
+    boolean remove(E element) {
+        int before = this.size();
+        this.root  = this.remove(this.root, element);
+        return this.size() < before;
+    }
+
+    /**
+     * Removes all elements.
+     */
+    void clear() {
+        this.root = null;
+    }
+
+    /**
+     * Gets the position of an element.
+     * @param element The element
+     * @return The position, starting with 0, or -1 if the element is not
+     * present
+     */
+    int rank(E element) {
+        Node<E> node = this.root;
+        int     rank = 0;
+
+        while (node != null) {
+            int cmp = this.comparator.compare(element, node.element);
+            if (cmp < 0) {
+                node = node.left;
+            } else if (cmp > 0) {
+                rank += size(node.left) + 1;
+                node  = node.right;
+            } else {
+                return rank + size(node.left);
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Gets the elements of a range of positions in order.
+     * @param from Position of the first element
+     * @param count Maximum number of elements
+     * @return The elements, empty if from is out of range
+     */
+    List<E> range(int from, int count) {
+        ArrayList<E> result = new ArrayList<>(Math.max(0, Math.min(count, this.size() - from)));
+        this.collect(this.root, Math.max(0, from), count, result);
+        return result;
+    }
+
+    /**
+     * Adds the elements of a subtree starting at a position.
+     */
+    private void collect(Node<E> node, int from, int count, List<E> result) {
+        if (node == null || result.size() >= count) {
+            return;
+        }
+
+        int leftSize = size(node.left);
+        if (from < leftSize) {
+            this.collect(node.left, from, count, result);
+        }
+
+        if (from <= leftSize && result.size() < count) {
+            result.add(node.element);
+        }
+
+        if (result.size() < count) {
+            this.collect(node.right, Math.max(0, from - leftSize - 1), count, result);
+        }
+    }
+
+    /**
+     * Splits a subtree into the elements before and after an element.
+     */
+    @SuppressWarnings("unchecked")
+    private Node<E>[] split(Node<E> node, E element) {
+        if (node == null) {
+            return (Node<E>[]) new Node<?>[2];
+        }
+
+        Node<E>[] parts;
+        if (this.comparator.compare(element, node.element) < 0) {
+            parts     = this.split(node.left, element);
+            node.left = parts[1];
+            parts[1]  = node;
+        } else {
+            parts      = this.split(node.right, element);
+            node.right = parts[0];
+            parts[0]   = node;
+        }
+
+        update(node);
+        return parts;
+    }
+
+    /**
+     * Removes an element from a subtree.
+     */
+    private Node<E> remove(Node<E> node, E element) {
+        if (node == null) {
+            return null;
+        }
+
+        int cmp = this.comparator.compare(element, node.element);
+        if (cmp == 0) {
+            return merge(node.left, node.right);
+        }
+
+        if (cmp < 0) {
+            node.left = this.remove(node.left, element);
+        } else {
+            node.right = this.remove(node.right, element);
+        }
+
+        update(node);
+        return node;
+    }
+
+    /**
+     * Merges two subtrees, all elements of left are before those of right.
+     */
+    private static <E> Node<E> merge(Node<E> left, Node<E> right) {
+        if (left == null) {
+            return right;
+        }
+
+        if (right == null) {
+            return left;
+        }
+
+        if (left.priority > right.priority) {
+            left.right = merge(left.right, right);
+            update(left);
+            return left;
+        }
+
+        right.left = merge(left, right.left);
+        update(right);
+        return right;
+    }
+
+    private static int size(Node<?> node) {
+        return node != null ? node.size : 0;
+    }
+
+    private static void update(Node<?> node) {
+        node.size = size(node.left) + size(node.right) + 1;
+    }
+}
@@ -0,0 +1,604 @@
+package de.mdstv.bukkit.ecoinomy.storage;
+
+import de.mdstv.bukkit.ecoinomy.Ecoinomy;
+import de.mdstv.bukkit.ecoinomy.account.Account;
+import de.mdstv.bukkit.ecoinomy.account.AccountChange;
+import de.mdstv.bukkit.ecoinomy.account.AccountMember;
+import de.mdstv.bukkit.ecoinomy.account.AccountPermissionSet;
+import de.mdstv.bukkit.ecoinomy.account.LedgerGate;
+import de.mdstv.bukkit.ecoinomy.stats.Histogram;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.logging.Level;
+
+/**
+ * AccountStore writing the accounts into an embedded SQLite database.
+ *
+ * Every account change is translated into a few row updates. All changes
+ * queued since the last flush are written in a single transaction, and
+ * consecutive updates using the same statement are sent as one JDBC batch.
+ * The SQLite driver is shipped with CraftBukkit.
+ * @author Morph <admin@mds-tv.de>
+ */
+public class SqlAccountStore extends AbstractAccountStore {
+    /**
+     * JDBC driver class.
+     */
+    private static final String DRIVER = "org.sqlite.JDBC";
+
+    /**
+     * Table definitions.
+     */
+    private static final String[] SCHEMA = {
+        "CREATE TABLE IF NOT EXISTS ec_accounts ("
+                + "name TEXT NOT NULL PRIMARY KEY)",
+        "CREATE TABLE IF NOT EXISTS ec_members ("
+                + "account TEXT NOT NULL, player TEXT NOT NULL,"
+                + " PRIMARY KEY (account, player))",
+        "CREATE INDEX IF NOT EXISTS ec_members_player ON ec_members (player)",
+        "CREATE TABLE IF NOT EXISTS ec_permission_sets ("
+                + "account TEXT NOT NULL, player TEXT NOT NULL,"
+                + " owner INTEGER NOT NULL, PRIMARY KEY (account, player))",
+        "CREATE TABLE IF NOT EXISTS ec_permissions ("
+                + "account TEXT NOT NULL, player TEXT NOT NULL,"
+                + " node TEXT NOT NULL, value BLOB,"
+                + " PRIMARY KEY (account, player, node))",
+        "CREATE TABLE IF NOT EXISTS ec_balances ("
+                + "account TEXT NOT NULL, coin TEXT NOT NULL,"
+                + " amount INTEGER NOT NULL, PRIMARY KEY (account, coin))",
+        "CREATE TABLE IF NOT EXISTS ec_meta ("
+                + "key TEXT NOT NULL PRIMARY KEY, value TEXT)"
+    };
+
+    /**
+     * Key of the meta row which records that the file database was
+     * imported or that there was nothing to import.
+     */
+    private static final String IMPORTED = "imported";
+
+    /**
+     * Tables referencing an account, in deletion order.
+     */
+    private static final String[] TABLES = {
+        "ec_balances", "ec_permissions", "ec_permission_sets", "ec_members",
+        "ec_accounts"
+    };
+
+    /**
+     * The database file.
+     */
+    private final File file;
+
+    /**
+     * Database file of the FileAccountStore, imported into an empty database.
+     */
+    private final File importFile;
+
+    /**
+     * Name of the imported file, recorded with the next full save. Null if
+     * nothing was imported.
+     */
+    private volatile String pendingImport;
+
+    /**
+     * Changes which are not written yet.
+     */
+    private final ConcurrentLinkedQueue<AccountChange> queue =
+            new ConcurrentLinkedQueue<>();
+
+    /**
+     * Open database connection, null if closed.
+     */
+    private Connection connection;
+
+    /**
+     * Prepared statements, created on connect.
+     */
+    private PreparedStatement insertAccount;
+    private PreparedStatement insertMember;
+    private PreparedStatement deleteMember;
+    private PreparedStatement[] deleteMemberPerms;
+    private PreparedStatement upsertOwner;
+    private PreparedStatement upsertPermission;
+    private PreparedStatement deletePermission;
+    private PreparedStatement upsertBalance;
+    private PreparedStatement addBalance;
+    private PreparedStatement selectMeta;
+    private PreparedStatement upsertMeta;
+    private PreparedStatement[] deleteAccount;
+    private PreparedStatement[] renameAccount;
+
+    /**
+     * Statement of the current batch, null if the batch is empty.
+     */
+    private PreparedStatement batch;
+
+    /**
+     * Number of rows queued in the current transaction.
+     */
+    private long rows;
+
+    /**
+     * Creates a new SqlAccountStore.
+     * @param plugin The owning plugin.
+     * @param file The SQLite database file.
+     * @param importFile Database of the FileAccountStore, which is imported
+     * if the SQLite database is empty. May be null.
+     * @param flushInterval Minimum time between two flushes in milliseconds.
+     */
+    public SqlAccountStore(Ecoinomy plugin, File file, File importFile,
+            long flushInterval) {
+        super(plugin, flushInterval);
+
+        this.file       = file;
+        this.importFile = importFile;
+    }
+
+    @Override
+    public String getName() {
+        return "sqlite";
+    }
+
+    @Override
+    protected String getSizeUnit() {
+        return Histogram.ROWS;
+    }
+
+    /**
+     * Opens the database and reads all accounts. An empty database is filled
+     * with the accounts of the FileAccountStore, if its file exists. The
+     * import is recorded in the database, so it happens only once.
+     * @return The loaded accounts
+     * @throws IOException If the driver is missing or the database could not
+     * be read
+     */
+    @Override
+    public AccountRegistry load() throws IOException {
+        try {
+            this.connect();
+        } catch (ClassNotFoundException ex) {
+            throw new IOException("SQLite driver not found", ex);
+        } catch (SQLException ex) {
+            throw new IOException("Could not open database at '"
+                    + this.file.getAbsolutePath() + "'", ex);
+        }
+
+        AccountRegistry accounts = new AccountRegistry(0);
+        boolean         imported;
+
+        try {
+            this.readAccounts(accounts);
+            imported = this.readMeta(IMPORTED) != null;
+
+            // A database with accounts never imports the file again
+            if (!imported && (!accounts.isEmpty() || this.importFile == null
+                    || !this.importFile.isFile())) {
+                this.upsertMeta.setString(1, IMPORTED);
+                this.upsertMeta.setString(2, "");
+                this.upsertMeta.executeUpdate();
+                this.connection.commit();
+                imported = true;
+            }
+        } catch (SQLException ex) {
+            throw new IOException("Could not read database at '"
+                    + this.file.getAbsolutePath() + "'", ex);
+        }
+
+        // Import the file database once
+        if (!imported) {
+            FileAccountStore fileStore = new FileAccountStore(this.plugin,
+                    this.importFile, 0, Long.MAX_VALUE, false, false, 0);
+            try {
+                accounts = fileStore.load();
+            } finally {
+                fileStore.close();
+            }
+
+            this.plugin.getLogger().log(Level.INFO,
+                    "Importing {0} account(s) from {1}",
+                    new Object[] { accounts.size(), this.importFile.getName() });
+            this.pendingImport = this.importFile.getName();
+            this.requestFullSave();
+        }
+
+        return accounts;
+    }
+
+    /**
+     * Opens the connection, creates the schema and prepares all statements.
+     */
+    private void connect() throws ClassNotFoundException, SQLException {
+        Class.forName(DRIVER);
+        this.connection = DriverManager.getConnection(
+                "jdbc:sqlite:" + this.file.getAbsolutePath());
+
+        try (Statement st = this.connection.createStatement()) {
+            st.execute("PRAGMA journal_mode=WAL");
+            st.execute("PRAGMA synchronous=NORMAL");
+
+            for (String sql : SCHEMA) {
+                st.execute(sql);
+            }
+        }
+
+        this.connection.setAutoCommit(false);
+
+        this.insertAccount    = this.prepare("INSERT OR REPLACE INTO ec_accounts (name) VALUES (?)");
+        this.insertMember     = this.prepare("INSERT OR IGNORE INTO ec_members (account, player) VALUES (?, ?)");
+        this.deleteMember     = this.prepare("DELETE FROM ec_members WHERE account = ? AND player = ?");
+        this.upsertOwner      = this.prepare("INSERT OR REPLACE INTO ec_permission_sets (account, player, owner) VALUES (?, ?, ?)");
+        this.upsertPermission = this.prepare("INSERT OR REPLACE INTO ec_permissions (account, player, node, value) VALUES (?, ?, ?, ?)");
+        this.deletePermission = this.prepare("DELETE FROM ec_permissions WHERE account = ? AND player = ? AND node = ?");
+        this.upsertBalance    = this.prepare("INSERT OR REPLACE INTO ec_balances (account, coin, amount) VALUES (?, ?, ?)");
+        this.addBalance       = this.prepare("INSERT OR REPLACE INTO ec_balances (account, coin, amount) VALUES (?, ?,"
+                + " COALESCE((SELECT amount FROM ec_balances WHERE account = ? AND coin = ?), 0) + ?)");
+        this.selectMeta       = this.prepare("SELECT value FROM ec_meta WHERE key = ?");
+        this.upsertMeta       = this.prepare("INSERT OR REPLACE INTO ec_meta (key, value) VALUES (?, ?)");
+
+        this.deleteMemberPerms = new PreparedStatement[] {
+            this.prepare("DELETE FROM ec_permissions WHERE account = ? AND player = ?"),
+            this.prepare("DELETE FROM ec_permission_sets WHERE account = ? AND player = ?")
+        };
+
+        this.deleteAccount = new PreparedStatement[TABLES.length];
+        this.renameAccount = new PreparedStatement[TABLES.length];
+        for (int i = 0; i < TABLES.length; i++) {
+            String column = TABLES[i].equals("ec_accounts") ? "name" : "account";
+            this.deleteAccount[i] = this.prepare("DELETE FROM " + TABLES[i]
+                    + " WHERE " + column + " = ?");
+            this.renameAccount[i] = this.prepare("UPDATE " + TABLES[i]
+                    + " SET " + column + " = ? WHERE " + column + " = ?");
+        }
+    }
+
+    private PreparedStatement prepare(String sql) throws SQLException {
+        return this.connection.prepareStatement(sql);
+    }
+
+    /**
+     * Reads a meta row.
+     * @return The value, null if there is no such row
+     */
+    private String readMeta(String key) throws SQLException {
+        this.selectMeta.setString(1, key);
+        try (ResultSet rs = this.selectMeta.executeQuery()) {
+            return rs.next() ? rs.getString(1) : null;
+        }
+    }
+
+    /**
+     * Reads all accounts from the database.
+     */
+    private void readAccounts(Map<String, Account> accounts) throws SQLException,
+            IOException {
+        try (Statement st = this.connection.createStatement()) {
+            try (ResultSet rs = st.executeQuery("SELECT name FROM ec_accounts")) {
+                while (rs.next()) {
+                    String name = rs.getString(1);
+                    accounts.put(name, new Account(name));
+                }
+            }
+
+            try (ResultSet rs = st.executeQuery("SELECT account, player FROM ec_members")) {
+                while (rs.next()) {
+                    Account acc = accounts.get(rs.getString(1));
+                    if (acc != null) {
+                        acc.restoreMember(new AccountMember(rs.getString(2)));
+                    }
+                }
+            }
+
+            try (ResultSet rs = st.executeQuery(
+                    "SELECT account, player, owner FROM ec_permission_sets")) {
+                while (rs.next()) {
+                    Account acc = accounts.get(rs.getString(1));
+                    if (acc != null) {
+                        acc.getOrCreateMemberPerms(rs.getString(2)).setOwner(rs.getInt(3) != 0);
+                    }
+                }
+            }
+
+            try (ResultSet rs = st.executeQuery(
+                    "SELECT account, player, node, value FROM ec_permissions")) {
+                while (rs.next()) {
+                    Account acc = accounts.get(rs.getString(1));
+                    if (acc != null) {
+                        acc.getOrCreateMemberPerms(rs.getString(2))
+                                .setPermission(rs.getString(3), decodeValue(rs.getBytes(4)));
+                    }
+                }
+            }
+
+            // Rows of one coin can be negative, only their sum per slot
+            // is a balance
+            HashMap<Account, Map<String, Long>> balances = new HashMap<>();
+            try (ResultSet rs = st.executeQuery(
+                    "SELECT account, coin, amount FROM ec_balances")) {
+                while (rs.next()) {
+                    Account acc = accounts.get(rs.getString(1));
+                    if (acc != null) {
+                        Map<String, Long> amounts = balances.get(acc);
+                        if (amounts == null) {
+                            amounts = new HashMap<>();
+                            balances.put(acc, amounts);
+                        }
+
+                        amounts.put(rs.getString(2), rs.getLong(3));
+                    }
+                }
+            }
+
+            for (Map.Entry<Account, Map<String, Long>> e : balances.entrySet()) {
+                e.getKey().getBalance().restore(e.getValue());
+            }
+        }
+
+        this.connection.commit();
+    }
+
+    /**
+     * Queues the change. Created accounts are copied, so later changes of
+     * the account are not written twice.
+     */
+    @Override
+    protected void enqueue(AccountChange change) throws IOException {
+        if (change.getType() == AccountChange.Type.CREATE) {
+            Account copy = AccountCodec.decodeAccount(
+                    AccountCodec.encodeAccount((Account) change.getValue()));
+            change = new AccountChange(AccountChange.Type.CREATE,
+                    change.getAccountName(), null, null, copy);
+        }
+
+        this.queue.add(change);
+    }
+
+    /**
+     * Writes all queued changes in a single transaction. A full save
+     * replaces the content of all tables with a consistent snapshot.
+     */
+    @Override
+    protected long write(boolean fullSave) throws IOException {
+        if (this.connection == null) {
+            throw new IOException("Database is not open");
+        }
+
+        // Take a consistent copy, later changes are queued on top of it
+        AccountCodec.Snapshot snapshot = null;
+        String                imported = null;
+        if (fullSave) {
+            imported = this.pendingImport;
+
+            byte[] data;
+            synchronized (this.plugin.getDataLock()) {
+                LedgerGate.close();
+                try {
+                    this.queue.clear();
+                    data = AccountCodec.encode(this.plugin.getAccounts(), 0, false);
+                } finally {
+                    LedgerGate.open();
+                }
+            }
+            snapshot = AccountCodec.decode(new ByteArrayInputStream(data));
+        }
+
+        this.rows  = 0;
+        this.batch = null;
+
+        try {
+            if (snapshot != null) {
+                try (Statement st = this.connection.createStatement()) {
+                    for (String table : TABLES) {
+                        st.executeUpdate("DELETE FROM " + table);
+                    }
+                }
+
+                for (Account acc : snapshot.accounts.values()) {
+                    this.writeAccount(acc);
+                }
+
+                // The import is complete with the accounts
+                if (imported != null) {
+                    this.add(this.upsertMeta, IMPORTED, imported);
+                }
+            }
+
+            AccountChange change;
+            while ((change = this.queue.poll()) != null) {
+                this.writeChange(change);
+            }
+
+            this.executeBatch();
+            this.connection.commit();
+            if (imported != null) {
+                this.pendingImport = null;
+            }
+        } catch (SQLException ex) {
+            try {
+                this.connection.rollback();
+            } catch (SQLException rollbackEx) {
+                ex.addSuppressed(rollbackEx);
+            }
+
+            throw new IOException("Could not write to database", ex);
+        }
+
+        return this.rows;
+    }
+
+    /**
+     * Adds the rows of a single change to the current transaction.
+     */
+    private void writeChange(AccountChange change) throws SQLException, IOException {
+        String name = change.getAccountName();
+
+        switch (change.getType()) {
+            case CREATE: {
+                this.deleteRows(name);
+                this.writeAccount((Account) change.getValue());
+                break;
+            }
+            case REMOVE: {
+                this.deleteRows(name);
+                break;
+            }
+            case RENAME: {
+                for (PreparedStatement st : this.renameAccount) {
+                    this.add(st, change.getValue(), name);
+                }
+                break;
+            }
+            case MEMBER_ADD: {
+                this.add(this.insertMember, name, change.getMemberName());
+                break;
+            }
+            case MEMBER_REMOVE: {
+                this.add(this.deleteMember, name, change.getMemberName());
+
+                // Permission sets are keyed by the normalized name
+                for (PreparedStatement st : this.deleteMemberPerms) {
+                    this.add(st, name, AccountMember.key(change.getMemberName()));
+                }
+                break;
+            }
+            case OWNER_SET: {
+                this.add(this.upsertOwner, name, change.getMemberName(),
+                        Boolean.TRUE.equals(change.getValue()) ? 1 : 0);
+                break;
+            }
+            case PERMISSION_SET: {
+                // Permission sets are created on first access
+                this.add(this.upsertPermission, name, change.getMemberName(),
+                        change.getNode(), encodeValue(change.getValue()));
+                break;
+            }
+            case PERMISSION_REMOVE: {
+                this.add(this.deletePermission, name, change.getMemberName(),
+                        change.getNode());
+                break;
+            }
+            case BALANCE: {
+                // Balance changes are stored as differences in base units
+                this.add(this.addBalance, name, change.getNode(), name,
+                        change.getNode(), change.getValue());
+                break;
+            }
+        }
+    }
+
+    /**
+     * Adds all rows of an account to the current transaction.
+     */
+    private void writeAccount(Account acc) throws SQLException, IOException {
+        String name = acc.getName();
+
+        this.add(this.insertAccount, name);
+
+        for (AccountMember member : acc.getAllMembers()) {
+            this.add(this.insertMember, name, member.getName());
+        }
+
+        for (Map.Entry<String, AccountPermissionSet> e : acc.getAllMemberPerms().entrySet()) {
+            this.add(this.upsertOwner, name, e.getKey(), e.getValue().isOwner() ? 1 : 0);
+
+            for (Map.Entry<String, Object> node : e.getValue().getPermissionValues().entrySet()) {
+                this.add(this.upsertPermission, name, e.getKey(), node.getKey(),
+                        encodeValue(node.getValue()));
+            }
+        }
+
+        for (Map.Entry<String, Long> e : acc.getBalance().getAmounts().entrySet()) {
+            this.add(this.upsertBalance, name, e.getKey(), e.getValue());
+        }
+    }
+
+    /**
+     * Deletes all rows of an account.
+     */
+    private void deleteRows(String name) throws SQLException {
+        for (PreparedStatement st : this.deleteAccount) {
+            this.add(st, name);
+        }
+    }
+
+    /**
+     * Adds a row to the batch of the given statement. The pending batch is
+     * executed first if it uses another statement, so the order of all
+     * changes is kept.
+     */
+    private void add(PreparedStatement st, Object... params) throws SQLException {
+        if (this.batch != st) {
+            this.executeBatch();
+            this.batch = st;
+        }
+
+        for (int i = 0; i < params.length; i++) {
+            st.setObject(i + 1, params[i]);
+        }
+
+        st.addBatch();
+        this.rows++;
+    }
+
+    /**
+     * Executes the pending batch.
+     */
+    private void executeBatch() throws SQLException {
+        if (this.batch != null) {
+            this.batch.executeBatch();
+            this.batch = null;
+        }
+    }
+
+    /**
+     * Encodes a permission value.
+     */
+    private static byte[] encodeValue(Object value) throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream(16);
+        AccountCodec.writeValue(new DataOutputStream(bos), value);
+        return bos.toByteArray();
+    }
+
+    /**
+     * Decodes a permission value.
+     */
+    private static Object decodeValue(byte[] data) throws IOException {
+        if (data == null) {
+            return null;
+        }
+
+        return AccountCodec.readValue(new DataInputStream(new ByteArrayInputStream(data)));
+    }
+
+    @Override
+    protected void close() throws IOException {
+        if (this.connection == null) {
+            return;
+        }
+
+        try {
+            this.connection.close();
+        } catch (SQLException ex) {
+            throw new IOException("Could not close database", ex);
+        } finally {
+            this.connection = null;
+        }
+    }
+
+    @Override
+    public long getQueueDepth() {
+        return this.queue.size();
+    }
+}
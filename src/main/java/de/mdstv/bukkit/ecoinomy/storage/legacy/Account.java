@@ -0,0 +1,17 @@
+package de.mdstv.bukkit.ecoinomy.storage.legacy;
+
+import java.io.Serializable;
+import java.util.HashMap;
+
+/**
+ * Serialized form of an Account in the 1.0.0 database.
+ * @author Morph <admin@mds-tv.de>
+ */
+final class Account implements Serializable {
+    private static final long serialVersionUID = -1352148641759578795L;
+
+    HashMap<String, AccountMember> members;
+    HashMap<String, AccountPermissionSet> memberPerms;
+    String name;
+    AccountBalance balance;
+}
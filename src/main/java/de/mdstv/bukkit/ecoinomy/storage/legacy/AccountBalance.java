@@ -0,0 +1,15 @@
+package de.mdstv.bukkit.ecoinomy.storage.legacy;
+
+import java.io.Serializable;
+import java.util.HashMap;
+
+/**
+ * Serialized form of an AccountBalance in the 1.0.0 database. Coins were
+ * not serializable, so the map is always empty.
+ * @author Morph <admin@mds-tv.de>
+ */
+final class AccountBalance implements Serializable {
+    private static final long serialVersionUID = 7286276683598490943L;
+
+    HashMap<Object, Integer> coins;
+}
@@ -0,0 +1,13 @@
+package de.mdstv.bukkit.ecoinomy.storage.legacy;
+
+import java.io.Serializable;
+
+/**
+ * Serialized form of an AccountMember in the 1.0.0 database.
+ * @author Morph <admin@mds-tv.de>
+ */
+final class AccountMember implements Serializable {
+    private static final long serialVersionUID = 2379009596468994078L;
+
+    String playerName;
+}
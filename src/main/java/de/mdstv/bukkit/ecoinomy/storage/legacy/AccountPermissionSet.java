@@ -0,0 +1,15 @@
+package de.mdstv.bukkit.ecoinomy.storage.legacy;
+
+import java.io.Serializable;
+import java.util.HashMap;
+
+/**
+ * Serialized form of an AccountPermissionSet in the 1.0.0 database.
+ * @author Morph <admin@mds-tv.de>
+ */
+final class AccountPermissionSet implements Serializable {
+    private static final long serialVersionUID = 6861416758022335303L;
+
+    boolean isOwner;
+    HashMap<String, Object> perms;
+}
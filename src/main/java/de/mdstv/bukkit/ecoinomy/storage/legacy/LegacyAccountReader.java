@@ -0,0 +1,120 @@
+package de.mdstv.bukkit.ecoinomy.storage.legacy;
+
+import de.mdstv.bukkit.ecoinomy.storage.AccountCodec;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectStreamClass;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Reads account databases written with Java serialization by eCoinomy
+ * 1.0.0. The serialized classes are mapped to the frozen copies in this
+ * package, so changes of the live account classes never break the
+ * migration.
+ * @author Morph <admin@mds-tv.de>
+ */
+public final class LegacyAccountReader {
+    /**
+     * Package of the live account classes.
+     */
+    private static final String ACCOUNT_PACKAGE = "de.mdstv.bukkit.ecoinomy.account.";
+
+    private LegacyAccountReader() {
+    }
+
+    /**
+     * Checks if the data starts with the Java serialization magic number.
+     * @param head The first bytes of the data, at least 2
+     * @return true if the data is a legacy database
+     */
+    public static boolean isLegacyFormat(byte[] head) {
+        return head.length >= 2 && (head[0] & 0xFF) == 0xAC
+                && (head[1] & 0xFF) == 0xED;
+    }
+
+    /**
+     * Reads a legacy database.
+     * @param is The source stream, will not be closed
+     * @return The accounts and the journal sequence number, if any
+     * @throws IOException If the data is invalid
+     */
+    public static AccountCodec.Snapshot read(InputStream is) throws IOException {
+        ObjectInputStream ois = new ObjectInputStream(is) {
+            @Override
+            protected Class<?> resolveClass(ObjectStreamClass desc)
+                    throws IOException, ClassNotFoundException {
+                String name = desc.getName();
+
+                switch (name) {
+                    case ACCOUNT_PACKAGE + "Account":              return Account.class;
+                    case ACCOUNT_PACKAGE + "AccountMember":        return AccountMember.class;
+                    case ACCOUNT_PACKAGE + "AccountBalance":       return AccountBalance.class;
+                    case ACCOUNT_PACKAGE + "AccountPermissionSet": return AccountPermissionSet.class;
+                    default: {
+                        return super.resolveClass(desc);
+                    }
+                }
+            }
+        };
+
+        try {
+            // Some snapshots store the journal sequence number in front
+            Object header   = ois.readObject();
+            long   sequence = 0;
+            if (header instanceof Long) {
+                sequence = (Long) header;
+                header   = ois.readObject();
+            }
+
+            if (!(header instanceof Map)) {
+                throw new IOException("Unexpected legacy database content");
+            }
+
+            HashMap<String, de.mdstv.bukkit.ecoinomy.account.Account> accounts =
+                    new HashMap<>();
+            for (Object value : ((Map<?, ?>) header).values()) {
+                de.mdstv.bukkit.ecoinomy.account.Account acc = convert((Account) value);
+                accounts.put(acc.getName(), acc);
+            }
+
+            return new AccountCodec.Snapshot(sequence, accounts);
+        } catch (ClassNotFoundException | ClassCastException ex) {
+            throw new IOException("Could not read legacy database", ex);
+        }
+    }
+
+    /**
+     * Converts a legacy account into a live account.
+     */
+    private static de.mdstv.bukkit.ecoinomy.account.Account convert(Account legacy) {
+        de.mdstv.bukkit.ecoinomy.account.Account acc =
+                new de.mdstv.bukkit.ecoinomy.account.Account(legacy.name);
+
+        // Members
+        if (legacy.members != null) {
+            for (AccountMember member : legacy.members.values()) {
+                acc.restoreMember(new de.mdstv.bukkit.ecoinomy.account.AccountMember(
+                        member.playerName));
+            }
+        }
+
+        // Permissions
+        if (legacy.memberPerms != null) {
+            for (Map.Entry<String, AccountPermissionSet> e : legacy.memberPerms.entrySet()) {
+                de.mdstv.bukkit.ecoinomy.account.AccountPermissionSet set =
+                        acc.getOrCreateMemberPerms(e.getKey());
+                set.setOwner(e.getValue().isOwner);
+
+                if (e.getValue().perms != null) {
+                    for (Map.Entry<String, Object> node : e.getValue().perms.entrySet()) {
+                        set.setPermission(node.getKey(), node.getValue());
+                    }
+                }
+            }
+        }
+
+        return acc;
+    }
+}
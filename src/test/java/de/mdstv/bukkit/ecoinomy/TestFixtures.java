@@ -0,0 +1,61 @@
+package de.mdstv.bukkit.ecoinomy;
+
+import de.mdstv.bukkit.ecoinomy.account.CoinRegistry;
+import de.mdstv.bukkit.ecoinomy.storage.AccountRegistry;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.logging.Logger;
+import org.bukkit.Server;
+import org.bukkit.configuration.MemoryConfiguration;
+
+/**
+ * Shared setup of the unit tests.
+ * @author Morph <admin@mds-tv.de>
+ */
+public final class TestFixtures {
+    private TestFixtures() {
+    }
+
+    /**
+     * Installs the coins of the default config: gold, silver (100 per gold)
+     * and copper (100 per silver).
+     */
+    public static void loadCoins() {
+        MemoryConfiguration coins = new MemoryConfiguration();
+        coins.set("gold.weight", 1);
+        coins.set("silver.weight", 2);
+        coins.set("silver.maxStack", 100);
+        coins.set("copper.weight", 3);
+        coins.set("copper.maxStack", 100);
+
+        CoinRegistry.setInstance(CoinRegistry.load(coins));
+    }
+
+    /**
+     * Installs a plugin holding the accounts as Ecoinomy.plugin. The plugin
+     * has no store, changes are not persisted.
+     * @param accounts The accounts
+     */
+    public static void installPlugin(AccountRegistry accounts) {
+        Ecoinomy.installForTests(createServer(), accounts);
+    }
+
+    /**
+     * Creates a server which only provides a logger.
+     */
+    private static Server createServer() {
+        final Logger logger = Logger.getLogger("Server");
+        return (Server) Proxy.newProxyInstance(Server.class.getClassLoader(),
+                new Class<?>[] { Server.class }, new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        if (method.getName().equals("getLogger")) {
+                            return logger;
+                        }
+
+                        throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+}
@@ -0,0 +1,258 @@
+package de.mdstv.bukkit.ecoinomy.account;
+
+import de.mdstv.bukkit.ecoinomy.TestFixtures;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import org.bukkit.configuration.MemoryConfiguration;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests of the denomination breakdown of balances and properties of the
+ * lock-free ledger under concurrent updates: coins are never created or
+ * lost and no balance becomes negative.
+ * @author Morph <admin@mds-tv.de>
+ */
+public class AccountBalanceTest {
+    private static final String[] COINS = { "gold", "silver", "copper" };
+
+    private static final int THREADS = 8;
+
+    private int slot;
+
+    @Before
+    public void setUp() {
+        TestFixtures.loadCoins();
+        this.slot = CoinRegistry.getInstance().getCoin("gold").getSlot();
+    }
+
+    /**
+     * Restoring the amounts of a balance restores its value.
+     */
+    @Test
+    public void amountsRoundTrip() {
+        Random random = new Random(1);
+        for (int i = 0; i < 10000; i++) {
+            long units = random.nextBoolean()
+                    ? random.nextLong() & Long.MAX_VALUE : random.nextInt(1000000);
+
+            AccountBalance balance = new AccountBalance();
+            balance.deposit("copper", units);
+
+            AccountBalance restored = new AccountBalance();
+            restored.restore(balance.getAmounts());
+            assertEquals(Long.toString(units), units, restored.getUnits(this.slot));
+            assertEquals(balance.getAmounts(), restored.getAmounts());
+        }
+    }
+
+    @Test
+    public void balanceString() {
+        AccountBalance balance = new AccountBalance();
+        assertEquals("0 copper", balance.getBalanceString());
+
+        balance.deposit("gold", 1);
+        assertEquals("1 gold", balance.getBalanceString());
+
+        balance.deposit("silver", 23);
+        balance.deposit("copper", 45);
+        assertEquals("1 gold, 23 silver, 45 copper", balance.getBalanceString());
+
+        // 100 copper make up a silver
+        balance.deposit("copper", 55);
+        assertEquals("1 gold, 24 silver", balance.getBalanceString());
+    }
+
+    /**
+     * A currency without weight has a slot of its own and no breakdown.
+     */
+    @Test
+    public void balanceStringOfCurrency() {
+        MemoryConfiguration coins = new MemoryConfiguration();
+        coins.set("gold.weight", 1);
+        coins.set("silver.weight", 2);
+        coins.set("silver.maxStack", 100);
+        coins.set("token.weight", 0);
+        coins.set("token.plural", "tokens");
+        CoinRegistry.setInstance(CoinRegistry.load(coins));
+
+        AccountBalance balance = new AccountBalance();
+        balance.deposit("token", 250);
+        assertEquals("250 tokens", balance.getBalanceString());
+
+        balance.deposit("silver", 101);
+        assertEquals("1 gold, 1 silver, 250 tokens", balance.getBalanceString());
+
+        balance.deposit("token", Long.MAX_VALUE - 250);
+        assertEquals(Long.MAX_VALUE, balance.getBalance("token"));
+        assertEquals(1, balance.getBalance("gold"));
+    }
+
+    /**
+     * A gold is paid from silver and copper, if there is no gold coin.
+     */
+    @Test
+    public void withdrawGoldFromSmallerCoins() {
+        AccountBalance balance = new AccountBalance();
+        balance.deposit("silver", 99);
+        balance.deposit("copper", 99);
+        assertFalse(balance.withdraw("gold", 1));
+        assertEquals(9999, balance.getUnits(this.slot));
+
+        balance.deposit("copper", 151);
+        assertTrue(balance.withdraw("gold", 1));
+        assertEquals(0, balance.getBalance("gold"));
+        assertEquals(1, balance.getBalance("silver"));
+        assertEquals(50, balance.getBalance("copper"));
+    }
+
+    /**
+     * Random transfers and compare-and-sets between a few accounts keep the
+     * total.
+     */
+    @Test(timeout = 60000)
+    public void transfersConserveTotal() throws Exception {
+        for (long seed = 0; seed < 10; seed++) {
+            final AccountBalance[] balances = new AccountBalance[16];
+            for (int i = 0; i < balances.length; i++) {
+                balances[i] = new AccountBalance();
+                balances[i].deposit("gold", 10);
+            }
+
+            final long total = this.total(balances);
+            this.run(seed, new Worker() {
+                @Override
+                public void step(Random random) {
+                    AccountBalance from = balances[random.nextInt(balances.length)];
+                    AccountBalance to   = balances[random.nextInt(balances.length)];
+                    String         coin = COINS[random.nextInt(COINS.length)];
+
+                    if (random.nextInt(4) == 0) {
+                        // Move the whole amount of a coin
+                        long amount = from.getBalance(coin);
+                        if (amount > 0 && from.compareAndSet(coin, amount, 0)) {
+                            to.deposit(coin, amount);
+                        }
+                    } else {
+                        from.transferTo(to, coin, random.nextInt(150));
+                    }
+                }
+            }, balances);
+
+            assertEquals("seed " + seed, total, this.total(balances));
+        }
+    }
+
+    /**
+     * Concurrent withdrawals never overdraw a balance, every successful
+     * withdrawal is paid from the balance.
+     */
+    @Test(timeout = 60000)
+    public void withdrawalsNeverOverdraw() throws Exception {
+        for (long seed = 0; seed < 10; seed++) {
+            final AccountBalance balance = new AccountBalance();
+            balance.deposit("copper", 100000);
+
+            final AtomicLong withdrawn = new AtomicLong();
+            this.run(seed, new Worker() {
+                @Override
+                public void step(Random random) {
+                    long amount = 1 + random.nextInt(500);
+                    if (balance.withdraw("copper", amount)) {
+                        withdrawn.addAndGet(amount);
+                    }
+                }
+            }, balance);
+
+            assertEquals("seed " + seed, 100000,
+                    withdrawn.get() + balance.getUnits(this.slot));
+        }
+    }
+
+    /**
+     * compareAndSet() only changes the amount of its coin. Amounts which
+     * would make up a more valuable coin are rejected, except for the most
+     * valuable coin.
+     */
+    @Test
+    public void compareAndSetKeepsOtherCoins() {
+        AccountBalance balance = new AccountBalance();
+        balance.deposit("gold", 2);
+        balance.deposit("silver", 50);
+        balance.deposit("copper", 7);
+
+        assertTrue(balance.compareAndSet("silver", 50, 99));
+        assertEquals(2, balance.getBalance("gold"));
+        assertEquals(99, balance.getBalance("silver"));
+        assertEquals(7, balance.getBalance("copper"));
+
+        try {
+            balance.compareAndSet("silver", 99, 150);
+            fail("Carry into gold not rejected");
+        } catch (IllegalArgumentException ex) {
+            // Expected
+        }
+
+        assertEquals(2, balance.getBalance("gold"));
+        assertTrue(balance.compareAndSet("gold", 2, 500));
+        assertEquals(500 * 10000 + 99 * 100 + 7, balance.getUnits(this.slot));
+    }
+
+    /**
+     * Runs a worker on several threads while checking that no balance is
+     * negative.
+     */
+    private void run(long seed, final Worker worker, final AccountBalance... balances)
+            throws InterruptedException {
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        final CountDownLatch             done    = new CountDownLatch(THREADS);
+
+        for (int t = 0; t < THREADS; t++) {
+            final Random random = new Random(seed * THREADS + t);
+            new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        for (int i = 0; i < 20000; i++) {
+                            worker.step(random);
+                        }
+                    } catch (Throwable ex) {
+                        failure.compareAndSet(null, ex);
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            }.start();
+        }
+
+        while (done.getCount() > 0) {
+            for (AccountBalance balance : balances) {
+                assertTrue(balance.getUnits(this.slot) >= 0);
+            }
+        }
+
+        done.await();
+        assertNull(failure.get());
+    }
+
+    private long total(AccountBalance[] balances) {
+        long total = 0;
+        for (AccountBalance balance : balances) {
+            total += balance.getUnits(this.slot);
+        }
+
+        return total;
+    }
+
+    private interface Worker {
+        void step(Random random);
+    }
+}
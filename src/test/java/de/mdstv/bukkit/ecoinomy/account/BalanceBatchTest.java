@@ -0,0 +1,201 @@
+package de.mdstv.bukkit.ecoinomy.account;
+
+import de.mdstv.bukkit.ecoinomy.TestFixtures;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests that a BalanceBatch is applied completely or not at all.
+ * @author Morph <admin@mds-tv.de>
+ */
+public class BalanceBatchTest {
+    private int slot;
+
+    private Account a;
+    private Account b;
+    private Account c;
+
+    /**
+     * All reported changes.
+     */
+    private final List<AccountChange> changes = new ArrayList<>();
+
+    @Before
+    public void setUp() {
+        TestFixtures.loadCoins();
+        this.slot = CoinRegistry.getInstance().getCoin("copper").getSlot();
+
+        this.a = this.account("a", 100);
+        this.b = this.account("b", 50);
+        this.c = this.account("c", 0);
+    }
+
+    @Test
+    public void appliesAllLegs() {
+        BalanceBatch batch = new BalanceBatch()
+                .transfer(this.a, this.c, "copper", 30)
+                .transfer(this.b, this.c, "copper", 20)
+                .withdraw(this.a, "copper", 10);
+
+        assertNull(batch.apply());
+        this.assertUnits(60, 30, 50);
+
+        // One change per account and slot
+        assertEquals(3, this.changes.size());
+    }
+
+    @Test
+    public void tooLowChangesNothing() {
+        BalanceBatch batch = new BalanceBatch()
+                .transfer(this.a, this.c, "copper", 30)
+                .transfer(this.b, this.c, "copper", 60);
+
+        assertSame(this.b, batch.apply());
+        this.assertUnits(100, 50, 0);
+        assertTrue(this.changes.isEmpty());
+    }
+
+    @Test
+    public void overflowChangesNothing() {
+        this.c.getBalance().deposit("copper", Long.MAX_VALUE - 10);
+        this.changes.clear();
+
+        BalanceBatch batch = new BalanceBatch()
+                .transfer(this.a, this.c, "copper", 20);
+        try {
+            batch.apply();
+            fail("Overflow not detected");
+        } catch (ArithmeticException ex) {
+            // Expected
+        }
+
+        this.assertUnits(100, 50, Long.MAX_VALUE - 10);
+        assertTrue(this.changes.isEmpty());
+    }
+
+    /**
+     * A value which becomes too low after the check gives back all values
+     * lowered before it. Two legs of the same value pass the check one by
+     * one, like a withdrawal between check and apply.
+     */
+    @Test
+    public void failedLegIsRolledBack() {
+        AccountBalance[] balances = {
+            this.b.getBalance(), this.a.getBalance(), this.a.getBalance(), this.c.getBalance()
+        };
+        int[]  slots  = { this.slot, this.slot, this.slot, this.slot };
+        long[] deltas = { -40, -60, -60, 160 };
+
+        assertEquals(2, AccountBalance.applyAll(balances, slots, deltas));
+        this.assertUnits(100, 50, 0);
+        assertTrue(this.changes.isEmpty());
+    }
+
+    /**
+     * A value which overflows after the check takes back all values
+     * changed before it.
+     */
+    @Test
+    public void overflowIsRolledBack() {
+        this.c.getBalance().deposit("copper", Long.MAX_VALUE - 10);
+        this.changes.clear();
+
+        AccountBalance[] balances = {
+            this.a.getBalance(), this.b.getBalance(), this.c.getBalance(), this.c.getBalance()
+        };
+        int[]  slots  = { this.slot, this.slot, this.slot, this.slot };
+        long[] deltas = { -5, -6, 5, 6 };
+
+        try {
+            AccountBalance.applyAll(balances, slots, deltas);
+            fail("Overflow not detected");
+        } catch (ArithmeticException ex) {
+            // Expected
+        }
+
+        this.assertUnits(100, 50, Long.MAX_VALUE - 10);
+        assertTrue(this.changes.isEmpty());
+    }
+
+    /**
+     * A raised value which another thread spends before the overflow is
+     * rolled back cannot be taken back. It stays applied and the batch
+     * fails loudly, so coins are never created unnoticed.
+     */
+    @Test(timeout = 60000)
+    public void spentRaiseIsReported() throws Exception {
+        this.c.getBalance().deposit("copper", Long.MAX_VALUE - 50);
+
+        final AccountBalance raised = new AccountBalance();
+        final AtomicLong     spent  = new AtomicLong();
+        final AtomicBoolean  stop   = new AtomicBoolean();
+        Thread spender = new Thread() {
+            @Override
+            public void run() {
+                while (!stop.get()) {
+                    if (raised.withdraw("copper", 1000)) {
+                        spent.addAndGet(1000);
+                    }
+                }
+            }
+        };
+        spender.start();
+
+        // Both legs of c pass the check, together they overflow
+        AccountBalance[] balances = { raised, this.c.getBalance(), this.c.getBalance() };
+        int[]            slots    = { this.slot, this.slot, this.slot };
+        long[]           deltas   = { 1000, 30, 30 };
+
+        long kept = 0;
+        try {
+            for (int i = 0; i < 100000; i++) {
+                try {
+                    AccountBalance.applyAll(balances, slots, deltas);
+                    fail("Overflow not detected");
+                } catch (ArithmeticException ex) {
+                    // Rolled back
+                } catch (IllegalStateException ex) {
+                    kept++;
+                }
+            }
+        } finally {
+            stop.set(true);
+            spender.join();
+        }
+
+        assertEquals(kept * 1000, spent.get() + raised.getUnits(this.slot));
+        assertEquals(Long.MAX_VALUE - 50, this.c.getBalance().getUnits(this.slot));
+    }
+
+    /**
+     * Creates an account with some copper which reports its changes.
+     */
+    private Account account(String name, long copper) {
+        Account account = new Account(name);
+        account.getBalance().deposit("copper", copper);
+        account.setChangeListener(new AccountChangeListener() {
+            @Override
+            public void accountChanged(AccountChange change) {
+                BalanceBatchTest.this.changes.add(change);
+            }
+        });
+
+        return account;
+    }
+
+    private void assertUnits(long a, long b, long c) {
+        assertEquals(a, this.a.getBalance().getUnits(this.slot));
+        assertEquals(b, this.b.getBalance().getUnits(this.slot));
+        assertEquals(c, this.c.getBalance().getUnits(this.slot));
+    }
+}
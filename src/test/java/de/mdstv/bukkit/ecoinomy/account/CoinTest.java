@@ -0,0 +1,114 @@
+package de.mdstv.bukkit.ecoinomy.account;
+
+import de.mdstv.bukkit.ecoinomy.TestFixtures;
+import java.util.List;
+import java.util.Random;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Properties of the denomination breakdown of random values: the coins
+ * add up to the value and no coin but the most valuable one reaches its
+ * maxStack.
+ * @author Morph <admin@mds-tv.de>
+ */
+public class CoinTest {
+    private List<Coin> denominations;
+
+    @Before
+    public void setUp() {
+        TestFixtures.loadCoins();
+        this.denominations = CoinRegistry.getInstance().getDenominations(
+                CoinRegistry.getInstance().getCoin("gold").getSlot());
+    }
+
+    @Test
+    public void breakdownAddsUp() {
+        Random random = new Random(1);
+        for (int i = 0; i < 100000; i++) {
+            long units = this.randomUnits(random);
+
+            long sum = 0;
+            for (Coin coin : this.denominations) {
+                sum += coin.countIn(units) * coin.getFactor();
+            }
+
+            assertEquals(Long.toString(units), units, sum);
+        }
+    }
+
+    @Test
+    public void breakdownStaysBelowMaxStack() {
+        Random random = new Random(2);
+        for (int i = 0; i < 100000; i++) {
+            long units = this.randomUnits(random);
+
+            // The most valuable coin comes first and has no limit
+            for (Coin coin : this.denominations.subList(1, this.denominations.size())) {
+                long count = coin.countIn(units);
+                assertTrue(units + " " + coin, count >= 0 && count < coin.getMaxStack());
+            }
+        }
+    }
+
+    @Test
+    public void unitsRoundTrip() {
+        Random random = new Random(3);
+        for (Coin coin : this.denominations) {
+            long max = coin == this.denominations.get(0)
+                    ? Long.MAX_VALUE / coin.getFactor() : coin.getMaxStack() - 1;
+
+            for (int i = 0; i < 10000; i++) {
+                long amount = (random.nextLong() & Long.MAX_VALUE) % (max + 1);
+                assertEquals(coin + " " + amount, amount, coin.countIn(coin.toUnits(amount)));
+            }
+
+            assertEquals(coin.toString(), max, coin.countIn(coin.toUnits(max)));
+        }
+    }
+
+    @Test
+    public void toUnitsOverflow() {
+        for (Coin coin : this.denominations) {
+            long max = Long.MAX_VALUE / coin.getFactor();
+            long min = Long.MIN_VALUE / coin.getFactor();
+            assertEquals(max * coin.getFactor(), coin.toUnits(max));
+            assertEquals(min * coin.getFactor(), coin.toUnits(min));
+
+            if (coin.getFactor() > 1) {
+                this.assertOverflow(coin, max + 1);
+                this.assertOverflow(coin, min - 1);
+            }
+        }
+    }
+
+    private void assertOverflow(Coin coin, long amount) {
+        try {
+            coin.toUnits(amount);
+            fail("Overflow of " + amount + " " + coin + " not detected");
+        } catch (ArithmeticException ex) {
+            // Expected
+        }
+    }
+
+    /**
+     * Gets a random value, small ones and ones around each coin value more
+     * often.
+     */
+    private long randomUnits(Random random) {
+        switch (random.nextInt(3)) {
+            case 0:
+                return random.nextLong() & Long.MAX_VALUE;
+            case 1:
+                return random.nextInt(1000000);
+            default:
+                Coin coin = this.denominations.get(random.nextInt(this.denominations.size()));
+                return Math.max(0, coin.getFactor() * (1 + random.nextInt(100))
+                        + random.nextInt(3) - 1);
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package de.mdstv.bukkit.ecoinomy.interest;
+
+import de.mdstv.bukkit.ecoinomy.TestFixtures;
+import de.mdstv.bukkit.ecoinomy.account.Account;
+import de.mdstv.bukkit.ecoinomy.account.CoinRegistry;
+import de.mdstv.bukkit.ecoinomy.scheduler.JobScheduler;
+import de.mdstv.bukkit.ecoinomy.storage.AccountRegistry;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Collections;
+import java.util.Properties;
+import java.util.logging.Logger;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests that the InterestEngine charges every period once, also across
+ * restarts. The period length is so long that the current period is
+ * always 0.
+ * @author Morph <admin@mds-tv.de>
+ */
+public class InterestEngineTest {
+    private static final Logger LOGGER = Logger.getLogger("InterestEngineTest");
+
+    /**
+     * 10 % interest, no upkeep.
+     */
+    private static final InterestRules RULES = new InterestRules(100000, -1, 0);
+
+    private AccountRegistry accounts;
+    private JobScheduler    scheduler;
+    private File            stateFile;
+    private int             slot;
+
+    @Before
+    public void setUp() throws Exception {
+        TestFixtures.loadCoins();
+        this.slot = CoinRegistry.getInstance().getCoin("copper").getSlot();
+
+        this.accounts = new AccountRegistry(0);
+        for (int i = 0; i < 100; i++) {
+            Account account = new Account("account" + i);
+            account.getBalance().deposit("copper", 1000);
+            this.accounts.put(account.getName(), account);
+        }
+
+        TestFixtures.installPlugin(this.accounts);
+        this.scheduler = new JobScheduler(50000000L, Collections.<String, Long>emptyMap(),
+                2, 10, LOGGER);
+        this.stateFile = File.createTempFile("interest", ".properties");
+    }
+
+    @After
+    public void tearDown() {
+        this.scheduler.shutdown();
+        this.stateFile.delete();
+    }
+
+    /**
+     * A period which was begun but not completed before a restart is not
+     * charged again.
+     */
+    @Test(timeout = 30000)
+    public void restartMidPeriodDoesNotChargeAgain() throws Exception {
+        this.writeState(0, false);
+
+        InterestEngine engine = this.createEngine();
+        assertEquals(0, engine.getLastPeriod());
+        assertEquals("true", this.readState().getProperty("done"));
+
+        this.runEngine(engine);
+        this.assertBalances(1000);
+    }
+
+    /**
+     * A charged period is neither charged again by the same engine nor
+     * after a restart.
+     */
+    @Test(timeout = 30000)
+    public void chargesPeriodOnce() throws Exception {
+        this.writeState(-1, true);
+
+        InterestEngine engine = this.createEngine();
+        this.runEngine(engine);
+        this.assertBalances(1100);
+        assertEquals("0", this.readState().getProperty("period"));
+        assertEquals("true", this.readState().getProperty("done"));
+
+        this.runEngine(engine);
+        this.runEngine(this.createEngine());
+        this.assertBalances(1100);
+    }
+
+    /**
+     * A period whose job fails before the balances are changed is not
+     * skipped, it is charged by the next run.
+     */
+    @Test(timeout = 30000)
+    public void failedPeriodIsChargedLater() throws Exception {
+        this.writeState(-1, true);
+
+        InterestEngine engine = this.createEngine();
+        InterestJob    job    = new InterestJob(engine, RULES, 0);
+        job.processAsync(0, job.prepare());
+
+        // Any error between beginning the period and the batch
+        job.abort(null);
+        try {
+            job.finish();
+            fail("Aborted job finished");
+        } catch (NullPointerException ex) {
+            // Expected
+        }
+
+        this.assertBalances(1000);
+        assertEquals(-1, engine.getLastPeriod());
+        assertEquals("true", this.readState().getProperty("done"));
+
+        this.runEngine(engine);
+        this.assertBalances(1100);
+    }
+
+    private InterestEngine createEngine() throws IOException {
+        return new InterestEngine(this.scheduler, RULES, Long.MAX_VALUE, this.stateFile, LOGGER);
+    }
+
+    /**
+     * Runs the engine and serves the job until it is done.
+     */
+    private void runEngine(InterestEngine engine) throws InterruptedException {
+        engine.run();
+        while (this.scheduler.isRunning(InterestEngine.JOB_NAME)) {
+            this.scheduler.run();
+            Thread.sleep(1);
+        }
+    }
+
+    private void assertBalances(long units) {
+        for (Account account : this.accounts.values()) {
+            assertEquals(account.getName(), units, account.getBalance().getUnits(this.slot));
+        }
+
+        assertFalse(this.scheduler.isRunning(InterestEngine.JOB_NAME));
+    }
+
+    private void writeState(long period, boolean done) throws IOException {
+        Properties state = new Properties();
+        state.setProperty("period", Long.toString(period));
+        state.setProperty("done", Boolean.toString(done));
+
+        try (OutputStream out = new FileOutputStream(this.stateFile)) {
+            state.store(out, null);
+        }
+    }
+
+    private Properties readState() throws IOException {
+        Properties state = new Properties();
+        try (InputStream in = new FileInputStream(this.stateFile)) {
+            state.load(in);
+        }
+
+        return state;
+    }
+}
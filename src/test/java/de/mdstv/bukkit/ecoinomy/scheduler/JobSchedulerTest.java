@@ -0,0 +1,114 @@
+package de.mdstv.bukkit.ecoinomy.scheduler;
+
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Logger;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of the JobScheduler.
+ * @author Morph <admin@mds-tv.de>
+ */
+public class JobSchedulerTest {
+    private static final Logger LOGGER = Logger.getLogger("JobSchedulerTest");
+
+    private JobScheduler scheduler;
+
+    @Before
+    public void setUp() {
+        this.scheduler = new JobScheduler(50000000L, Collections.<String, Long>emptyMap(),
+                2, 10, LOGGER);
+    }
+
+    @After
+    public void tearDown() {
+        this.scheduler.shutdown();
+    }
+
+    /**
+     * A job in finish() can neither be cancelled nor aborted, finish()
+     * completes and the job is done.
+     */
+    @Test(timeout = 30000)
+    public void cancelDuringFinish() throws Exception {
+        BlockingJob job = new BlockingJob();
+        assertTrue(this.scheduler.submit(job));
+
+        while (job.started.getCount() > 0) {
+            this.scheduler.run();
+            Thread.sleep(1);
+        }
+
+        assertFalse(this.scheduler.cancel(job.getName()));
+        assertTrue(this.scheduler.isRunning(job.getName()));
+        assertEquals(JobState.FINISHING, this.scheduler.getProgress(job.getName()).getState());
+
+        job.release.countDown();
+        while (this.scheduler.isRunning(job.getName())) {
+            Thread.sleep(1);
+        }
+
+        assertEquals(JobState.DONE, this.scheduler.getProgress(job.getName()).getState());
+        assertFalse(job.aborted.get());
+    }
+
+    /**
+     * A running job is cancelled and aborted, finish() is never called.
+     */
+    @Test(timeout = 30000)
+    public void cancelWhileRunning() throws Exception {
+        BlockingJob job = new BlockingJob();
+        assertTrue(this.scheduler.submit(job));
+
+        while (this.scheduler.getProgress(job.getName()).getState() == JobState.PREPARING) {
+            Thread.sleep(1);
+        }
+
+        assertTrue(this.scheduler.cancel(job.getName()));
+        assertEquals(JobState.CANCELLED, this.scheduler.getProgress(job.getName()).getState());
+        assertTrue(job.aborted.get());
+
+        this.scheduler.run();
+        assertEquals(1, job.started.getCount());
+    }
+
+    /**
+     * A job whose finish() waits until it is released.
+     */
+    private static final class BlockingJob extends ChunkedJob {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicBoolean  aborted = new AtomicBoolean();
+
+        BlockingJob() {
+            super("blocking");
+        }
+
+        @Override
+        protected int prepare() {
+            return 100;
+        }
+
+        @Override
+        protected void processAsync(int from, int to) {
+        }
+
+        @Override
+        protected void finish() throws Exception {
+            this.started.countDown();
+            this.release.await();
+        }
+
+        @Override
+        protected void abort(Throwable cause) {
+            this.aborted.set(true);
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package de.mdstv.bukkit.ecoinomy.storage;
+
+import de.mdstv.bukkit.ecoinomy.TestFixtures;
+import de.mdstv.bukkit.ecoinomy.account.Account;
+import de.mdstv.bukkit.ecoinomy.account.LedgerGate;
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Tests of the lazily decoding AccountRegistry.
+ * @author Morph <admin@mds-tv.de>
+ */
+public class AccountRegistryTest {
+    private static final int ACCOUNTS = 2000;
+
+    private File file;
+
+    @Before
+    public void setUp() throws Exception {
+        TestFixtures.loadCoins();
+
+        AccountRegistry accounts = new AccountRegistry(0);
+        for (int i = 0; i < ACCOUNTS; i++) {
+            Account account = new Account("account" + i);
+            account.getBalance().deposit("gold", i);
+            accounts.put(account.getName(), account);
+        }
+
+        this.file = File.createTempFile("accounts", ".dat");
+        Files.write(this.file.toPath(), accounts.encodeIndexed(0));
+    }
+
+    @After
+    public void tearDown() {
+        this.file.delete();
+    }
+
+    /**
+     * Snapshots close the LedgerGate and then need the registry, decoding
+     * an account holds the registry. Decoding must not enter the gate.
+     */
+    @Test(timeout = 60000)
+    public void snapshotWhileDecoding() throws Exception {
+        final AccountRegistry accounts =
+                new AccountRegistry(MappedAccountFile.open(this.file), 50);
+        final Object dataLock = new Object();
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+        Thread[] readers = new Thread[4];
+        for (int t = 0; t < readers.length; t++) {
+            final Random random = new Random(t);
+            readers[t] = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        for (int i = 0; i < 20000; i++) {
+                            int index = random.nextInt(ACCOUNTS);
+                            assertEquals(index, accounts.get("account" + index)
+                                    .getBalance().getBalance("gold"));
+                        }
+                    } catch (Throwable ex) {
+                        failure.compareAndSet(null, ex);
+                    }
+                }
+            };
+            readers[t].start();
+        }
+
+        // Same locking as FileAccountStore.snapshot()
+        for (int i = 0; i < 200; i++) {
+            synchronized (dataLock) {
+                LedgerGate.close();
+                try {
+                    accounts.encodeIndexed(i);
+                } finally {
+                    LedgerGate.open();
+                }
+            }
+        }
+
+        for (Thread reader : readers) {
+            reader.join();
+        }
+
+        assertNull(failure.get());
+    }
+}